@@ -0,0 +1,130 @@
+/*
+ * SonarQube, open source software quality management tool.
+ * Copyright (C) 2008-2014 SonarSource
+ * mailto:contact AT sonarsource DOT com
+ *
+ * SonarQube is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * SonarQube is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+ */
+package org.sonar.microbenchmark;
+
+import com.google.common.collect.ImmutableMap;
+import org.apache.commons.io.FileUtils;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.Options;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+import org.sonar.api.CoreProperties;
+import org.sonar.api.batch.bootstrap.ProjectDefinition;
+import org.sonar.api.batch.bootstrap.ProjectReactor;
+import org.sonar.batch.bootstrap.BootstrapProperties;
+import org.sonar.batch.bootstrap.TempFolderProvider;
+import org.sonar.batch.index.Cache;
+import org.sonar.batch.index.Caches;
+
+import java.io.File;
+import java.nio.file.Files;
+import java.util.Iterator;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Compares put, get and traversal of batch {@link org.sonar.batch.index.Caches} depending
+ * on the storage engine and on the memory allocated to caches
+ */
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@State(Scope.Thread)
+@Fork(1)
+@Warmup(iterations = 3)
+@Measurement(iterations = 5)
+@BenchmarkMode(Mode.Throughput)
+public class CachesBenchmark {
+
+  @Param({Caches.PERSISTIT_ENGINE, Caches.OFF_HEAP_ENGINE, Caches.MAPPED_FILE_ENGINE})
+  public String engine;
+
+  @Param({"1", "16", "256"})
+  public String memoryInMb;
+
+  @Param({"100000"})
+  public int elementsNumber;
+
+  File workDir;
+  Caches caches;
+  Cache<String> cache;
+
+  @Setup
+  public void setup() throws Exception {
+    workDir = Files.createTempDirectory("microbenchmark").toFile();
+    BootstrapProperties bootstrapProps = new BootstrapProperties(ImmutableMap.of(
+      CoreProperties.WORKING_DIRECTORY, workDir.getAbsolutePath(),
+      Caches.ENGINE_PROPERTY, engine,
+      Caches.MEMORY_PROPERTY, memoryInMb));
+    caches = new Caches(new TempFolderProvider().provide(bootstrapProps), bootstrapProps, new ProjectReactor(ProjectDefinition.create()));
+    caches.start();
+    cache = caches.createCache("benchmark");
+    put();
+  }
+
+  @TearDown
+  public void tearDown() {
+    caches.stop();
+    FileUtils.deleteQuietly(workDir);
+  }
+
+  @Benchmark
+  public void put() {
+    for (int i = 0; i < elementsNumber; i++) {
+      cache.put("module" + (i % 10), i, "value of element " + i);
+    }
+  }
+
+  @Benchmark
+  public void get(Blackhole blackhole) {
+    for (int i = 0; i < elementsNumber; i++) {
+      blackhole.consume(cache.get("module" + (i % 10), i));
+    }
+  }
+
+  @Benchmark
+  public void traverse(Blackhole blackhole) {
+    Iterator<String> values = cache.values().iterator();
+    while (values.hasNext()) {
+      blackhole.consume(values.next());
+    }
+  }
+
+  /**
+   * You can this benchmark with maven command-line (see run.sh) or by executing this method
+   * in IDE
+   */
+  public static void main(String[] args) throws RunnerException {
+    Options opt = new OptionsBuilder()
+      .include(CachesBenchmark.class.getSimpleName())
+      .build();
+    new Runner(opt).run();
+  }
+}
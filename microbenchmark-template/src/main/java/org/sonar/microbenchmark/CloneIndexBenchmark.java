@@ -0,0 +1,142 @@
+/*
+ * SonarQube, open source software quality management tool.
+ * Copyright (C) 2008-2014 SonarSource
+ * mailto:contact AT sonarsource DOT com
+ *
+ * SonarQube is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * SonarQube is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+ */
+package org.sonar.microbenchmark;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.Options;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+import org.sonar.duplications.block.Block;
+import org.sonar.duplications.block.ByteArray;
+import org.sonar.duplications.index.CloneIndex;
+import org.sonar.duplications.index.MemoryCloneIndex;
+import org.sonar.duplications.index.OffHeapCloneIndex;
+import org.sonar.duplications.index.PackedMemoryCloneIndex;
+
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Compares the implementations of {@link CloneIndex}: insertion of all the blocks of a project, then
+ * lookup of the blocks of a file by hash, as done by the detection of duplications.
+ */
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@State(Scope.Thread)
+@Fork(1)
+@Warmup(iterations = 3)
+@Measurement(iterations = 5)
+@BenchmarkMode(Mode.Throughput)
+public class CloneIndexBenchmark {
+
+  private static final int BLOCKS_PER_FILE = 100;
+  private static final int LOOKUPS = 1000;
+
+  @Param({"10000", "1000000"})
+  public int blocks;
+
+  @Param({"memory", "packed", "offheap"})
+  public String implementation;
+
+  Block[] data;
+  ByteArray[] lookups;
+  CloneIndex filledIndex;
+
+  @Setup
+  public void setup() throws Exception {
+    Random random = new Random(1);
+    data = new Block[blocks];
+    for (int i = 0; i < blocks; i++) {
+      // 10% of hashes are duplicated
+      long hash = random.nextInt(10) == 0 ? random.nextInt(1000) : random.nextLong();
+      int indexInFile = i % BLOCKS_PER_FILE;
+      data[i] = Block.builder()
+        .setResourceId("project:src/main/java/File" + (i / BLOCKS_PER_FILE) + ".java")
+        .setBlockHash(new ByteArray(hash))
+        .setIndexInFile(indexInFile)
+        .setLines(indexInFile + 1, indexInFile + 10)
+        .setUnit(indexInFile * 10, indexInFile * 10 + 100)
+        .build();
+    }
+    lookups = new ByteArray[LOOKUPS];
+    for (int i = 0; i < LOOKUPS; i++) {
+      lookups[i] = data[random.nextInt(blocks)].getBlockHash();
+    }
+    filledIndex = insertAll();
+    // sort once
+    filledIndex.getBySequenceHash(lookups[0]);
+  }
+
+  private CloneIndex newIndex() {
+    if ("memory".equals(implementation)) {
+      return new MemoryCloneIndex();
+    }
+    if ("packed".equals(implementation)) {
+      return new PackedMemoryCloneIndex(8, blocks);
+    }
+    return new OffHeapCloneIndex(8, blocks);
+  }
+
+  private CloneIndex insertAll() {
+    CloneIndex index = newIndex();
+    for (Block block : data) {
+      index.insert(block);
+    }
+    return index;
+  }
+
+  /**
+   * Insertion, including sorting of the index by first query.
+   */
+  @Benchmark
+  public int insert() {
+    return insertAll().getBySequenceHash(lookups[0]).size();
+  }
+
+  @Benchmark
+  public int getBySequenceHash() {
+    int count = 0;
+    for (ByteArray hash : lookups) {
+      count += filledIndex.getBySequenceHash(hash).size();
+    }
+    return count;
+  }
+
+  /**
+   * You can this benchmark with maven command-line (see run.sh) or by executing this method
+   * in IDE
+   */
+  public static void main(String[] args) throws RunnerException {
+    Options opt = new OptionsBuilder()
+      .include(CloneIndexBenchmark.class.getSimpleName())
+      .build();
+    new Runner(opt).run();
+  }
+}
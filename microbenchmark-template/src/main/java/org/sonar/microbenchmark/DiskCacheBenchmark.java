@@ -0,0 +1,142 @@
+/*
+ * SonarQube, open source software quality management tool.
+ * Copyright (C) 2008-2014 SonarSource
+ * mailto:contact AT sonarsource DOT com
+ *
+ * SonarQube is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * SonarQube is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+ */
+package org.sonar.microbenchmark;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.Options;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+import org.sonar.api.issue.internal.DefaultIssue;
+import org.sonar.api.rule.RuleKey;
+import org.sonar.api.utils.Duration;
+import org.sonar.api.utils.System2;
+import org.sonar.server.computation.issue.DefaultIssueCodec;
+import org.sonar.server.util.CloseableIterator;
+import org.sonar.server.util.cache.DiskCache;
+
+import java.io.File;
+import java.util.Arrays;
+import java.util.Date;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Compares the codec dedicated to issues with the default Java serialization
+ * of {@link org.sonar.server.util.cache.DiskCache}
+ */
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@State(Scope.Thread)
+@Fork(1)
+@Warmup(iterations = 5)
+@Measurement(iterations = 5)
+@BenchmarkMode(Mode.Throughput)
+public class DiskCacheBenchmark {
+
+  @Param({"1000", "100000"})
+  public int issuesNumber;
+
+  DiskCache<DefaultIssue> serializationCache;
+  DiskCache<DefaultIssue> codecCache;
+
+  @Setup
+  public void setup() throws Exception {
+    serializationCache = new DiskCache<>(File.createTempFile("microbenchmark", ".ser"), System2.INSTANCE);
+    codecCache = new DiskCache<>(File.createTempFile("microbenchmark", ".codec"), System2.INSTANCE, new DefaultIssueCodec());
+    write(serializationCache);
+    write(codecCache);
+  }
+
+  @Benchmark
+  public void write_java_serialization() throws Exception {
+    write(serializationCache);
+  }
+
+  @Benchmark
+  public void write_codec() throws Exception {
+    write(codecCache);
+  }
+
+  @Benchmark
+  public void traverse_java_serialization(Blackhole blackhole) throws Exception {
+    traverse(serializationCache, blackhole);
+  }
+
+  @Benchmark
+  public void traverse_codec(Blackhole blackhole) throws Exception {
+    traverse(codecCache, blackhole);
+  }
+
+  private void write(DiskCache<DefaultIssue> cache) {
+    try (DiskCache<DefaultIssue>.DiskAppender appender = cache.newAppender()) {
+      for (int i = 0; i < issuesNumber; i++) {
+        appender.append(newIssue(i));
+      }
+    }
+  }
+
+  private static void traverse(DiskCache<DefaultIssue> cache, Blackhole blackhole) {
+    try (CloseableIterator<DefaultIssue> issues = cache.traverse()) {
+      while (issues.hasNext()) {
+        blackhole.consume(issues.next());
+      }
+    }
+  }
+
+  private static DefaultIssue newIssue(int i) {
+    return new DefaultIssue()
+      .setKey("UUID_" + i)
+      .setComponentUuid("FILE_" + (i / 100))
+      .setProjectUuid("PROJECT")
+      .setProjectKey("org.codehaus.sonar:sonar")
+      .setRuleKey(RuleKey.of("squid", "S00" + (i % 10)))
+      .setSeverity("BLOCKER")
+      .setMessage("this is the message of issue " + i)
+      .setLine(i)
+      .setDebt(Duration.create(10L))
+      .setStatus("OPEN")
+      .setAuthorLogin("someone")
+      .setChecksum("c8a3be5d7bd7a31a1f7c1d11a4e3ae91")
+      .setTags(Arrays.asList("tag" + i, "othertag" + i))
+      .setCreationDate(new Date(1_400_000_000_000L))
+      .setUpdateDate(new Date(1_400_000_000_000L));
+  }
+
+  /**
+   * You can this benchmark with maven command-line (see run.sh) or by executing this method
+   * in IDE
+   */
+  public static void main(String[] args) throws RunnerException {
+    Options opt = new OptionsBuilder()
+      .include(DiskCacheBenchmark.class.getSimpleName())
+      .build();
+    new Runner(opt).run();
+  }
+}
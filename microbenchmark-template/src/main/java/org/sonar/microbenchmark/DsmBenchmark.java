@@ -0,0 +1,129 @@
+/*
+ * SonarQube, open source software quality management tool.
+ * Copyright (C) 2008-2014 SonarSource
+ * mailto:contact AT sonarsource DOT com
+ *
+ * SonarQube is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * SonarQube is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+ */
+package org.sonar.microbenchmark;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.Options;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+import org.sonar.graph.DirectedGraph;
+import org.sonar.graph.Dsm;
+import org.sonar.graph.DsmTopologicalSorter;
+import org.sonar.graph.Edge;
+import org.sonar.graph.IncrementalCyclesAndFESSolver;
+import org.sonar.graph.StringEdge;
+import org.sonar.graph.StronglyConnectedComponents;
+
+import java.util.Random;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Cycle detection and DSM sorting on graphs made of small tangled clusters linked by acyclic dependencies,
+ * which is the usual shape of package dependencies in large projects.
+ */
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@State(Scope.Thread)
+@Fork(1)
+@Warmup(iterations = 3)
+@Measurement(iterations = 5)
+@BenchmarkMode(Mode.Throughput)
+public class DsmBenchmark {
+
+  private static final int CLUSTER_SIZE = 10;
+
+  @Param({"1000", "10000", "50000"})
+  public int size;
+
+  DirectedGraph<String, StringEdge> graph;
+  Set<Edge> feedbackEdges;
+
+  @Setup
+  public void setup() throws Exception {
+    Random random = new Random(42);
+    graph = DirectedGraph.createStringDirectedGraph();
+    for (int i = 0; i < size; i++) {
+      graph.addVertex(vertex(i));
+    }
+    for (int i = 0; i < size; i++) {
+      int cluster = i / CLUSTER_SIZE;
+      int clusterStart = cluster * CLUSTER_SIZE;
+      int clusterSize = Math.min(CLUSTER_SIZE, size - clusterStart);
+      // dependencies inside the cluster create tangles
+      addEdge(i, clusterStart + random.nextInt(clusterSize), random);
+      addEdge(i, clusterStart + random.nextInt(clusterSize), random);
+      // dependencies to previous clusters only, so that clusters never depend on each other in both directions
+      if (cluster > 0) {
+        addEdge(i, random.nextInt(clusterStart), random);
+        addEdge(i, random.nextInt(clusterStart), random);
+      }
+    }
+    feedbackEdges = new IncrementalCyclesAndFESSolver<String>(graph, graph.getVertices()).getFeedbackEdgeSet();
+  }
+
+  private void addEdge(int from, int to, Random random) {
+    if (from != to && !graph.hasEdge(vertex(from), vertex(to))) {
+      graph.addEdge(vertex(from), vertex(to), 1 + random.nextInt(5));
+    }
+  }
+
+  private static String vertex(int i) {
+    return "v" + i;
+  }
+
+  @Benchmark
+  public int stronglyConnectedComponents() {
+    return StronglyConnectedComponents.of(graph).size();
+  }
+
+  @Benchmark
+  public int cyclesAndFeedbackEdgeSet() {
+    return new IncrementalCyclesAndFESSolver<String>(graph, graph.getVertices()).getWeightOfFeedbackEdgeSet();
+  }
+
+  @Benchmark
+  public int sortDsm() {
+    Dsm<String> dsm = new Dsm<String>(graph, graph.getVertices(), feedbackEdges);
+    DsmTopologicalSorter.sort(dsm);
+    return dsm.getDimension();
+  }
+
+  /**
+   * You can this benchmark with maven command-line (see run.sh) or by executing this method
+   * in IDE
+   */
+  public static void main(String[] args) throws RunnerException {
+    Options opt = new OptionsBuilder()
+      .include(DsmBenchmark.class.getSimpleName())
+      .build();
+    new Runner(opt).run();
+  }
+}
@@ -0,0 +1,168 @@
+/*
+ * SonarQube, open source software quality management tool.
+ * Copyright (C) 2008-2014 SonarSource
+ * mailto:contact AT sonarsource DOT com
+ *
+ * SonarQube is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * SonarQube is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+ */
+package org.sonar.microbenchmark;
+
+import org.apache.commons.codec.DecoderException;
+import org.apache.commons.codec.binary.Hex;
+import org.apache.commons.codec.digest.DigestUtils;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.Options;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+import org.sonar.api.batch.fs.InputFile;
+import org.sonar.api.batch.fs.internal.DefaultInputFile;
+import org.sonar.api.issue.internal.DefaultIssue;
+import org.sonar.api.rule.RuleKey;
+import org.sonar.batch.issue.tracking.IssueTracking;
+import org.sonar.batch.issue.tracking.PreviousIssue;
+import org.sonar.batch.issue.tracking.PreviousIssueFromWs;
+import org.sonar.batch.issue.tracking.SourceHashHolder;
+import org.sonar.batch.scan.LastLineHashes;
+import org.sonar.batch.scan.filesystem.FileMetadata;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Tracking of issues of a single file with thousands of issues, when blocks of lines have been moved
+ * since previous analysis.
+ */
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@State(Scope.Thread)
+@Fork(1)
+@Warmup(iterations = 3)
+@Measurement(iterations = 5)
+@BenchmarkMode(Mode.Throughput)
+public class IssueTrackingBenchmark {
+
+  private static final int BLOCK_SIZE = 50;
+  private static final int ADDED_LINES = 10;
+
+  @Param({"1000", "5000", "20000"})
+  public int issuesNumber;
+
+  @Param({"10000"})
+  public int linesNumber;
+
+  IssueTracking tracking = new IssueTracking();
+  SourceHashHolder sourceHashHolder;
+  List<PreviousIssue> previousIssues;
+  List<DefaultIssue> newIssues;
+
+  @Setup
+  public void setup() throws Exception {
+    // previous version of file. Some lines are blank, so they share the same hash.
+    final String[] referenceHashes = new String[linesNumber];
+    for (int i = 0; i < linesNumber; i++) {
+      referenceHashes[i] = i % 20 == 0 ? "" : DigestUtils.md5Hex("line" + i);
+    }
+
+    // new version of file: some lines are added at the beginning and blocks of lines are swapped
+    String[] sourceHashes = new String[linesNumber + ADDED_LINES];
+    int[] newLines = new int[linesNumber];
+    for (int i = 0; i < ADDED_LINES; i++) {
+      sourceHashes[i] = DigestUtils.md5Hex("added" + i);
+    }
+    int blocks = linesNumber / BLOCK_SIZE;
+    for (int i = 0; i < linesNumber; i++) {
+      int block = i / BLOCK_SIZE;
+      int movedBlock = block < blocks ? (blocks - 1 - block) : block;
+      int newIndex = ADDED_LINES + movedBlock * BLOCK_SIZE + (i % BLOCK_SIZE);
+      sourceHashes[newIndex] = referenceHashes[i];
+      newLines[i] = newIndex + 1;
+    }
+
+    DefaultInputFile inputFile = new DefaultInputFile("foo", "src/Foo.java").setStatus(InputFile.Status.CHANGED).setLines(sourceHashes.length);
+    LastLineHashes lastLineHashes = new LastLineHashes(null) {
+      @Override
+      public String[] getLineHashes(String fileKey) {
+        return referenceHashes;
+      }
+    };
+    sourceHashHolder = new SourceHashHolder(inputFile, lastLineHashes, toBytes(sourceHashes));
+
+    previousIssues = new ArrayList<>();
+    newIssues = new ArrayList<>();
+    for (int i = 0; i < issuesNumber; i++) {
+      int line = 1 + (int) ((i * 7919L) % linesNumber);
+      String ruleKey = "Rule" + (i % 20);
+      String message = "Message " + (i % 50);
+      previousIssues.add(new PreviousIssueFromWs(new org.sonar.batch.protocol.input.issues.PreviousIssue()
+        .setKey("ISSUE" + i)
+        .setRuleKey("squid", ruleKey)
+        .setLine(line)
+        .setMessage(message)
+        .setChecksum(referenceHashes[line - 1])));
+
+      if (i % 20 != 0) {
+        // 5% of issues are fixed and 10% have a different message
+        newIssues.add(new DefaultIssue()
+          .setRuleKey(RuleKey.of("squid", ruleKey))
+          .setLine(newLines[line - 1])
+          .setMessage(i % 10 == 1 ? "Other message" : message));
+      }
+    }
+    for (int i = 0; i < issuesNumber / 20; i++) {
+      // new issues on added lines
+      newIssues.add(new DefaultIssue().setRuleKey(RuleKey.of("squid", "Rule" + (i % 20))).setLine(1 + (i % ADDED_LINES)).setMessage("New"));
+    }
+  }
+
+  /**
+   * Line hashes as computed when indexing files, blank lines having only zeros
+   */
+  private static byte[] toBytes(String[] hexHashes) throws DecoderException {
+    byte[] bytes = new byte[hexHashes.length * FileMetadata.LINE_HASH_LENGTH];
+    for (int i = 0; i < hexHashes.length; i++) {
+      if (!hexHashes[i].isEmpty()) {
+        System.arraycopy(Hex.decodeHex(hexHashes[i].toCharArray()), 0, bytes, i * FileMetadata.LINE_HASH_LENGTH, FileMetadata.LINE_HASH_LENGTH);
+      }
+    }
+    return bytes;
+  }
+
+  @Benchmark
+  public Object track() {
+    return tracking.track(sourceHashHolder, previousIssues, newIssues);
+  }
+
+  /**
+   * You can this benchmark with maven command-line (see run.sh) or by executing this method
+   * in IDE
+   */
+  public static void main(String[] args) throws RunnerException {
+    Options opt = new OptionsBuilder()
+      .include(IssueTrackingBenchmark.class.getSimpleName())
+      .build();
+    new Runner(opt).run();
+  }
+}
@@ -30,6 +30,8 @@ import org.sonar.api.server.ws.WebService;
 import org.sonar.api.web.UserRole;
 import org.sonar.batch.protocol.input.issues.PreviousIssue;
 import org.sonar.batch.protocol.input.issues.PreviousIssueHelper;
+import org.sonar.batch.protocol.input.issues.PreviousIssueProtobufHelper;
+import org.sonar.batch.protocol.input.issues.PreviousIssueWriter;
 import org.sonar.core.component.ComponentDto;
 import org.sonar.core.issue.db.BatchIssueDto;
 import org.sonar.core.permission.GlobalPermissions;
@@ -45,7 +47,11 @@ import java.io.OutputStreamWriter;
 
 public class IssuesAction implements RequestHandler {
 
+  static final String FORMAT_JSON = "json";
+  static final String FORMAT_PROTOBUF = "protobuf";
+
   private static final String PARAM_KEY = "key";
+  private static final String PARAM_FORMAT = "format";
 
   private final DbClient dbClient;
 
@@ -65,6 +71,12 @@ public class IssuesAction implements RequestHandler {
       .setRequired(true)
       .setDescription("Project or module key")
       .setExampleValue("org.codehaus.sonar:sonar");
+
+    action
+      .createParam(PARAM_FORMAT)
+      .setDescription("Format of the response. 'protobuf' is a stream of length-delimited messages ServerIssue, see batch_input.proto")
+      .setDefaultValue(FORMAT_JSON)
+      .setPossibleValues(FORMAT_JSON, FORMAT_PROTOBUF);
   }
 
   @Override
@@ -72,14 +84,20 @@ public class IssuesAction implements RequestHandler {
     UserSession.get().checkGlobalPermission(GlobalPermissions.PREVIEW_EXECUTION);
     final String moduleKey = request.mandatoryParam(PARAM_KEY);
 
-    response.stream().setMediaType(MimeTypes.JSON);
-    PreviousIssueHelper previousIssueHelper = PreviousIssueHelper.create(new OutputStreamWriter(response.stream().output(), Charsets.UTF_8));
+    PreviousIssueWriter issueWriter;
+    if (FORMAT_PROTOBUF.equals(request.param(PARAM_FORMAT))) {
+      response.stream().setMediaType(MimeTypes.PROTOBUF);
+      issueWriter = PreviousIssueProtobufHelper.create(response.stream().output());
+    } else {
+      response.stream().setMediaType(MimeTypes.JSON);
+      issueWriter = PreviousIssueHelper.create(new OutputStreamWriter(response.stream().output(), Charsets.UTF_8));
+    }
     DbSession session = dbClient.openSession(false);
     try {
       ComponentDto moduleOrProject = dbClient.componentDao().getByKey(session, moduleKey);
       UserSession.get().checkComponentPermission(UserRole.USER, moduleKey);
 
-      BatchIssueResultHandler batchIssueResultHandler = new BatchIssueResultHandler(previousIssueHelper);
+      BatchIssueResultHandler batchIssueResultHandler = new BatchIssueResultHandler(issueWriter);
       if (moduleOrProject.isRootProject()) {
         dbClient.issueDao().selectNonClosedIssuesByProjectUuid(session, moduleOrProject.uuid(), batchIssueResultHandler);
       } else {
@@ -87,21 +105,22 @@ public class IssuesAction implements RequestHandler {
       }
 
     } finally {
-      previousIssueHelper.close();
+      issueWriter.close();
       MyBatis.closeQuietly(session);
     }
   }
 
   private static class BatchIssueResultHandler implements ResultHandler {
-    private final PreviousIssueHelper previousIssueHelper;
+    private final PreviousIssueWriter issueWriter;
+    private final BatchIssueFunction batchIssueFunction = new BatchIssueFunction();
 
-    public BatchIssueResultHandler(PreviousIssueHelper previousIssueHelper) {
-      this.previousIssueHelper = previousIssueHelper;
+    public BatchIssueResultHandler(PreviousIssueWriter issueWriter) {
+      this.issueWriter = issueWriter;
     }
 
     @Override
     public void handleResult(ResultContext rc) {
-      previousIssueHelper.addIssue((BatchIssueDto) rc.getResultObject(), new BatchIssueFunction());
+      issueWriter.addIssue((BatchIssueDto) rc.getResultObject(), batchIssueFunction);
     }
   }
 
@@ -20,18 +20,27 @@
 
 package org.sonar.server.computation;
 
+import org.apache.commons.codec.binary.Hex;
+import org.apache.commons.codec.digest.DigestUtils;
+import org.apache.commons.io.FileUtils;
 import org.sonar.api.ServerComponent;
 import org.sonar.api.utils.System2;
+import org.sonar.api.utils.TempFolder;
 import org.sonar.core.computation.db.AnalysisReportDto;
 import org.sonar.core.permission.GlobalPermissions;
 import org.sonar.core.persistence.DbSession;
 import org.sonar.core.persistence.MyBatis;
 import org.sonar.server.db.DbClient;
+import org.sonar.server.exceptions.BadRequestException;
 import org.sonar.server.user.UserSession;
 
 import javax.annotation.CheckForNull;
 import javax.annotation.Nullable;
+import java.io.File;
+import java.io.IOException;
 import java.io.InputStream;
+import java.security.DigestInputStream;
+import java.security.MessageDigest;
 import java.util.List;
 
 import static com.google.common.base.Preconditions.checkArgument;
@@ -41,29 +50,58 @@ public class AnalysisReportQueue implements ServerComponent {
 
   private final DbClient dbClient;
   private final System2 system2;
+  private final TempFolder temp;
 
-  public AnalysisReportQueue(DbClient dbClient, System2 system2) {
+  public AnalysisReportQueue(DbClient dbClient, System2 system2, TempFolder temp) {
     this.dbClient = dbClient;
     this.system2 = system2;
+    this.temp = temp;
   }
 
   /**
    * Adds a report to the queue and returns the generated key
    */
   public String add(String projectKey, Long snapshotId, @Nullable InputStream reportData) {
+    return add(projectKey, snapshotId, reportData, null);
+  }
+
+  /**
+   * Adds a report to the queue and returns the generated key. The report is spooled to a temporary file
+   * before being streamed to database, so that it's never loaded in memory. When a SHA-1 checksum
+   * is provided, it is verified against the received data.
+   */
+  public String add(String projectKey, Long snapshotId, @Nullable InputStream reportData, @Nullable String checksum) {
     // TODO security must not be handled here
     UserSession.get().checkGlobalPermission(GlobalPermissions.SCAN_EXECUTION);
 
     AnalysisReportDto report = newPendingAnalysisReport(projectKey)
-      .setSnapshotId(snapshotId)
-      .setData(reportData);
+      .setSnapshotId(snapshotId);
+    File reportFile = reportData == null ? null : spool(reportData, checksum);
     DbSession session = dbClient.openSession(false);
     try {
       checkThatProjectExistsInDatabase(projectKey, session);
-      return insertInDb(report, session).getKey();
+      return insertInDb(report, reportFile, session).getKey();
     } finally {
       MyBatis.closeQuietly(session);
+      FileUtils.deleteQuietly(reportFile);
+    }
+  }
+
+  private File spool(InputStream reportData, @Nullable String checksum) {
+    File file = temp.newFile("analysis-report", ".pb");
+    MessageDigest digest = DigestUtils.getSha1Digest();
+    try {
+      FileUtils.copyInputStreamToFile(new DigestInputStream(reportData, digest), file);
+    } catch (IOException e) {
+      FileUtils.deleteQuietly(file);
+      throw new IllegalStateException("Fail to receive analysis report", e);
+    }
+    String actualChecksum = Hex.encodeHexString(digest.digest());
+    if (checksum != null && !checksum.equalsIgnoreCase(actualChecksum)) {
+      FileUtils.deleteQuietly(file);
+      throw new BadRequestException(String.format("Analysis report is corrupted. Expected SHA-1 is %s but received %s", checksum, actualChecksum));
     }
+    return file;
   }
 
   private AnalysisReportDto newPendingAnalysisReport(String projectKey) {
@@ -76,8 +114,8 @@ public class AnalysisReportQueue implements ServerComponent {
     dbClient.componentDao().getByKey(session, projectKey);
   }
 
-  private AnalysisReportDto insertInDb(AnalysisReportDto reportTemplate, DbSession session) {
-    AnalysisReportDto report = dbClient.analysisReportDao().insert(session, reportTemplate);
+  private AnalysisReportDto insertInDb(AnalysisReportDto reportTemplate, @Nullable File reportFile, DbSession session) {
+    AnalysisReportDto report = dbClient.analysisReportDao().insert(session, reportTemplate, reportFile);
     session.commit();
 
     return report;
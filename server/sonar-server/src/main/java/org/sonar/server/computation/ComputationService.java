@@ -44,24 +44,29 @@ public class ComputationService implements ServerComponent {
   private final DbClient dbClient;
   private final ComputationSteps steps;
   private final ActivityService activityService;
+  private final ComputationStats stats;
 
-  public ComputationService(DbClient dbClient, ComputationSteps steps, ActivityService activityService) {
+  public ComputationService(DbClient dbClient, ComputationSteps steps, ActivityService activityService, ComputationStats stats) {
     this.dbClient = dbClient;
     this.steps = steps;
     this.activityService = activityService;
+    this.stats = stats;
   }
 
   public void process(AnalysisReportDto report) {
     TimeProfiler profiler = new TimeProfiler(LOG).start(String.format(
       "#%s - %s - processing analysis report", report.getId(), report.getProjectKey()));
 
+    stats.onReportStarted(report);
     ComponentDto project = loadProject(report);
     try {
       ComputationContext context = new ComputationContext(report, project);
       for (ComputationStep step : steps.orderedSteps()) {
         if (ArrayUtils.contains(step.supportedProjectQualifiers(), context.getProject().qualifier())) {
           TimeProfiler stepProfiler = new TimeProfiler(LOG).start(step.getDescription());
+          long start = System2.INSTANCE.now();
           step.execute(context);
+          stats.onStepExecuted(step.getDescription(), System2.INSTANCE.now() - start);
           stepProfiler.stop();
         }
       }
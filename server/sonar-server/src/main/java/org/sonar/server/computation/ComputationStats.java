@@ -0,0 +1,103 @@
+/*
+ * SonarQube, open source software quality management tool.
+ * Copyright (C) 2008-2014 SonarSource
+ * mailto:contact AT sonarsource DOT com
+ *
+ * SonarQube is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * SonarQube is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+ */
+
+package org.sonar.server.computation;
+
+import com.google.common.collect.ImmutableSortedMap;
+import org.sonar.api.ServerComponent;
+import org.sonar.core.computation.db.AnalysisReportDto;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+/**
+ * Statistics of the computation workers since server startup : time spent by reports in queue
+ * and duration of each computation step. Shared by all the workers.
+ * @since 5.1
+ */
+public class ComputationStats implements ServerComponent {
+
+  private final Duration waitTimes = new Duration();
+  private final ConcurrentMap<String, Duration> stepDurations = new ConcurrentHashMap<>();
+
+  /**
+   * Called when a worker starts processing a report. Wait time is the delay between
+   * submission and booking of the report.
+   */
+  public void onReportStarted(AnalysisReportDto report) {
+    Long createdAt = report.getCreatedAt();
+    Long startedAt = report.getStartedAt();
+    if (createdAt != null && startedAt != null) {
+      waitTimes.add(startedAt - createdAt);
+    }
+  }
+
+  public void onStepExecuted(String stepDescription, long durationInMs) {
+    Duration duration = stepDurations.get(stepDescription);
+    if (duration == null) {
+      Duration newDuration = new Duration();
+      duration = stepDurations.putIfAbsent(stepDescription, newDuration);
+      if (duration == null) {
+        duration = newDuration;
+      }
+    }
+    duration.add(durationInMs);
+  }
+
+  public Duration waitTimes() {
+    return waitTimes;
+  }
+
+  /**
+   * Durations of steps, sorted by step description
+   */
+  public Map<String, Duration> stepDurations() {
+    return ImmutableSortedMap.copyOf(stepDurations);
+  }
+
+  public static class Duration {
+    private long count = 0L;
+    private long totalInMs = 0L;
+    private long maxInMs = 0L;
+
+    synchronized void add(long durationInMs) {
+      count++;
+      totalInMs += durationInMs;
+      maxInMs = Math.max(maxInMs, durationInMs);
+    }
+
+    public synchronized long count() {
+      return count;
+    }
+
+    public synchronized long totalInMs() {
+      return totalInMs;
+    }
+
+    public synchronized long maxInMs() {
+      return maxInMs;
+    }
+
+    public synchronized long averageInMs() {
+      return count == 0L ? 0L : totalInMs / count;
+    }
+  }
+}
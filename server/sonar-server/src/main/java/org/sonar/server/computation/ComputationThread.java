@@ -77,10 +77,8 @@ public class ComputationThread implements Runnable {
     try {
       child.getComponentByType(ComputationService.class).process(report);
     } finally {
+      // also removes the child from its parent, without impacting the children of concurrent workers
       child.stopComponents();
-      // TODO not possible to have multiple children -> will be
-      // a problem when we will have multiple concurrent computation workers
-      container.removeChild();
     }
   }
 }
@@ -23,7 +23,11 @@ package org.sonar.server.computation;
 import com.google.common.annotations.VisibleForTesting;
 import com.google.common.util.concurrent.ThreadFactoryBuilder;
 import org.picocontainer.Startable;
+import org.sonar.api.Properties;
+import org.sonar.api.Property;
+import org.sonar.api.PropertyType;
 import org.sonar.api.ServerComponent;
+import org.sonar.api.config.Settings;
 import org.sonar.api.platform.Server;
 import org.sonar.api.platform.ServerStartHandler;
 
@@ -32,30 +36,48 @@ import java.util.concurrent.ScheduledExecutorService;
 import java.util.concurrent.ThreadFactory;
 import java.util.concurrent.TimeUnit;
 
+/**
+ * Launches the computation workers. Each worker pops the queue independently, so reports
+ * of different projects are processed in parallel. Reports of a same project are still processed
+ * sequentially as the queue never books a report of a project that is already being processed.
+ */
+@Properties({
+  @Property(
+    key = ComputationThreadLauncher.PROPERTY_WORKERS,
+    defaultValue = "1",
+    name = "Number of computation workers",
+    description = "Number of analysis reports processed concurrently. Reports of the same project are never processed concurrently.",
+    type = PropertyType.INTEGER,
+    project = false,
+    global = false)
+})
 public class ComputationThreadLauncher implements Startable, ServerComponent, ServerStartHandler {
 
   public static final String THREAD_NAME_PREFIX = "computation-";
+  public static final String PROPERTY_WORKERS = "sonar.computation.workers";
 
   private final AnalysisReportQueue queue;
   private final ScheduledExecutorService executorService;
 
+  private final int workers;
   private final long delayBetweenTasks;
   private final long delayForFirstStart;
   private final TimeUnit timeUnit;
 
-  public ComputationThreadLauncher(AnalysisReportQueue queue) {
-    this.queue = queue;
-    this.executorService = Executors.newSingleThreadScheduledExecutor(newThreadFactory());
-
-    this.delayBetweenTasks = 10;
-    this.delayForFirstStart = 0;
-    this.timeUnit = TimeUnit.SECONDS;
+  public ComputationThreadLauncher(AnalysisReportQueue queue, Settings settings) {
+    this(queue, settings.getInt(PROPERTY_WORKERS), 0, 10, TimeUnit.SECONDS);
   }
 
   @VisibleForTesting
   ComputationThreadLauncher(AnalysisReportQueue queue, long delayForFirstStart, long delayBetweenTasks, TimeUnit timeUnit) {
+    this(queue, 1, delayForFirstStart, delayBetweenTasks, timeUnit);
+  }
+
+  @VisibleForTesting
+  ComputationThreadLauncher(AnalysisReportQueue queue, int workers, long delayForFirstStart, long delayBetweenTasks, TimeUnit timeUnit) {
     this.queue = queue;
-    this.executorService = Executors.newSingleThreadScheduledExecutor(newThreadFactory());
+    this.workers = Math.max(1, workers);
+    this.executorService = Executors.newScheduledThreadPool(this.workers, newThreadFactory());
 
     this.delayBetweenTasks = delayBetweenTasks;
     this.delayForFirstStart = delayForFirstStart;
@@ -78,7 +100,13 @@ public class ComputationThreadLauncher implements Startable, ServerComponent, Se
 
   @Override
   public void onServerStart(Server server) {
-    executorService.scheduleAtFixedRate(new ComputationThread(queue), delayForFirstStart, delayBetweenTasks, timeUnit);
+    for (int i = 0; i < workers; i++) {
+      executorService.scheduleAtFixedRate(new ComputationThread(queue), delayForFirstStart, delayBetweenTasks, timeUnit);
+    }
+  }
+
+  public int workers() {
+    return workers;
   }
 
   private ThreadFactory newThreadFactory() {
@@ -21,10 +21,9 @@
 package org.sonar.server.computation.db;
 
 import com.google.common.annotations.VisibleForTesting;
-import com.google.common.io.ByteStreams;
+import org.apache.commons.io.FileUtils;
 import org.apache.commons.io.IOUtils;
 import org.sonar.api.utils.System2;
-import org.sonar.api.utils.ZipUtils;
 import org.sonar.core.computation.db.AnalysisReportDto;
 import org.sonar.core.computation.db.AnalysisReportMapper;
 import org.sonar.core.persistence.DaoComponent;
@@ -35,6 +34,7 @@ import javax.annotation.CheckForNull;
 import javax.annotation.Nullable;
 
 import java.io.File;
+import java.io.FileInputStream;
 import java.io.IOException;
 import java.io.InputStream;
 import java.sql.Connection;
@@ -109,11 +109,20 @@ public class AnalysisReportDao implements DaoComponent {
   }
 
   public AnalysisReportDto insert(DbSession session, AnalysisReportDto report) {
+    return insert(session, report, null);
+  }
+
+  /**
+   * Inserts the report with the content of the given file. Data is streamed to the database with its length
+   * known upfront, so it is never buffered in memory.
+   */
+  public AnalysisReportDto insert(DbSession session, AnalysisReportDto report, @Nullable File reportData) {
     report.setCreatedAt(system2.now());
     report.setUpdatedAt(system2.now());
 
     Connection connection = session.getConnection();
     PreparedStatement ps = null;
+    InputStream dataStream = null;
     try {
       ps = connection.prepareStatement(
         "insert into analysis_reports " +
@@ -122,7 +131,7 @@ public class AnalysisReportDao implements DaoComponent {
       ps.setString(1, report.getProjectKey());
       ps.setLong(2, report.getSnapshotId());
       ps.setString(3, report.getStatus().toString());
-      setData(ps, 4, report.getData());
+      dataStream = setData(ps, 4, reportData);
       ps.setLong(5, report.getCreatedAt());
       setLong(ps, 6, report.getUpdatedAt());
       setLong(ps, 7, report.getStartedAt());
@@ -132,6 +141,7 @@ public class AnalysisReportDao implements DaoComponent {
     } catch (SQLException | IOException e) {
       throw new IllegalStateException(String.format("Failed to insert %s in the database", report), e);
     } finally {
+      IOUtils.closeQuietly(dataStream);
       DatabaseUtils.closeQuietly(ps);
     }
 
@@ -146,16 +156,29 @@ public class AnalysisReportDao implements DaoComponent {
     }
   }
 
-  private void setData(PreparedStatement ps, int parameterIndex, @Nullable InputStream reportDataStream) throws IOException, SQLException {
-    if (reportDataStream == null) {
+  /**
+   * The JDBC 3 variant of setBinaryStream() is used as the length-less one is not supported by all drivers.
+   */
+  @CheckForNull
+  private InputStream setData(PreparedStatement ps, int parameterIndex, @Nullable File reportData) throws IOException, SQLException {
+    if (reportData == null) {
       ps.setBytes(parameterIndex, null);
-    } else {
-      ps.setBytes(parameterIndex, ByteStreams.toByteArray(reportDataStream));
+      return null;
+    }
+    long length = reportData.length();
+    if (length > Integer.MAX_VALUE) {
+      throw new IllegalArgumentException(String.format("Analysis report is too big: %d bytes", length));
     }
+    InputStream stream = new FileInputStream(reportData);
+    ps.setBinaryStream(parameterIndex, stream, (int) length);
+    return stream;
   }
 
-  @CheckForNull
-  public void selectAndDecompressToDir(DbSession session, long id, File toDir) {
+  /**
+   * Copies the analysis report to the given file. As the report is a single file, it is read
+   * from there without being extracted.
+   */
+  public void selectReportDataToFile(DbSession session, long id, File toFile) {
     Connection connection = session.getConnection();
     InputStream stream = null;
     PreparedStatement ps = null;
@@ -168,14 +191,14 @@ public class AnalysisReportDao implements DaoComponent {
       if (rs.next()) {
         stream = rs.getBinaryStream(1);
         if (stream != null) {
-          ZipUtils.unzip(stream, toDir);
+          FileUtils.copyInputStreamToFile(stream, toFile);
         }
       }
       // TODO what to do if id not found or no stream ?
     } catch (SQLException e) {
       throw new IllegalStateException(String.format("Failed to read report '%d' in the database", id), e);
     } catch (IOException e) {
-      throw new IllegalStateException(String.format("Failed to decompress report '%d'", id), e);
+      throw new IllegalStateException(String.format("Failed to copy report '%d' to %s", id, toFile), e);
     } finally {
       IOUtils.closeQuietly(stream);
       DatabaseUtils.closeQuietly(rs);
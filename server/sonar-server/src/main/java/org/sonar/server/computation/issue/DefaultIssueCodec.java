@@ -0,0 +1,402 @@
+/*
+ * SonarQube, open source software quality management tool.
+ * Copyright (C) 2008-2014 SonarSource
+ * mailto:contact AT sonarsource DOT com
+ *
+ * SonarQube is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * SonarQube is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+ */
+package org.sonar.server.computation.issue;
+
+import com.google.common.base.Charsets;
+import org.sonar.api.issue.IssueComment;
+import org.sonar.api.issue.internal.DefaultIssue;
+import org.sonar.api.issue.internal.DefaultIssueComment;
+import org.sonar.api.issue.internal.FieldDiffs;
+import org.sonar.api.rule.RuleKey;
+import org.sonar.api.utils.Duration;
+import org.sonar.server.util.cache.Codec;
+import org.sonar.server.util.cache.JavaSerializationCodec;
+
+import javax.annotation.CheckForNull;
+import javax.annotation.Nullable;
+
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+import java.io.Serializable;
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Compact binary encoding of {@link org.sonar.api.issue.internal.DefaultIssue}, much faster
+ * and smaller than Java serialization. Field diffs shared between {@link DefaultIssue#currentChange()}
+ * and {@link DefaultIssue#changes()} are kept shared once decoded.
+ */
+public class DefaultIssueCodec implements Codec<DefaultIssue> {
+
+  private static final int NULL_LENGTH = -1;
+
+  private static final byte NULL_VALUE = 0;
+  private static final byte STRING_VALUE = 1;
+  private static final byte LONG_VALUE = 2;
+  private static final byte SERIALIZED_VALUE = 3;
+
+  private final JavaSerializationCodec<Serializable> fallbackCodec = new JavaSerializationCodec<>();
+
+  @Override
+  public void write(DefaultIssue issue, DataOutput output) throws IOException {
+    writeString(issue.key(), output);
+    writeString(issue.componentUuid(), output);
+    writeString(issue.componentKey(), output);
+    writeString(issue.moduleUuid(), output);
+    writeString(issue.moduleUuidPath(), output);
+    writeString(issue.projectUuid(), output);
+    writeString(issue.projectKey(), output);
+    RuleKey ruleKey = issue.ruleKey();
+    writeString(ruleKey == null ? null : ruleKey.toString(), output);
+    writeString(issue.language(), output);
+    writeString(issue.severity(), output);
+    output.writeBoolean(issue.manualSeverity());
+    writeString(issue.message(), output);
+    writeInteger(issue.line(), output);
+    writeDouble(issue.effortToFix(), output);
+    writeLong(issue.debtInMinutes(), output);
+    writeString(issue.status(), output);
+    writeString(issue.resolution(), output);
+    writeString(issue.reporter(), output);
+    writeString(issue.assignee(), output);
+    writeString(issue.checksum(), output);
+    writeAttributes(issue, output);
+    writeString(issue.authorLogin(), output);
+    writeString(issue.actionPlanKey(), output);
+    writeComments(issue.comments(), output);
+    writeTags(issue.tags(), output);
+    writeDate(issue.creationDate(), output);
+    writeDate(issue.updateDate(), output);
+    writeDate(issue.closeDate(), output);
+    writeChanges(issue, output);
+    output.writeBoolean(issue.isNew());
+    output.writeBoolean(issue.isEndOfLife());
+    output.writeBoolean(issue.isOnDisabledRule());
+    output.writeBoolean(issue.isChanged());
+    output.writeBoolean(issue.mustSendNotifications());
+    writeLong(issue.selectedAt(), output);
+  }
+
+  @Override
+  public DefaultIssue read(DataInput input) throws IOException {
+    DefaultIssue issue = new DefaultIssue();
+    issue.setKey(readString(input));
+    issue.setComponentUuid(readString(input));
+    issue.setComponentKey(readString(input));
+    issue.setModuleUuid(readString(input));
+    issue.setModuleUuidPath(readString(input));
+    issue.setProjectUuid(readString(input));
+    issue.setProjectKey(readString(input));
+    String ruleKey = readString(input);
+    issue.setRuleKey(ruleKey == null ? null : RuleKey.parse(ruleKey));
+    issue.setLanguage(readString(input));
+    issue.setSeverity(readString(input));
+    issue.setManualSeverity(input.readBoolean());
+    issue.setMessage(readString(input));
+    issue.setLine(readInteger(input));
+    issue.setEffortToFix(readDouble(input));
+    Long debt = readLong(input);
+    issue.setDebt(debt == null ? null : Duration.create(debt));
+    issue.setStatus(readString(input));
+    issue.setResolution(readString(input));
+    issue.setReporter(readString(input));
+    issue.setAssignee(readString(input));
+    issue.setChecksum(readString(input));
+    readAttributes(issue, input);
+    issue.setAuthorLogin(readString(input));
+    issue.setActionPlanKey(readString(input));
+    readComments(issue, input);
+    readTags(issue, input);
+    issue.setCreationDate(readDate(input));
+    issue.setUpdateDate(readDate(input));
+    issue.setCloseDate(readDate(input));
+    readChanges(issue, input);
+    issue.setNew(input.readBoolean());
+    issue.setEndOfLife(input.readBoolean());
+    issue.setOnDisabledRule(input.readBoolean());
+    issue.setChanged(input.readBoolean());
+    issue.setSendNotifications(input.readBoolean());
+    issue.setSelectedAt(readLong(input));
+    return issue;
+  }
+
+  private static void writeAttributes(DefaultIssue issue, DataOutput output) throws IOException {
+    Map<String, String> attributes = issue.attributes();
+    output.writeInt(attributes.size());
+    for (Map.Entry<String, String> attribute : attributes.entrySet()) {
+      output.writeUTF(attribute.getKey());
+      writeString(attribute.getValue(), output);
+    }
+  }
+
+  private static void readAttributes(DefaultIssue issue, DataInput input) throws IOException {
+    int size = input.readInt();
+    if (size > 0) {
+      Map<String, String> attributes = new HashMap<>();
+      for (int i = 0; i < size; i++) {
+        attributes.put(input.readUTF(), readString(input));
+      }
+      issue.setAttributes(attributes);
+    }
+  }
+
+  private static void writeComments(List<IssueComment> comments, DataOutput output) throws IOException {
+    output.writeInt(comments.size());
+    for (IssueComment comment : comments) {
+      DefaultIssueComment defaultComment = (DefaultIssueComment) comment;
+      writeString(defaultComment.issueKey(), output);
+      writeString(defaultComment.key(), output);
+      writeString(defaultComment.userLogin(), output);
+      writeString(defaultComment.markdownText(), output);
+      writeDate(defaultComment.createdAt(), output);
+      writeDate(defaultComment.updatedAt(), output);
+      output.writeBoolean(defaultComment.isNew());
+    }
+  }
+
+  private static void readComments(DefaultIssue issue, DataInput input) throws IOException {
+    int size = input.readInt();
+    for (int i = 0; i < size; i++) {
+      DefaultIssueComment comment = new DefaultIssueComment();
+      comment.setIssueKey(readString(input));
+      comment.setKey(readString(input));
+      comment.setUserLogin(readString(input));
+      comment.setMarkdownText(readString(input));
+      comment.setCreatedAt(readDate(input));
+      comment.setUpdatedAt(readDate(input));
+      comment.setNew(input.readBoolean());
+      issue.addComment(comment);
+    }
+  }
+
+  private static void writeTags(Iterable<String> tags, DataOutput output) throws IOException {
+    List<String> list = new ArrayList<>();
+    for (String tag : tags) {
+      list.add(tag);
+    }
+    output.writeInt(list.size());
+    for (String tag : list) {
+      output.writeUTF(tag);
+    }
+  }
+
+  private static void readTags(DefaultIssue issue, DataInput input) throws IOException {
+    int size = input.readInt();
+    if (size > 0) {
+      Set<String> tags = new LinkedHashSet<>();
+      for (int i = 0; i < size; i++) {
+        tags.add(input.readUTF());
+      }
+      issue.setTags(tags);
+    }
+  }
+
+  /**
+   * Distinct field diffs are written once, then the list of changes and the current change
+   * refer to them by index.
+   */
+  private void writeChanges(DefaultIssue issue, DataOutput output) throws IOException {
+    Map<FieldDiffs, Integer> indexes = new IdentityHashMap<>();
+    List<FieldDiffs> distinctDiffs = new ArrayList<>();
+    List<FieldDiffs> changes = issue.changes();
+    for (FieldDiffs change : changes) {
+      addDistinct(change, indexes, distinctDiffs);
+    }
+    FieldDiffs currentChange = issue.currentChange();
+    if (currentChange != null) {
+      addDistinct(currentChange, indexes, distinctDiffs);
+    }
+
+    output.writeInt(distinctDiffs.size());
+    for (FieldDiffs diffs : distinctDiffs) {
+      writeFieldDiffs(diffs, output);
+    }
+    output.writeInt(changes.size());
+    for (FieldDiffs change : changes) {
+      output.writeInt(indexes.get(change));
+    }
+    output.writeInt(currentChange == null ? NULL_LENGTH : indexes.get(currentChange));
+  }
+
+  private static void addDistinct(FieldDiffs diffs, Map<FieldDiffs, Integer> indexes, List<FieldDiffs> distinctDiffs) {
+    if (!indexes.containsKey(diffs)) {
+      indexes.put(diffs, distinctDiffs.size());
+      distinctDiffs.add(diffs);
+    }
+  }
+
+  private void readChanges(DefaultIssue issue, DataInput input) throws IOException {
+    int nbDiffs = input.readInt();
+    List<FieldDiffs> distinctDiffs = new ArrayList<>(nbDiffs);
+    for (int i = 0; i < nbDiffs; i++) {
+      distinctDiffs.add(readFieldDiffs(input));
+    }
+    int nbChanges = input.readInt();
+    List<FieldDiffs> changes = null;
+    if (nbChanges > 0) {
+      changes = new ArrayList<>(nbChanges);
+      for (int i = 0; i < nbChanges; i++) {
+        changes.add(distinctDiffs.get(input.readInt()));
+      }
+    }
+    int currentChangeIndex = input.readInt();
+    if (currentChangeIndex != NULL_LENGTH) {
+      // setCurrentChange() adds the change to the list of changes, which is overridden just after
+      issue.setCurrentChange(distinctDiffs.get(currentChangeIndex));
+    }
+    issue.setChanges(changes);
+  }
+
+  private void writeFieldDiffs(FieldDiffs diffs, DataOutput output) throws IOException {
+    writeString(diffs.issueKey(), output);
+    writeString(diffs.userLogin(), output);
+    writeDate(diffs.creationDate(), output);
+    output.writeInt(diffs.diffs().size());
+    for (Map.Entry<String, FieldDiffs.Diff> entry : diffs.diffs().entrySet()) {
+      output.writeUTF(entry.getKey());
+      writeDiffValue(entry.getValue().oldValue(), output);
+      writeDiffValue(entry.getValue().newValue(), output);
+    }
+  }
+
+  private FieldDiffs readFieldDiffs(DataInput input) throws IOException {
+    FieldDiffs diffs = new FieldDiffs();
+    diffs.setIssueKey(readString(input));
+    diffs.setUserLogin(readString(input));
+    diffs.setCreationDate(readDate(input));
+    int size = input.readInt();
+    for (int i = 0; i < size; i++) {
+      String field = input.readUTF();
+      Serializable oldValue = readDiffValue(input);
+      Serializable newValue = readDiffValue(input);
+      diffs.setDiff(field, oldValue, newValue);
+    }
+    return diffs;
+  }
+
+  private void writeDiffValue(@Nullable Serializable value, DataOutput output) throws IOException {
+    if (value == null) {
+      output.writeByte(NULL_VALUE);
+    } else if (value instanceof String) {
+      output.writeByte(STRING_VALUE);
+      writeString((String) value, output);
+    } else if (value instanceof Long) {
+      output.writeByte(LONG_VALUE);
+      output.writeLong((Long) value);
+    } else {
+      output.writeByte(SERIALIZED_VALUE);
+      fallbackCodec.write(value, output);
+    }
+  }
+
+  @CheckForNull
+  private Serializable readDiffValue(DataInput input) throws IOException {
+    byte type = input.readByte();
+    switch (type) {
+      case NULL_VALUE:
+        return null;
+      case STRING_VALUE:
+        return readString(input);
+      case LONG_VALUE:
+        return input.readLong();
+      case SERIALIZED_VALUE:
+        return fallbackCodec.read(input);
+      default:
+        throw new IllegalStateException("Unsupported type of field diff: " + type);
+    }
+  }
+
+  /**
+   * UTF-8 encoding. Unlike {@link DataOutput#writeUTF(String)}, strings are not limited to 64Kb
+   */
+  private static void writeString(@Nullable String s, DataOutput output) throws IOException {
+    if (s == null) {
+      output.writeInt(NULL_LENGTH);
+    } else {
+      byte[] bytes = s.getBytes(Charsets.UTF_8);
+      output.writeInt(bytes.length);
+      output.write(bytes);
+    }
+  }
+
+  @CheckForNull
+  private static String readString(DataInput input) throws IOException {
+    int length = input.readInt();
+    if (length == NULL_LENGTH) {
+      return null;
+    }
+    byte[] bytes = new byte[length];
+    input.readFully(bytes);
+    return new String(bytes, Charsets.UTF_8);
+  }
+
+  private static void writeInteger(@Nullable Integer i, DataOutput output) throws IOException {
+    output.writeBoolean(i != null);
+    if (i != null) {
+      output.writeInt(i);
+    }
+  }
+
+  @CheckForNull
+  private static Integer readInteger(DataInput input) throws IOException {
+    return input.readBoolean() ? input.readInt() : null;
+  }
+
+  private static void writeLong(@Nullable Long l, DataOutput output) throws IOException {
+    output.writeBoolean(l != null);
+    if (l != null) {
+      output.writeLong(l);
+    }
+  }
+
+  @CheckForNull
+  private static Long readLong(DataInput input) throws IOException {
+    return input.readBoolean() ? input.readLong() : null;
+  }
+
+  private static void writeDouble(@Nullable Double d, DataOutput output) throws IOException {
+    output.writeBoolean(d != null);
+    if (d != null) {
+      output.writeDouble(d);
+    }
+  }
+
+  @CheckForNull
+  private static Double readDouble(DataInput input) throws IOException {
+    return input.readBoolean() ? input.readDouble() : null;
+  }
+
+  private static void writeDate(@Nullable Date d, DataOutput output) throws IOException {
+    writeLong(d == null ? null : d.getTime(), output);
+  }
+
+  @CheckForNull
+  private static Date readDate(DataInput input) throws IOException {
+    Long time = readLong(input);
+    return time == null ? null : new Date(time);
+  }
+}
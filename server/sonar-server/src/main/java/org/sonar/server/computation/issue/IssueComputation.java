@@ -20,25 +20,67 @@
 package org.sonar.server.computation.issue;
 
 import com.google.common.collect.Sets;
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+import org.picocontainer.Startable;
 import org.sonar.api.issue.internal.DefaultIssue;
 import org.sonar.api.issue.internal.FieldDiffs;
 import org.sonar.api.rule.RuleKey;
 import org.sonar.api.utils.Duration;
 import org.sonar.api.utils.KeyValueFormat;
+import org.sonar.api.utils.log.Logger;
+import org.sonar.api.utils.log.Loggers;
 import org.sonar.batch.protocol.output.BatchReport;
 import org.sonar.core.rule.RuleDto;
 import org.sonar.server.computation.ComputationContext;
 import org.sonar.server.util.cache.DiskCache;
 
+import java.util.ArrayList;
+import java.util.Collections;
 import java.util.Date;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReference;
 
-public class IssueComputation {
+/**
+ * Issues of components are processed in a pipeline :
+ * <ol>
+ *   <li>the caller (usually the thread reading the report) submits the issues of each component. Components
+ *   are grouped by batches of {@link #PREFETCH_SIZE}, so that the SCM authors required by the batch are
+ *   loaded in a few db requests</li>
+ *   <li>a bounded pool of threads converts and enriches the issues (author guessing, auto-assignment, rule tags)</li>
+ *   <li>a single thread appends the enriched issues to the {@link IssueCache}</li>
+ * </ol>
+ * Callers are blocked when the pipeline is full. Issues are appended to cache in order of completion, not in
+ * order of submission. {@link #afterReportProcessing()} waits for all the issues to be written.
+ */
+public class IssueComputation implements Startable {
+
+  private static final Logger LOG = Loggers.get(IssueComputation.class);
+
+  private static final int ENRICHERS = Runtime.getRuntime().availableProcessors();
+  private static final int MAX_PENDING_COMPONENTS = 4 * ENRICHERS;
+  static final int PREFETCH_SIZE = 100;
+  // marker compared by reference
+  private static final List<DefaultIssue> END_OF_ISSUES = Collections.unmodifiableList(new ArrayList<DefaultIssue>());
 
   private final RuleCache ruleCache;
   private final ScmAccountCache scmAccountCache;
   private final SourceLinesCache linesCache;
   private final DiskCache<DefaultIssue>.DiskAppender diskIssuesAppender;
 
+  private final BlockingQueue<List<DefaultIssue>> issuesToWrite = new ArrayBlockingQueue<>(MAX_PENDING_COMPONENTS);
+  private final AtomicReference<Throwable> failure = new AtomicReference<>();
+  private final List<ComponentIssues> componentsToPrefetch = new ArrayList<>();
+  private ExecutorService enrichers;
+  private ExecutorService writer;
+  private Future<?> writerTask;
+
   public IssueComputation(RuleCache ruleCache, SourceLinesCache linesCache, ScmAccountCache scmAccountCache,
     IssueCache issueCache) {
     this.ruleCache = ruleCache;
@@ -47,18 +89,132 @@ public class IssueComputation {
     this.diskIssuesAppender = issueCache.newAppender();
   }
 
+  @Override
+  public void start() {
+    // pipeline is started on demand
+  }
+
+  /**
+   * Interrupts the pipeline if {@link #afterReportProcessing()} was not called, for example
+   * when a previous step failed.
+   */
+  @Override
+  public void stop() {
+    if (enrichers != null) {
+      enrichers.shutdownNow();
+      writer.shutdownNow();
+    }
+  }
+
+  /**
+   * Asynchronously processes the issues of a component. Blocks when too many components are
+   * waiting to be processed.
+   */
   public void processComponentIssues(ComputationContext context, String componentUuid, Iterable<BatchReport.Issue> issues) {
+    componentsToPrefetch.add(new ComponentIssues(context, componentUuid, issues));
+    if (componentsToPrefetch.size() >= PREFETCH_SIZE) {
+      flushComponents();
+    }
+  }
+
+  private void flushComponents() {
+    if (componentsToPrefetch.isEmpty()) {
+      return;
+    }
+    List<String> fileUuidsRequiringAuthors = new ArrayList<>();
+    for (ComponentIssues component : componentsToPrefetch) {
+      if (component.requiresAuthors()) {
+        fileUuidsRequiringAuthors.add(component.componentUuid);
+      }
+    }
+    linesCache.prefetch(fileUuidsRequiringAuthors);
+
+    startPipelineIfNeeded();
+    for (ComponentIssues component : componentsToPrefetch) {
+      submit(component);
+    }
+    componentsToPrefetch.clear();
+  }
+
+  private void submit(final ComponentIssues component) {
+    enrichers.execute(new Runnable() {
+      @Override
+      public void run() {
+        try {
+          List<DefaultIssue> enrichedIssues = enrichComponentIssues(component.context, component.componentUuid, component.issues);
+          if (!enrichedIssues.isEmpty()) {
+            issuesToWrite.put(enrichedIssues);
+          }
+        } catch (InterruptedException e) {
+          Thread.currentThread().interrupt();
+          failure.compareAndSet(null, e);
+        } catch (Exception e) {
+          failure.compareAndSet(null, e);
+        }
+      }
+    });
+  }
+
+  private List<DefaultIssue> enrichComponentIssues(ComputationContext context, String componentUuid, Iterable<BatchReport.Issue> issues) {
+    List<DefaultIssue> result = new ArrayList<>();
     linesCache.init(componentUuid);
-    for (BatchReport.Issue reportIssue : issues) {
-      DefaultIssue issue = toDefaultIssue(context, componentUuid, reportIssue);
-      if (issue.isNew()) {
-        guessAuthor(issue);
-        autoAssign(issue);
-        copyRuleTags(issue);
+    try {
+      for (BatchReport.Issue reportIssue : issues) {
+        DefaultIssue issue = toDefaultIssue(context, componentUuid, reportIssue);
+        if (issue.isNew()) {
+          guessAuthor(issue);
+          autoAssign(issue);
+          copyRuleTags(issue);
+        }
+        result.add(issue);
       }
-      diskIssuesAppender.append(issue);
+    } finally {
+      linesCache.clear();
+    }
+    return result;
+  }
+
+  private void startPipelineIfNeeded() {
+    if (enrichers == null) {
+      // when the queue is full, the caller enriches issues itself, which slows down the reading of report
+      enrichers = new ThreadPoolExecutor(ENRICHERS, ENRICHERS, 0L, TimeUnit.MILLISECONDS,
+        new ArrayBlockingQueue<Runnable>(MAX_PENDING_COMPONENTS),
+        new ThreadFactoryBuilder().setNameFormat("issue-computation-%d").setDaemon(true).build(),
+        new ThreadPoolExecutor.CallerRunsPolicy());
+      writer = Executors.newSingleThreadExecutor(new ThreadFactoryBuilder().setNameFormat("issue-writer-%d").setDaemon(true).build());
+      writerTask = writer.submit(new Runnable() {
+        @Override
+        public void run() {
+          writeIssues();
+        }
+      });
+    }
+  }
+
+  private void writeIssues() {
+    try {
+      List<DefaultIssue> issues = issuesToWrite.take();
+      while (issues != END_OF_ISSUES) {
+        // in case of failure the queue is still drained in order to not block the producers
+        if (failure.get() == null) {
+          appendToCache(issues);
+        }
+        issues = issuesToWrite.take();
+      }
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+      failure.compareAndSet(null, e);
+    }
+  }
+
+  private void appendToCache(List<DefaultIssue> issues) {
+    try {
+      for (DefaultIssue issue : issues) {
+        diskIssuesAppender.append(issue);
+      }
+    } catch (Exception e) {
+      failure.compareAndSet(null, e);
     }
-    linesCache.clear();
   }
 
   private DefaultIssue toDefaultIssue(ComputationContext context, String componentUuid, BatchReport.Issue issue) {
@@ -98,8 +254,29 @@ public class IssueComputation {
     return target;
   }
 
+  /**
+   * Waits for all the issues to be processed and written to cache, then closes cache.
+   */
   public void afterReportProcessing() {
-    diskIssuesAppender.close();
+    try {
+      flushComponents();
+      if (enrichers != null) {
+        enrichers.shutdown();
+        enrichers.awaitTermination(Long.MAX_VALUE, TimeUnit.MILLISECONDS);
+        issuesToWrite.put(END_OF_ISSUES);
+        writerTask.get();
+        writer.shutdown();
+      }
+    } catch (Exception e) {
+      failure.compareAndSet(null, e);
+    } finally {
+      diskIssuesAppender.close();
+    }
+    LOG.debug(String.format("SCM authors of files | prefetched=%d | loaded individually=%d", linesCache.hits(), linesCache.misses()));
+    Throwable cause = failure.get();
+    if (cause != null) {
+      throw new IllegalStateException("Fail to process issues", cause);
+    }
   }
 
   private void guessAuthor(DefaultIssue issue) {
@@ -126,4 +303,27 @@ public class IssueComputation {
     issue.setTags(Sets.union(rule.getTags(), rule.getSystemTags()));
   }
 
+  private static class ComponentIssues {
+    private final ComputationContext context;
+    private final String componentUuid;
+    private final Iterable<BatchReport.Issue> issues;
+
+    private ComponentIssues(ComputationContext context, String componentUuid, Iterable<BatchReport.Issue> issues) {
+      this.context = context;
+      this.componentUuid = componentUuid;
+      this.issues = issues;
+    }
+
+    /**
+     * Authors are needed to guess the author of new issues
+     */
+    private boolean requiresAuthors() {
+      for (BatchReport.Issue issue : issues) {
+        if (issue.getIsNew() && !issue.hasAuthorLogin()) {
+          return true;
+        }
+      }
+      return false;
+    }
+  }
 }
@@ -21,6 +21,7 @@ package org.sonar.server.computation.issue;
 
 import com.google.common.base.Function;
 import org.apache.commons.lang.StringUtils;
+import org.sonar.core.source.db.FileSourceDao;
 import org.sonar.core.source.db.FileSourceDto;
 import org.sonar.server.db.DbClient;
 import org.sonar.server.source.db.FileSourceDb;
@@ -30,44 +31,79 @@ import javax.annotation.Nullable;
 
 import java.io.InputStream;
 import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicLong;
 
 /**
- * Cache of the lines of the currently processed file. Only a single file
- * is kept in memory at a time. Moreover data is loaded on demand to avoid
- * useless db trips.
+ * Cache of the SCM authors of the lines of the currently processed file. Only a single file
+ * is kept in memory at a time by each thread, so that issues of different
+ * files can be processed concurrently. Moreover data is loaded on demand
+ * to avoid useless db trips.
+ * <p/>
+ * Authors of the files that are going to be processed can be prefetched in a few db requests with
+ * {@link #prefetch(java.util.Collection)}. Prefetched files are kept in memory until they are processed,
+ * within the limit of {@link #MAX_PREFETCHED_FILES} files. Files that are not prefetched are loaded on demand.
  * <p/>
  * It assumes that db table FILE_SOURCES is up-to-date before using this
  * cache.
  */
 public class SourceLinesCache {
 
-  private final DbClient dbClient;
-  private final FileDataParser parserFunction = new FileDataParser();
+  static final int MAX_PREFETCHED_FILES = 1000;
 
-  private final List<String> authors = new ArrayList<>();
-  private boolean loaded = false;
-  private String currentFileUuid = null;
+  private final DbClient dbClient;
 
-  // date of the latest commit on the file
-  private long lastCommitDate = 0L;
+  private final ConcurrentMap<String, FileLines> prefetchedFiles = new ConcurrentHashMap<>();
+  private final AtomicLong hits = new AtomicLong();
+  private final AtomicLong misses = new AtomicLong();
 
-  // author of the latest commit on the file
-  private String lastCommitAuthor = null;
+  private final ThreadLocal<FileLines> currentFile = new ThreadLocal<FileLines>() {
+    @Override
+    protected FileLines initialValue() {
+      return new FileLines(null);
+    }
+  };
 
   public SourceLinesCache(DbClient dbClient) {
     this.dbClient = dbClient;
   }
 
   /**
-   * Marks the currently processed component
+   * Loads in a few db requests the authors of files that are going to be processed. Files are ignored
+   * if the limit of prefetched files is reached.
+   */
+  public void prefetch(Collection<String> fileUuids) {
+    List<String> uuidsToLoad = new ArrayList<>();
+    for (String fileUuid : fileUuids) {
+      if (prefetchedFiles.size() + uuidsToLoad.size() >= MAX_PREFETCHED_FILES) {
+        break;
+      }
+      if (!prefetchedFiles.containsKey(fileUuid)) {
+        uuidsToLoad.add(fileUuid);
+      }
+    }
+    dbClient.fileSourceDao().readDataStreams(uuidsToLoad, new FileSourceDao.DataStreamHandler() {
+      @Override
+      public void handle(String fileUuid, @Nullable InputStream data) {
+        FileLines file = new FileLines(fileUuid);
+        file.load(data);
+        file.prefetched = true;
+        prefetchedFiles.put(fileUuid, file);
+      }
+    });
+  }
+
+  /**
+   * Marks the component currently processed by the calling thread
    */
   void init(String fileUuid) {
-    loaded = false;
-    currentFileUuid = fileUuid;
-    authors.clear();
-    lastCommitDate = 0L;
-    lastCommitAuthor = null;
+    FileLines prefetched = prefetchedFiles.remove(fileUuid);
+    currentFile.set(prefetched != null ? prefetched : new FileLines(fileUuid));
   }
 
   /**
@@ -76,62 +112,118 @@ public class SourceLinesCache {
    */
   @CheckForNull
   public String lineAuthor(@Nullable Integer lineId) {
-    loadIfNeeded();
+    FileLines file = currentFile.get();
+    file.loadIfNeeded();
 
     if (lineId == null) {
       // issue on file, approximately estimate that author is the last committer on the file
-      return lastCommitAuthor;
+      return file.lastCommitAuthor;
     }
     String author = null;
-    if (lineId <= authors.size()) {
-      author = authors.get(lineId - 1);
+    if (lineId <= file.authors.length) {
+      author = file.authors[lineId - 1];
     }
-    return StringUtils.defaultIfEmpty(author, lastCommitAuthor);
+    return StringUtils.defaultIfEmpty(author, file.lastCommitAuthor);
   }
 
   /**
-   * Load only on demand, to avoid useless db requests on files without any new issues
+   * Makes cache of the calling thread eligible to GC
    */
-  private void loadIfNeeded() {
-    if (!loaded) {
-      dbClient.fileSourceDao().readDataStream(currentFileUuid, parserFunction);
-      loaded = true;
-    }
+  public void clear() {
+    currentFile.remove();
   }
 
   /**
-   * Makes cache eligible to GC
+   * Number of lines in cache of the file currently processed by the calling thread
    */
-  public void clear() {
-    authors.clear();
+  int countLines() {
+    return currentFile.get().authors.length;
+  }
+
+  int countPrefetchedFiles() {
+    return prefetchedFiles.size();
   }
 
   /**
-   * Number of lines in cache of the current file
+   * Number of files whose authors were requested and had been prefetched
    */
-  int countLines() {
-    return authors.size();
+  public long hits() {
+    return hits.get();
   }
 
   /**
-   * Parse lines from db and collect SCM information
+   * Number of files whose authors were requested but had not been prefetched, so
+   * they were loaded individually
    */
-  class FileDataParser implements Function<InputStream, Void> {
-    @Override
-    public Void apply(InputStream input) {
+  public long misses() {
+    return misses.get();
+  }
+
+  /**
+   * SCM authors of the lines of a file. Instances of author names are shared between lines.
+   */
+  private class FileLines {
+    private final String fileUuid;
+    private String[] authors = new String[0];
+    private boolean loaded = false;
+    private boolean prefetched = false;
+
+    // author of the latest commit on the file
+    private String lastCommitAuthor = null;
+
+    private FileLines(@Nullable String fileUuid) {
+      this.fileUuid = fileUuid;
+    }
+
+    /**
+     * Load only on demand, to avoid useless db requests on files without any new issues
+     */
+    private void loadIfNeeded() {
+      if (prefetched) {
+        hits.incrementAndGet();
+        // count only the first request
+        prefetched = false;
+      } else if (!loaded) {
+        misses.incrementAndGet();
+        dbClient.fileSourceDao().readDataStream(fileUuid, new Function<InputStream, Void>() {
+          @Override
+          public Void apply(InputStream input) {
+            load(input);
+            return null;
+          }
+        });
+        loaded = true;
+      }
+    }
+
+    private void load(@Nullable InputStream input) {
+      loaded = true;
+      if (input == null) {
+        return;
+      }
       FileSourceDb.Data data = FileSourceDto.decodeData(input);
+      Map<String, String> distinctAuthors = new HashMap<>();
+      long lastCommitDate = 0L;
+      authors = new String[data.getLinesCount()];
+      int index = 0;
       for (FileSourceDb.Line line : data.getLinesList()) {
         String author = null;
         if (line.hasScmAuthor()) {
           author = line.getScmAuthor();
+          String sharedAuthor = distinctAuthors.get(author);
+          if (sharedAuthor == null) {
+            distinctAuthors.put(author, author);
+          } else {
+            author = sharedAuthor;
+          }
         }
-        authors.add(author);
+        authors[index] = author;
+        index++;
         if (line.hasScmDate() && line.getScmDate() > lastCommitDate && author != null) {
           lastCommitDate = line.getScmDate();
           lastCommitAuthor = author;
         }
       }
-      return null;
     }
   }
 }
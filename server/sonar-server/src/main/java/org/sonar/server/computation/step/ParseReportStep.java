@@ -57,37 +57,44 @@ public class ParseReportStep implements ComputationStep {
 
   @Override
   public void execute(ComputationContext context) {
-    File reportDir = tempFolder.newDir();
+    File reportFile = tempFolder.newFile();
     try {
-      // extract compressed report from database and uncompress it in temporary directory
-      extractReport(context.getReportDto(), reportDir);
+      // copy report from database to a temporary file, which is then read without extraction
+      copyReport(context.getReportDto(), reportFile);
 
       // prepare parsing of report
-      BatchOutputReader reader = new BatchOutputReader(reportDir);
-      BatchReport.Metadata reportMetadata = reader.readMetadata();
-      context.setReportMetadata(reportMetadata);
-
-      // and parse!
-      int rootComponentRef = reportMetadata.getRootComponentRef();
-      recursivelyProcessComponent(reader, context, rootComponentRef);
-      issueComputation.afterReportProcessing();
+      BatchOutputReader reader = new BatchOutputReader(reportFile);
+      try {
+        BatchReport.Metadata reportMetadata = reader.readMetadata();
+        context.setReportMetadata(reportMetadata);
+
+        // and parse! Components are read by the current thread while their issues
+        // are processed concurrently by IssueComputation
+        int rootComponentRef = reportMetadata.getRootComponentRef();
+        recursivelyProcessComponent(reader, context, rootComponentRef);
+
+        // wait for the issues to be processed
+        issueComputation.afterReportProcessing();
+      } finally {
+        reader.close();
+      }
 
     } finally {
-      FileUtils.deleteQuietly(reportDir);
+      FileUtils.deleteQuietly(reportFile);
     }
   }
 
-  private void extractReport(AnalysisReportDto report, File toDir) {
+  private void copyReport(AnalysisReportDto report, File toFile) {
     long startTime = System.currentTimeMillis();
     DbSession session = dbClient.openSession(false);
     try {
-      dbClient.analysisReportDao().selectAndDecompressToDir(session, report.getId(), toDir);
+      dbClient.analysisReportDao().selectReportDataToFile(session, report.getId(), toFile);
     } finally {
       MyBatis.closeQuietly(session);
     }
     long stopTime = System.currentTimeMillis();
-    LOG.info(String.format("Report extracted in %dms | uncompressed size=%s | project=%s",
-      stopTime - startTime, FileUtils.byteCountToDisplaySize(FileUtils.sizeOf(toDir)), report.getProjectKey()));
+    LOG.info(String.format("Report loaded in %dms | size=%s | project=%s",
+      stopTime - startTime, FileUtils.byteCountToDisplaySize(FileUtils.sizeOf(toFile)), report.getProjectKey()));
   }
 
   private void recursivelyProcessComponent(BatchOutputReader reportReader, ComputationContext context, int componentRef) {
@@ -19,6 +19,8 @@
  */
 package org.sonar.server.computation.step;
 
+import com.google.common.base.Function;
+import org.apache.ibatis.executor.BatchResult;
 import org.sonar.api.issue.Issue;
 import org.sonar.api.issue.IssueComment;
 import org.sonar.api.issue.internal.DefaultIssue;
@@ -31,7 +33,7 @@ import org.sonar.core.issue.db.IssueChangeMapper;
 import org.sonar.core.issue.db.IssueDto;
 import org.sonar.core.issue.db.IssueMapper;
 import org.sonar.core.issue.db.UpdateConflictResolver;
-import org.sonar.core.persistence.BatchSession;
+import org.sonar.core.persistence.DaoUtils;
 import org.sonar.core.persistence.DbSession;
 import org.sonar.core.persistence.MyBatis;
 import org.sonar.server.computation.ComputationContext;
@@ -40,6 +42,14 @@ import org.sonar.server.computation.issue.RuleCache;
 import org.sonar.server.db.DbClient;
 import org.sonar.server.util.CloseableIterator;
 
+import javax.annotation.Nonnull;
+
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
 public class PersistIssuesStep implements ComputationStep {
 
   private final DbClient dbClient;
@@ -64,56 +74,131 @@ public class PersistIssuesStep implements ComputationStep {
 
   @Override
   public void execute(ComputationContext context) {
-    DbSession session = dbClient.openSession(true);
-    IssueMapper mapper = session.getMapper(IssueMapper.class);
-    IssueChangeMapper changeMapper = session.getMapper(IssueChangeMapper.class);
-    int count = 0;
+    int batchSize = dbClient.database().getDialect().getBatchSize();
+    // session must not be automatically committed before the results of conditional updates are read,
+    // so statements are explicitly flushed by groups of at most batchSize statements
+    DbSession session = dbClient.openBatchSession(Integer.MAX_VALUE);
+    List<DefaultIssue> toPersist = new ArrayList<>(batchSize);
 
     CloseableIterator<DefaultIssue> issues = issueCache.traverse();
     try {
       while (issues.hasNext()) {
         DefaultIssue issue = issues.next();
-        boolean saved = false;
-        if (issue.isNew()) {
-          Integer ruleId = ruleCache.get(issue.ruleKey()).getId();
-          mapper.insert(IssueDto.toDtoForComputationInsert(issue, ruleId, system2.now()));
-          count++;
-          saved = true;
-        } else if (issue.isChanged()) {
-          IssueDto dto = IssueDto.toDtoForUpdate(issue, system2.now());
-          if (Issue.STATUS_CLOSED.equals(issue.status()) || issue.selectedAt() == null) {
-            // Issue is closed by scan or changed by end-user
-            mapper.update(dto);
-            count++;
-          } else {
-            int updateCount = mapper.updateIfBeforeSelectedDate(dto);
-            count++;
-            if (updateCount == 0) {
-              // End-user and scan changed the issue at the same time.
-              // See https://jira.codehaus.org/browse/SONAR-4309
-              conflictResolver.resolve(issue, mapper);
-            }
-          }
-          saved = true;
-        }
-        if (saved) {
-          count += insertChanges(changeMapper, issue);
-          if (count > BatchSession.MAX_BATCH_SIZE) {
-            session.flushStatements();
-            session.commit();
-            count = 0;
+        if (issue.isNew() || issue.isChanged()) {
+          toPersist.add(issue);
+          if (toPersist.size() >= batchSize) {
+            persist(session, toPersist, batchSize);
+            toPersist.clear();
           }
         }
       }
-      session.flushStatements();
-      session.commit();
+      persist(session, toPersist, batchSize);
     } finally {
       MyBatis.closeQuietly(session);
       issues.close();
     }
   }
 
-  private int insertChanges(IssueChangeMapper mapper, DefaultIssue issue) {
+  /**
+   * Statements are grouped by type, so that each group is sent as a single JDBC batch
+   */
+  private void persist(DbSession session, List<DefaultIssue> issues, int batchSize) {
+    if (issues.isEmpty()) {
+      return;
+    }
+    IssueMapper mapper = session.getMapper(IssueMapper.class);
+    long now = system2.now();
+    List<DefaultIssue> updatedIfNotChangedByUser = new ArrayList<>();
+    for (DefaultIssue issue : issues) {
+      if (issue.isNew()) {
+        Integer ruleId = ruleCache.get(issue.ruleKey()).getId();
+        mapper.insert(IssueDto.toDtoForComputationInsert(issue, ruleId, now));
+      }
+    }
+    for (DefaultIssue issue : issues) {
+      if (!issue.isNew()) {
+        if (Issue.STATUS_CLOSED.equals(issue.status()) || issue.selectedAt() == null) {
+          // Issue is closed by scan or changed by end-user
+          mapper.update(IssueDto.toDtoForUpdate(issue, now));
+        } else {
+          updatedIfNotChangedByUser.add(issue);
+        }
+      }
+    }
+    session.flushStatements();
+
+    for (DefaultIssue issue : updatedIfNotChangedByUser) {
+      mapper.updateIfBeforeSelectedDate(IssueDto.toDtoForUpdate(issue, now));
+    }
+    List<BatchResult> results = session.flushStatements();
+    for (DefaultIssue issue : selectConflicts(mapper, updatedIfNotChangedByUser, results, now)) {
+      // End-user and scan changed the issue at the same time.
+      // See https://jira.codehaus.org/browse/SONAR-4309
+      conflictResolver.resolve(issue, mapper);
+    }
+
+    IssueChangeMapper changeMapper = session.getMapper(IssueChangeMapper.class);
+    int changes = 0;
+    for (DefaultIssue issue : issues) {
+      changes += insertChanges(changeMapper, issue);
+      if (changes >= batchSize) {
+        session.flushStatements();
+        changes = 0;
+      }
+    }
+    session.flushStatements();
+    session.commit();
+  }
+
+  /**
+   * Issues that have not been updated because they were changed by end-user since they were selected
+   */
+  private static List<DefaultIssue> selectConflicts(IssueMapper mapper, List<DefaultIssue> issues, List<BatchResult> results, long now) {
+    List<DefaultIssue> conflicts = new ArrayList<>();
+    int index = 0;
+    boolean unknownUpdateCounts = false;
+    for (BatchResult result : results) {
+      for (int updateCount : result.getUpdateCounts()) {
+        if (updateCount == Statement.SUCCESS_NO_INFO) {
+          unknownUpdateCounts = true;
+        } else if (updateCount == 0) {
+          conflicts.add(issues.get(index));
+        }
+        index++;
+      }
+    }
+    if (unknownUpdateCounts) {
+      // Some JDBC drivers (Oracle for example) do not return the number of updated rows.
+      // Conflicting issues are those that have not been updated in the current transaction.
+      return selectNotUpdatedSince(mapper, issues, now);
+    }
+    return conflicts;
+  }
+
+  private static List<DefaultIssue> selectNotUpdatedSince(final IssueMapper mapper, List<DefaultIssue> issues, long now) {
+    Map<String, DefaultIssue> issuesByKey = new HashMap<>();
+    for (DefaultIssue issue : issues) {
+      issuesByKey.put(issue.key(), issue);
+    }
+    List<IssueDto> dtos = DaoUtils.executeLargeInputs(issuesByKey.keySet(), new Function<List<String>, List<IssueDto>>() {
+      @Override
+      public List<IssueDto> apply(@Nonnull List<String> keys) {
+        return mapper.selectByKeys(keys);
+      }
+    });
+    List<DefaultIssue> conflicts = new ArrayList<>();
+    for (IssueDto dto : dtos) {
+      if (dto.getUpdatedAt() != now) {
+        conflicts.add(issuesByKey.get(dto.getKee()));
+      }
+    }
+    return conflicts;
+  }
+
+  /**
+   * @return the number of inserted rows
+   */
+  private static int insertChanges(IssueChangeMapper mapper, DefaultIssue issue) {
     int count = 0;
     for (IssueComment comment : issue.comments()) {
       DefaultIssueComment c = (DefaultIssueComment) comment;
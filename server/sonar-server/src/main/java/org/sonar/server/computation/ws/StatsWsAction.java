@@ -0,0 +1,100 @@
+/*
+ * SonarQube, open source software quality management tool.
+ * Copyright (C) 2008-2014 SonarSource
+ * mailto:contact AT sonarsource DOT com
+ *
+ * SonarQube is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * SonarQube is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+ */
+
+package org.sonar.server.computation.ws;
+
+import org.sonar.api.server.ws.Request;
+import org.sonar.api.server.ws.RequestHandler;
+import org.sonar.api.server.ws.Response;
+import org.sonar.api.server.ws.WebService;
+import org.sonar.api.utils.text.JsonWriter;
+import org.sonar.core.computation.db.AnalysisReportDto;
+import org.sonar.server.computation.AnalysisReportQueue;
+import org.sonar.server.computation.ComputationStats;
+import org.sonar.server.computation.ComputationThreadLauncher;
+
+import java.util.Map;
+
+/**
+ * @since 5.1
+ */
+public class StatsWsAction implements ComputationWsAction, RequestHandler {
+  private final AnalysisReportQueue queue;
+  private final ComputationThreadLauncher launcher;
+  private final ComputationStats stats;
+
+  public StatsWsAction(AnalysisReportQueue queue, ComputationThreadLauncher launcher, ComputationStats stats) {
+    this.queue = queue;
+    this.launcher = launcher;
+    this.stats = stats;
+  }
+
+  @Override
+  public void define(WebService.NewController controller) {
+    controller
+      .createAction("stats")
+      .setDescription("Statistics of the computation workers : size of queue, wait time of reports and duration of computation steps")
+      .setSince("5.1")
+      .setInternal(true)
+      .setHandler(this);
+  }
+
+  @Override
+  public void handle(Request request, Response response) throws Exception {
+    int pending = 0;
+    int working = 0;
+    for (AnalysisReportDto report : queue.all()) {
+      if (report.getStatus() == AnalysisReportDto.Status.PENDING) {
+        pending++;
+      } else if (report.getStatus() == AnalysisReportDto.Status.WORKING) {
+        working++;
+      }
+    }
+
+    JsonWriter json = response.newJsonWriter().beginObject();
+    json.prop("workers", launcher.workers());
+    json.name("queue").beginObject()
+      .prop("pending", pending)
+      .prop("working", working)
+      .endObject();
+    json.name("waitTime");
+    writeDuration(stats.waitTimes(), json);
+    json.name("steps").beginArray();
+    for (Map.Entry<String, ComputationStats.Duration> step : stats.stepDurations().entrySet()) {
+      json.beginObject();
+      json.prop("description", step.getKey());
+      json.name("duration");
+      writeDuration(step.getValue(), json);
+      json.endObject();
+    }
+    json.endArray();
+    json.endObject();
+    json.close();
+  }
+
+  private static void writeDuration(ComputationStats.Duration duration, JsonWriter json) {
+    json.beginObject()
+      .prop("count", duration.count())
+      .prop("averageMs", duration.averageInMs())
+      .prop("maxMs", duration.maxInMs())
+      .prop("totalMs", duration.totalInMs())
+      .endObject();
+  }
+}
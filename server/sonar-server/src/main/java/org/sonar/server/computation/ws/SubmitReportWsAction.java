@@ -35,6 +35,7 @@ public class SubmitReportWsAction implements ComputationWsAction, RequestHandler
   public static final String PARAM_PROJECT_KEY = "projectKey";
   public static final String PARAM_SNAPSHOT = "snapshot";
   public static final String PARAM_REPORT_DATA = "report";
+  public static final String PARAM_CHECKSUM = "checksum";
 
   private final AnalysisReportQueue queue;
   private final ComputationThreadLauncher workerLauncher;
@@ -68,6 +69,12 @@ public class SubmitReportWsAction implements ComputationWsAction, RequestHandler
       .createParam(PARAM_REPORT_DATA)
       .setRequired(false)
       .setDescription("Report file. Format is not an API, it changes among SonarQube versions.");
+
+    action
+      .createParam(PARAM_CHECKSUM)
+      .setRequired(false)
+      .setDescription("SHA-1 of the report file. If set, the report is rejected when received data does not match.")
+      .setExampleValue("da39a3ee5e6b4b0d3255bfef95601890afd80709");
   }
 
   @Override
@@ -75,7 +82,7 @@ public class SubmitReportWsAction implements ComputationWsAction, RequestHandler
     String projectKey = request.mandatoryParam(PARAM_PROJECT_KEY);
     long snapshotId = request.mandatoryParamAsLong(PARAM_SNAPSHOT);
     try (InputStream reportData = request.paramAsInputStream(PARAM_REPORT_DATA)) {
-      String reportKey = queue.add(projectKey, snapshotId, reportData);
+      String reportKey = queue.add(projectKey, snapshotId, reportData, request.param(PARAM_CHECKSUM));
       workerLauncher.startAnalysisTaskNow();
       response.newJsonWriter()
         .beginObject()
@@ -329,6 +329,7 @@ public abstract class BaseDao<MAPPER, DTO extends Dto<KEY>, KEY extends Serializ
       public void handleResult(ResultContext resultContext) {
         DTO dto = (DTO) resultContext.getResultObject();
         // session.enqueue(new UpsertDto<DTO>(getIndexType(), dto, false));
+        // no refresh per document, the index is refreshed once by the RefreshIndex action enqueued by synchronizeAfter()
         getSession().enqueue(new InsertDto<DTO>(getIndexType(), dto, false));
         count++;
         if (count % 100000 == 0) {
@@ -133,6 +133,13 @@ public class DbClient implements ServerComponent {
     return myBatis.openSession(batch);
   }
 
+  /**
+   * @see MyBatis#openBatchSession(int)
+   */
+  public DbSession openBatchSession(int batchSize) {
+    return myBatis.openBatchSession(batchSize);
+  }
+
   public RuleDao ruleDao() {
     return ruleDao;
   }
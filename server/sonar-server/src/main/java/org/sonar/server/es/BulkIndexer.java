@@ -20,17 +20,22 @@
 package org.sonar.server.es;
 
 import com.google.common.base.Preconditions;
+import com.google.common.base.Throwables;
 import com.google.common.collect.Lists;
 import com.google.common.collect.Maps;
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
 import org.elasticsearch.action.ActionRequest;
 import org.elasticsearch.action.admin.indices.settings.get.GetSettingsResponse;
 import org.elasticsearch.action.admin.indices.settings.put.UpdateSettingsRequestBuilder;
 import org.elasticsearch.action.bulk.BulkItemResponse;
 import org.elasticsearch.action.bulk.BulkRequestBuilder;
 import org.elasticsearch.action.bulk.BulkResponse;
+import org.elasticsearch.client.transport.NoNodeAvailableException;
 import org.elasticsearch.cluster.metadata.IndexMetaData;
 import org.elasticsearch.common.unit.ByteSizeUnit;
 import org.elasticsearch.common.unit.ByteSizeValue;
+import org.elasticsearch.rest.RestStatus;
+import org.elasticsearch.transport.ConnectTransportException;
 import org.picocontainer.Startable;
 import org.sonar.api.utils.log.Logger;
 import org.sonar.api.utils.log.Loggers;
@@ -38,7 +43,12 @@ import org.sonar.server.util.ProgressLogger;
 
 import java.util.List;
 import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
 import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
 
 /**
  * Helper to bulk requests in an efficient way :
@@ -46,23 +56,43 @@ import java.util.concurrent.atomic.AtomicLong;
  *   <li>bulk request is sent on the wire when its size is higher than 5Mb</li>
  *   <li>on large table indexing, replicas and automatic refresh can be temporarily disabled</li>
  *   <li>index refresh is optional (enabled by default)</li>
+ *   <li>bulk requests can be sent concurrently, the caller being blocked when the maximum number of
+ *   in-flight requests is reached (disabled by default)</li>
+ *   <li>items rejected by an overloaded cluster and bulk requests that can't reach a node are retried with an
+ *   exponential backoff. Indexing fails if they still fail after the last retry. Other failures, for example
+ *   mapping errors, are not retried</li>
  * </ul>
+ * Requests can be added and flushed by several threads.
  */
 public class BulkIndexer implements Startable {
   private static final Logger LOGGER = Loggers.get(BulkIndexer.class);
   private static final long FLUSH_BYTE_SIZE = new ByteSizeValue(5, ByteSizeUnit.MB).bytes();
   private static final String REFRESH_INTERVAL_SETTING = "index.refresh_interval";
   private static final String ALREADY_STARTED_MESSAGE = "Bulk indexing is already started";
+  private static final int MAX_RETRIES = 3;
+  private static final long INITIAL_RETRY_DELAY_MS = 100L;
+
+  /**
+   * Number of concurrent bulk requests that is recommended for large indexing
+   */
+  public static final int LARGE_CONCURRENT_REQUESTS = 4;
 
   private final EsClient client;
   private final String indexName;
   private boolean large = false;
   private boolean refresh = true;
   private long flushByteSize = FLUSH_BYTE_SIZE;
+  private int concurrentRequests = 0;
   private BulkRequestBuilder bulkRequest = null;
   private Map<String, Object> largeInitialSettings = null;
+  private ExecutorService executor = null;
+  private Semaphore inFlightRequests = null;
+  private final AtomicReference<RuntimeException> asyncFailure = new AtomicReference<>();
 
   private final AtomicLong counter = new AtomicLong(0L);
+  private final AtomicLong indexedBytes = new AtomicLong(0L);
+  private final AtomicLong rejectedItems = new AtomicLong(0L);
+  private long startedAt = 0L;
   private final ProgressLogger progress;
 
   public BulkIndexer(EsClient client, String indexName) {
@@ -89,6 +119,18 @@ public class BulkIndexer implements Startable {
     return this;
   }
 
+  /**
+   * Maximum number of bulk requests executed concurrently while the caller keeps on adding
+   * requests. Default value is 0, which means that bulk requests are executed synchronously
+   * by the caller thread.
+   */
+  public BulkIndexer setConcurrentRequests(int i) {
+    Preconditions.checkState(bulkRequest == null, ALREADY_STARTED_MESSAGE);
+    Preconditions.checkArgument(i >= 0, "Number of concurrent requests must be positive");
+    this.concurrentRequests = i;
+    return this;
+  }
+
   /**
    * Default value is {@link org.sonar.server.es.BulkIndexer#FLUSH_BYTE_SIZE}
    * @see org.elasticsearch.common.unit.ByteSizeValue
@@ -120,29 +162,57 @@ public class BulkIndexer implements Startable {
 
       updateSettings(bulkSettings);
     }
+    if (concurrentRequests > 0) {
+      inFlightRequests = new Semaphore(concurrentRequests);
+      executor = Executors.newFixedThreadPool(concurrentRequests,
+        new ThreadFactoryBuilder().setNameFormat(String.format("BulkIndexer[%s]-%%d", indexName)).setDaemon(true).build());
+    }
     bulkRequest = client.prepareBulk();
     counter.set(0L);
+    indexedBytes.set(0L);
+    rejectedItems.set(0L);
+    asyncFailure.set(null);
+    startedAt = System.currentTimeMillis();
     progress.start();
   }
 
-  public void add(ActionRequest request) {
+  public synchronized void add(ActionRequest request) {
     bulkRequest.request().add(request);
     counter.getAndIncrement();
     if (bulkRequest.request().estimatedSizeInBytes() >= flushByteSize) {
-      executeBulk(bulkRequest);
+      submitBulk(bulkRequest);
       bulkRequest = client.prepareBulk();
     }
   }
 
+  /**
+   * Sends the pending requests and waits for the completion of all the in-flight requests.
+   * Requests can still be added afterwards.
+   */
+  public synchronized void flush() {
+    if (bulkRequest.numberOfActions() > 0) {
+      submitBulk(bulkRequest);
+      bulkRequest = client.prepareBulk();
+    }
+    if (executor != null) {
+      inFlightRequests.acquireUninterruptibly(concurrentRequests);
+      inFlightRequests.release(concurrentRequests);
+      throwAsyncFailure();
+    }
+  }
+
   @Override
   public void stop() {
     try {
       if (bulkRequest.numberOfActions() > 0) {
-        executeBulk(bulkRequest);
+        submitBulk(bulkRequest);
       }
+      awaitInFlightRequests();
     } finally {
+      shutdownExecutor();
       progress.stop();
     }
+    logThroughput();
 
     if (refresh) {
       client.prepareRefresh(indexName).get();
@@ -164,39 +234,176 @@ public class BulkIndexer implements Startable {
     req.get();
   }
 
+  /**
+   * Number of requests added since startup
+   */
+  public long getRequests() {
+    return counter.get();
+  }
+
+  /**
+   * Estimated size of requests sent since startup
+   */
+  public long getBytes() {
+    return indexedBytes.get();
+  }
+
+  /**
+   * Number of requests that failed with a non-retryable error
+   */
+  public long getRejectedRequests() {
+    return rejectedItems.get();
+  }
+
+  private void submitBulk(final BulkRequestBuilder bulk) {
+    indexedBytes.addAndGet(bulk.request().estimatedSizeInBytes());
+    if (executor == null) {
+      executeBulk(bulk);
+      return;
+    }
+    throwAsyncFailure();
+    // back-pressure: wait for a slot if the maximum number of in-flight requests is reached
+    inFlightRequests.acquireUninterruptibly();
+    try {
+      executor.execute(new Runnable() {
+        @Override
+        public void run() {
+          try {
+            executeBulk(bulk);
+          } catch (RuntimeException e) {
+            asyncFailure.compareAndSet(null, e);
+          } finally {
+            inFlightRequests.release();
+          }
+        }
+      });
+    } catch (RuntimeException e) {
+      inFlightRequests.release();
+      throw e;
+    }
+  }
+
+  private void awaitInFlightRequests() {
+    if (executor != null) {
+      inFlightRequests.acquireUninterruptibly(concurrentRequests);
+      inFlightRequests.release(concurrentRequests);
+      throwAsyncFailure();
+    }
+  }
+
+  private void shutdownExecutor() {
+    if (executor != null) {
+      // requests still in flight after a failure are allowed to complete
+      executor.shutdown();
+      executor = null;
+    }
+  }
+
+  private void throwAsyncFailure() {
+    RuntimeException failure = asyncFailure.get();
+    if (failure != null) {
+      throw failure;
+    }
+  }
+
   private void executeBulk(BulkRequestBuilder bulkRequest) {
-    List<ActionRequest> retries = Lists.newArrayList();
-    BulkResponse response = bulkRequest.get();
+    BulkRequestBuilder bulk = bulkRequest;
+    List<ActionRequest> failures = executeAndCollectFailures(bulk);
+    long delayMs = INITIAL_RETRY_DELAY_MS;
+    for (int retry = 1; retry <= MAX_RETRIES && !failures.isEmpty(); retry++) {
+      LOGGER.warn(String.format("%d index requests failed. Trying again in %d ms (attempt %d/%d).", failures.size(), delayMs, retry, MAX_RETRIES));
+      sleep(delayMs);
+      bulk = client.prepareBulk();
+      for (ActionRequest failure : failures) {
+        bulk.request().add(failure);
+      }
+      failures = executeAndCollectFailures(bulk);
+      delayMs *= 2;
+    }
+    if (!failures.isEmpty()) {
+      throw new IllegalStateException(String.format("Fail to index %d documents in index %s after %d retries", failures.size(), indexName, MAX_RETRIES));
+    }
+  }
 
+  /**
+   * Executes bulk request and returns the failed requests that can be retried. The other failed requests
+   * are rejected immediately.
+   */
+  private List<ActionRequest> executeAndCollectFailures(BulkRequestBuilder bulk) {
+    List<ActionRequest> failures = Lists.newArrayList();
+    int nonRetryableFailures = 0;
+    BulkResponse response = get(bulk);
     for (BulkItemResponse item : response.getItems()) {
       if (item.isFailed()) {
-        ActionRequest retry = bulkRequest.request().requests().get(item.getItemId());
-        retries.add(retry);
+        LOGGER.debug(String.format("Index request failed: index [%s], type [%s], id [%s], message [%s]",
+          item.getIndex(), item.getType(), item.getId(), item.getFailureMessage()));
+        if (isRetryable(item.getFailure())) {
+          failures.add(bulk.request().requests().get(item.getItemId()));
+        } else {
+          nonRetryableFailures++;
+        }
       }
     }
+    if (nonRetryableFailures > 0) {
+      rejectedItems.addAndGet(nonRetryableFailures);
+      LOGGER.error(String.format("Fail to index %d documents in index %s", nonRetryableFailures, indexName));
+    }
+    return failures;
+  }
 
-    if (!retries.isEmpty()) {
-      LOGGER.warn(String.format("%d index requests failed. Trying again.", retries.size()));
-      BulkRequestBuilder retryBulk = client.prepareBulk();
-      for (ActionRequest retry : retries) {
-        retryBulk.request().add(retry);
-      }
-      BulkResponse retryBulkResponse = retryBulk.get();
-      if (retryBulkResponse.hasFailures()) {
-        LOGGER.error("New attempt to index documents failed");
-        for (int index = 0; index < retryBulkResponse.getItems().length; index++) {
-          BulkItemResponse item = retryBulkResponse.getItems()[index];
-          if (item.isFailed()) {
-            StringBuilder sb = new StringBuilder();
-            String msg = sb.append("\n[").append(index)
-              .append("]: index [").append(item.getIndex()).append("], type [").append(item.getType()).append("], id [").append(item.getId())
-              .append("], message [").append(item.getFailureMessage()).append("]").toString();
-            LOGGER.error(msg);
-          }
+  /**
+   * Sends the whole bulk request again when it can't reach a node of the cluster
+   */
+  private BulkResponse get(BulkRequestBuilder bulk) {
+    long delayMs = INITIAL_RETRY_DELAY_MS;
+    for (int retry = 1;; retry++) {
+      try {
+        return bulk.get();
+      } catch (RuntimeException e) {
+        if (retry > MAX_RETRIES || !isTransportFailure(e)) {
+          throw e;
         }
-      } else {
-        LOGGER.info("New index attempt succeeded");
+        LOGGER.warn(String.format("Bulk request of %d index requests failed: %s. Trying again in %d ms (attempt %d/%d).",
+          bulk.numberOfActions(), e.getMessage(), delayMs, retry, MAX_RETRIES));
+        sleep(delayMs);
+        delayMs *= 2;
+      }
+    }
+  }
+
+  /**
+   * Only the items rejected by an overloaded cluster are worth retrying. The other ones,
+   * for example mapping errors or rejected documents, would fail again.
+   */
+  static boolean isRetryable(BulkItemResponse.Failure failure) {
+    return failure.getStatus() == RestStatus.TOO_MANY_REQUESTS;
+  }
+
+  /**
+   * Whether the exception, possibly wrapped, is due to a node that can't be reached
+   */
+  static boolean isTransportFailure(Throwable failure) {
+    for (Throwable cause : Throwables.getCausalChain(failure)) {
+      if (cause instanceof NoNodeAvailableException || cause instanceof ConnectTransportException) {
+        return true;
       }
     }
+    return false;
+  }
+
+  private static void sleep(long delayMs) {
+    try {
+      TimeUnit.MILLISECONDS.sleep(delayMs);
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+      throw new IllegalStateException("Interrupted while waiting to retry index requests", e);
+    }
+  }
+
+  private void logThroughput() {
+    long durationMs = Math.max(1L, System.currentTimeMillis() - startedAt);
+    LOGGER.debug(String.format("Bulk indexing of %s | requests=%d | size=%s | rejected=%d | %d requests/s | %d Kb/s",
+      indexName, counter.get(), new ByteSizeValue(indexedBytes.get()), rejectedItems.get(),
+      counter.get() * 1000L / durationMs, indexedBytes.get() * 1000L / 1024L / durationMs));
   }
 }
@@ -0,0 +1,306 @@
+/*
+ * SonarQube, open source software quality management tool.
+ * Copyright (C) 2008-2014 SonarSource
+ * mailto:contact AT sonarsource DOT com
+ *
+ * SonarQube is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * SonarQube is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+ */
+package org.sonar.server.es;
+
+import com.google.common.base.Throwables;
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+import com.google.common.util.concurrent.Uninterruptibles;
+import org.apache.commons.dbutils.DbUtils;
+import org.apache.commons.lang.StringUtils;
+import org.sonar.api.utils.log.Logger;
+import org.sonar.api.utils.log.Loggers;
+import org.sonar.core.persistence.DbSession;
+import org.sonar.core.properties.PropertyDto;
+import org.sonar.server.db.DbClient;
+
+import javax.annotation.CheckForNull;
+import javax.annotation.Nullable;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+/**
+ * Full indexing of a db table, split by project. Projects are loaded concurrently by several workers, each
+ * one having its own db connection. Documents are sent by a single large {@link BulkIndexer}.
+ * <p/>
+ * Progress is regularly saved in a global property, so that an interrupted indexing (server crash for example)
+ * is resumed from the last checkpoint instead of restarted from scratch.
+ */
+public class PartitionedIndexer {
+
+  public interface ProjectIndexer {
+    /**
+     * Adds to bulk the documents of the project and returns the max date of update of its db rows.
+     * The bulk is shared by all the workers.
+     */
+    long index(Connection connection, String projectUuid, BulkIndexer bulk);
+  }
+
+  private static final Logger LOGGER = Loggers.get(PartitionedIndexer.class);
+
+  public static final int DEFAULT_THREADS = Math.min(4, Runtime.getRuntime().availableProcessors());
+
+  /**
+   * Minimum delay between two saves of checkpoint
+   */
+  private static final long CHECKPOINT_PERIOD_MS = 5000L;
+
+  private final DbClient dbClient;
+  private final EsClient esClient;
+  private final String indexName;
+  private final String checkpointKey;
+  private int threads = DEFAULT_THREADS;
+  private long checkpointPeriodMs = CHECKPOINT_PERIOD_MS;
+  // loaded from db on first call to isInterrupted()
+  private Boolean interrupted = null;
+
+  public PartitionedIndexer(DbClient dbClient, EsClient esClient, String indexName, String typeName) {
+    this.dbClient = dbClient;
+    this.esClient = esClient;
+    this.indexName = indexName;
+    this.checkpointKey = String.format("sonar.es.%s.%s.checkpoint", indexName, typeName);
+  }
+
+  public PartitionedIndexer setThreads(int i) {
+    this.threads = i;
+    return this;
+  }
+
+  PartitionedIndexer setCheckpointPeriod(long ms) {
+    this.checkpointPeriodMs = ms;
+    return this;
+  }
+
+  /**
+   * Whether a previous indexing did not complete. The checkpoint is loaded from db only once, as it
+   * can't be created by other servers.
+   */
+  public synchronized boolean isInterrupted() {
+    if (interrupted == null) {
+      interrupted = dbClient.propertiesDao().selectGlobalProperty(checkpointKey) != null;
+    }
+    return interrupted;
+  }
+
+  /**
+   * Forget the progress of an interrupted indexing, so that next indexing restarts from scratch
+   */
+  public synchronized void clearCheckpoint() {
+    dbClient.propertiesDao().deleteGlobalProperty(checkpointKey);
+    interrupted = false;
+  }
+
+  /**
+   * @param selectProjectsSql SQL request returning the UUIDs of the projects to index
+   * @return the max date of update of the indexed rows
+   */
+  public long index(String selectProjectsSql, ProjectIndexer projectIndexer) {
+    String lastIndexedProject = loadCheckpoint();
+    List<String> projectUuids = selectProjects(selectProjectsSql, lastIndexedProject);
+    if (lastIndexedProject != null) {
+      LOGGER.info(String.format("Resume indexing of %s after project %s", indexName, lastIndexedProject));
+    }
+    saveCheckpoint(lastIndexedProject);
+
+    // replicas and automatic refresh are disabled during indexing, lucene segments are optimized at the end
+    BulkIndexer bulk = new BulkIndexer(esClient, indexName)
+      .setLarge(true)
+      .setConcurrentRequests(BulkIndexer.LARGE_CONCURRENT_REQUESTS);
+    bulk.start();
+    Progress progress = new Progress(projectUuids, bulk);
+    ExecutorService executor = Executors.newFixedThreadPool(threads,
+      new ThreadFactoryBuilder().setNameFormat(String.format("PartitionedIndexer[%s]-%%d", indexName)).setDaemon(true).build());
+    long maxUpdatedAt = 0L;
+    try {
+      List<Future<Long>> workers = new ArrayList<>();
+      for (int i = 0; i < threads; i++) {
+        workers.add(executor.submit(new Worker(progress, projectIndexer, bulk)));
+      }
+      Throwable failure = null;
+      for (Future<Long> worker : workers) {
+        try {
+          maxUpdatedAt = Math.max(maxUpdatedAt, Uninterruptibles.getUninterruptibly(worker));
+        } catch (ExecutionException e) {
+          // the other workers are already cancelled by the failed one
+          failure = failure == null ? e.getCause() : failure;
+        }
+      }
+      if (failure != null) {
+        throw Throwables.propagate(failure);
+      }
+    } finally {
+      executor.shutdown();
+      bulk.stop();
+    }
+    checkNoRejectedDocuments(bulk);
+    clearCheckpoint();
+    return maxUpdatedAt;
+  }
+
+  private List<String> selectProjects(String sql, @Nullable String lastIndexedProject) {
+    List<String> uuids = new ArrayList<>();
+    DbSession dbSession = dbClient.openSession(false);
+    Connection connection = dbSession.getConnection();
+    PreparedStatement stmt = null;
+    ResultSet rs = null;
+    try {
+      stmt = dbClient.newScrollingSelectStatement(connection, sql);
+      rs = stmt.executeQuery();
+      while (rs.next()) {
+        String uuid = rs.getString(1);
+        if (lastIndexedProject == null || uuid.compareTo(lastIndexedProject) > 0) {
+          uuids.add(uuid);
+        }
+      }
+    } catch (SQLException e) {
+      throw new IllegalStateException("Fail to select projects to index: " + sql, e);
+    } finally {
+      DbUtils.closeQuietly(connection, stmt, rs);
+      dbSession.close();
+    }
+    // it's more efficient to sort programmatically than in SQL on some databases (MySQL for instance). Moreover
+    // order does not depend on db collation, so checkpoints are consistent.
+    Collections.sort(uuids);
+    return uuids;
+  }
+
+  @CheckForNull
+  private String loadCheckpoint() {
+    PropertyDto checkpoint = dbClient.propertiesDao().selectGlobalProperty(checkpointKey);
+    return checkpoint == null ? null : StringUtils.defaultIfEmpty(checkpoint.getValue(), null);
+  }
+
+  private synchronized void saveCheckpoint(@Nullable String lastIndexedProject) {
+    interrupted = true;
+    dbClient.propertiesDao().setProperty(new PropertyDto().setKey(checkpointKey).setValue(StringUtils.defaultString(lastIndexedProject)));
+  }
+
+  /**
+   * Documents rejected by Elasticsearch can belong to any project indexed so far, so the checkpoint must not
+   * move forward. Indexing fails and will be resumed from the last saved checkpoint.
+   */
+  private void checkNoRejectedDocuments(BulkIndexer bulk) {
+    long rejected = bulk.getRejectedRequests();
+    if (rejected > 0) {
+      throw new IllegalStateException(String.format("Fail to index %d documents in index %s", rejected, indexName));
+    }
+  }
+
+  /**
+   * Dispatches projects to workers. The checkpoint is the last project such that
+   * all the previous ones are indexed.
+   */
+  private class Progress {
+    private final List<String> projectUuids;
+    private final BulkIndexer bulk;
+    private final boolean[] indexed;
+    private int next = 0;
+    private int indexedPrefix = 0;
+    private long checkpointAt = System.currentTimeMillis();
+    private boolean cancelled = false;
+
+    Progress(List<String> projectUuids, BulkIndexer bulk) {
+      this.projectUuids = projectUuids;
+      this.bulk = bulk;
+      this.indexed = new boolean[projectUuids.size()];
+    }
+
+    /**
+     * @return the index of the next project to be indexed, or -1 if there are no more projects
+     */
+    synchronized int next() {
+      if (cancelled || next >= projectUuids.size()) {
+        return -1;
+      }
+      int result = next;
+      next++;
+      return result;
+    }
+
+    synchronized String uuid(int projectIndex) {
+      return projectUuids.get(projectIndex);
+    }
+
+    synchronized void markAsIndexed(int projectIndex) {
+      indexed[projectIndex] = true;
+      int previousPrefix = indexedPrefix;
+      while (indexedPrefix < indexed.length && indexed[indexedPrefix]) {
+        indexedPrefix++;
+      }
+      long now = System.currentTimeMillis();
+      if (indexedPrefix > previousPrefix && now - checkpointAt >= checkpointPeriodMs) {
+        // documents must be indexed before saving checkpoint
+        bulk.flush();
+        checkNoRejectedDocuments(bulk);
+        saveCheckpoint(projectUuids.get(indexedPrefix - 1));
+        checkpointAt = now;
+      }
+    }
+
+    synchronized void cancel() {
+      cancelled = true;
+    }
+  }
+
+  private class Worker implements Callable<Long> {
+    private final Progress progress;
+    private final ProjectIndexer projectIndexer;
+    private final BulkIndexer bulk;
+
+    Worker(Progress progress, ProjectIndexer projectIndexer, BulkIndexer bulk) {
+      this.progress = progress;
+      this.projectIndexer = projectIndexer;
+      this.bulk = bulk;
+    }
+
+    @Override
+    public Long call() {
+      long maxUpdatedAt = 0L;
+      DbSession dbSession = dbClient.openSession(false);
+      Connection connection = dbSession.getConnection();
+      try {
+        int projectIndex = progress.next();
+        while (projectIndex >= 0) {
+          maxUpdatedAt = Math.max(maxUpdatedAt, projectIndexer.index(connection, progress.uuid(projectIndex), bulk));
+          progress.markAsIndexed(projectIndex);
+          projectIndex = progress.next();
+        }
+      } catch (RuntimeException | Error e) {
+        // stop the other workers as soon as possible, without waiting for the workers submitted before this one
+        progress.cancel();
+        throw e;
+      } finally {
+        DbUtils.closeQuietly(connection);
+        dbSession.close();
+      }
+      return maxUpdatedAt;
+    }
+  }
+}
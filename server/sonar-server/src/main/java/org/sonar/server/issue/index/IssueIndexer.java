@@ -29,26 +29,50 @@ import org.sonar.server.db.DbClient;
 import org.sonar.server.es.BaseIndexer;
 import org.sonar.server.es.BulkIndexer;
 import org.sonar.server.es.EsClient;
+import org.sonar.server.es.PartitionedIndexer;
 
 import java.sql.Connection;
 import java.util.Iterator;
 
 public class IssueIndexer extends BaseIndexer {
 
+  private static final String SQL_PROJECTS = "select distinct project_uuid from issues";
+
   private final DbClient dbClient;
+  private final PartitionedIndexer partitionedIndexer;
 
   public IssueIndexer(DbClient dbClient, EsClient esClient) {
     super(esClient, 300, IssueIndexDefinition.INDEX, IssueIndexDefinition.TYPE_ISSUE);
     this.dbClient = dbClient;
+    this.partitionedIndexer = new PartitionedIndexer(dbClient, esClient, IssueIndexDefinition.INDEX, IssueIndexDefinition.TYPE_ISSUE);
   }
 
   @Override
   protected long doIndex(long lastUpdatedAt) {
+    if (lastUpdatedAt == 0L || partitionedIndexer.isInterrupted()) {
+      // initial indexing, or resume of an interrupted one
+      return indexByProjects();
+    }
     return doIndex(createBulkIndexer(false), lastUpdatedAt);
   }
 
   public void indexAll() {
-    doIndex(createBulkIndexer(true), 0L);
+    partitionedIndexer.clearCheckpoint();
+    indexByProjects();
+  }
+
+  private long indexByProjects() {
+    return partitionedIndexer.index(SQL_PROJECTS, new PartitionedIndexer.ProjectIndexer() {
+      @Override
+      public long index(Connection connection, String projectUuid, BulkIndexer bulk) {
+        IssueResultSetIterator rowIt = IssueResultSetIterator.createForProject(dbClient, connection, projectUuid);
+        try {
+          return addToBulk(bulk, rowIt);
+        } finally {
+          rowIt.close();
+        }
+      }
+    });
   }
 
   /**
@@ -76,6 +100,12 @@ public class IssueIndexer extends BaseIndexer {
 
   private long doIndex(BulkIndexer bulk, Iterator<IssueDoc> issues) {
     bulk.start();
+    long maxDate = addToBulk(bulk, issues);
+    bulk.stop();
+    return maxDate;
+  }
+
+  private long addToBulk(BulkIndexer bulk, Iterator<IssueDoc> issues) {
     long maxDate = 0L;
     while (issues.hasNext()) {
       IssueDoc issue = issues.next();
@@ -84,7 +114,6 @@ public class IssueIndexer extends BaseIndexer {
       // it's more efficient to sort programmatically than in SQL on some databases (MySQL for instance)
       maxDate = Math.max(maxDate, issue.updateDate().getTime());
     }
-    bulk.stop();
     return maxDate;
   }
 
@@ -102,6 +131,9 @@ public class IssueIndexer extends BaseIndexer {
   BulkIndexer createBulkIndexer(boolean large) {
     BulkIndexer bulk = new BulkIndexer(esClient, IssueIndexDefinition.INDEX);
     bulk.setLarge(large);
+    if (large) {
+      bulk.setConcurrentRequests(BulkIndexer.LARGE_CONCURRENT_REQUESTS);
+    }
     return bulk;
   }
 
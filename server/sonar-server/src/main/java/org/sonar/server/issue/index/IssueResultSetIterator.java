@@ -90,6 +90,8 @@ class IssueResultSetIterator extends ResultSetIterator<IssueDoc> {
 
   private static final String SQL_AFTER_DATE = SQL_ALL + " where i.updated_at>?";
 
+  private static final String SQL_PROJECT = SQL_ALL + " where i.project_uuid=?";
+
   private static final Splitter TAGS_SPLITTER = Splitter.on(',').trimResults().omitEmptyStrings();
 
   private static final Splitter MODULE_PATH_SPLITTER = Splitter.on('.').trimResults().omitEmptyStrings();
@@ -111,6 +113,16 @@ class IssueResultSetIterator extends ResultSetIterator<IssueDoc> {
     }
   }
 
+  static IssueResultSetIterator createForProject(DbClient dbClient, Connection connection, String projectUuid) {
+    try {
+      PreparedStatement stmt = dbClient.newScrollingSelectStatement(connection, SQL_PROJECT);
+      stmt.setString(1, projectUuid);
+      return new IssueResultSetIterator(stmt);
+    } catch (SQLException e) {
+      throw new IllegalStateException("Fail to prepare SQL request to select issues of project " + projectUuid, e);
+    }
+  }
+
   @CheckForNull
   private static String extractDirPath(@Nullable String filePath) {
     if (filePath != null) {
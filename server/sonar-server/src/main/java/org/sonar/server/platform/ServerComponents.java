@@ -89,6 +89,7 @@ import org.sonar.server.component.db.SnapshotDao;
 import org.sonar.server.component.ws.*;
 import org.sonar.server.computation.AnalysisReportQueue;
 import org.sonar.server.computation.AnalysisReportQueueCleaner;
+import org.sonar.server.computation.ComputationStats;
 import org.sonar.server.computation.ComputationThreadLauncher;
 import org.sonar.server.computation.db.AnalysisReportDao;
 import org.sonar.server.computation.ws.*;
@@ -641,10 +642,12 @@ class ServerComponents {
     // Compute engine
     pico.addSingleton(AnalysisReportQueue.class);
     pico.addSingleton(ComputationThreadLauncher.class);
+    pico.addSingleton(ComputationStats.class);
     pico.addSingleton(ComputationWebService.class);
     pico.addSingleton(IsQueueEmptyWebService.class);
     pico.addSingleton(QueueWsAction.class);
     pico.addSingleton(HistoryWsAction.class);
+    pico.addSingleton(StatsWsAction.class);
     pico.addSingleton(DefaultPeriodCleaner.class);
     pico.addSingleton(DefaultPurgeTask.class);
     pico.addSingleton(ProjectCleaner.class);
@@ -19,6 +19,7 @@
  */
 package org.sonar.server.search;
 
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
 import org.elasticsearch.action.ActionRequest;
 import org.elasticsearch.action.admin.indices.refresh.RefreshRequest;
 import org.elasticsearch.action.admin.indices.refresh.RefreshRequestBuilder;
@@ -28,35 +29,121 @@ import org.elasticsearch.action.bulk.BulkResponse;
 import org.elasticsearch.action.delete.DeleteRequest;
 import org.elasticsearch.action.index.IndexRequest;
 import org.elasticsearch.action.update.UpdateRequest;
+import org.picocontainer.Startable;
 import org.sonar.api.ServerComponent;
 import org.sonar.api.platform.ComponentContainer;
 import org.sonar.api.utils.log.Logger;
 import org.sonar.api.utils.log.Loggers;
 import org.sonar.core.cluster.WorkQueue;
 import org.sonar.server.search.action.IndexAction;
+import org.sonar.server.search.action.RefreshIndex;
 
+import javax.annotation.CheckForNull;
+import javax.annotation.Nullable;
+
+import java.util.ArrayList;
+import java.util.Collections;
 import java.util.HashMap;
 import java.util.HashSet;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
-import java.util.concurrent.ExecutorService;
-import java.util.concurrent.Executors;
+import java.util.concurrent.CountDownLatch;
 import java.util.concurrent.Future;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadPoolExecutor;
 import java.util.concurrent.TimeUnit;
 
-public class IndexQueue implements ServerComponent, WorkQueue<IndexAction<?>> {
+/**
+ * Queue of index actions. Actions enqueued on {@link org.sonar.core.persistence.DbSession#commit()}
+ * are executed by a background thread, so that the actions of concurrent commits are grouped into
+ * a single bulk request. Repeated actions on the same document are coalesced.
+ * <p/>
+ * By default actions require a refresh of the index (see {@link IndexAction#needsRefresh()}), so callers are
+ * blocked until their actions are indexed and searchable, and failures are thrown to them. Write-behind is opt-in:
+ * callers that accept stale reads enqueue actions that do not require refresh and are not blocked. Failures of these
+ * actions are retried, then the index is flagged as out of sync with database, see {@link #awaitIndexing(String)}.
+ * <p/>
+ * Actions are executed in the caller thread as long as the component is not started, or when the property
+ * {@link #SYNCHRONOUS_INDEXING_PROPERTY} is enabled.
+ */
+public class IndexQueue implements ServerComponent, WorkQueue<IndexAction<?>>, Startable {
 
   private final SearchClient searchClient;
   private final ComponentContainer container;
 
   private static final Logger LOGGER = Loggers.get(IndexQueue.class);
 
-  private static final Integer CONCURRENT_NORMALIZATION_FACTOR = 1;
+  private static final int NORMALIZATION_THREADS = Runtime.getRuntime().availableProcessors();
+
+  /**
+   * Max number of actions in a single bulk request. Pending actions above this limit are
+   * processed by the next bulk.
+   */
+  private static final int MAX_BULK_ACTIONS = 10000;
+
+  /**
+   * Max number of executions of the actions that do not block their caller, before giving up
+   */
+  private static final int MAX_ATTEMPTS = 3;
+
+  private final ThreadPoolExecutor normalizationExecutor;
+  private final Object lock = new Object();
+  private final List<Batch> pendingBatches = new ArrayList<Batch>();
+  private final List<Batch> inFlightBatches = new ArrayList<Batch>();
+  private volatile Thread writer;
+  private volatile boolean stopping = false;
+  // guarded by lock
+  private boolean writing = false;
+  private long enqueuedBatches = 0L;
+  // sequence number of the last batch enqueued for each index type
+  private final Map<String, Long> lastBatchByIndexType = new HashMap<String, Long>();
+  // index types of the actions that failed without blocking any caller
+  private final Set<String> outOfSyncIndexTypes = new HashSet<String>();
+  // names of the indices written without refresh, by index type
+  private final Map<String, String> unrefreshedIndices = new HashMap<String, String>();
+  private final Object refreshLock = new Object();
 
   public IndexQueue(SearchClient searchClient, ComponentContainer container) {
     this.searchClient = searchClient;
     this.container = container;
+    this.normalizationExecutor = new ThreadPoolExecutor(NORMALIZATION_THREADS, NORMALIZATION_THREADS, 60L, TimeUnit.SECONDS,
+      new LinkedBlockingQueue<Runnable>(), new ThreadFactoryBuilder().setNameFormat("index-normalization-%d").setDaemon(true).build());
+    this.normalizationExecutor.allowCoreThreadTimeOut(true);
+  }
+
+  @Override
+  public void start() {
+    synchronized (lock) {
+      stopping = false;
+      writing = true;
+    }
+    writer = new Thread(new Runnable() {
+      @Override
+      public void run() {
+        writeBehind();
+      }
+    }, "index-queue");
+    writer.setDaemon(true);
+    writer.start();
+  }
+
+  @Override
+  public void stop() {
+    synchronized (lock) {
+      stopping = true;
+      lock.notifyAll();
+    }
+    if (writer != null) {
+      try {
+        // pending actions are flushed before the writer thread ends
+        writer.join();
+      } catch (InterruptedException e) {
+        Thread.currentThread().interrupt();
+      }
+      writer = null;
+    }
+    normalizationExecutor.shutdown();
   }
 
   @Override
@@ -64,22 +151,228 @@ public class IndexQueue implements ServerComponent, WorkQueue<IndexAction<?>> {
     if (actions.isEmpty()) {
       return;
     }
+    // copy, as the list is cleared by caller
+    Batch batch = new Batch(new ArrayList<IndexAction<?>>(actions));
+    boolean queued = false;
+    synchronized (lock) {
+      if (writer != null && !stopping) {
+        enqueuedBatches++;
+        batch.sequence = enqueuedBatches;
+        pendingBatches.add(batch);
+        for (IndexAction<?> action : batch.actions) {
+          lastBatchByIndexType.put(action.getIndexType(), enqueuedBatches);
+        }
+        lock.notifyAll();
+        queued = true;
+      }
+    }
+    if (!queued) {
+      execute(batch.actions);
+      // reads do not wait for indexing as long as the component is not started
+      refreshUnrefreshedIndices();
+    } else if (batch.readYourWrites) {
+      batch.await();
+    }
+  }
+
+  /**
+   * Blocks until the actions enqueued so far on the given index type are indexed, then refreshes this index
+   * if it has been written without refresh. Actions on the other indices are not awaited.
+   * <p/>
+   * Callers that opted in write-behind must call this method before reading their own writes. It fails if
+   * actions on this index failed without blocking their caller, as the index is then out of sync with database.
+   */
+  public void awaitIndexing(String indexType) {
+    if (Thread.currentThread() == writer) {
+      // the writer thread must not wait for its own batches
+      return;
+    }
+    synchronized (lock) {
+      Long target = lastBatchByIndexType.get(indexType);
+      while (target != null && writing && hasUnindexedBatch(target)) {
+        try {
+          lock.wait();
+        } catch (InterruptedException e) {
+          Thread.currentThread().interrupt();
+          throw new IllegalStateException("Interrupted while waiting for indexing of " + indexType, e);
+        }
+      }
+      if (outOfSyncIndexTypes.contains(indexType)) {
+        throw new IllegalStateException("Index " + indexType + " is out of sync with database as some actions failed to be indexed. See logs.");
+      }
+    }
+    synchronized (refreshLock) {
+      String indexName;
+      synchronized (lock) {
+        indexName = unrefreshedIndices.remove(indexType);
+      }
+      if (indexName != null) {
+        refreshRequiredIndex(Collections.singleton(indexName));
+      }
+    }
+  }
+
+  // guarded by lock
+  private boolean hasUnindexedBatch(long maxSequence) {
+    for (Batch batch : inFlightBatches) {
+      if (batch.sequence <= maxSequence) {
+        return true;
+      }
+    }
+    for (Batch batch : pendingBatches) {
+      if (batch.sequence <= maxSequence) {
+        return true;
+      }
+    }
+    return false;
+  }
+
+  private void refreshUnrefreshedIndices() {
+    synchronized (refreshLock) {
+      Set<String> indices;
+      synchronized (lock) {
+        if (unrefreshedIndices.isEmpty()) {
+          return;
+        }
+        indices = new HashSet<String>(unrefreshedIndices.values());
+        unrefreshedIndices.clear();
+      }
+      refreshRequiredIndex(indices);
+    }
+  }
+
+  private void writeBehind() {
+    try {
+      doWriteBehind();
+    } finally {
+      synchronized (lock) {
+        writing = false;
+        lock.notifyAll();
+      }
+    }
+  }
+
+  private void doWriteBehind() {
+    while (true) {
+      List<Batch> batches = new ArrayList<Batch>();
+      synchronized (lock) {
+        while (pendingBatches.isEmpty() && !stopping) {
+          try {
+            lock.wait();
+          } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return;
+          }
+        }
+        if (pendingBatches.isEmpty()) {
+          // stopping and nothing left to index
+          return;
+        }
+        drainPendingBatches(batches);
+        inFlightBatches.addAll(batches);
+      }
+      index(batches);
+    }
+  }
+
+  private void index(List<Batch> batches) {
+    List<IndexAction<?>> actions = new ArrayList<IndexAction<?>>();
+    for (Batch batch : batches) {
+      actions.addAll(batch.actions);
+    }
+    try {
+      execute(actions);
+      for (Batch batch : batches) {
+        indexed(batch, null);
+      }
+    } catch (RuntimeException e) {
+      if (batches.size() == 1) {
+        failed(batches, 0, e);
+      } else {
+        // batches are executed again one by one, in order of commit, so that failure
+        // of a batch is not reported to the callers of the other batches
+        for (int i = 0; i < batches.size(); i++) {
+          try {
+            execute(batches.get(i).actions);
+            indexed(batches.get(i), null);
+          } catch (RuntimeException batchFailure) {
+            if (!failed(batches, i, batchFailure)) {
+              return;
+            }
+          }
+        }
+      }
+    }
+  }
+
+  /**
+   * Handles failure of the batch at the given position. Failure is thrown to caller if it is blocked.
+   * Otherwise the batch and the next ones are put back in queue, so that the order of commits is kept, until
+   * the max number of attempts is reached. Then the index types of the batch are flagged as out of sync.
+   *
+   * @return false if the next batches have been put back in queue, true if they still have to be indexed
+   */
+  private boolean failed(List<Batch> batches, int position, RuntimeException failure) {
+    Batch batch = batches.get(position);
+    if (!batch.readYourWrites && batch.attempts < MAX_ATTEMPTS) {
+      batch.attempts++;
+      LOGGER.warn(String.format("Fail to index %d actions, attempt %d/%d", batch.actions.size(), batch.attempts, MAX_ATTEMPTS), failure);
+      List<Batch> remaining = batches.subList(position, batches.size());
+      synchronized (lock) {
+        inFlightBatches.removeAll(remaining);
+        pendingBatches.addAll(0, remaining);
+      }
+      return false;
+    }
+    LOGGER.error("Fail to index " + batch.actions.size() + " actions", failure);
+    if (!batch.readYourWrites) {
+      synchronized (lock) {
+        for (IndexAction<?> action : batch.actions) {
+          outOfSyncIndexTypes.add(action.getIndexType());
+        }
+      }
+    }
+    indexed(batch, failure);
+    return true;
+  }
+
+  private void indexed(Batch batch, @Nullable RuntimeException failure) {
+    synchronized (lock) {
+      inFlightBatches.remove(batch);
+      lock.notifyAll();
+    }
+    batch.done(failure);
+  }
+
+  private void drainPendingBatches(List<Batch> batches) {
+    int size = 0;
+    while (!pendingBatches.isEmpty() && (batches.isEmpty() || size + pendingBatches.get(0).actions.size() <= MAX_BULK_ACTIONS)) {
+      Batch batch = pendingBatches.remove(0);
+      size += batch.actions.size();
+      batches.add(batch);
+    }
+  }
+
+  private void execute(List<IndexAction<?>> actions) {
     boolean refreshRequired = false;
 
     Map<String, Index> indexes = getIndexMap();
     Set<String> indices = new HashSet<String>();
+    Map<String, String> writtenIndices = new HashMap<String, String>();
     for (IndexAction action : actions) {
       Index index = indexes.get(action.getIndexType());
       action.setIndex(index);
+      writtenIndices.put(index.getIndexType(), index.getIndexName());
       if (action.needsRefresh()) {
         refreshRequired = true;
         indices.add(index.getIndexName());
       }
     }
 
+    List<IndexAction<?>> coalescedActions = coalesce(actions);
     BulkRequestBuilder bulkRequestBuilder = searchClient.prepareBulk();
 
-    long normTime = processActionsIntoQueries(bulkRequestBuilder, actions);
+    long normTime = processActionsIntoQueries(bulkRequestBuilder, coalescedActions);
 
     if (bulkRequestBuilder.numberOfActions() > 0) {
       // execute the request
@@ -92,9 +385,14 @@ public class IndexQueue implements ServerComponent, WorkQueue<IndexAction<?>> {
       if (refreshRequired) {
         refreshTime = this.refreshRequiredIndex(indices);
       }
+      writtenIndices.values().removeAll(indices);
+      synchronized (lock) {
+        unrefreshedIndices.putAll(writtenIndices);
+      }
 
-      LOGGER.debug("-- submitted {} items with {}ms in normalization, {}ms indexing and {}ms refresh({}). Total: {}ms",
-        bulkRequestBuilder.numberOfActions(), normTime, indexTime, refreshTime, indices, (normTime + indexTime + refreshTime));
+      LOGGER.debug("-- submitted {} items ({} coalesced) with {}ms in normalization, {}ms indexing and {}ms refresh({}). Total: {}ms",
+        bulkRequestBuilder.numberOfActions(), actions.size() - coalescedActions.size(), normTime, indexTime, refreshTime, indices,
+        (normTime + indexTime + refreshTime));
 
       if (response.hasFailures()) {
         throw new IllegalStateException("Errors while indexing stack: " + response.buildFailureMessage());
@@ -102,6 +400,40 @@ public class IndexQueue implements ServerComponent, WorkQueue<IndexAction<?>> {
     }
   }
 
+  /**
+   * Drops the actions that are superseded by a later action on the same document, for example
+   * successive upserts of the same DTO. Order of remaining actions is kept.
+   */
+  static List<IndexAction<?>> coalesce(List<IndexAction<?>> actions) {
+    IndexAction<?>[] result = actions.toArray(new IndexAction<?>[actions.size()]);
+    Map<String, Integer> lastActionByDocument = new HashMap<String, Integer>();
+    for (int i = 0; i < result.length; i++) {
+      String documentKey = documentKey(result[i]);
+      if (documentKey != null) {
+        Integer previous = lastActionByDocument.put(documentKey, i);
+        if (previous != null && result[i].supersedes(result[previous])) {
+          result[previous] = null;
+        }
+      }
+    }
+    List<IndexAction<?>> coalesced = new ArrayList<IndexAction<?>>(lastActionByDocument.size());
+    for (IndexAction<?> action : result) {
+      if (action != null) {
+        coalesced.add(action);
+      }
+    }
+    return coalesced;
+  }
+
+  @CheckForNull
+  private static String documentKey(IndexAction<?> action) {
+    if (action instanceof RefreshIndex) {
+      // not related to a document
+      return null;
+    }
+    return action.getIndexType() + "/" + action.getKey();
+  }
+
   private long refreshRequiredIndex(Set<String> indices) {
     long refreshTime = System.currentTimeMillis();
     if (!indices.isEmpty()) {
@@ -121,9 +453,8 @@ public class IndexQueue implements ServerComponent, WorkQueue<IndexAction<?>> {
     long normTime = System.currentTimeMillis();
     try {
       boolean hasInlineRefreshRequest = false;
-      ExecutorService executorService = Executors.newFixedThreadPool(CONCURRENT_NORMALIZATION_FACTOR);
       // invokeAll() blocks until ALL tasks submitted to executor complete
-      List<Future<List<? extends ActionRequest>>> requests = (List) executorService.invokeAll(actions, 20, TimeUnit.MINUTES);
+      List<Future<List<? extends ActionRequest>>> requests = (List) normalizationExecutor.invokeAll(actions, 20, TimeUnit.MINUTES);
       for (Future<List<? extends ActionRequest>> updates : requests) {
         for (ActionRequest update : updates.get()) {
 
@@ -140,7 +471,6 @@ public class IndexQueue implements ServerComponent, WorkQueue<IndexAction<?>> {
           }
         }
       }
-      executorService.shutdown();
       bulkRequestBuilder.setRefresh(hasInlineRefreshRequest);
     } catch (Exception e) {
       throw new IllegalStateException("Could not execute normalization for stack", e);
@@ -155,4 +485,44 @@ public class IndexQueue implements ServerComponent, WorkQueue<IndexAction<?>> {
     }
     return indexes;
   }
+
+  /**
+   * Actions enqueued by a single commit
+   */
+  private static class Batch {
+    private final List<IndexAction<?>> actions;
+    private final boolean readYourWrites;
+    private final CountDownLatch done = new CountDownLatch(1);
+    private volatile RuntimeException failure;
+    // guarded by lock of queue
+    private long sequence;
+    // accessed only by writer thread
+    private int attempts = 1;
+
+    Batch(List<IndexAction<?>> actions) {
+      this.actions = actions;
+      boolean refresh = false;
+      for (IndexAction<?> action : actions) {
+        refresh |= action.needsRefresh();
+      }
+      this.readYourWrites = refresh;
+    }
+
+    void done(@Nullable RuntimeException e) {
+      this.failure = e;
+      done.countDown();
+    }
+
+    void await() {
+      try {
+        done.await();
+      } catch (InterruptedException e) {
+        Thread.currentThread().interrupt();
+        throw new IllegalStateException("Interrupted while waiting for indexing", e);
+      }
+      if (failure != null) {
+        throw failure;
+      }
+    }
+  }
 }
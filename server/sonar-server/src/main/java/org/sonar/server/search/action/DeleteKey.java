@@ -41,6 +41,11 @@ public class DeleteKey<K extends Serializable> extends IndexAction<DeleteRequest
     return key.toString();
   }
 
+  @Override
+  public boolean supersedes(IndexAction<?> previous) {
+    return previous instanceof DeleteKey || previous instanceof UpsertDto || previous instanceof InsertDto;
+  }
+
   @Override
   public List<DeleteRequest> doCall(Index index) {
     List<DeleteRequest> requests = new ArrayList<DeleteRequest>();
@@ -37,6 +37,10 @@ public abstract class IndexAction<K extends ActionRequest> implements ClusterAct
     this(indexType, true);
   }
 
+  /**
+   * @param requiresRefresh false to opt in write-behind. The caller does not wait for indexing and must accept
+   * stale reads, see {@link org.sonar.server.search.IndexQueue#awaitIndexing(String)}.
+   */
   protected IndexAction(String indexType, boolean requiresRefresh) {
     this.indexType = indexType;
     this.requiresRefresh = requiresRefresh;
@@ -66,4 +70,13 @@ public abstract class IndexAction<K extends ActionRequest> implements ClusterAct
   public boolean needsRefresh() {
     return this.requiresRefresh;
   }
+
+  /**
+   * Whether executing this action makes a previous action on the same document useless, so that
+   * the previous one can be dropped when actions are batched. Only the type of the previous action
+   * has to be checked, index type and key are already known to be the same.
+   */
+  public boolean supersedes(IndexAction<?> previous) {
+    return false;
+  }
 }
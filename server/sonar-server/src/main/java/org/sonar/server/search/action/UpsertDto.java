@@ -43,6 +43,12 @@ public class UpsertDto<DTO extends Dto> extends IndexAction<UpdateRequest> {
     return dto.getKey().toString();
   }
 
+  @Override
+  public boolean supersedes(IndexAction<?> previous) {
+    // the whole document is upserted again
+    return previous instanceof UpsertDto;
+  }
+
   @Override
   public List<UpdateRequest> doCall(Index index) {
     List<UpdateRequest> updates = index.getNormalizer().normalize(dto);
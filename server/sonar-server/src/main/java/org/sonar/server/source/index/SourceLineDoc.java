@@ -127,8 +127,28 @@ public class SourceLineDoc extends BaseDoc {
     return this;
   }
 
+  /**
+   * Hash of the column FILE_SOURCES.DATA the line was indexed from
+   */
+  @CheckForNull
+  public String dataHash() {
+    return getNullableField(SourceLineIndexDefinition.FIELD_DATA_HASH);
+  }
+
+  public SourceLineDoc setDataHash(@Nullable String s) {
+    setField(SourceLineIndexDefinition.FIELD_DATA_HASH, s);
+    return this;
+  }
+
   public String key() {
-    return String.format("%s_%d", fileUuid(), line());
+    return key(fileUuid(), line());
+  }
+
+  /**
+   * Id of the document of a line
+   */
+  public static String key(String fileUuid, int line) {
+    return String.format("%s_%d", fileUuid, line);
   }
 
   @CheckForNull
@@ -19,44 +19,78 @@
  */
 package org.sonar.server.source.index;
 
+import org.elasticsearch.action.delete.DeleteRequest;
+import org.elasticsearch.action.search.SearchResponse;
 import org.elasticsearch.action.update.UpdateRequest;
 import org.elasticsearch.index.query.FilterBuilders;
 import org.elasticsearch.index.query.QueryBuilders;
+import org.elasticsearch.search.aggregations.AggregationBuilders;
+import org.elasticsearch.search.aggregations.bucket.terms.Terms;
+import org.elasticsearch.search.aggregations.metrics.max.Max;
 import org.sonar.core.persistence.DbSession;
 import org.sonar.server.db.DbClient;
 import org.sonar.server.es.BaseIndexer;
 import org.sonar.server.es.BulkIndexer;
 import org.sonar.server.es.EsClient;
+import org.sonar.server.es.PartitionedIndexer;
+
+import javax.annotation.Nullable;
 
 import java.sql.Connection;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
 import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
 
+import static org.sonar.server.source.index.SourceLineIndexDefinition.FIELD_DATA_HASH;
 import static org.sonar.server.source.index.SourceLineIndexDefinition.FIELD_FILE_UUID;
+import static org.sonar.server.source.index.SourceLineIndexDefinition.FIELD_LINE;
 import static org.sonar.server.source.index.SourceLineIndexDefinition.FIELD_PROJECT_UUID;
 
 /**
  * Add to Elasticsearch index {@link SourceLineIndexDefinition} the rows of
- * db table FILE_SOURCES that are not indexed yet
+ * db table FILE_SOURCES that are not indexed yet. Files whose indexed lines have the
+ * same data hash as in db are not indexed again.
  */
 public class SourceLineIndexer extends BaseIndexer {
 
+  /**
+   * Number of files for which the indexed lines are loaded with a single request, in order
+   * to detect unchanged files and stale lines
+   */
+  private static final int FILES_PER_LOOKUP = 50;
+
+  private static final String SQL_PROJECTS = "select distinct project_uuid from file_sources";
+
   private final DbClient dbClient;
+  private final PartitionedIndexer partitionedIndexer;
 
   public SourceLineIndexer(DbClient dbClient, EsClient esClient) {
     super(esClient, 0L, SourceLineIndexDefinition.INDEX, SourceLineIndexDefinition.TYPE);
     this.dbClient = dbClient;
+    this.partitionedIndexer = new PartitionedIndexer(dbClient, esClient, SourceLineIndexDefinition.INDEX, SourceLineIndexDefinition.TYPE);
   }
 
   @Override
   protected long doIndex(long lastUpdatedAt) {
-    final BulkIndexer bulk = new BulkIndexer(esClient, SourceLineIndexDefinition.INDEX);
-    bulk.setLarge(lastUpdatedAt == 0L);
+    if (partitionedIndexer.isInterrupted()) {
+      // some files may have already been indexed before interruption
+      esClient.prepareRefresh(SourceLineIndexDefinition.INDEX).get();
+      return indexByProjects(true);
+    }
+    if (lastUpdatedAt == 0L) {
+      // index is empty, so there are neither stale lines nor unchanged files
+      return indexByProjects(false);
+    }
 
+    final BulkIndexer bulk = new BulkIndexer(esClient, SourceLineIndexDefinition.INDEX);
     DbSession dbSession = dbClient.openSession(false);
     Connection dbConnection = dbSession.getConnection();
     try {
       SourceLineResultSetIterator rowIt = SourceLineResultSetIterator.create(dbClient, dbConnection, lastUpdatedAt);
-      long maxUpdatedAt = doIndex(bulk, rowIt);
+      long maxUpdatedAt = doIndex(bulk, rowIt, true);
       rowIt.close();
       return maxUpdatedAt;
 
@@ -65,26 +99,99 @@ public class SourceLineIndexer extends BaseIndexer {
     }
   }
 
+  private long indexByProjects(final boolean checkIndexedFiles) {
+    return partitionedIndexer.index(SQL_PROJECTS, new PartitionedIndexer.ProjectIndexer() {
+      @Override
+      public long index(Connection connection, String projectUuid, BulkIndexer bulk) {
+        SourceLineResultSetIterator rowIt = SourceLineResultSetIterator.createForProject(dbClient, connection, projectUuid);
+        try {
+          return addToBulk(bulk, rowIt, checkIndexedFiles);
+        } finally {
+          rowIt.close();
+        }
+      }
+    });
+  }
+
   public long index(Iterator<SourceLineResultSetIterator.SourceFile> sourceFiles) {
     final BulkIndexer bulk = new BulkIndexer(esClient, SourceLineIndexDefinition.INDEX);
-    return doIndex(bulk, sourceFiles);
+    return doIndex(bulk, sourceFiles, true);
   }
 
-  private long doIndex(BulkIndexer bulk, Iterator<SourceLineResultSetIterator.SourceFile> files) {
-    long maxUpdatedAt = 0L;
+  private long doIndex(BulkIndexer bulk, Iterator<SourceLineResultSetIterator.SourceFile> files, boolean checkIndexedFiles) {
     bulk.start();
+    long maxUpdatedAt = addToBulk(bulk, files, checkIndexedFiles);
+    bulk.stop();
+    return maxUpdatedAt;
+  }
+
+  private long addToBulk(BulkIndexer bulk, Iterator<SourceLineResultSetIterator.SourceFile> files, boolean checkIndexedFiles) {
+    long maxUpdatedAt = 0L;
+    List<SourceLineResultSetIterator.SourceFile> batch = new ArrayList<>(FILES_PER_LOOKUP);
     while (files.hasNext()) {
       SourceLineResultSetIterator.SourceFile file = files.next();
-      for (SourceLineDoc line : file.getLines()) {
-        bulk.add(newUpsertRequest(line));
+      batch.add(file);
+      if (batch.size() == FILES_PER_LOOKUP) {
+        indexBatch(bulk, batch, checkIndexedFiles);
+        batch.clear();
       }
-      deleteLinesFromFileAbove(file.getFileUuid(), file.getLines().size());
       maxUpdatedAt = Math.max(maxUpdatedAt, file.getUpdatedAt());
     }
-    bulk.stop();
+    indexBatch(bulk, batch, checkIndexedFiles);
     return maxUpdatedAt;
   }
 
+  private void indexBatch(BulkIndexer bulk, List<SourceLineResultSetIterator.SourceFile> batch, boolean checkIndexedFiles) {
+    if (batch.isEmpty()) {
+      return;
+    }
+    Map<String, IndexedFile> indexedFiles = checkIndexedFiles ? loadIndexedFiles(batch) : Collections.<String, IndexedFile>emptyMap();
+    for (SourceLineResultSetIterator.SourceFile file : batch) {
+      IndexedFile indexedFile = indexedFiles.get(file.getFileUuid());
+      int lineCount = file.getLines().size();
+      if (indexedFile != null && indexedFile.isSame(file.getDataHash(), lineCount)) {
+        // unchanged file, no need to index it again
+        continue;
+      }
+      for (SourceLineDoc line : file.getLines()) {
+        bulk.add(newUpsertRequest(line));
+      }
+      if (indexedFile != null && indexedFile.lastLine > lineCount) {
+        deleteLinesFromFileAbove(bulk, file, indexedFile.lastLine);
+      }
+    }
+  }
+
+  /**
+   * Last line and data hash of the indexed files, loaded with a single request
+   */
+  private Map<String, IndexedFile> loadIndexedFiles(List<SourceLineResultSetIterator.SourceFile> files) {
+    List<String> fileUuids = new ArrayList<>(files.size());
+    for (SourceLineResultSetIterator.SourceFile file : files) {
+      fileUuids.add(file.getFileUuid());
+    }
+    SearchResponse response = esClient.prepareSearch(SourceLineIndexDefinition.INDEX)
+      .setTypes(SourceLineIndexDefinition.TYPE)
+      .setSize(0)
+      .setQuery(QueryBuilders.filteredQuery(QueryBuilders.matchAllQuery(), FilterBuilders.termsFilter(FIELD_FILE_UUID, fileUuids).cache(false)))
+      .addAggregation(AggregationBuilders.terms(FIELD_FILE_UUID).field(FIELD_FILE_UUID).size(fileUuids.size())
+        .subAggregation(AggregationBuilders.max(FIELD_LINE).field(FIELD_LINE))
+        .subAggregation(AggregationBuilders.terms(FIELD_DATA_HASH).field(FIELD_DATA_HASH).size(2)))
+      .get();
+
+    Map<String, IndexedFile> result = new HashMap<>();
+    Terms byFile = response.getAggregations().get(FIELD_FILE_UUID);
+    for (Terms.Bucket fileBucket : byFile.getBuckets()) {
+      Max lastLine = fileBucket.getAggregations().get(FIELD_LINE);
+      Terms dataHashes = fileBucket.getAggregations().get(FIELD_DATA_HASH);
+      // lines of a file are expected to have the same data hash, else the file must be re-indexed
+      String dataHash = dataHashes.getBuckets().size() == 1 && dataHashes.getBuckets().get(0).getDocCount() == fileBucket.getDocCount() ?
+        dataHashes.getBuckets().get(0).getKey() : null;
+      result.put(fileBucket.getKey(), new IndexedFile((int) lastLine.getValue(), fileBucket.getDocCount(), dataHash));
+    }
+    return result;
+  }
+
   private UpdateRequest newUpsertRequest(SourceLineDoc lineDoc) {
     String projectUuid = lineDoc.projectUuid();
     return new UpdateRequest(SourceLineIndexDefinition.INDEX, SourceLineIndexDefinition.TYPE, lineDoc.key())
@@ -93,6 +200,23 @@ public class SourceLineIndexer extends BaseIndexer {
       .upsert(lineDoc.getFields());
   }
 
+  /**
+   * Unindex all lines in file above its current last line, up to <code>indexedLastLine</code>. Documents
+   * are deleted by id within the bulk request.
+   */
+  private void deleteLinesFromFileAbove(BulkIndexer bulk, SourceLineResultSetIterator.SourceFile file, int indexedLastLine) {
+    String projectUuid = file.getProjectUuid();
+    if (projectUuid == null) {
+      // routing is unknown
+      deleteLinesFromFileAbove(file.getFileUuid(), file.getLines().size());
+      return;
+    }
+    for (int line = file.getLines().size() + 1; line <= indexedLastLine; line++) {
+      bulk.add(new DeleteRequest(SourceLineIndexDefinition.INDEX, SourceLineIndexDefinition.TYPE, SourceLineDoc.key(file.getFileUuid(), line))
+        .routing(projectUuid));
+    }
+  }
+
   /**
    * Unindex all lines in file with UUID <code>fileUuid</code> above line <code>lastLine</code>
    */
@@ -101,10 +225,26 @@ public class SourceLineIndexer extends BaseIndexer {
       .setTypes(SourceLineIndexDefinition.TYPE)
       .setQuery(QueryBuilders.filteredQuery(QueryBuilders.matchAllQuery(), FilterBuilders.boolFilter()
         .must(FilterBuilders.termFilter(FIELD_FILE_UUID, fileUuid).cache(false))
-        .must(FilterBuilders.rangeFilter(SourceLineIndexDefinition.FIELD_LINE).gt(lastLine).cache(false))
+        .must(FilterBuilders.rangeFilter(FIELD_LINE).gt(lastLine).cache(false))
         )).get();
   }
 
+  private static class IndexedFile {
+    private final int lastLine;
+    private final long lineCount;
+    private final String dataHash;
+
+    IndexedFile(int lastLine, long lineCount, @Nullable String dataHash) {
+      this.lastLine = lastLine;
+      this.lineCount = lineCount;
+      this.dataHash = dataHash;
+    }
+
+    boolean isSame(@Nullable String otherDataHash, int otherLineCount) {
+      return dataHash != null && dataHash.equals(otherDataHash) && lastLine == otherLineCount && lineCount == otherLineCount;
+    }
+  }
+
   public void deleteByFile(String fileUuid) {
     esClient.prepareDeleteByQuery(SourceLineIndexDefinition.INDEX)
       .setTypes(SourceLineIndexDefinition.TYPE)
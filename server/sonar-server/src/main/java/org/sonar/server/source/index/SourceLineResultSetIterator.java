@@ -26,6 +26,9 @@ import org.sonar.server.db.DbClient;
 import org.sonar.server.db.ResultSetIterator;
 import org.sonar.server.source.db.FileSourceDb;
 
+import javax.annotation.CheckForNull;
+import javax.annotation.Nullable;
+
 import java.sql.Connection;
 import java.sql.PreparedStatement;
 import java.sql.ResultSet;
@@ -40,19 +43,46 @@ import java.util.List;
 public class SourceLineResultSetIterator extends ResultSetIterator<SourceLineResultSetIterator.SourceFile> {
 
   public static class SourceFile {
+    private final String projectUuid;
     private final String fileUuid;
     private final long updatedAt;
+    private final String dataHash;
     private final List<SourceLineDoc> lines = Lists.newArrayList();
 
     public SourceFile(String fileUuid, long updatedAt) {
+      this(null, fileUuid, updatedAt, null);
+    }
+
+    public SourceFile(@Nullable String projectUuid, String fileUuid, long updatedAt, @Nullable String dataHash) {
+      this.projectUuid = projectUuid;
       this.fileUuid = fileUuid;
       this.updatedAt = updatedAt;
+      this.dataHash = dataHash;
+    }
+
+    /**
+     * UUID of project, or null if unknown. In this case it's the project of the lines, if any.
+     */
+    @CheckForNull
+    public String getProjectUuid() {
+      if (projectUuid == null && !lines.isEmpty()) {
+        return lines.get(0).projectUuid();
+      }
+      return projectUuid;
     }
 
     public String getFileUuid() {
       return fileUuid;
     }
 
+    /**
+     * Value of column FILE_SOURCES.DATA_HASH, or null if unknown
+     */
+    @CheckForNull
+    public String getDataHash() {
+      return dataHash;
+    }
+
     public long getUpdatedAt() {
       return updatedAt;
     }
@@ -71,13 +101,16 @@ public class SourceLineResultSetIterator extends ResultSetIterator<SourceLineRes
     "project_uuid",
     "file_uuid",
     "updated_at",
-    "binary_data"
+    "binary_data",
+    "data_hash"
   };
 
   private static final String SQL_ALL = "select " + StringUtils.join(FIELDS, ",") + " from file_sources";
 
   private static final String SQL_AFTER_DATE = SQL_ALL + " where updated_at>?";
 
+  private static final String SQL_PROJECT = SQL_ALL + " where project_uuid=?";
+
   public static SourceLineResultSetIterator create(DbClient dbClient, Connection connection, long afterDate) {
     try {
       String sql = afterDate > 0L ? SQL_AFTER_DATE : SQL_ALL;
@@ -92,6 +125,17 @@ public class SourceLineResultSetIterator extends ResultSetIterator<SourceLineRes
     }
   }
 
+  public static SourceLineResultSetIterator createForProject(DbClient dbClient, Connection connection, String projectUuid) {
+    try {
+      // rows are big, so they are scrolled once at a time (one row in memory at a time)
+      PreparedStatement stmt = dbClient.newScrollingSingleRowSelectStatement(connection, SQL_PROJECT);
+      stmt.setString(1, projectUuid);
+      return new SourceLineResultSetIterator(stmt);
+    } catch (SQLException e) {
+      throw new IllegalStateException("Fail to prepare SQL request to select file sources of project " + projectUuid, e);
+    }
+  }
+
   private SourceLineResultSetIterator(PreparedStatement stmt) throws SQLException {
     super(stmt);
   }
@@ -103,13 +147,16 @@ public class SourceLineResultSetIterator extends ResultSetIterator<SourceLineRes
     long updatedAt = rs.getLong(3);
     Date updatedDate = new Date(updatedAt);
 
-    SourceFile result = new SourceFile(fileUuid, updatedAt);
+    String dataHash = rs.getString(5);
+
+    SourceFile result = new SourceFile(projectUuid, fileUuid, updatedAt, dataHash);
     FileSourceDb.Data data = FileSourceDto.decodeData(rs.getBinaryStream(4));
     for (FileSourceDb.Line line : data.getLinesList()) {
       SourceLineDoc doc = new SourceLineDoc();
       doc.setProjectUuid(projectUuid);
       doc.setFileUuid(fileUuid);
       doc.setLine(line.getLine());
+      doc.setDataHash(dataHash);
       doc.setUpdateDate(updatedDate);
       doc.setScmRevision(line.getScmRevision());
       doc.setScmAuthor(line.getScmAuthor());
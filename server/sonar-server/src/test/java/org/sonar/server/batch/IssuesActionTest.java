@@ -27,6 +27,8 @@ import org.junit.Test;
 import org.junit.experimental.categories.Category;
 import org.sonar.api.platform.Server;
 import org.sonar.api.web.UserRole;
+import org.sonar.batch.protocol.input.issues.PreviousIssue;
+import org.sonar.batch.protocol.input.issues.PreviousIssueProtobufHelper;
 import org.sonar.core.permission.GlobalPermissions;
 import org.sonar.core.persistence.DbSession;
 import org.sonar.core.persistence.DbTester;
@@ -39,6 +41,11 @@ import org.sonar.server.user.MockUserSession;
 import org.sonar.server.ws.WsTester;
 import org.sonar.test.DbTests;
 
+import java.io.ByteArrayInputStream;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
 import static org.mockito.Mockito.mock;
 
 @Category(DbTests.class)
@@ -107,6 +114,32 @@ public class IssuesActionTest {
     request.execute().assertJson(getClass(), "issues_on_module-expected.json", false);
   }
 
+  @Test
+  public void return_issues_as_protobuf() throws Exception {
+    db.prepareDbUnit(getClass(), "shared.xml");
+
+    MockUserSession.set().setLogin("henry").setGlobalPermissions(GlobalPermissions.PREVIEW_EXECUTION).addComponentPermission(UserRole.USER, PROJECT_KEY, PROJECT_KEY);
+
+    WsTester.TestRequest request = tester.newGetRequest("batch", "issues").setParam("key", PROJECT_KEY).setParam("format", "protobuf");
+    List<PreviousIssue> issues = readProtobuf(request.execute());
+
+    assertThat(issues).hasSize(1);
+    PreviousIssue issue = issues.get(0);
+    assertThat(issue.key()).isEqualTo("EFGH");
+    assertThat(issue.componentKey()).isEqualTo("Action.java");
+    assertThat(issue.ruleRepo()).isEqualTo("squid");
+    assertThat(issue.ruleKey()).isEqualTo("AvoidCycle");
+    assertThat(issue.line()).isEqualTo(200);
+    assertThat(issue.message()).isEqualTo("Do not use this method");
+    assertThat(issue.resolution()).isEqualTo("FALSE-POSITIVE");
+    assertThat(issue.status()).isEqualTo("RESOLVED");
+    assertThat(issue.severity()).isEqualTo("BLOCKER");
+    assertThat(issue.isManualSeverity()).isFalse();
+    assertThat(issue.checksum()).isEqualTo("123456");
+    assertThat(issue.assigneeLogin()).isEqualTo("john");
+    assertThat(issue.creationDate().getTime()).isEqualTo(1366063200000L);
+  }
+
   @Test(expected = ForbiddenException.class)
   public void fail_without_preview_permission() throws Exception {
     db.prepareDbUnit(getClass(), "shared.xml");
@@ -136,4 +169,12 @@ public class IssuesActionTest {
     WsTester.TestRequest request = tester.newGetRequest("batch", "issues").setParam("key", MODULE_KEY);
     request.execute();
   }
+
+  private static List<PreviousIssue> readProtobuf(WsTester.Result result) {
+    List<PreviousIssue> issues = new ArrayList<>();
+    for (PreviousIssue issue : PreviousIssueProtobufHelper.getIssues(new ByteArrayInputStream(result.output()))) {
+      issues.add(issue);
+    }
+    return issues;
+  }
 }
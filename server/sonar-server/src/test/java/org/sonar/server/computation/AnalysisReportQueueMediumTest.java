@@ -20,6 +20,7 @@
 
 package org.sonar.server.computation;
 
+import org.apache.commons.codec.digest.DigestUtils;
 import org.apache.commons.io.IOUtils;
 import org.junit.After;
 import org.junit.Before;
@@ -35,6 +36,7 @@ import org.sonar.core.persistence.DbSession;
 import org.sonar.core.persistence.MyBatis;
 import org.sonar.core.user.UserDto;
 import org.sonar.server.db.DbClient;
+import org.sonar.server.exceptions.BadRequestException;
 import org.sonar.server.exceptions.ForbiddenException;
 import org.sonar.server.tester.ServerTester;
 import org.sonar.server.user.MockUserSession;
@@ -43,6 +45,7 @@ import java.io.InputStream;
 import java.util.List;
 
 import static org.assertj.core.api.Assertions.assertThat;
+import static org.junit.Assert.fail;
 import static org.sonar.core.computation.db.AnalysisReportDto.Status.SUCCESS;
 import static org.sonar.core.computation.db.AnalysisReportDto.Status.WORKING;
 
@@ -173,6 +176,27 @@ public class AnalysisReportQueueMediumTest {
     sut.add(project.getKey(), 123L, defaultReportData());
   }
 
+  @Test
+  public void add_report_with_matching_checksum() {
+    insertPermissionsForProject(DEFAULT_PROJECT_KEY);
+
+    sut.add(DEFAULT_PROJECT_KEY, 123L, defaultReportData(), DigestUtils.sha1Hex("default-project"));
+
+    assertThat(sut.all()).hasSize(1);
+  }
+
+  @Test
+  public void reject_report_with_wrong_checksum() {
+    insertPermissionsForProject(DEFAULT_PROJECT_KEY);
+
+    try {
+      sut.add(DEFAULT_PROJECT_KEY, 123L, defaultReportData(), DigestUtils.sha1Hex("other"));
+      fail();
+    } catch (BadRequestException e) {
+      assertThat(sut.all()).isEmpty();
+    }
+  }
+
   private InputStream defaultReportData() {
     return IOUtils.toInputStream("default-project");
   }
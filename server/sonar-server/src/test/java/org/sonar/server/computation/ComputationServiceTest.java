@@ -45,11 +45,12 @@ public class ComputationServiceTest {
   @ClassRule
   public static DbTester dbTester = new DbTester();
 
-  ComputationStep projectStep1 = mockStep(Qualifiers.PROJECT);
-  ComputationStep projectStep2 = mockStep(Qualifiers.PROJECT);
-  ComputationStep viewStep = mockStep(Qualifiers.VIEW);
+  ComputationStep projectStep1 = mockStep("Project step 1", Qualifiers.PROJECT);
+  ComputationStep projectStep2 = mockStep("Project step 2", Qualifiers.PROJECT);
+  ComputationStep viewStep = mockStep("View step", Qualifiers.VIEW);
   ComputationSteps steps = mock(ComputationSteps.class);
   ActivityService activityService = mock(ActivityService.class);
+  ComputationStats stats = new ComputationStats();
 
   @Before
   public void setUp() throws Exception {
@@ -65,7 +66,7 @@ public class ComputationServiceTest {
     when(steps.orderedSteps()).thenReturn(Arrays.asList(projectStep1, projectStep2, viewStep));
 
     // load report from db and parse it
-    ComputationService sut = new ComputationService(dbClient, steps, activityService);
+    ComputationService sut = new ComputationService(dbClient, steps, activityService, stats);
     AnalysisReportDto report = AnalysisReportDto.newForTests(1L);
     report.setProjectKey("PROJECT_KEY");
     assertThat(report.getStatus()).isNull();
@@ -79,6 +80,10 @@ public class ComputationServiceTest {
     verify(projectStep2).execute(any(ComputationContext.class));
     verify(viewStep, never()).execute(any(ComputationContext.class));
     verify(activityService).write(any(DbSession.class), eq(Activity.Type.ANALYSIS_REPORT), any(AnalysisReportLog.class));
+
+    // durations of executed steps are recorded
+    assertThat(stats.stepDurations().keySet()).containsExactly("Project step 1", "Project step 2");
+    assertThat(stats.stepDurations().get("Project step 1").count()).isEqualTo(1L);
   }
 
   @Test
@@ -91,7 +96,7 @@ public class ComputationServiceTest {
     doThrow(new UnsupportedOperationException()).when(projectStep1).execute(any(ComputationContext.class));
 
     // load report from db and parse it
-    ComputationService sut = new ComputationService(dbClient, steps, activityService);
+    ComputationService sut = new ComputationService(dbClient, steps, activityService, stats);
     AnalysisReportDto report = AnalysisReportDto.newForTests(1L);
     report.setProjectKey("PROJECT_KEY");
     try {
@@ -104,8 +109,9 @@ public class ComputationServiceTest {
     }
   }
 
-  private ComputationStep mockStep(String... qualifiers) {
+  private ComputationStep mockStep(String description, String... qualifiers) {
     ComputationStep step = mock(ComputationStep.class);
+    when(step.getDescription()).thenReturn(description);
     when(step.supportedProjectQualifiers()).thenReturn(qualifiers);
     return step;
   }
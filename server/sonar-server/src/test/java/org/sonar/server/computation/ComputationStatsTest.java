@@ -0,0 +1,64 @@
+/*
+ * SonarQube, open source software quality management tool.
+ * Copyright (C) 2008-2014 SonarSource
+ * mailto:contact AT sonarsource DOT com
+ *
+ * SonarQube is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * SonarQube is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+ */
+
+package org.sonar.server.computation;
+
+import org.junit.Test;
+import org.sonar.core.computation.db.AnalysisReportDto;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+public class ComputationStatsTest {
+
+  ComputationStats sut = new ComputationStats();
+
+  @Test
+  public void record_wait_time_of_reports() throws Exception {
+    sut.onReportStarted(AnalysisReportDto.newForTests(1L).setCreatedAt(1000L).setStartedAt(1500L));
+    sut.onReportStarted(AnalysisReportDto.newForTests(2L).setCreatedAt(1000L).setStartedAt(1100L));
+    // not booked yet
+    sut.onReportStarted(AnalysisReportDto.newForTests(3L).setCreatedAt(1000L));
+
+    assertThat(sut.waitTimes().count()).isEqualTo(2L);
+    assertThat(sut.waitTimes().totalInMs()).isEqualTo(600L);
+    assertThat(sut.waitTimes().maxInMs()).isEqualTo(500L);
+    assertThat(sut.waitTimes().averageInMs()).isEqualTo(300L);
+  }
+
+  @Test
+  public void record_duration_of_steps() throws Exception {
+    sut.onStepExecuted("Persist issues", 100L);
+    sut.onStepExecuted("Parse report", 20L);
+    sut.onStepExecuted("Persist issues", 300L);
+
+    assertThat(sut.stepDurations().keySet()).containsExactly("Parse report", "Persist issues");
+    ComputationStats.Duration duration = sut.stepDurations().get("Persist issues");
+    assertThat(duration.count()).isEqualTo(2L);
+    assertThat(duration.maxInMs()).isEqualTo(300L);
+    assertThat(duration.averageInMs()).isEqualTo(200L);
+  }
+
+  @Test
+  public void no_stats() throws Exception {
+    assertThat(sut.waitTimes().count()).isEqualTo(0L);
+    assertThat(sut.waitTimes().averageInMs()).isEqualTo(0L);
+    assertThat(sut.stepDurations()).isEmpty();
+  }
+}
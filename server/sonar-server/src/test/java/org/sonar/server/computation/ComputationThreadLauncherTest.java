@@ -27,10 +27,12 @@ import org.junit.Test;
 import org.junit.rules.DisableOnDebug;
 import org.junit.rules.TestRule;
 import org.junit.rules.Timeout;
+import org.sonar.api.config.Settings;
 import org.sonar.api.platform.Server;
 
 import java.util.concurrent.TimeUnit;
 
+import static org.assertj.core.api.Assertions.assertThat;
 import static org.mockito.Mockito.*;
 
 public class ComputationThreadLauncherTest {
@@ -74,6 +76,32 @@ public class ComputationThreadLauncherTest {
     verify(queue, atLeastOnce()).pop();
   }
 
+  @Test
+  public void launch_multiple_workers() throws Exception {
+    sut = new ComputationThreadLauncher(queue, 3, 0, 1, TimeUnit.HOURS);
+
+    sut.onServerStart(mock(Server.class));
+
+    sleep();
+
+    assertThat(sut.workers()).isEqualTo(3);
+    verify(queue, times(3)).pop();
+  }
+
+  @Test
+  public void number_of_workers_is_configurable() throws Exception {
+    Settings settings = new Settings();
+    settings.setProperty(ComputationThreadLauncher.PROPERTY_WORKERS, 4);
+    sut = new ComputationThreadLauncher(queue, settings);
+    assertThat(sut.workers()).isEqualTo(4);
+  }
+
+  @Test
+  public void at_least_one_worker() throws Exception {
+    sut = new ComputationThreadLauncher(queue, new Settings());
+    assertThat(sut.workers()).isEqualTo(1);
+  }
+
   private void sleep() throws InterruptedException {
     TimeUnit.MILLISECONDS.sleep(500L);
   }
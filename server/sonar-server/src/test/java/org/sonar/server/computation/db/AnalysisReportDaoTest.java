@@ -20,7 +20,7 @@
 
 package org.sonar.server.computation.db;
 
-import org.apache.commons.io.IOUtils;
+import org.apache.commons.io.FileUtils;
 import org.junit.*;
 import org.junit.experimental.categories.Category;
 import org.junit.rules.TemporaryFolder;
@@ -32,7 +32,6 @@ import org.sonar.core.persistence.MyBatis;
 import org.sonar.test.DbTests;
 
 import java.io.File;
-import java.io.InputStream;
 import java.util.List;
 
 import static org.assertj.core.api.Assertions.assertThat;
@@ -91,10 +90,11 @@ public class AnalysisReportDaoTest {
   @Test
   public void insert_report_data_do_not_throw_exception() throws Exception {
     db.prepareDbUnit(getClass(), "empty.xml");
-    AnalysisReportDto report = newDefaultAnalysisReport()
-      .setData(getClass().getResource("/org/sonar/server/computation/db/AnalysisReportDaoTest/zip.zip").openStream());
+    AnalysisReportDto report = newDefaultAnalysisReport();
+    File reportData = temp.newFile();
+    FileUtils.copyURLToFile(getClass().getResource("/org/sonar/server/computation/db/AnalysisReportDaoTest/zip.zip"), reportData);
 
-    sut.insert(session, report);
+    sut.insert(session, report, reportData);
   }
 
   @Test
@@ -171,7 +171,6 @@ public class AnalysisReportDaoTest {
     assertThat(report.getStartedAt()).isEqualTo(parseDate("2014-09-26").getTime());
     assertThat(report.getFinishedAt()).isEqualTo(parseDate("2014-09-27").getTime());
     assertThat(report.getStatus()).isEqualTo(WORKING);
-    assertThat(report.getData()).isNull();
     assertThat(report.getKey()).isEqualTo("1");
   }
 
@@ -222,30 +221,29 @@ public class AnalysisReportDaoTest {
   }
 
   @Test
-  public void insert_and_then_retrieve_report_data_with_decompressed_files_medium_test() throws Exception {
+  public void insert_and_then_retrieve_report_data_to_file_medium_test() throws Exception {
     // ARRANGE
     db.prepareDbUnit(getClass(), "empty.xml");
     AnalysisReportDto report = newDefaultAnalysisReport();
-    InputStream zip = getClass().getResource("/org/sonar/server/computation/db/AnalysisReportDaoTest/zip.zip").openStream();
-    report.setData(zip);
+    byte[] data = "report data".getBytes();
+    File reportData = temp.newFile();
+    FileUtils.writeByteArrayToFile(reportData, data);
 
-    File toDir = temp.newFolder();
-    sut.insert(session, report);
+    File toFile = temp.newFile();
+    sut.insert(session, report, reportData);
     session.commit();
-    IOUtils.closeQuietly(zip);
 
     // ACT
-    sut.selectAndDecompressToDir(session, 1L, toDir);
+    sut.selectReportDataToFile(session, 1L, toFile);
 
     // ASSERT
-    assertThat(toDir.list()).hasSize(3);
+    assertThat(FileUtils.readFileToByteArray(toFile)).isEqualTo(data);
   }
 
   private AnalysisReportDto newDefaultAnalysisReport() {
     return AnalysisReportDto.newForTests(1L)
       .setProjectKey(DEFAULT_PROJECT_KEY)
       .setSnapshotId(DEFAULT_SNAPSHOT_ID)
-      .setData(null)
       .setStatus(PENDING);
   }
 }
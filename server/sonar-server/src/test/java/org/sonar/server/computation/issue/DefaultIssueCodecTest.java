@@ -0,0 +1,183 @@
+/*
+ * SonarQube, open source software quality management tool.
+ * Copyright (C) 2008-2014 SonarSource
+ * mailto:contact AT sonarsource DOT com
+ *
+ * SonarQube is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * SonarQube is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+ */
+package org.sonar.server.computation.issue;
+
+import com.google.common.collect.ImmutableMap;
+import com.google.common.collect.Iterators;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.sonar.api.issue.Issue;
+import org.sonar.api.issue.internal.DefaultIssue;
+import org.sonar.api.issue.internal.DefaultIssueComment;
+import org.sonar.api.issue.internal.FieldDiffs;
+import org.sonar.api.issue.internal.IssueChangeContext;
+import org.sonar.api.rule.RuleKey;
+import org.sonar.api.utils.Duration;
+import org.sonar.api.utils.System2;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.util.Arrays;
+import java.util.Date;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+public class DefaultIssueCodecTest {
+
+  @Rule
+  public TemporaryFolder temp = new TemporaryFolder();
+
+  DefaultIssueCodec codec = new DefaultIssueCodec();
+
+  @Test
+  public void encode_and_decode_all_fields() throws Exception {
+    DefaultIssue issue = new DefaultIssue()
+      .setKey("ISSUE_A")
+      .setComponentUuid("FILE_A")
+      .setComponentKey("PROJECT:src/Foo.java")
+      .setModuleUuid("MODULE_A")
+      .setModuleUuidPath(".MODULE_A.")
+      .setProjectUuid("PROJECT_A")
+      .setProjectKey("PROJECT")
+      .setRuleKey(RuleKey.of("squid", "R1"))
+      .setLanguage("java")
+      .setSeverity("BLOCKER")
+      .setManualSeverity(true)
+      .setMessage("the message é")
+      .setLine(42)
+      .setEffortToFix(3.14)
+      .setDebt(Duration.create(10L))
+      .setStatus(Issue.STATUS_RESOLVED)
+      .setResolution(Issue.RESOLUTION_FIXED)
+      .setReporter("reporter")
+      .setAssignee("assignee")
+      .setChecksum("abcde")
+      .setAttributes(ImmutableMap.of("JIRA", "FOO-123"))
+      .setAuthorLogin("author")
+      .setActionPlanKey("PLAN_A")
+      .setTags(Arrays.asList("bug", "performance"))
+      .setCreationDate(new Date(1_400_000_000_000L))
+      .setUpdateDate(new Date(1_500_000_000_000L))
+      .setCloseDate(new Date(1_600_000_000_000L))
+      .setNew(false)
+      .setEndOfLife(true)
+      .setOnDisabledRule(true)
+      .setChanged(true)
+      .setSendNotifications(true)
+      .setSelectedAt(1_700_000_000_000L);
+    issue.addComment(DefaultIssueComment.create("ISSUE_A", "john", "a comment"));
+    issue.addChange(new FieldDiffs().setIssueKey("ISSUE_A").setUserLogin("john").setCreationDate(new Date(1_300_000_000_000L))
+      .setDiff("severity", "MAJOR", "BLOCKER"));
+    issue.setFieldChange(IssueChangeContext.createUser(new Date(1_450_000_000_000L), "jane"), "debt", 5L, 10L);
+
+    DefaultIssue decoded = encodeAndDecode(issue);
+
+    assertThat(decoded.key()).isEqualTo("ISSUE_A");
+    assertThat(decoded.componentUuid()).isEqualTo("FILE_A");
+    assertThat(decoded.componentKey()).isEqualTo("PROJECT:src/Foo.java");
+    assertThat(decoded.moduleUuid()).isEqualTo("MODULE_A");
+    assertThat(decoded.moduleUuidPath()).isEqualTo(".MODULE_A.");
+    assertThat(decoded.projectUuid()).isEqualTo("PROJECT_A");
+    assertThat(decoded.projectKey()).isEqualTo("PROJECT");
+    assertThat(decoded.ruleKey()).isEqualTo(RuleKey.of("squid", "R1"));
+    assertThat(decoded.language()).isEqualTo("java");
+    assertThat(decoded.severity()).isEqualTo("BLOCKER");
+    assertThat(decoded.manualSeverity()).isTrue();
+    assertThat(decoded.message()).isEqualTo("the message é");
+    assertThat(decoded.line()).isEqualTo(42);
+    assertThat(decoded.effortToFix()).isEqualTo(3.14);
+    assertThat(decoded.debtInMinutes()).isEqualTo(10L);
+    assertThat(decoded.status()).isEqualTo(Issue.STATUS_RESOLVED);
+    assertThat(decoded.resolution()).isEqualTo(Issue.RESOLUTION_FIXED);
+    assertThat(decoded.reporter()).isEqualTo("reporter");
+    assertThat(decoded.assignee()).isEqualTo("assignee");
+    assertThat(decoded.checksum()).isEqualTo("abcde");
+    assertThat(decoded.attributes()).containsEntry("JIRA", "FOO-123").hasSize(1);
+    assertThat(decoded.authorLogin()).isEqualTo("author");
+    assertThat(decoded.actionPlanKey()).isEqualTo("PLAN_A");
+    assertThat(decoded.tags()).containsExactly("bug", "performance");
+    assertThat(decoded.creationDate().getTime()).isEqualTo(1_400_000_000_000L);
+    assertThat(decoded.updateDate().getTime()).isEqualTo(1_500_000_000_000L);
+    assertThat(decoded.closeDate().getTime()).isEqualTo(1_600_000_000_000L);
+    assertThat(decoded.isNew()).isFalse();
+    assertThat(decoded.isEndOfLife()).isTrue();
+    assertThat(decoded.isOnDisabledRule()).isTrue();
+    assertThat(decoded.isChanged()).isTrue();
+    assertThat(decoded.mustSendNotifications()).isTrue();
+    assertThat(decoded.selectedAt()).isEqualTo(1_700_000_000_000L);
+
+    assertThat(decoded.comments()).hasSize(1);
+    DefaultIssueComment comment = (DefaultIssueComment) decoded.comments().get(0);
+    assertThat(comment.userLogin()).isEqualTo("john");
+    assertThat(comment.markdownText()).isEqualTo("a comment");
+    assertThat(comment.isNew()).isTrue();
+
+    assertThat(decoded.changes()).hasSize(2);
+    assertThat(decoded.changes().get(0).get("severity").oldValue()).isEqualTo("MAJOR");
+    assertThat(decoded.changes().get(0).get("severity").newValue()).isEqualTo("BLOCKER");
+    FieldDiffs currentChange = decoded.currentChange();
+    assertThat(currentChange.userLogin()).isEqualTo("jane");
+    assertThat(currentChange.get("debt").oldValue()).isEqualTo(5L);
+    assertThat(currentChange.get("debt").newValue()).isEqualTo(10L);
+    // current change is still shared with the list of changes
+    assertThat(decoded.changes().get(1)).isSameAs(currentChange);
+  }
+
+  @Test
+  public void encode_and_decode_empty_issue() throws Exception {
+    DefaultIssue decoded = encodeAndDecode(new DefaultIssue());
+
+    assertThat(decoded.key()).isNull();
+    assertThat(decoded.ruleKey()).isNull();
+    assertThat(decoded.line()).isNull();
+    assertThat(decoded.debt()).isNull();
+    assertThat(decoded.creationDate()).isNull();
+    assertThat(decoded.attributes()).isEmpty();
+    assertThat(decoded.tags()).isEmpty();
+    assertThat(decoded.comments()).isEmpty();
+    assertThat(decoded.changes()).isEmpty();
+    assertThat(decoded.currentChange()).isNull();
+    assertThat(decoded.isNew()).isTrue();
+  }
+
+  @Test
+  public void issue_cache_uses_codec() throws Exception {
+    IssueCache cache = new IssueCache(temp.newFile(), System2.INSTANCE);
+    cache.newAppender()
+      .append(new DefaultIssue().setKey("ISSUE_A").setLine(1))
+      .append(new DefaultIssue().setKey("ISSUE_B"))
+      .close();
+
+    assertThat(Iterators.size(cache.traverse())).isEqualTo(2);
+  }
+
+  private DefaultIssue encodeAndDecode(DefaultIssue issue) throws Exception {
+    ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+    try (DataOutputStream output = new DataOutputStream(bytes)) {
+      codec.write(issue, output);
+    }
+    try (DataInputStream input = new DataInputStream(new ByteArrayInputStream(bytes.toByteArray()))) {
+      return codec.read(input);
+    }
+  }
+}
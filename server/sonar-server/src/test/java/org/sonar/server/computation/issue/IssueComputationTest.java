@@ -38,6 +38,7 @@ import java.io.IOException;
 import java.util.Arrays;
 
 import static org.assertj.core.api.Assertions.assertThat;
+import static org.junit.Assert.fail;
 import static org.mockito.Mockito.*;
 
 public class IssueComputationTest {
@@ -110,6 +111,17 @@ public class IssueComputationTest {
     assertThat(Iterators.getOnlyElement(outputIssues.traverse()).authorLogin()).isEqualTo("charlie");
   }
 
+  @Test
+  public void prefetch_authors_of_files_with_new_issues() throws Exception {
+    ComputationContext context = mock(ComputationContext.class, Mockito.RETURNS_DEEP_STUBS);
+    sut.processComponentIssues(context, "FILE_A", Arrays.asList(inputIssue.setIsNew(true).build()));
+    sut.processComponentIssues(context, "FILE_B", Arrays.asList(inputIssue.setIsNew(false).build()));
+    sut.processComponentIssues(context, "FILE_C", Arrays.asList(inputIssue.setIsNew(true).setAuthorLogin("charlie").build()));
+    sut.afterReportProcessing();
+
+    verify(lineCache).prefetch(Arrays.asList("FILE_A"));
+  }
+
   @Test
   public void do_not_fail_if_missing_author_for_new_issues() throws Exception {
     inputIssue.setIsNew(true);
@@ -172,6 +184,34 @@ public class IssueComputationTest {
     verifyZeroInteractions(scmAccountCache);
   }
 
+  @Test
+  public void process_issues_of_multiple_components() throws Exception {
+    ComputationContext context = mock(ComputationContext.class, Mockito.RETURNS_DEEP_STUBS);
+    int nbComponents = 100;
+    for (int i = 0; i < nbComponents; i++) {
+      sut.processComponentIssues(context, "FILE_" + i, Arrays.asList(
+        inputIssue.setUuid("ISSUE_" + i + "_A").build(),
+        inputIssue.setUuid("ISSUE_" + i + "_B").build()));
+    }
+    sut.afterReportProcessing();
+
+    assertThat(Iterators.size(outputIssues.traverse())).isEqualTo(2 * nbComponents);
+  }
+
+  @Test
+  public void fail_if_issues_can_not_be_processed() throws Exception {
+    inputIssue.setIsNew(true);
+    when(ruleCache.get(RULE_KEY)).thenThrow(new IllegalArgumentException("Rule not found"));
+
+    try {
+      process();
+      fail();
+    } catch (IllegalStateException e) {
+      assertThat(e).hasMessage("Fail to process issues");
+      assertThat(e.getCause()).hasMessage("Rule not found");
+    }
+  }
+
   private void process() {
     sut.processComponentIssues(mock(ComputationContext.class, Mockito.RETURNS_DEEP_STUBS), "FILE_A", Arrays.asList(inputIssue.build()));
     sut.afterReportProcessing();
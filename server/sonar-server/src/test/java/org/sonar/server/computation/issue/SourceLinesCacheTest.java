@@ -31,6 +31,7 @@ import org.sonar.server.source.db.FileSourceTesting;
 import org.sonar.test.DbTests;
 
 import java.sql.Connection;
+import java.util.Arrays;
 
 import static org.assertj.core.api.Assertions.assertThat;
 
@@ -78,6 +79,37 @@ public class SourceLinesCacheTest {
 
     cache.clear();
     assertThat(cache.countLines()).isEqualTo(0);
+
+    // loaded individually
+    assertThat(cache.misses()).isEqualTo(1L);
+    assertThat(cache.hits()).isEqualTo(0L);
+  }
+
+  @Test
+  public void prefetch_authors() throws Exception {
+    dbTester.prepareDbUnit(getClass(), "load_data.xml");
+    FileSourceDb.Data.Builder data = FileSourceDb.Data.newBuilder();
+    data.addLinesBuilder().setLine(1).setScmAuthor("charb").setScmDate(1_400_000_000_000L);
+    data.addLinesBuilder().setLine(2).setScmAuthor("cabu").setScmDate(1_500_000_000_000L);
+    try (Connection connection = dbTester.openConnection()) {
+      FileSourceTesting.updateDataColumn(connection, "FILE_A", data.build());
+    }
+
+    DbClient dbClient = new DbClient(dbTester.database(), dbTester.myBatis(), new FileSourceDao(dbTester.myBatis()));
+    SourceLinesCache cache = new SourceLinesCache(dbClient);
+    cache.prefetch(Arrays.asList("FILE_A", "UNKNOWN"));
+    assertThat(cache.countPrefetchedFiles()).isEqualTo(1);
+
+    cache.init("FILE_A");
+    // prefetched file is not kept after being processed
+    assertThat(cache.countPrefetchedFiles()).isEqualTo(0);
+    assertThat(cache.countLines()).isEqualTo(2);
+    assertThat(cache.lineAuthor(1)).isEqualTo("charb");
+    assertThat(cache.lineAuthor(2)).isEqualTo("cabu");
+    assertThat(cache.lineAuthor(null)).isEqualTo("cabu");
+
+    assertThat(cache.hits()).isEqualTo(1L);
+    assertThat(cache.misses()).isEqualTo(0L);
   }
 
 }
@@ -24,7 +24,6 @@ import org.junit.ClassRule;
 import org.junit.Rule;
 import org.junit.Test;
 import org.junit.rules.TemporaryFolder;
-import org.sonar.api.utils.ZipUtils;
 import org.sonar.api.utils.internal.DefaultTempFolder;
 import org.sonar.batch.protocol.Constants;
 import org.sonar.batch.protocol.output.BatchOutputWriter;
@@ -39,7 +38,6 @@ import org.sonar.server.computation.issue.IssueComputation;
 import org.sonar.server.db.DbClient;
 
 import java.io.File;
-import java.io.FileInputStream;
 import java.io.IOException;
 import java.util.Collections;
 
@@ -80,9 +78,9 @@ public class ParseReportStepTest {
   }
 
   private AnalysisReportDto prepareAnalysisReportInDb() throws IOException {
-    File dir = temp.newFolder();
+    File reportFile = temp.newFile();
     // project and 2 files
-    BatchOutputWriter writer = new BatchOutputWriter(dir);
+    BatchOutputWriter writer = new BatchOutputWriter(reportFile);
     writer.writeMetadata(BatchReport.Metadata.newBuilder()
       .setRootComponentRef(1)
       .setProjectKey("PROJECT_KEY")
@@ -105,8 +103,7 @@ public class ParseReportStepTest {
       .setType(Constants.ComponentType.FILE)
       .setUuid("FILE2_UUID")
       .build());
-    File zipFile = temp.newFile();
-    ZipUtils.zipDir(dir, zipFile);
+    writer.close();
 
     AnalysisReportDto dto = new AnalysisReportDto();
     DbSession dbSession = dbTester.myBatis().openSession(false);
@@ -115,11 +112,8 @@ public class ParseReportStepTest {
       dto.setCreatedAt(System.currentTimeMillis());
       dto.setSnapshotId(1L);
       dto.setStatus(AnalysisReportDto.Status.PENDING);
-      FileInputStream inputStream = new FileInputStream(zipFile);
-      dto.setData(inputStream);
       AnalysisReportDao dao = new AnalysisReportDao();
-      dao.insert(dbSession, dto);
-      inputStream.close();
+      dao.insert(dbSession, dto, reportFile);
       dbSession.commit();
 
       // dao#insert() does not set the generated id, so the row
@@ -0,0 +1,168 @@
+/*
+ * SonarQube, open source software quality management tool.
+ * Copyright (C) 2008-2014 SonarSource
+ * mailto:contact AT sonarsource DOT com
+ *
+ * SonarQube is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * SonarQube is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+ */
+package org.sonar.server.computation.step;
+
+import org.apache.ibatis.executor.BatchResult;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.mockito.ArgumentCaptor;
+import org.mockito.Mockito;
+import org.sonar.api.issue.Issue;
+import org.sonar.api.issue.internal.DefaultIssue;
+import org.sonar.api.rule.RuleKey;
+import org.sonar.api.utils.System2;
+import org.sonar.core.issue.db.IssueChangeMapper;
+import org.sonar.core.issue.db.IssueDto;
+import org.sonar.core.issue.db.IssueMapper;
+import org.sonar.core.issue.db.UpdateConflictResolver;
+import org.sonar.core.persistence.DbSession;
+import org.sonar.core.rule.RuleDto;
+import org.sonar.server.computation.ComputationContext;
+import org.sonar.server.computation.issue.IssueCache;
+import org.sonar.server.computation.issue.RuleCache;
+import org.sonar.server.db.DbClient;
+
+import java.sql.Statement;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Date;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.Matchers.any;
+import static org.mockito.Matchers.anyInt;
+import static org.mockito.Matchers.anyListOf;
+import static org.mockito.Mockito.*;
+
+public class PersistIssuesStepTest {
+
+  private static final long NOW = 1500000000000L;
+  private static final RuleKey RULE_KEY = RuleKey.of("squid", "AvoidCycles");
+
+  @Rule
+  public TemporaryFolder temp = new TemporaryFolder();
+
+  DbClient dbClient = mock(DbClient.class, Mockito.RETURNS_DEEP_STUBS);
+  DbSession session = mock(DbSession.class);
+  IssueMapper mapper = mock(IssueMapper.class);
+  IssueChangeMapper changeMapper = mock(IssueChangeMapper.class);
+  System2 system2 = mock(System2.class);
+  UpdateConflictResolver conflictResolver = mock(UpdateConflictResolver.class);
+  RuleCache ruleCache = mock(RuleCache.class);
+  IssueCache issueCache;
+  PersistIssuesStep step;
+
+  @Before
+  public void setUp() throws Exception {
+    issueCache = new IssueCache(temp.newFile(), System2.INSTANCE);
+    when(dbClient.database().getDialect().getBatchSize()).thenReturn(1000);
+    when(dbClient.openBatchSession(anyInt())).thenReturn(session);
+    when(session.getMapper(IssueMapper.class)).thenReturn(mapper);
+    when(session.getMapper(IssueChangeMapper.class)).thenReturn(changeMapper);
+    when(system2.now()).thenReturn(NOW);
+    when(ruleCache.get(RULE_KEY)).thenReturn(new RuleDto().setId(10));
+    step = new PersistIssuesStep(dbClient, system2, conflictResolver, ruleCache, issueCache);
+  }
+
+  @Test
+  public void insert_new_issues_and_update_changed_issues() throws Exception {
+    issueCache.newAppender()
+      .append(newIssue("NEW").setNew(true))
+      .append(newIssue("CLOSED").setChanged(true).setStatus(Issue.STATUS_CLOSED))
+      .append(newIssue("UNCHANGED"))
+      .close();
+
+    step.execute(mock(ComputationContext.class));
+
+    ArgumentCaptor<IssueDto> inserted = ArgumentCaptor.forClass(IssueDto.class);
+    verify(mapper).insert(inserted.capture());
+    assertThat(inserted.getValue().getKee()).isEqualTo("NEW");
+    assertThat(inserted.getValue().getRuleId()).isEqualTo(10);
+    ArgumentCaptor<IssueDto> updated = ArgumentCaptor.forClass(IssueDto.class);
+    verify(mapper).update(updated.capture());
+    assertThat(updated.getValue().getKee()).isEqualTo("CLOSED");
+    verify(mapper, never()).updateIfBeforeSelectedDate(any(IssueDto.class));
+    verify(session).commit();
+  }
+
+  @Test
+  public void resolve_conflicts_detected_by_update_counts() throws Exception {
+    issueCache.newAppender()
+      .append(newIssue("UPDATED").setChanged(true).setSelectedAt(NOW - 100L))
+      .append(newIssue("CONFLICT").setChanged(true).setSelectedAt(NOW - 100L))
+      .close();
+    BatchResult result = mock(BatchResult.class);
+    when(result.getUpdateCounts()).thenReturn(new int[] {1, 0});
+    when(session.flushStatements()).thenReturn(Collections.<BatchResult>emptyList(), Arrays.asList(result), Collections.<BatchResult>emptyList());
+
+    step.execute(mock(ComputationContext.class));
+
+    verify(mapper, times(2)).updateIfBeforeSelectedDate(any(IssueDto.class));
+    ArgumentCaptor<DefaultIssue> conflict = ArgumentCaptor.forClass(DefaultIssue.class);
+    verify(conflictResolver).resolve(conflict.capture(), eq(mapper));
+    assertThat(conflict.getValue().key()).isEqualTo("CONFLICT");
+    verify(mapper, never()).selectByKeys(anyListOf(String.class));
+  }
+
+  @Test
+  public void select_issues_not_updated_when_update_counts_are_unknown() throws Exception {
+    issueCache.newAppender()
+      .append(newIssue("UPDATED").setChanged(true).setSelectedAt(NOW - 100L))
+      .append(newIssue("CONFLICT").setChanged(true).setSelectedAt(NOW - 100L))
+      .close();
+    BatchResult result = mock(BatchResult.class);
+    when(result.getUpdateCounts()).thenReturn(new int[] {Statement.SUCCESS_NO_INFO, Statement.SUCCESS_NO_INFO});
+    when(session.flushStatements()).thenReturn(Collections.<BatchResult>emptyList(), Arrays.asList(result), Collections.<BatchResult>emptyList());
+    when(mapper.selectByKeys(anyListOf(String.class))).thenReturn(Arrays.asList(
+      new IssueDto().setKee("UPDATED").setUpdatedAt(NOW),
+      new IssueDto().setKee("CONFLICT").setUpdatedAt(NOW - 50L)));
+
+    step.execute(mock(ComputationContext.class));
+
+    ArgumentCaptor<DefaultIssue> conflict = ArgumentCaptor.forClass(DefaultIssue.class);
+    verify(conflictResolver).resolve(conflict.capture(), eq(mapper));
+    assertThat(conflict.getValue().key()).isEqualTo("CONFLICT");
+  }
+
+  @Test
+  public void persist_issues_by_batches() throws Exception {
+    when(dbClient.database().getDialect().getBatchSize()).thenReturn(2);
+    issueCache.newAppender()
+      .append(newIssue("ISSUE1").setNew(true))
+      .append(newIssue("ISSUE2").setNew(true))
+      .append(newIssue("ISSUE3").setNew(true))
+      .close();
+
+    step.execute(mock(ComputationContext.class));
+
+    verify(mapper, times(3)).insert(any(IssueDto.class));
+    verify(session, times(2)).commit();
+  }
+
+  private static DefaultIssue newIssue(String key) {
+    return new DefaultIssue()
+      .setKey(key)
+      .setRuleKey(RULE_KEY)
+      .setStatus(Issue.STATUS_OPEN)
+      .setCreationDate(new Date(NOW))
+      .setUpdateDate(new Date(NOW));
+  }
+}
@@ -52,7 +52,6 @@ public class QueueWsActionTest {
       .newForTests(1L)
       .setProjectKey("project-key")
       .setStatus(PENDING)
-      .setData(null)
       .setCreatedAt(DateUtils.parseDateTime("2014-10-13T00:00:00+0200").getTime())
       .setStartedAt(DateUtils.parseDateTime("2014-10-13T00:00:00+0200").getTime())
       .setFinishedAt(DateUtils.parseDateTime("2014-10-13T00:00:00+0200").getTime());
@@ -0,0 +1,70 @@
+/*
+ * SonarQube, open source software quality management tool.
+ * Copyright (C) 2008-2014 SonarSource
+ * mailto:contact AT sonarsource DOT com
+ *
+ * SonarQube is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * SonarQube is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+ */
+
+package org.sonar.server.computation.ws;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.sonar.core.computation.db.AnalysisReportDto;
+import org.sonar.server.computation.AnalysisReportQueue;
+import org.sonar.server.computation.ComputationStats;
+import org.sonar.server.computation.ComputationThreadLauncher;
+import org.sonar.server.ws.WsTester;
+
+import java.util.Arrays;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+import static org.sonar.core.computation.db.AnalysisReportDto.Status.PENDING;
+import static org.sonar.core.computation.db.AnalysisReportDto.Status.WORKING;
+
+public class StatsWsActionTest {
+
+  WsTester tester;
+  AnalysisReportQueue queue = mock(AnalysisReportQueue.class);
+  ComputationThreadLauncher launcher = mock(ComputationThreadLauncher.class);
+  ComputationStats stats = new ComputationStats();
+
+  @Before
+  public void setup() throws Exception {
+    tester = new WsTester(new ComputationWebService(new StatsWsAction(queue, launcher, stats)));
+  }
+
+  @Test
+  public void stats() throws Exception {
+    when(launcher.workers()).thenReturn(4);
+    when(queue.all()).thenReturn(Arrays.asList(
+      AnalysisReportDto.newForTests(1L).setProjectKey("P1").setStatus(WORKING),
+      AnalysisReportDto.newForTests(2L).setProjectKey("P1").setStatus(PENDING),
+      AnalysisReportDto.newForTests(3L).setProjectKey("P2").setStatus(PENDING)));
+    stats.onReportStarted(AnalysisReportDto.newForTests(1L).setCreatedAt(1000L).setStartedAt(3000L));
+    stats.onStepExecuted("Parse report", 100L);
+    stats.onStepExecuted("Parse report", 300L);
+
+    WsTester.TestRequest request = tester.newGetRequest(ComputationWebService.API_ENDPOINT, "stats");
+    request.execute().assertJson(getClass(), "stats.json", false);
+  }
+
+  @Test
+  public void define() throws Exception {
+    assertThat(tester.controller(ComputationWebService.API_ENDPOINT).action("stats")).isNotNull();
+  }
+}
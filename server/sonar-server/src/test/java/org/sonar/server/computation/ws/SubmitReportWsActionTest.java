@@ -57,12 +57,12 @@ public class SubmitReportWsActionTest {
 
     WebService.Action action = context.controller("api/computation").action("submit_report");
     assertThat(action).isNotNull();
-    assertThat(action.params()).hasSize(3);
+    assertThat(action.params()).hasSize(4);
   }
 
   @Test
   public void add_element_to_queue_and_launch_analysis_task() throws Exception {
-    when(queue.add(any(String.class), anyLong(), any(InputStream.class))).thenReturn("P1");
+    when(queue.add(any(String.class), anyLong(), any(InputStream.class), anyString())).thenReturn("P1");
 
     WsTester.TestRequest request = wsTester
       .newGetRequest(ComputationWebService.API_ENDPOINT, "submit_report")
@@ -71,13 +71,26 @@ public class SubmitReportWsActionTest {
       .setParam(SubmitReportWsAction.PARAM_REPORT_DATA, null);
     request.execute();
 
-    verify(queue).add(eq("P1"), eq(456L), any(InputStream.class));
+    verify(queue).add(eq("P1"), eq(456L), any(InputStream.class), isNull(String.class));
     verify(workerLauncher).startAnalysisTaskNow();
   }
 
+  @Test
+  public void pass_checksum_to_queue() throws Exception {
+    WsTester.TestRequest request = wsTester
+      .newPostRequest(ComputationWebService.API_ENDPOINT, "submit_report")
+      .setParam(SubmitReportWsAction.PARAM_PROJECT_KEY, "P1")
+      .setParam(SubmitReportWsAction.PARAM_SNAPSHOT, "456")
+      .setParam(SubmitReportWsAction.PARAM_REPORT_DATA, null)
+      .setParam(SubmitReportWsAction.PARAM_CHECKSUM, "ABCDEF");
+    request.execute();
+
+    verify(queue).add(eq("P1"), eq(456L), any(InputStream.class), eq("ABCDEF"));
+  }
+
   @Test
   public void return_report_key() throws Exception {
-    when(queue.add(any(String.class), anyLong(), any(InputStream.class))).thenReturn("P1");
+    when(queue.add(any(String.class), anyLong(), any(InputStream.class), anyString())).thenReturn("P1");
 
     WsTester.TestRequest request = wsTester
       .newPostRequest(ComputationWebService.API_ENDPOINT, "submit_report")
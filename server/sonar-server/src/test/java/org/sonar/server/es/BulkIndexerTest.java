@@ -21,14 +21,27 @@ package org.sonar.server.es;
 
 import com.google.common.collect.ImmutableMap;
 import org.elasticsearch.action.admin.indices.settings.get.GetSettingsResponse;
+import org.elasticsearch.action.bulk.BulkItemResponse;
+import org.elasticsearch.action.bulk.BulkRequest;
+import org.elasticsearch.action.bulk.BulkRequestBuilder;
+import org.elasticsearch.action.bulk.BulkResponse;
 import org.elasticsearch.action.index.IndexRequest;
+import org.elasticsearch.client.transport.NoNodeAvailableException;
 import org.elasticsearch.cluster.metadata.IndexMetaData;
 import org.elasticsearch.common.unit.ByteSizeUnit;
 import org.elasticsearch.common.unit.ByteSizeValue;
+import org.elasticsearch.rest.RestStatus;
 import org.junit.ClassRule;
 import org.junit.Test;
+import org.mockito.invocation.InvocationOnMock;
+import org.mockito.stubbing.Answer;
 
 import static org.assertj.core.api.Assertions.assertThat;
+import static org.junit.Assert.fail;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
 
 public class BulkIndexerTest {
 
@@ -48,6 +61,8 @@ public class BulkIndexerTest {
 
   @Test
   public void index_documents() throws Exception {
+    esTester.truncateIndices();
+
     BulkIndexer indexer = new BulkIndexer(esTester.client(), FakeIndexDefinition.INDEX)
       .setRefresh(true);
     indexer.start();
@@ -62,8 +77,28 @@ public class BulkIndexerTest {
     assertThat(count()).isEqualTo(2);
   }
 
+  @Test
+  public void flush_pending_requests() throws Exception {
+    esTester.truncateIndices();
+
+    BulkIndexer indexer = new BulkIndexer(esTester.client(), FakeIndexDefinition.INDEX)
+      .setConcurrentRequests(2);
+    indexer.start();
+    indexer.add(newIndexRequest(42));
+    indexer.flush();
+    esTester.client().prepareRefresh(FakeIndexDefinition.INDEX).get();
+    assertThat(count()).isEqualTo(1);
+
+    // indexing goes on after flush
+    indexer.add(newIndexRequest(78));
+    indexer.stop();
+    assertThat(count()).isEqualTo(2);
+  }
+
   @Test
   public void large_indexing() throws Exception {
+    esTester.truncateIndices();
+
     // index has one replica
     assertThat(replicas()).isEqualTo(1);
 
@@ -86,6 +121,119 @@ public class BulkIndexerTest {
     assertThat(replicas()).isEqualTo(1);
   }
 
+  @Test
+  public void concurrent_indexing() throws Exception {
+    esTester.truncateIndices();
+
+    BulkIndexer indexer = new BulkIndexer(esTester.client(), FakeIndexDefinition.INDEX)
+      .setConcurrentRequests(2)
+      .setFlushByteSize(new ByteSizeValue(1, ByteSizeUnit.BYTES).bytes());
+    indexer.start();
+    for (int i = 0; i < 100; i++) {
+      indexer.add(newIndexRequest(i));
+    }
+    indexer.stop();
+
+    assertThat(count()).isEqualTo(100);
+    assertThat(indexer.getRequests()).isEqualTo(100);
+    assertThat(indexer.getBytes()).isGreaterThan(0L);
+    assertThat(indexer.getRejectedRequests()).isEqualTo(0);
+  }
+
+  @Test
+  public void do_not_retry_mapping_errors() throws Exception {
+    esTester.truncateIndices();
+
+    BulkIndexer indexer = new BulkIndexer(esTester.client(), FakeIndexDefinition.INDEX);
+    indexer.start();
+    indexer.add(newIndexRequest(42));
+    indexer.add(new IndexRequest(FakeIndexDefinition.INDEX, FakeIndexDefinition.TYPE)
+      .source(ImmutableMap.of(FakeIndexDefinition.INT_FIELD, "not a number")));
+    indexer.stop();
+
+    assertThat(count()).isEqualTo(1);
+    assertThat(indexer.getRejectedRequests()).isEqualTo(1);
+  }
+
+  @Test
+  public void retry_only_failures_of_overloaded_cluster() throws Exception {
+    assertThat(BulkIndexer.isRetryable(new BulkItemResponse.Failure("fakes", "fake", "1",
+      "EsRejectedExecutionException[rejected execution (queue capacity 50)]", RestStatus.TOO_MANY_REQUESTS))).isTrue();
+    assertThat(BulkIndexer.isRetryable(new BulkItemResponse.Failure("fakes", "fake", "1",
+      "MapperParsingException[failed to parse [intField]]", RestStatus.BAD_REQUEST))).isFalse();
+    assertThat(BulkIndexer.isRetryable(new BulkItemResponse.Failure("fakes", "fake", "1",
+      "DocumentAlreadyExistsException[[fakes][0] [fake][1]: document already exists]", RestStatus.CONFLICT))).isFalse();
+  }
+
+  @Test
+  public void retry_bulk_request_that_can_not_reach_a_node() throws Exception {
+    assertThat(BulkIndexer.isTransportFailure(new NoNodeAvailableException("None of the configured nodes are available"))).isTrue();
+    assertThat(BulkIndexer.isTransportFailure(new IllegalStateException("Fail to execute bulk", new NoNodeAvailableException("None")))).isTrue();
+    assertThat(BulkIndexer.isTransportFailure(new IllegalStateException("Fail to execute bulk"))).isFalse();
+
+    EsClient client = mock(EsClient.class);
+    BulkRequestBuilder bulk = mockBulk(client);
+    when(bulk.get())
+      .thenThrow(new IllegalStateException("Fail to execute bulk", new NoNodeAvailableException("None")))
+      .thenReturn(new BulkResponse(new BulkItemResponse[0], 1L));
+
+    BulkIndexer indexer = new BulkIndexer(client, FakeIndexDefinition.INDEX).setRefresh(false);
+    indexer.start();
+    indexer.add(newIndexRequest(42));
+    indexer.stop();
+
+    verify(bulk, times(2)).get();
+  }
+
+  @Test
+  public void fail_if_no_node_can_be_reached_after_last_retry() throws Exception {
+    EsClient client = mock(EsClient.class);
+    BulkRequestBuilder bulk = mockBulk(client);
+    when(bulk.get()).thenThrow(new IllegalStateException("Fail to execute bulk", new NoNodeAvailableException("None")));
+
+    BulkIndexer indexer = new BulkIndexer(client, FakeIndexDefinition.INDEX).setRefresh(false);
+    indexer.start();
+    indexer.add(newIndexRequest(42));
+    try {
+      indexer.stop();
+      fail();
+    } catch (IllegalStateException e) {
+      assertThat(e).hasMessage("Fail to execute bulk");
+      verify(bulk, times(4)).get();
+    }
+  }
+
+  @Test
+  public void fail_if_items_are_still_rejected_after_last_retry() throws Exception {
+    EsClient client = mock(EsClient.class);
+    BulkRequestBuilder bulk = mockBulk(client);
+    BulkItemResponse rejected = new BulkItemResponse(0, "index", new BulkItemResponse.Failure(FakeIndexDefinition.INDEX, FakeIndexDefinition.TYPE, "1",
+      "EsRejectedExecutionException[rejected execution (queue capacity 50)]", RestStatus.TOO_MANY_REQUESTS));
+    when(bulk.get()).thenReturn(new BulkResponse(new BulkItemResponse[] {rejected}, 1L));
+
+    BulkIndexer indexer = new BulkIndexer(client, FakeIndexDefinition.INDEX).setRefresh(false);
+    indexer.start();
+    indexer.add(newIndexRequest(42));
+    try {
+      indexer.stop();
+      fail();
+    } catch (IllegalStateException e) {
+      assertThat(e).hasMessage("Fail to index 1 documents in index fakes after 3 retries");
+      verify(bulk, times(4)).get();
+    }
+  }
+
+  @Test(expected = IllegalStateException.class)
+  public void fail_to_change_concurrent_requests_when_started() throws Exception {
+    BulkIndexer indexer = new BulkIndexer(esTester.client(), FakeIndexDefinition.INDEX);
+    indexer.start();
+    try {
+      indexer.setConcurrentRequests(2);
+    } finally {
+      indexer.stop();
+    }
+  }
+
   private long count() {
     return esTester.countDocuments("fakes", "fake");
   }
@@ -96,6 +244,20 @@ public class BulkIndexerTest {
     return Integer.parseInt(settingsResp.getSetting(FakeIndexDefinition.INDEX, IndexMetaData.SETTING_NUMBER_OF_REPLICAS));
   }
 
+  private static BulkRequestBuilder mockBulk(EsClient client) {
+    BulkRequestBuilder bulk = mock(BulkRequestBuilder.class);
+    final BulkRequest request = new BulkRequest();
+    when(bulk.request()).thenReturn(request);
+    when(bulk.numberOfActions()).thenAnswer(new Answer<Integer>() {
+      @Override
+      public Integer answer(InvocationOnMock invocation) {
+        return request.numberOfActions();
+      }
+    });
+    when(client.prepareBulk()).thenReturn(bulk);
+    return bulk;
+  }
+
   private IndexRequest newIndexRequest(int intField) {
     return new IndexRequest(FakeIndexDefinition.INDEX, FakeIndexDefinition.TYPE)
       .source(ImmutableMap.of(FakeIndexDefinition.INT_FIELD, intField));
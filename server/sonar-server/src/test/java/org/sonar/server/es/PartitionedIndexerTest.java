@@ -0,0 +1,172 @@
+/*
+ * SonarQube, open source software quality management tool.
+ * Copyright (C) 2008-2014 SonarSource
+ * mailto:contact AT sonarsource DOT com
+ *
+ * SonarQube is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * SonarQube is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+ */
+package org.sonar.server.es;
+
+import com.google.common.collect.ImmutableMap;
+import org.elasticsearch.action.index.IndexRequest;
+import org.junit.Before;
+import org.junit.ClassRule;
+import org.junit.Test;
+import org.junit.experimental.categories.Category;
+import org.sonar.core.persistence.DbTester;
+import org.sonar.core.properties.PropertiesDao;
+import org.sonar.core.properties.PropertyDto;
+import org.sonar.server.db.DbClient;
+import org.sonar.test.DbTests;
+
+import java.sql.Connection;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.junit.Assert.fail;
+
+@Category(DbTests.class)
+public class PartitionedIndexerTest {
+
+  private static final String SQL_PROJECTS = "select uuid from projects";
+  private static final String CHECKPOINT = "sonar.es.fakes.fake.checkpoint";
+
+  @ClassRule
+  public static DbTester dbTester = new DbTester();
+
+  @ClassRule
+  public static EsTester esTester = new EsTester().addDefinitions(new FakeIndexDefinition());
+
+  PropertiesDao propertiesDao;
+  PartitionedIndexer indexer;
+
+  @Before
+  public void setUp() throws Exception {
+    dbTester.truncateTables();
+    esTester.truncateIndices();
+    dbTester.prepareDbUnit(getClass(), "projects.xml");
+    propertiesDao = new PropertiesDao(dbTester.myBatis());
+    indexer = new PartitionedIndexer(new DbClient(dbTester.database(), dbTester.myBatis(), propertiesDao), esTester.client(),
+      FakeIndexDefinition.INDEX, FakeIndexDefinition.TYPE);
+  }
+
+  @Test
+  public void index_all_projects() throws Exception {
+    FakeProjectIndexer projectIndexer = new FakeProjectIndexer(null);
+
+    long maxUpdatedAt = indexer.setThreads(2).index(SQL_PROJECTS, projectIndexer);
+
+    assertThat(maxUpdatedAt).isEqualTo(3L);
+    assertThat(projectIndexer.indexedProjects()).containsOnly("PROJECT1", "PROJECT2", "PROJECT3");
+    assertThat(esTester.countDocuments(FakeIndexDefinition.INDEX, FakeIndexDefinition.TYPE)).isEqualTo(3L);
+    assertThat(indexer.isInterrupted()).isFalse();
+    assertThat(propertiesDao.selectGlobalProperty(CHECKPOINT)).isNull();
+  }
+
+  @Test
+  public void resume_after_checkpoint() throws Exception {
+    propertiesDao.setProperty(new PropertyDto().setKey(CHECKPOINT).setValue("PROJECT1"));
+    assertThat(indexer.isInterrupted()).isTrue();
+    FakeProjectIndexer projectIndexer = new FakeProjectIndexer(null);
+
+    indexer.index(SQL_PROJECTS, projectIndexer);
+
+    assertThat(projectIndexer.indexedProjects()).containsOnly("PROJECT2", "PROJECT3");
+    assertThat(esTester.countDocuments(FakeIndexDefinition.INDEX, FakeIndexDefinition.TYPE)).isEqualTo(2L);
+    assertThat(indexer.isInterrupted()).isFalse();
+  }
+
+  @Test
+  public void save_checkpoint_of_indexed_projects_on_failure() throws Exception {
+    FakeProjectIndexer projectIndexer = new FakeProjectIndexer("PROJECT3");
+
+    try {
+      indexer.setThreads(1).setCheckpointPeriod(0L).index(SQL_PROJECTS, projectIndexer);
+      fail();
+    } catch (IllegalStateException e) {
+      assertThat(e).hasMessage("Fail to index PROJECT3");
+    }
+
+    // documents of the projects before checkpoint are indexed
+    assertThat(indexer.isInterrupted()).isTrue();
+    assertThat(propertiesDao.selectGlobalProperty(CHECKPOINT).getValue()).isEqualTo("PROJECT2");
+    assertThat(esTester.countDocuments(FakeIndexDefinition.INDEX, FakeIndexDefinition.TYPE)).isEqualTo(2L);
+  }
+
+  @Test
+  public void do_not_save_checkpoint_when_documents_are_rejected() throws Exception {
+    FakeProjectIndexer projectIndexer = new FakeProjectIndexer(null).setRejectedProject("PROJECT2");
+
+    try {
+      indexer.setThreads(1).setCheckpointPeriod(0L).index(SQL_PROJECTS, projectIndexer);
+      fail();
+    } catch (IllegalStateException e) {
+      assertThat(e).hasMessage("Fail to index 1 documents in index fakes");
+    }
+
+    // indexing is resumed from the last project before the rejected document
+    assertThat(indexer.isInterrupted()).isTrue();
+    assertThat(propertiesDao.selectGlobalProperty(CHECKPOINT).getValue()).isEqualTo("PROJECT1");
+  }
+
+  @Test
+  public void restart_from_scratch_when_checkpoint_is_cleared() throws Exception {
+    propertiesDao.setProperty(new PropertyDto().setKey(CHECKPOINT).setValue("PROJECT3"));
+
+    indexer.clearCheckpoint();
+
+    assertThat(indexer.isInterrupted()).isFalse();
+    FakeProjectIndexer projectIndexer = new FakeProjectIndexer(null);
+    indexer.index(SQL_PROJECTS, projectIndexer);
+    assertThat(projectIndexer.indexedProjects()).hasSize(3);
+  }
+
+  private static class FakeProjectIndexer implements PartitionedIndexer.ProjectIndexer {
+    private final String failingProject;
+    private final List<String> indexedProjects = Collections.synchronizedList(new ArrayList<String>());
+    private String rejectedProject = null;
+
+    FakeProjectIndexer(String failingProject) {
+      this.failingProject = failingProject;
+    }
+
+    FakeProjectIndexer setRejectedProject(String s) {
+      this.rejectedProject = s;
+      return this;
+    }
+
+    @Override
+    public long index(Connection connection, String projectUuid, BulkIndexer bulk) {
+      if (projectUuid.equals(failingProject)) {
+        throw new IllegalStateException("Fail to index " + projectUuid);
+      }
+      indexedProjects.add(projectUuid);
+      // PROJECT1 -> 1
+      int value = Integer.parseInt(projectUuid.substring("PROJECT".length()));
+      bulk.add(new IndexRequest(FakeIndexDefinition.INDEX, FakeIndexDefinition.TYPE, projectUuid).source(FakeIndexDefinition.newDoc(value)));
+      if (projectUuid.equals(rejectedProject)) {
+        // mapping error
+        bulk.add(new IndexRequest(FakeIndexDefinition.INDEX, FakeIndexDefinition.TYPE).source(ImmutableMap.of(FakeIndexDefinition.INT_FIELD, "not a number")));
+      }
+      return value;
+    }
+
+    List<String> indexedProjects() {
+      return indexedProjects;
+    }
+  }
+}
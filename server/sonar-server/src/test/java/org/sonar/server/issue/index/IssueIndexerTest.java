@@ -27,6 +27,8 @@ import org.junit.experimental.categories.Category;
 import org.sonar.api.config.Settings;
 import org.sonar.api.rule.RuleKey;
 import org.sonar.core.persistence.DbTester;
+import org.sonar.core.properties.PropertiesDao;
+import org.sonar.core.properties.PropertyDto;
 import org.sonar.server.db.DbClient;
 import org.sonar.server.es.EsTester;
 import org.sonar.test.DbTests;
@@ -81,7 +83,24 @@ public class IssueIndexerTest {
     assertThat(esTester.countDocuments("issues", "issue")).isZero();
   }
 
+  @Test
+  public void resume_interrupted_indexing_after_checkpoint() throws Exception {
+    dbTester.prepareDbUnit(getClass(), "resume_interrupted_indexing_after_checkpoint.xml");
+    // OTHER_PROJECT was already indexed before interruption
+    PropertiesDao propertiesDao = new PropertiesDao(dbTester.myBatis());
+    propertiesDao.setProperty(new PropertyDto().setKey("sonar.es.issues.issue.checkpoint").setValue("OTHER_PROJECT"));
+
+    createIndexer().index();
+
+    // only the projects after checkpoint are indexed
+    List<IssueDoc> docs = esTester.getDocuments("issues", "issue", IssueDoc.class);
+    assertThat(docs).hasSize(1);
+    assertThat(docs.get(0).key()).isEqualTo("ABCDE");
+    assertThat(docs.get(0).projectUuid()).isEqualTo("THE_PROJECT");
+    assertThat(propertiesDao.selectGlobalProperty("sonar.es.issues.issue.checkpoint")).isNull();
+  }
+
   private IssueIndexer createIndexer() {
-    return new IssueIndexer(new DbClient(dbTester.database(), dbTester.myBatis()), esTester.client());
+    return new IssueIndexer(new DbClient(dbTester.database(), dbTester.myBatis(), new PropertiesDao(dbTester.myBatis())), esTester.client());
   }
 }
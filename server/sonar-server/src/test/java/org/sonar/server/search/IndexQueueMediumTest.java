@@ -0,0 +1,175 @@
+/*
+ * SonarQube, open source software quality management tool.
+ * Copyright (C) 2008-2014 SonarSource
+ * mailto:contact AT sonarsource DOT com
+ *
+ * SonarQube is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * SonarQube is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+ */
+package org.sonar.server.search;
+
+import com.google.common.collect.ImmutableList;
+import org.elasticsearch.action.update.UpdateRequest;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.ClassRule;
+import org.junit.Test;
+import org.sonar.api.rule.RuleKey;
+import org.sonar.api.rule.RuleStatus;
+import org.sonar.api.rule.Severity;
+import org.sonar.core.permission.GlobalPermissions;
+import org.sonar.core.persistence.DbSession;
+import org.sonar.core.rule.RuleDto;
+import org.sonar.server.db.DbClient;
+import org.sonar.server.rule.NewRule;
+import org.sonar.server.rule.RuleService;
+import org.sonar.server.rule.RuleTesting;
+import org.sonar.server.rule.db.RuleDao;
+import org.sonar.server.rule.index.RuleIndex;
+import org.sonar.server.search.action.IndexAction;
+import org.sonar.server.search.action.UpsertDto;
+import org.sonar.server.tester.ServerTester;
+import org.sonar.server.user.MockUserSession;
+
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.junit.Assert.fail;
+
+public class IndexQueueMediumTest {
+
+  @ClassRule
+  public static ServerTester tester = new ServerTester();
+
+  IndexQueue queue = tester.get(IndexQueue.class);
+  RuleIndex index = tester.get(RuleIndex.class);
+  DbSession dbSession;
+
+  @Before
+  public void before() {
+    tester.clearDbAndIndexes();
+    dbSession = tester.get(DbClient.class).openSession(false);
+  }
+
+  @After
+  public void after() {
+    dbSession.close();
+  }
+
+  @Test
+  public void commit_blocks_until_actions_are_indexed_by_default() throws Exception {
+    RuleKey key = RuleKey.of("java", "S001");
+    tester.get(RuleDao.class).insert(dbSession, RuleTesting.newDto(key));
+    dbSession.commit();
+
+    assertThat(index.getNullableByKey(key)).isNotNull();
+  }
+
+  @Test
+  public void read_own_writes_after_awaiting_write_behind_indexing() throws Exception {
+    RuleKey key = RuleKey.of("java", "S001");
+    RuleDto rule = RuleTesting.newDto(key).setName("Old name");
+    tester.get(RuleDao.class).insert(dbSession, rule);
+    dbSession.commit();
+
+    rule.setName("New name");
+    dbSession.enqueue(new UpsertDto<RuleDto>(IndexDefinition.RULE.getIndexType(), rule, false));
+    dbSession.commit();
+    queue.awaitIndexing(IndexDefinition.RULE.getIndexType());
+
+    assertThat(index.getByKey(key).name()).isEqualTo("New name");
+  }
+
+  @Test
+  public void await_indexing_of_index_never_written() throws Exception {
+    queue.awaitIndexing(IndexDefinition.LOG.getIndexType());
+  }
+
+  @Test
+  public void created_rule_is_searchable_as_soon_as_created() throws Exception {
+    MockUserSession.set().setGlobalPermissions(GlobalPermissions.QUALITY_PROFILE_ADMIN).setLogin("me");
+    RuleKey templateKey = RuleKey.of("java", "S001");
+    tester.get(RuleDao.class).insert(dbSession, RuleTesting.newTemplateRule(templateKey));
+    dbSession.commit();
+
+    RuleKey customKey = tester.get(RuleService.class).create(NewRule.createForCustomRule("MY_CUSTOM", templateKey)
+      .setName("My custom")
+      .setHtmlDescription("Some description")
+      .setSeverity(Severity.MAJOR)
+      .setStatus(RuleStatus.READY));
+
+    assertThat(index.getNullableByKey(customKey)).isNotNull();
+  }
+
+  @Test
+  public void failure_is_thrown_to_blocked_caller() throws Exception {
+    dbSession.enqueue(new UpdateOfMissingDocument(IndexDefinition.RULE.getIndexType(), true));
+    try {
+      dbSession.commit();
+      fail();
+    } catch (IllegalStateException e) {
+      assertThat(e).hasMessageContaining("DocumentMissingException");
+    }
+
+    // next actions are still indexed. Failed actions are kept by the session, so another one is opened.
+    DbSession otherSession = tester.get(DbClient.class).openSession(false);
+    try {
+      RuleKey key = RuleKey.of("java", "S001");
+      tester.get(RuleDao.class).insert(otherSession, RuleTesting.newDto(key));
+      otherSession.commit();
+      assertThat(index.getNullableByKey(key)).isNotNull();
+    } finally {
+      otherSession.close();
+    }
+  }
+
+  @Test
+  public void write_behind_failure_does_not_fail_other_callers_and_is_thrown_when_awaiting_indexing() throws Exception {
+    // the index type flagged as out of sync is not used by the other tests
+    dbSession.enqueue(new UpdateOfMissingDocument(IndexDefinition.ACTIVE_RULE.getIndexType(), false));
+    dbSession.commit();
+
+    // batched with the failed action or not, the actions of another commit are indexed
+    RuleKey key = RuleKey.of("java", "S001");
+    tester.get(RuleDao.class).insert(dbSession, RuleTesting.newDto(key));
+    dbSession.commit();
+    assertThat(index.getNullableByKey(key)).isNotNull();
+
+    try {
+      queue.awaitIndexing(IndexDefinition.ACTIVE_RULE.getIndexType());
+      fail();
+    } catch (IllegalStateException e) {
+      assertThat(e).hasMessage("Index activeRule is out of sync with database as some actions failed to be indexed. See logs.");
+    }
+  }
+
+  /**
+   * Partial update of a document that does not exist, rejected by Elasticsearch
+   */
+  private static class UpdateOfMissingDocument extends IndexAction<UpdateRequest> {
+    UpdateOfMissingDocument(String indexType, boolean requiresRefresh) {
+      super(indexType, requiresRefresh);
+    }
+
+    @Override
+    public String getKey() {
+      return "missing";
+    }
+
+    @Override
+    public List<UpdateRequest> doCall(Index index) {
+      return ImmutableList.of(new UpdateRequest(index.getIndexName(), index.getIndexType(), getKey()).doc("name", "foo"));
+    }
+  }
+}
@@ -0,0 +1,95 @@
+/*
+ * SonarQube, open source software quality management tool.
+ * Copyright (C) 2008-2014 SonarSource
+ * mailto:contact AT sonarsource DOT com
+ *
+ * SonarQube is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * SonarQube is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+ */
+package org.sonar.server.search;
+
+import org.junit.Test;
+import org.sonar.core.persistence.Dto;
+import org.sonar.server.search.action.DeleteKey;
+import org.sonar.server.search.action.IndexAction;
+import org.sonar.server.search.action.RefreshIndex;
+import org.sonar.server.search.action.UpsertDto;
+import org.sonar.server.search.action.UpsertNestedItem;
+
+import java.util.Arrays;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+public class IndexQueueTest {
+
+  @Test
+  public void coalesce_upserts_of_same_document() throws Exception {
+    IndexAction<?> first = new DeleteKey<String>("rules", "R1");
+    IndexAction<?> upsert = upsert("rules", "R1");
+    IndexAction<?> otherDocument = upsert("rules", "R2");
+    IndexAction<?> otherType = upsert("activeRules", "R1");
+    IndexAction<?> lastUpsert = upsert("rules", "R1");
+
+    List<IndexAction<?>> actions = IndexQueue.coalesce(Arrays.<IndexAction<?>>asList(first, upsert, otherDocument, otherType, lastUpsert));
+
+    assertThat(actions).containsExactly(first, otherDocument, otherType, lastUpsert);
+  }
+
+  @Test
+  public void delete_supersedes_previous_upsert() throws Exception {
+    IndexAction<?> upsert = upsert("rules", "R1");
+    IndexAction<?> delete = new DeleteKey<String>("rules", "R1");
+
+    assertThat(IndexQueue.coalesce(Arrays.<IndexAction<?>>asList(upsert, delete))).containsExactly(delete);
+  }
+
+  @Test
+  public void do_not_coalesce_across_nested_updates() throws Exception {
+    IndexAction<?> upsert = upsert("rules", "R1");
+    IndexAction<?> nested = new UpsertNestedItem<String>("rules", "R1", "param");
+    IndexAction<?> lastUpsert = upsert("rules", "R1");
+    IndexAction<?> refresh = new RefreshIndex("rules");
+
+    List<IndexAction<?>> actions = IndexQueue.coalesce(Arrays.<IndexAction<?>>asList(upsert, nested, lastUpsert, refresh));
+
+    assertThat(actions).containsExactly(upsert, nested, lastUpsert, refresh);
+  }
+
+  @Test
+  public void actions_require_refresh_unless_write_behind_is_requested() throws Exception {
+    assertThat(upsert("rules", "R1").needsRefresh()).isTrue();
+    assertThat(new DeleteKey<String>("rules", "R1").needsRefresh()).isTrue();
+    assertThat(new UpsertNestedItem<String>("rules", "R1", "param").needsRefresh()).isTrue();
+    assertThat(new RefreshIndex("rules").needsRefresh()).isTrue();
+    assertThat(new UpsertDto<FakeDto>("rules", new FakeDto("R1"), false).needsRefresh()).isFalse();
+  }
+
+  private static IndexAction<?> upsert(String indexType, String key) {
+    return new UpsertDto<FakeDto>(indexType, new FakeDto(key));
+  }
+
+  private static class FakeDto extends Dto<String> {
+    private final String key;
+
+    FakeDto(String key) {
+      this.key = key;
+    }
+
+    @Override
+    public String getKey() {
+      return key;
+    }
+  }
+}
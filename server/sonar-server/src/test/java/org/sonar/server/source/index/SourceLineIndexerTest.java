@@ -35,6 +35,7 @@ import org.junit.experimental.categories.Category;
 import org.sonar.api.config.Settings;
 import org.sonar.api.utils.DateUtils;
 import org.sonar.core.persistence.DbTester;
+import org.sonar.core.properties.PropertiesDao;
 import org.sonar.server.db.DbClient;
 import org.sonar.server.es.EsTester;
 import org.sonar.server.search.BaseNormalizer;
@@ -67,7 +68,7 @@ public class SourceLineIndexerTest {
   public void setUp() {
     es.truncateIndices();
     db.truncateTables();
-    indexer = new SourceLineIndexer(new DbClient(db.database(), db.myBatis()), es.client());
+    indexer = new SourceLineIndexer(new DbClient(db.database(), db.myBatis(), new PropertiesDao(db.myBatis())), es.client());
   }
 
   @Test
@@ -85,9 +86,11 @@ public class SourceLineIndexerTest {
   @Test
   public void update_already_indexed_lines() throws Exception {
     prepareIndex()
+      .setId("efgh_2").setRouting("abcd")
       .setSource(IOUtils.toString(new FileInputStream(TestUtils.getResource(this.getClass(), "line2.json"))))
       .get();
     prepareIndex()
+      .setId("fdsq_2").setRouting("abcd")
       .setSource(IOUtils.toString(new FileInputStream(TestUtils.getResource(this.getClass(), "line2_other_file.json"))))
       .setRefresh(true)
       .get();
@@ -128,6 +131,30 @@ public class SourceLineIndexerTest {
       );
   }
 
+  @Test
+  public void delete_stale_lines_of_reindexed_file() throws Exception {
+    indexer.index(Iterators.singletonIterator(newFile("efgh", "HASH_1", 3)));
+    assertThat(countDocuments()).isEqualTo(3L);
+
+    indexer.index(Iterators.singletonIterator(newFile("efgh", "HASH_2", 1)));
+
+    List<SearchHit> hits = getDocuments();
+    assertThat(hits).hasSize(1);
+    assertThat(hits.get(0).getId()).isEqualTo("efgh_1");
+    assertThat(hits.get(0).getSource().get(FIELD_DATA_HASH)).isEqualTo("HASH_2");
+  }
+
+  @Test
+  public void do_not_reindex_unchanged_file() throws Exception {
+    indexer.index(Iterators.singletonIterator(newFile("efgh", "HASH_1", 2)));
+    long version = es.client().prepareGet(INDEX, TYPE, "efgh_1").setRouting("abcd").get().getVersion();
+
+    indexer.index(Iterators.singletonIterator(newFile("efgh", "HASH_1", 2)));
+
+    assertThat(countDocuments()).isEqualTo(2L);
+    assertThat(es.client().prepareGet(INDEX, TYPE, "efgh_1").setRouting("abcd").get().getVersion()).isEqualTo(version);
+  }
+
   @Test
   public void delete_file_uuid() throws Exception {
     addSource("line2.json");
@@ -195,6 +222,20 @@ public class SourceLineIndexerTest {
     assertThat(document.get(FIELD_OVERALL_COVERED_CONDITIONS)).isEqualTo(bigValue);
   }
 
+  private SourceLineResultSetIterator.SourceFile newFile(String fileUuid, String dataHash, int lines) {
+    SourceLineResultSetIterator.SourceFile file = new SourceLineResultSetIterator.SourceFile("abcd", fileUuid, System.currentTimeMillis(), dataHash);
+    for (int line = 1; line <= lines; line++) {
+      file.addLine(new SourceLineDoc()
+        .setProjectUuid("abcd")
+        .setFileUuid(fileUuid)
+        .setLine(line)
+        .setSource("line " + line)
+        .setDataHash(dataHash)
+        .setUpdateDate(new Date()));
+    }
+    return file;
+  }
+
   private void addSource(String fileName) throws Exception {
     prepareIndex()
       .setSource(IOUtils.toString(new FileInputStream(TestUtils.getResource(this.getClass(), fileName))))
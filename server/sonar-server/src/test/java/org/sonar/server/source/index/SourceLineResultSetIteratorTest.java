@@ -64,6 +64,8 @@ public class SourceLineResultSetIteratorTest {
     assertThat(iterator.hasNext()).isTrue();
     SourceLineResultSetIterator.SourceFile file = iterator.next();
     assertThat(file.getLines()).hasSize(3);
+    assertThat(file.getProjectUuid()).isEqualTo("PROJECT_UUID");
+    assertThat(file.getDataHash()).isEqualTo("");
     SourceLineDoc firstLine = file.getLines().get(0);
     assertThat(firstLine.projectUuid()).isEqualTo("PROJECT_UUID");
     assertThat(firstLine.fileUuid()).isEqualTo("FILE_UUID");
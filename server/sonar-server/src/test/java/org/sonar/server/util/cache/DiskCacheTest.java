@@ -25,6 +25,8 @@ import org.junit.rules.TemporaryFolder;
 import org.sonar.api.utils.System2;
 import org.sonar.server.util.CloseableIterator;
 
+import java.io.DataInput;
+import java.io.DataOutput;
 import java.io.IOException;
 import java.io.ObjectOutputStream;
 import java.io.Serializable;
@@ -53,6 +55,28 @@ public class DiskCacheTest {
     }
   }
 
+  @Test
+  public void write_and_read_with_custom_codec() throws Exception {
+    DiskCache<Integer> cache = new DiskCache<>(temp.newFile(), System2.INSTANCE, new Codec<Integer>() {
+      @Override
+      public void write(Integer object, DataOutput output) throws IOException {
+        output.writeInt(object);
+      }
+
+      @Override
+      public Integer read(DataInput input) throws IOException {
+        return input.readInt();
+      }
+    });
+
+    cache.newAppender().append(1).append(2).close();
+    // appenders can be opened multiple times
+    cache.newAppender().append(3).close();
+    try (CloseableIterator<Integer> traverse = cache.traverse()) {
+      assertThat(traverse).containsExactly(1, 2, 3);
+    }
+  }
+
   @Test
   public void fail_if_file_is_not_writable() throws Exception {
     try {
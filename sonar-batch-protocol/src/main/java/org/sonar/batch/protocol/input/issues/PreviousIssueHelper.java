@@ -26,14 +26,13 @@ import org.sonar.batch.protocol.GsonHelper;
 
 import javax.annotation.Nullable;
 
-import java.io.Closeable;
 import java.io.IOException;
 import java.io.Reader;
 import java.io.Writer;
 import java.util.Iterator;
 import java.util.NoSuchElementException;
 
-public class PreviousIssueHelper implements Closeable {
+public class PreviousIssueHelper implements PreviousIssueWriter {
 
   private final Gson gson = GsonHelper.create();
   JsonWriter writer;
@@ -56,6 +55,7 @@ public class PreviousIssueHelper implements Closeable {
     T apply(@Nullable F from);
   }
 
+  @Override
   public <G> void addIssue(G issue, Function<G, PreviousIssue> converter) {
     gson.toJson(converter.apply(issue), PreviousIssue.class, writer);
   }
@@ -0,0 +1,183 @@
+/*
+ * SonarQube, open source software quality management tool.
+ * Copyright (C) 2008-2014 SonarSource
+ * mailto:contact AT sonarsource DOT com
+ *
+ * SonarQube is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * SonarQube is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+ */
+package org.sonar.batch.protocol.input.issues;
+
+import org.sonar.batch.protocol.input.BatchInput;
+
+import javax.annotation.CheckForNull;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.Date;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+
+/**
+ * Binary counterpart of {@link PreviousIssueHelper}. The stream is a sequence of length-delimited
+ * {@link BatchInput.ServerIssue} messages, see batch_input.proto.
+ * @since 5.1
+ */
+public class PreviousIssueProtobufHelper implements PreviousIssueWriter {
+
+  private final OutputStream output;
+  private final BatchInput.ServerIssue.Builder builder = BatchInput.ServerIssue.newBuilder();
+
+  private PreviousIssueProtobufHelper(OutputStream output) {
+    this.output = output;
+  }
+
+  public static PreviousIssueProtobufHelper create(OutputStream out) {
+    return new PreviousIssueProtobufHelper(out);
+  }
+
+  @Override
+  public <G> void addIssue(G issue, PreviousIssueHelper.Function<G, PreviousIssue> converter) {
+    try {
+      toMessage(converter.apply(issue)).writeDelimitedTo(output);
+    } catch (IOException e) {
+      throw new IllegalStateException("Unable to write issue", e);
+    }
+  }
+
+  private BatchInput.ServerIssue toMessage(PreviousIssue issue) {
+    builder.clear();
+    if (issue.key() != null) {
+      builder.setKey(issue.key());
+    }
+    if (issue.componentKey() != null) {
+      builder.setComponentKey(issue.componentKey());
+    }
+    if (issue.ruleRepo() != null) {
+      builder.setRuleRepository(issue.ruleRepo());
+    }
+    if (issue.ruleKey() != null) {
+      builder.setRuleKey(issue.ruleKey());
+    }
+    if (issue.line() != null) {
+      builder.setLine(issue.line());
+    }
+    if (issue.message() != null) {
+      builder.setMsg(issue.message());
+    }
+    if (issue.severity() != null) {
+      builder.setSeverity(issue.severity());
+    }
+    builder.setManualSeverity(issue.isManualSeverity());
+    if (issue.resolution() != null) {
+      builder.setResolution(issue.resolution());
+    }
+    if (issue.status() != null) {
+      builder.setStatus(issue.status());
+    }
+    if (issue.checksum() != null) {
+      builder.setChecksum(issue.checksum());
+    }
+    if (issue.assigneeLogin() != null) {
+      builder.setAssigneeLogin(issue.assigneeLogin());
+    }
+    if (issue.creationDate() != null) {
+      builder.setCreationDate(issue.creationDate().getTime());
+    }
+    return builder.build();
+  }
+
+  @Override
+  public void close() {
+    try {
+      output.close();
+    } catch (IOException e) {
+      throw new IllegalStateException("Unable to close write", e);
+    }
+  }
+
+  public static Iterable<PreviousIssue> getIssues(final InputStream input) {
+
+    return new Iterable<PreviousIssue>() {
+      @Override
+      public Iterator<PreviousIssue> iterator() {
+        return new PreviousIssueIterator(input);
+      }
+    };
+  }
+
+  private static final class PreviousIssueIterator implements Iterator<PreviousIssue> {
+
+    private final InputStream input;
+    private BatchInput.ServerIssue nextMessage;
+
+    public PreviousIssueIterator(InputStream input) {
+      this.input = input;
+    }
+
+    @Override
+    public boolean hasNext() {
+      if (nextMessage == null) {
+        nextMessage = parseNext();
+      }
+      return nextMessage != null;
+    }
+
+    @CheckForNull
+    private BatchInput.ServerIssue parseNext() {
+      try {
+        // null at the end of the stream
+        return BatchInput.ServerIssue.PARSER.parseDelimitedFrom(input);
+      } catch (IOException e) {
+        throw new IllegalStateException("Unable to iterate over issues", e);
+      }
+    }
+
+    @Override
+    public PreviousIssue next() {
+      if (!hasNext()) {
+        throw new NoSuchElementException();
+      }
+      PreviousIssue issue = toIssue(nextMessage);
+      nextMessage = null;
+      return issue;
+    }
+
+    private static PreviousIssue toIssue(BatchInput.ServerIssue message) {
+      PreviousIssue issue = new PreviousIssue()
+        .setKey(message.hasKey() ? message.getKey() : null)
+        .setComponentKey(message.hasComponentKey() ? message.getComponentKey() : null)
+        .setRuleKey(message.hasRuleRepository() ? message.getRuleRepository() : null, message.hasRuleKey() ? message.getRuleKey() : null)
+        .setLine(message.hasLine() ? message.getLine() : null)
+        .setMessage(message.hasMsg() ? message.getMsg() : null)
+        .setSeverity(message.hasSeverity() ? message.getSeverity() : null)
+        .setManualSeverity(message.getManualSeverity())
+        .setResolution(message.hasResolution() ? message.getResolution() : null)
+        .setStatus(message.hasStatus() ? message.getStatus() : null)
+        .setChecksum(message.hasChecksum() ? message.getChecksum() : null)
+        .setAssigneeLogin(message.hasAssigneeLogin() ? message.getAssigneeLogin() : null);
+      if (message.hasCreationDate()) {
+        issue.setCreationDate(new Date(message.getCreationDate()));
+      }
+      return issue;
+    }
+
+    @Override
+    public void remove() {
+      throw new UnsupportedOperationException("remove");
+    }
+  }
+
+}
@@ -19,44 +19,140 @@
  */
 package org.sonar.batch.protocol.output;
 
-import org.sonar.batch.protocol.ProtobufUtil;
+import com.google.protobuf.InvalidProtocolBufferException;
+import com.google.protobuf.Parser;
+import org.apache.commons.io.IOUtils;
 
 import javax.annotation.CheckForNull;
+
+import java.io.ByteArrayInputStream;
+import java.io.Closeable;
+import java.io.EOFException;
 import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.Arrays;
 import java.util.Collections;
+import java.util.zip.InflaterInputStream;
+
+/**
+ * Reads the analysis report written by {@link BatchOutputWriter}. Only the index of segments is loaded
+ * in memory, segments are read from their offset when requested, so the report file does not need
+ * to be extracted. Methods can be called concurrently.
+ */
+public class BatchOutputReader implements Closeable {
 
-public class BatchOutputReader {
+  private final File file;
+  private final RandomAccessFile randomAccessFile;
+  private final FileChannel channel;
 
-  private final FileStructure fileStructure;
+  /**
+   * Index of segments, sorted by key by the writer
+   */
+  private final long[] keys;
+  private final long[] offsets;
+  private final int[] lengths;
 
-  public BatchOutputReader(File dir) {
-    this.fileStructure = new FileStructure(dir);
+  public BatchOutputReader(File file) {
+    if (!file.exists() || !file.isFile()) {
+      throw new IllegalArgumentException("Analysis report does not exist: " + file);
+    }
+    this.file = file;
+    try {
+      this.randomAccessFile = new RandomAccessFile(file, "r");
+    } catch (IOException e) {
+      throw new IllegalStateException("Unable to open analysis report " + file, e);
+    }
+    this.channel = randomAccessFile.getChannel();
+    try {
+      ByteBuffer header = read(0L, FileStructure.HEADER_SIZE);
+      byte[] magic = new byte[FileStructure.MAGIC.length];
+      header.get(magic);
+      if (!FileStructure.isMagic(magic) || header.getInt() != FileStructure.VERSION) {
+        throw new IllegalStateException("Not a valid analysis report: " + file);
+      }
+
+      ByteBuffer trailer = read(channel.size() - FileStructure.TRAILER_SIZE, FileStructure.TRAILER_SIZE);
+      long indexOffset = trailer.getLong();
+      trailer.get(magic);
+      if (!FileStructure.isMagic(magic)) {
+        throw new IllegalStateException("Analysis report is incomplete: " + file);
+      }
+
+      int count = read(indexOffset, 4).getInt();
+      ByteBuffer index = read(indexOffset + 4, count * FileStructure.INDEX_ENTRY_SIZE);
+      keys = new long[count];
+      offsets = new long[count];
+      lengths = new int[count];
+      for (int i = 0; i < count; i++) {
+        keys[i] = FileStructure.key(index.get(), index.getInt());
+        offsets[i] = index.getLong();
+        lengths[i] = index.getInt();
+      }
+    } catch (IOException | RuntimeException e) {
+      IOUtils.closeQuietly(randomAccessFile);
+      throw e instanceof IllegalStateException ? (IllegalStateException) e : new IllegalStateException("Unable to read analysis report " + file, e);
+    }
   }
 
   public BatchReport.Metadata readMetadata() {
-    File file = fileStructure.metadataFile();
-    if (!file.exists() || !file.isFile()) {
-      throw new IllegalStateException("Metadata file is missing in analysis report: " + file);
+    BatchReport.Metadata metadata = readSegment(FileStructure.Domain.METADATA, FileStructure.METADATA_REF, BatchReport.Metadata.PARSER);
+    if (metadata == null) {
+      throw new IllegalStateException("Metadata is missing in analysis report: " + file);
     }
-    return ProtobufUtil.readFile(file, BatchReport.Metadata.PARSER);
+    return metadata;
   }
 
   @CheckForNull
   public BatchReport.Component readComponent(int componentRef) {
-    File file = fileStructure.fileFor(FileStructure.Domain.COMPONENT, componentRef);
-    if (file.exists() && file.isFile()) {
-      return ProtobufUtil.readFile(file, BatchReport.Component.PARSER);
-    }
-    return null;
+    return readSegment(FileStructure.Domain.COMPONENT, componentRef, BatchReport.Component.PARSER);
   }
 
   public Iterable<BatchReport.Issue> readComponentIssues(int componentRef) {
-    File file = fileStructure.fileFor(FileStructure.Domain.ISSUES, componentRef);
-    if (file.exists() && file.isFile()) {
-      // all the issues are loaded in memory
-      BatchReport.Issues issues = ProtobufUtil.readFile(file, BatchReport.Issues.PARSER);
-      return issues.getListList();
+    // all the issues of the component are loaded in memory
+    BatchReport.Issues issues = readSegment(FileStructure.Domain.ISSUES, componentRef, BatchReport.Issues.PARSER);
+    if (issues == null) {
+      return Collections.emptyList();
     }
-    return Collections.emptyList();
+    return issues.getListList();
+  }
+
+  @CheckForNull
+  private <T> T readSegment(FileStructure.Domain domain, int componentRef, Parser<T> parser) {
+    int index = Arrays.binarySearch(keys, FileStructure.key(domain, componentRef));
+    if (index < 0) {
+      return null;
+    }
+    try {
+      ByteBuffer segment = read(offsets[index], lengths[index]);
+      InputStream input = new InflaterInputStream(new ByteArrayInputStream(segment.array(), 0, lengths[index]));
+      return parser.parseFrom(input);
+    } catch (InvalidProtocolBufferException e) {
+      throw new IllegalStateException("Invalid data of component " + componentRef + " in analysis report " + file, e);
+    } catch (IOException e) {
+      throw new IllegalStateException("Unable to read analysis report " + file, e);
+    }
+  }
+
+  /**
+   * Positional read, which does not change the position of the channel and so is thread-safe
+   */
+  private ByteBuffer read(long offset, int length) throws IOException {
+    ByteBuffer buffer = ByteBuffer.allocate(length);
+    while (buffer.hasRemaining()) {
+      if (channel.read(buffer, offset + buffer.position()) < 0) {
+        throw new EOFException("Unexpected end of analysis report " + file);
+      }
+    }
+    buffer.flip();
+    return buffer;
+  }
+
+  @Override
+  public void close() {
+    IOUtils.closeQuietly(randomAccessFile);
   }
 }
@@ -19,47 +19,123 @@
  */
 package org.sonar.batch.protocol.output;
 
-import org.sonar.batch.protocol.ProtobufUtil;
+import com.google.protobuf.Message;
+import org.apache.commons.io.IOUtils;
 
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.Closeable;
+import java.io.DataOutputStream;
 import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.zip.Deflater;
+import java.util.zip.DeflaterOutputStream;
 
-public class BatchOutputWriter {
+/**
+ * Writes the analysis report into a single file, see {@link FileStructure}. The report is complete
+ * only when the writer is closed.
+ */
+public class BatchOutputWriter implements Closeable {
 
-  private final FileStructure fileStructure;
+  private final File file;
+  private final DataOutputStream output;
+  private final Deflater deflater = new Deflater();
+  private final ByteArrayOutputStream buffer = new ByteArrayOutputStream();
 
-  public BatchOutputWriter(File dir) {
-    if (!dir.exists() && !dir.mkdirs()) {
+  /**
+   * Offset and length of segments, sorted by key. When the data of a component is written twice, the
+   * latest segment is indexed.
+   */
+  private final Map<Long, long[]> segments = new TreeMap<>();
+  private long position = 0L;
+  private boolean closed = false;
+
+  public BatchOutputWriter(File file) {
+    File dir = file.getParentFile();
+    if (dir != null && !dir.exists() && !dir.mkdirs()) {
       throw new IllegalStateException("Unable to create directory: " + dir);
     }
-    this.fileStructure = new FileStructure(dir);
-  }
-
-  FileStructure getFileStructure() {
-    return fileStructure;
+    this.file = file;
+    try {
+      this.output = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(file, false)));
+      output.write(FileStructure.MAGIC);
+      output.writeInt(FileStructure.VERSION);
+      position = FileStructure.HEADER_SIZE;
+    } catch (IOException e) {
+      throw new IllegalStateException("Unable to create analysis report " + file, e);
+    }
   }
 
   public boolean hasComponentData(FileStructure.Domain domain, int componentRef) {
-    File file = fileStructure.fileFor(domain, componentRef);
-    return file.exists() && file.isFile();
+    return segments.containsKey(FileStructure.key(domain, componentRef));
   }
 
   /**
    * Metadata is mandatory
    */
   public void writeMetadata(BatchReport.Metadata metadata) {
-    ProtobufUtil.writeToFile(metadata, fileStructure.metadataFile());
+    writeSegment(FileStructure.Domain.METADATA, FileStructure.METADATA_REF, metadata);
   }
 
   public void writeComponent(BatchReport.Component component) {
-    File file = fileStructure.fileFor(FileStructure.Domain.COMPONENT, component.getRef());
-    ProtobufUtil.writeToFile(component, file);
+    writeSegment(FileStructure.Domain.COMPONENT, component.getRef(), component);
   }
 
   public void writeComponentIssues(int componentRef, Iterable<BatchReport.Issue> issues) {
     BatchReport.Issues.Builder issuesBuilder = BatchReport.Issues.newBuilder();
     issuesBuilder.setComponentRef(componentRef);
     issuesBuilder.addAllList(issues);
-    File file = fileStructure.fileFor(FileStructure.Domain.ISSUES, componentRef);
-    ProtobufUtil.writeToFile(issuesBuilder.build(), file);
+    writeSegment(FileStructure.Domain.ISSUES, componentRef, issuesBuilder.build());
+  }
+
+  private void writeSegment(FileStructure.Domain domain, int componentRef, Message message) {
+    if (closed) {
+      throw new IllegalStateException("Analysis report is already closed: " + file);
+    }
+    try {
+      buffer.reset();
+      deflater.reset();
+      DeflaterOutputStream deflaterOutput = new DeflaterOutputStream(buffer, deflater);
+      message.writeTo(deflaterOutput);
+      deflaterOutput.finish();
+
+      buffer.writeTo(output);
+      segments.put(FileStructure.key(domain, componentRef), new long[] {position, buffer.size()});
+      position += buffer.size();
+    } catch (IOException e) {
+      throw new IllegalStateException("Unable to write analysis report " + file, e);
+    }
+  }
+
+  /**
+   * Appends the index of segments
+   */
+  @Override
+  public void close() {
+    if (closed) {
+      return;
+    }
+    closed = true;
+    try {
+      output.writeInt(segments.size());
+      for (Map.Entry<Long, long[]> entry : segments.entrySet()) {
+        long key = entry.getKey();
+        output.writeByte((int) (key >>> 32));
+        output.writeInt((int) key);
+        output.writeLong(entry.getValue()[0]);
+        output.writeInt((int) entry.getValue()[1]);
+      }
+      output.writeLong(position);
+      output.write(FileStructure.MAGIC);
+      output.close();
+    } catch (IOException e) {
+      throw new IllegalStateException("Unable to write analysis report " + file, e);
+    } finally {
+      IOUtils.closeQuietly(output);
+      deflater.end();
+    }
   }
 }
@@ -19,38 +19,61 @@
  */
 package org.sonar.batch.protocol.output;
 
-import java.io.File;
+import java.util.Arrays;
 
 /**
- * Structure of files in the zipped report
+ * Structure of the analysis report, which is a single file. It is written sequentially, the index of segments
+ * being appended at the end, and segments are read directly from their offset, without extracting the file.
+ * <pre>
+ * header   : magic number (4 bytes), version (int)
+ * segments : deflated protobuf messages, one per domain and component
+ * index    : number of segments (int), then for each segment sorted by domain and ref: domain (byte), component ref (int), offset (long), length (int)
+ * trailer  : offset of index (long), magic number (4 bytes)
+ * </pre>
  */
 public class FileStructure {
 
   public static enum Domain {
-    ISSUES("issues-"), COMPONENT("component-");
+    METADATA((byte) 0), ISSUES((byte) 1), COMPONENT((byte) 2);
 
-    private final String filePrefix;
+    private final byte code;
 
-    Domain(String filePrefix) {
-      this.filePrefix = filePrefix;
+    Domain(byte code) {
+      this.code = code;
+    }
+
+    byte code() {
+      return code;
     }
   }
 
-  private final File dir;
+  static final byte[] MAGIC = {'S', 'Q', 'R', 'P'};
+  static final int VERSION = 1;
+  static final int HEADER_SIZE = MAGIC.length + 4;
+  static final int TRAILER_SIZE = 8 + MAGIC.length;
+  static final int INDEX_ENTRY_SIZE = 1 + 4 + 8 + 4;
 
-  FileStructure(File dir) {
-    if (!dir.exists() || !dir.isDirectory()) {
-      throw new IllegalArgumentException("Directory of analysis report does not exist: " + dir);
-    }
-    this.dir = dir;
+  /**
+   * Ref of the metadata segment, which is not related to a component
+   */
+  static final int METADATA_REF = 0;
+
+  private FileStructure() {
+    // only static stuff
   }
 
-  public File metadataFile() {
-    return new File(dir, "metadata.pb");
+  /**
+   * Key of segment in index, ordered by domain then by component ref
+   */
+  static long key(byte domainCode, int componentRef) {
+    return ((long) domainCode << 32) | (componentRef & 0xFFFFFFFFL);
   }
 
-  public File fileFor(Domain domain, int componentRef) {
-    return new File(dir, domain.filePrefix + componentRef + ".pb");
+  static long key(Domain domain, int componentRef) {
+    return key(domain.code(), componentRef);
   }
 
+  static boolean isMagic(byte[] bytes) {
+    return Arrays.equals(MAGIC, bytes);
+  }
 }
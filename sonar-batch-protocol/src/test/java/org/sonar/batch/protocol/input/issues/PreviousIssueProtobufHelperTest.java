@@ -0,0 +1,120 @@
+/*
+ * SonarQube, open source software quality management tool.
+ * Copyright (C) 2008-2014 SonarSource
+ * mailto:contact AT sonarsource DOT com
+ *
+ * SonarQube is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * SonarQube is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+ */
+package org.sonar.batch.protocol.input.issues;
+
+import org.junit.Test;
+import org.sonar.batch.protocol.input.BatchInput;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.util.Date;
+import java.util.Iterator;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+public class PreviousIssueProtobufHelperTest {
+
+  @Test
+  public void write_and_read_issues() {
+    ByteArrayOutputStream out = new ByteArrayOutputStream();
+    PreviousIssueProtobufHelper helper = PreviousIssueProtobufHelper.create(out);
+
+    PreviousIssue issue1 = new PreviousIssue();
+    issue1.setKey("key1");
+    issue1.setComponentKey("key");
+    issue1.setRuleKey("repokey", "rulekey");
+    issue1.setLine(2);
+    issue1.setMessage("message with accents: \u00e9\u00e0");
+    issue1.setSeverity("severity");
+    issue1.setManualSeverity(true);
+    issue1.setResolution("resolution");
+    issue1.setStatus("status");
+    issue1.setChecksum("checksum");
+    issue1.setAssigneeLogin("login");
+    issue1.setCreationDate(new Date(1400000000000L));
+    PreviousIssue issue2 = new PreviousIssue();
+    issue2.setKey("key2");
+
+    PreviousIssueFunction previousIssueFunction = new PreviousIssueFunction();
+    helper.addIssue(issue1, previousIssueFunction);
+    helper.addIssue(issue2, previousIssueFunction);
+    helper.close();
+
+    Iterator<PreviousIssue> iterator = PreviousIssueProtobufHelper.getIssues(new ByteArrayInputStream(out.toByteArray())).iterator();
+    assertThat(iterator.hasNext()).isTrue();
+    PreviousIssue read1 = iterator.next();
+    assertThat(iterator.hasNext()).isTrue();
+    PreviousIssue read2 = iterator.next();
+    assertThat(iterator.hasNext()).isFalse();
+
+    assertThat(read1.key()).isEqualTo("key1");
+    assertThat(read1.componentKey()).isEqualTo("key");
+    assertThat(read1.ruleRepo()).isEqualTo("repokey");
+    assertThat(read1.ruleKey()).isEqualTo("rulekey");
+    assertThat(read1.line()).isEqualTo(2);
+    assertThat(read1.message()).isEqualTo("message with accents: \u00e9\u00e0");
+    assertThat(read1.severity()).isEqualTo("severity");
+    assertThat(read1.isManualSeverity()).isTrue();
+    assertThat(read1.resolution()).isEqualTo("resolution");
+    assertThat(read1.status()).isEqualTo("status");
+    assertThat(read1.checksum()).isEqualTo("checksum");
+    assertThat(read1.assigneeLogin()).isEqualTo("login");
+    assertThat(read1.creationDate()).isEqualTo(new Date(1400000000000L));
+
+    assertThat(read2.key()).isEqualTo("key2");
+    assertThat(read2.componentKey()).isNull();
+    assertThat(read2.line()).isNull();
+    assertThat(read2.isManualSeverity()).isFalse();
+    assertThat(read2.creationDate()).isNull();
+  }
+
+  @Test
+  public void read_empty_stream() {
+    ByteArrayOutputStream out = new ByteArrayOutputStream();
+    PreviousIssueProtobufHelper.create(out).close();
+
+    Iterator<PreviousIssue> iterator = PreviousIssueProtobufHelper.getIssues(new ByteArrayInputStream(out.toByteArray())).iterator();
+    assertThat(iterator.hasNext()).isFalse();
+  }
+
+  @Test
+  public void read_messages_of_generated_classes() throws IOException {
+    ByteArrayOutputStream out = new ByteArrayOutputStream();
+    BatchInput.ServerIssue.newBuilder().setKey("key1").setRuleRepository("repokey").setRuleKey("rulekey").setLine(3).build().writeDelimitedTo(out);
+    BatchInput.ServerIssue.newBuilder().setKey("key2").build().writeDelimitedTo(out);
+
+    Iterator<PreviousIssue> iterator = PreviousIssueProtobufHelper.getIssues(new ByteArrayInputStream(out.toByteArray())).iterator();
+    PreviousIssue read1 = iterator.next();
+    assertThat(read1.key()).isEqualTo("key1");
+    assertThat(read1.ruleRepo()).isEqualTo("repokey");
+    assertThat(read1.ruleKey()).isEqualTo("rulekey");
+    assertThat(read1.line()).isEqualTo(3);
+    assertThat(iterator.next().key()).isEqualTo("key2");
+    assertThat(iterator.hasNext()).isFalse();
+  }
+
+  private static class PreviousIssueFunction implements PreviousIssueHelper.Function<PreviousIssue, PreviousIssue> {
+    @Override
+    public PreviousIssue apply(PreviousIssue from) {
+      return from;
+    }
+  }
+}
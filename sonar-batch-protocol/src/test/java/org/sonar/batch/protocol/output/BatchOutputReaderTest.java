@@ -19,14 +19,17 @@
  */
 package org.sonar.batch.protocol.output;
 
+import org.apache.commons.io.FileUtils;
 import org.junit.Rule;
 import org.junit.Test;
 import org.junit.rules.TemporaryFolder;
 
 import java.io.File;
+import java.io.RandomAccessFile;
 import java.util.Arrays;
 
 import static org.assertj.core.api.Assertions.assertThat;
+import static org.junit.Assert.fail;
 
 public class BatchOutputReaderTest {
 
@@ -34,22 +37,77 @@ public class BatchOutputReaderTest {
   public TemporaryFolder temp = new TemporaryFolder();
 
   @Test
-  public void create_dir_if_does_not_exist() throws Exception {
-    File dir = temp.newFolder();
+  public void read_report() throws Exception {
+    File file = temp.newFile();
 
-    initFiles(dir);
+    initFile(file);
 
-    BatchOutputReader reader = new BatchOutputReader(dir);
+    BatchOutputReader reader = new BatchOutputReader(file);
     assertThat(reader.readMetadata().getAnalysisDate()).isEqualTo(15000000L);
     assertThat(reader.readComponentIssues(1)).hasSize(1);
     assertThat(reader.readComponentIssues(200)).isEmpty();
     assertThat(reader.readComponent(1).getUuid()).isEqualTo("UUID_A");
     assertThat(reader.readComponent(200)).isNull();
+    reader.close();
+  }
+
+  @Test
+  public void fail_if_file_does_not_exist() throws Exception {
+    File file = temp.newFile();
+    FileUtils.deleteQuietly(file);
+    try {
+      new BatchOutputReader(file);
+      fail();
+    } catch (IllegalArgumentException e) {
+      assertThat(e).hasMessageContaining("Analysis report does not exist");
+    }
+  }
 
+  @Test
+  public void fail_if_not_a_report() throws Exception {
+    File file = temp.newFile();
+    FileUtils.write(file, "not a report, but long enough to have header and trailer");
+    try {
+      new BatchOutputReader(file);
+      fail();
+    } catch (IllegalStateException e) {
+      assertThat(e).hasMessageContaining("Not a valid analysis report");
+    }
   }
 
-  private void initFiles(File dir) {
-    BatchOutputWriter writer = new BatchOutputWriter(dir);
+  @Test
+  public void fail_if_report_is_truncated() throws Exception {
+    File file = temp.newFile();
+    initFile(file);
+    RandomAccessFile randomAccessFile = new RandomAccessFile(file, "rw");
+    randomAccessFile.setLength(randomAccessFile.length() - 1);
+    randomAccessFile.close();
+    try {
+      new BatchOutputReader(file);
+      fail();
+    } catch (IllegalStateException e) {
+      assertThat(e).hasMessageContaining("Analysis report is incomplete");
+    }
+  }
+
+  @Test
+  public void fail_if_metadata_is_missing() throws Exception {
+    File file = temp.newFile();
+    new BatchOutputWriter(file).close();
+
+    BatchOutputReader reader = new BatchOutputReader(file);
+    try {
+      reader.readMetadata();
+      fail();
+    } catch (IllegalStateException e) {
+      assertThat(e).hasMessageContaining("Metadata is missing in analysis report");
+    } finally {
+      reader.close();
+    }
+  }
+
+  private void initFile(File file) {
+    BatchOutputWriter writer = new BatchOutputWriter(file);
 
     BatchReport.Metadata.Builder metadata = BatchReport.Metadata.newBuilder()
       .setAnalysisDate(15000000L)
@@ -68,10 +126,6 @@ public class BatchOutputReaderTest {
       .build();
 
     writer.writeComponentIssues(1, Arrays.asList(issue));
-  }
-
-  @Test
-  public void readMetadata() throws Exception {
-
+    writer.close();
   }
 }
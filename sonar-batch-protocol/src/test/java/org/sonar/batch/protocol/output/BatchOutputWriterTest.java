@@ -24,7 +24,6 @@ import org.junit.Rule;
 import org.junit.Test;
 import org.junit.rules.TemporaryFolder;
 import org.sonar.batch.protocol.Constants;
-import org.sonar.batch.protocol.ProtobufUtil;
 
 import java.io.File;
 import java.util.Arrays;
@@ -41,22 +40,24 @@ public class BatchOutputWriterTest {
     File dir = temp.newFolder();
     FileUtils.deleteQuietly(dir);
 
-    new BatchOutputWriter(dir);
+    new BatchOutputWriter(new File(dir, "report.pb")).close();
 
     assertThat(dir).isDirectory().exists();
+    assertThat(new File(dir, "report.pb")).isFile().exists();
   }
 
   @Test
   public void write_metadata() throws Exception {
-    File dir = temp.newFolder();
-    BatchOutputWriter writer = new BatchOutputWriter(dir);
+    File file = temp.newFile();
+    BatchOutputWriter writer = new BatchOutputWriter(file);
     BatchReport.Metadata.Builder metadata = BatchReport.Metadata.newBuilder()
       .setAnalysisDate(15000000L)
       .setProjectKey("PROJECT_A")
       .setRootComponentRef(1);
     writer.writeMetadata(metadata.build());
+    writer.close();
 
-    BatchReport.Metadata read = ProtobufUtil.readFile(writer.getFileStructure().metadataFile(), BatchReport.Metadata.PARSER);
+    BatchReport.Metadata read = new BatchOutputReader(file).readMetadata();
     assertThat(read.getAnalysisDate()).isEqualTo(15000000L);
     assertThat(read.getProjectKey()).isEqualTo("PROJECT_A");
     assertThat(read.getRootComponentRef()).isEqualTo(1);
@@ -64,8 +65,8 @@ public class BatchOutputWriterTest {
 
   @Test
   public void write_component() throws Exception {
-    File dir = temp.newFolder();
-    BatchOutputWriter writer = new BatchOutputWriter(dir);
+    File file = temp.newFile();
+    BatchOutputWriter writer = new BatchOutputWriter(file);
 
     // no data yet
     assertThat(writer.hasComponentData(FileStructure.Domain.COMPONENT, 1)).isFalse();
@@ -81,11 +82,10 @@ public class BatchOutputWriterTest {
       .addChildRefs(5)
       .addChildRefs(42);
     writer.writeComponent(component.build());
+    writer.close();
 
     assertThat(writer.hasComponentData(FileStructure.Domain.COMPONENT, 1)).isTrue();
-    File file = writer.getFileStructure().fileFor(FileStructure.Domain.COMPONENT, 1);
-    assertThat(file).exists().isFile();
-    BatchReport.Component read = ProtobufUtil.readFile(file, BatchReport.Component.PARSER);
+    BatchReport.Component read = new BatchOutputReader(file).readComponent(1);
     assertThat(read.getRef()).isEqualTo(1);
     assertThat(read.getChildRefsList()).containsOnly(5, 42);
     assertThat(read.hasName()).isFalse();
@@ -95,8 +95,8 @@ public class BatchOutputWriterTest {
 
   @Test
   public void write_issues() throws Exception {
-    File dir = temp.newFolder();
-    BatchOutputWriter writer = new BatchOutputWriter(dir);
+    File file = temp.newFile();
+    BatchOutputWriter writer = new BatchOutputWriter(file);
 
     // no data yet
     assertThat(writer.hasComponentData(FileStructure.Domain.ISSUES, 1)).isFalse();
@@ -109,12 +109,20 @@ public class BatchOutputWriterTest {
       .build();
 
     writer.writeComponentIssues(1, Arrays.asList(issue));
+    writer.close();
 
     assertThat(writer.hasComponentData(FileStructure.Domain.ISSUES, 1)).isTrue();
-    File file = writer.getFileStructure().fileFor(FileStructure.Domain.ISSUES, 1);
-    assertThat(file).exists().isFile();
-    BatchReport.Issues read = ProtobufUtil.readFile(file, BatchReport.Issues.PARSER);
-    assertThat(read.getComponentRef()).isEqualTo(1);
-    assertThat(read.getListCount()).isEqualTo(1);
+    assertThat(writer.hasComponentData(FileStructure.Domain.COMPONENT, 1)).isFalse();
+    Iterable<BatchReport.Issue> read = new BatchOutputReader(file).readComponentIssues(1);
+    assertThat(read).hasSize(1);
+    assertThat(read.iterator().next().getMsg()).isEqualTo("the message");
+  }
+
+  @Test(expected = IllegalStateException.class)
+  public void fail_to_write_when_closed() throws Exception {
+    BatchOutputWriter writer = new BatchOutputWriter(temp.newFile());
+    writer.close();
+
+    writer.writeComponent(BatchReport.Component.newBuilder().setRef(1).build());
   }
 }
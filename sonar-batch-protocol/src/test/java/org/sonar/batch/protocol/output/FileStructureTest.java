@@ -19,56 +19,27 @@
  */
 package org.sonar.batch.protocol.output;
 
-import org.apache.commons.io.FileUtils;
-import org.junit.Rule;
 import org.junit.Test;
-import org.junit.rules.TemporaryFolder;
-
-import java.io.File;
 
 import static org.assertj.core.api.Assertions.assertThat;
-import static org.junit.Assert.fail;
 
 public class FileStructureTest {
 
-  @Rule
-  public TemporaryFolder temp = new TemporaryFolder();
-
-  @Test
-  public void fail_if_dir_does_not_exist() throws Exception {
-    File dir = temp.newFolder();
-    FileUtils.deleteQuietly(dir);
-    try {
-      new FileStructure(dir);
-      fail();
-    } catch (IllegalArgumentException e) {
-      assertThat(e).hasMessageContaining("Directory of analysis report does not exist");
-    }
-  }
-
   @Test
-  public void fail_if_invalid_dir() throws Exception {
-    // not a dir but a file
-    File dir = temp.newFile();
-    try {
-      new FileStructure(dir);
-      fail();
-    } catch (IllegalArgumentException e) {
-      assertThat(e).hasMessageContaining("Directory of analysis report does not exist");
-    }
+  public void keys_are_sorted_by_domain_then_by_ref() throws Exception {
+    long metadata = FileStructure.key(FileStructure.Domain.METADATA, FileStructure.METADATA_REF);
+    long issues1 = FileStructure.key(FileStructure.Domain.ISSUES, 1);
+    long issues42 = FileStructure.key(FileStructure.Domain.ISSUES, 42);
+    long component1 = FileStructure.key(FileStructure.Domain.COMPONENT, 1);
+
+    assertThat(metadata).isLessThan(issues1);
+    assertThat(issues1).isLessThan(issues42);
+    assertThat(issues42).isLessThan(component1);
   }
 
   @Test
-  public void locate_files() throws Exception {
-    File dir = temp.newFolder();
-    FileUtils.write(new File(dir, "metadata.pb"), "metadata content");
-    FileUtils.write(new File(dir, "issues-3.pb"), "issues of component 3");
-    FileUtils.write(new File(dir, "component-42.pb"), "details of component 42");
-
-    FileStructure structure = new FileStructure(dir);
-    assertThat(structure.metadataFile()).exists().isFile();
-    assertThat(structure.fileFor(FileStructure.Domain.COMPONENT, 42)).exists().isFile();
-    assertThat(structure.fileFor(FileStructure.Domain.ISSUES, 3)).exists().isFile();
-    assertThat(structure.fileFor(FileStructure.Domain.ISSUES, 42)).doesNotExist();
+  public void keys_are_distinct_by_domain() throws Exception {
+    assertThat(FileStructure.key(FileStructure.Domain.ISSUES, 3)).isNotEqualTo(FileStructure.key(FileStructure.Domain.COMPONENT, 3));
+    assertThat(FileStructure.key(FileStructure.Domain.ISSUES, 3)).isEqualTo(FileStructure.key(FileStructure.Domain.ISSUES, 3));
   }
 }
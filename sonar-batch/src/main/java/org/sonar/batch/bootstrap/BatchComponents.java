@@ -23,6 +23,7 @@ import com.google.common.collect.Lists;
 import org.sonar.batch.cpd.CpdComponents;
 import org.sonar.batch.design.DirectoryDsmDecorator;
 import org.sonar.batch.design.DirectoryTangleIndexDecorator;
+import org.sonar.batch.design.DsmCache;
 import org.sonar.batch.design.FileTangleIndexDecorator;
 import org.sonar.batch.design.MavenDependenciesSensor;
 import org.sonar.batch.design.ProjectDsmDecorator;
@@ -39,9 +40,11 @@ import org.sonar.batch.scan.report.RuleNameProvider;
 import org.sonar.batch.scan.report.SourceProvider;
 import org.sonar.batch.scan.sensor.ProjectLinksSensor;
 import org.sonar.batch.scan.sensor.VersionEventsSensor;
+import org.sonar.batch.scm.BlameCache;
 import org.sonar.batch.scm.ScmConfiguration;
 import org.sonar.batch.scm.ScmSensor;
 import org.sonar.batch.source.LinesSensor;
+import org.sonar.batch.util.LocalCaches;
 import org.sonar.core.computation.dbcleaner.DefaultPurgeTask;
 import org.sonar.core.computation.dbcleaner.period.DefaultPeriodCleaner;
 import org.sonar.core.config.CorePropertyDefinitions;
@@ -59,16 +62,20 @@ public class BatchComponents {
       // Maven
       MavenProjectBootstrapper.class, MavenProjectConverter.class, MavenProjectBuilder.class,
 
+      LocalCaches.class,
+
       // Design
       ProjectDsmDecorator.class,
       SubProjectDsmDecorator.class,
       DirectoryDsmDecorator.class,
+      DsmCache.class,
       DirectoryTangleIndexDecorator.class,
       FileTangleIndexDecorator.class,
 
       // SCM
       ScmConfiguration.class,
       ScmSensor.class,
+      BlameCache.class,
 
       LinesSensor.class,
       ProjectLinksSensor.class,
@@ -0,0 +1,196 @@
+/*
+ * SonarQube, open source software quality management tool.
+ * Copyright (C) 2008-2014 SonarSource
+ * mailto:contact AT sonarsource DOT com
+ *
+ * SonarQube is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * SonarQube is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+ */
+package org.sonar.batch.cpd;
+
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.sonar.api.batch.fs.InputFile;
+import org.sonar.api.batch.fs.internal.DeprecatedDefaultInputFile;
+import org.sonar.api.config.Settings;
+import org.sonar.api.utils.SonarException;
+import org.sonar.batch.cpd.index.SonarDuplicationsIndex;
+import org.sonar.duplications.block.Block;
+import org.sonar.duplications.index.CloneGroup;
+
+import javax.annotation.Nullable;
+
+import java.util.ArrayDeque;
+import java.util.Collection;
+import java.util.Deque;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+/**
+ * Detects clones of files on a pool of threads. The index must not be modified anymore, as it is queried concurrently.
+ * Blocks of other projects are loaded before detection starts.
+ * Results are handed to the {@link Callback} on the calling thread, in the order of the files, so that
+ * saved measures and duplications do not depend on the scheduling of threads.
+ */
+class CpdExecutor {
+
+  private static final Logger LOG = LoggerFactory.getLogger(CpdExecutor.class);
+
+  /**
+   * Number of threads used to detect duplications. Zero or negative value means one thread per processor.
+   */
+  static final String THREADS_KEY = "sonar.cpd.threads";
+
+  /**
+   * Limit of time to analyse one file (in seconds), from the start of its detection.
+   */
+  private static final int TIMEOUT = 5 * 60;
+
+  /**
+   * Files longer to analyse are logged (in milliseconds).
+   */
+  private static final long SLOW_FILE_THRESHOLD = 10 * 1000L;
+
+  /**
+   * Maximum number of pending files per thread, so that the results waiting to be saved are bounded.
+   */
+  private static final int PENDING_FILES_PER_THREAD = 2;
+
+  interface Callback {
+    /**
+     * @param clones {@code null} if detection timed out
+     */
+    void onClones(InputFile inputFile, @Nullable List<CloneGroup> clones);
+  }
+
+  private final Settings settings;
+
+  CpdExecutor(Settings settings) {
+    this.settings = settings;
+  }
+
+  int threads() {
+    int threads = settings.getInt(THREADS_KEY);
+    return threads > 0 ? threads : Runtime.getRuntime().availableProcessors();
+  }
+
+  void execute(SonarDuplicationsIndex index, List<InputFile> sourceFiles, Callback callback) {
+    // before starting detection, so that the timeout of files does not include the loading of blocks of other projects
+    index.loadCandidates();
+    int threads = Math.max(1, Math.min(threads(), sourceFiles.size()));
+    LOG.debug("Detection of duplications on {} files with {} threads", sourceFiles.size(), threads);
+    ExecutorService executorService = Executors.newFixedThreadPool(threads, new ThreadFactoryBuilder().setNameFormat("cpd-%d").setDaemon(true).build());
+    try {
+      Deque<Pending> pendings = new ArrayDeque<>();
+      for (InputFile inputFile : sourceFiles) {
+        if (pendings.size() >= threads * PENDING_FILES_PER_THREAD) {
+          complete(pendings.poll(), callback);
+        }
+        Detection detection = new Detection(index, inputFile);
+        pendings.add(new Pending(detection, executorService.submit(detection)));
+      }
+      while (!pendings.isEmpty()) {
+        complete(pendings.poll(), callback);
+      }
+    } finally {
+      executorService.shutdownNow();
+    }
+  }
+
+  private static void complete(Pending pending, Callback callback) {
+    InputFile inputFile = pending.detection.inputFile;
+    List<CloneGroup> clones;
+    try {
+      clones = pending.get();
+    } catch (TimeoutException e) {
+      pending.future.cancel(true);
+      clones = null;
+      LOG.warn("Timeout during detection of duplications for " + inputFile, e);
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+      throw new SonarException("Fail during detection of duplication for " + inputFile, e);
+    } catch (ExecutionException e) {
+      throw new SonarException("Fail during detection of duplication for " + inputFile, e);
+    }
+    callback.onClones(inputFile, clones);
+  }
+
+  private static class Pending {
+    private final Detection detection;
+    private final Future<List<CloneGroup>> future;
+
+    Pending(Detection detection, Future<List<CloneGroup>> future) {
+      this.detection = detection;
+      this.future = future;
+    }
+
+    /**
+     * Waits for the result until {@link #TIMEOUT} is elapsed since the start of detection. A detection
+     * that does not even start during this delay, because threads are still busy, is timed out too.
+     */
+    List<CloneGroup> get() throws InterruptedException, ExecutionException, TimeoutException {
+      long timeoutMs = TimeUnit.SECONDS.toMillis(TIMEOUT);
+      long startedAt = detection.startedAt;
+      if (startedAt == 0L) {
+        try {
+          return future.get(timeoutMs, TimeUnit.MILLISECONDS);
+        } catch (TimeoutException e) {
+          startedAt = detection.startedAt;
+          if (startedAt == 0L) {
+            throw e;
+          }
+        }
+      }
+      return future.get(Math.max(0L, startedAt + timeoutMs - System.currentTimeMillis()), TimeUnit.MILLISECONDS);
+    }
+  }
+
+  /**
+   * Loads the blocks of the file and detects its clones, on a thread of the pool.
+   */
+  private static class Detection implements Callable<List<CloneGroup>> {
+    private final SonarDuplicationsIndex index;
+    private final InputFile inputFile;
+    private volatile long startedAt = 0L;
+
+    Detection(SonarDuplicationsIndex index, InputFile inputFile) {
+      this.index = index;
+      this.inputFile = inputFile;
+    }
+
+    @Override
+    public List<CloneGroup> call() {
+      long start = System.currentTimeMillis();
+      startedAt = start;
+      String resourceEffectiveKey = ((DeprecatedDefaultInputFile) inputFile).key();
+      Collection<Block> fileBlocks = index.getByInputFile(inputFile, resourceEffectiveKey);
+      List<CloneGroup> clones = new JavaCpdEngine.Task(index, fileBlocks).call();
+      long duration = System.currentTimeMillis() - start;
+      if (duration > SLOW_FILE_THRESHOLD) {
+        LOG.info("Detection of duplications for {} took {} ms", inputFile, duration);
+      } else {
+        LOG.debug("Detection of duplications for {} took {} ms", inputFile, duration);
+      }
+      return clones;
+    }
+  }
+
+}
@@ -0,0 +1,199 @@
+/*
+ * SonarQube, open source software quality management tool.
+ * Copyright (C) 2008-2014 SonarSource
+ * mailto:contact AT sonarsource DOT com
+ *
+ * SonarQube is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * SonarQube is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+ */
+package org.sonar.batch.cpd.index;
+
+import org.apache.commons.codec.digest.DigestUtils;
+import org.apache.commons.io.FileUtils;
+import org.apache.commons.io.IOUtils;
+import org.apache.commons.lang.StringUtils;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.sonar.api.BatchComponent;
+import org.sonar.api.CoreProperties;
+import org.sonar.api.batch.InstantiationStrategy;
+import org.sonar.api.config.Settings;
+import org.sonar.batch.util.LocalCacheDir;
+import org.sonar.batch.util.LocalCaches;
+import org.sonar.duplications.block.Block;
+import org.sonar.duplications.block.ByteArray;
+
+import javax.annotation.CheckForNull;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+
+/**
+ * Local cache of the duplication blocks of other projects, see {@link LocalCaches}. Entries are identified by the server,
+ * the language and the last snapshot of the other project, so that its blocks are loaded again from database only
+ * once it has been analysed again.
+ * Entries are written by the analysis of the project itself, as it already has all its blocks, and read by the
+ * analyses of the other projects.
+ * Each entry is a binary file of blocks, the key of the file being written only when it changes.
+ */
+@InstantiationStrategy(InstantiationStrategy.PER_BATCH)
+public class CrossProjectBlocksCache implements BatchComponent {
+
+  private static final Logger LOG = LoggerFactory.getLogger(CrossProjectBlocksCache.class);
+
+  private static final int MAX_ENTRIES = 10000;
+
+  private static final byte END = 0;
+  private static final byte SAME_RESOURCE = 1;
+  private static final byte NEW_RESOURCE = 2;
+
+  public interface BlockHandler {
+    void handle(Block block);
+  }
+
+  private final LocalCacheDir dir;
+  private final String serverId;
+
+  public CrossProjectBlocksCache(LocalCaches caches, Settings settings) {
+    this(caches.get("_cpd", MAX_ENTRIES), StringUtils.defaultString(settings.getString(CoreProperties.SERVER_ID)));
+  }
+
+  CrossProjectBlocksCache(LocalCacheDir dir, String serverId) {
+    this.dir = dir;
+    this.serverId = serverId;
+  }
+
+  /**
+   * Sends the cached blocks to the handler. Note that some blocks may have been sent when reading fails.
+   *
+   * @return false if the entry does not exist or can't be read
+   */
+  public boolean read(String language, int projectSnapshotId, BlockHandler handler) {
+    File entry = dir.get(key(language, projectSnapshotId));
+    if (entry == null) {
+      return false;
+    }
+    DataInputStream input = null;
+    try {
+      input = new DataInputStream(new BufferedInputStream(new FileInputStream(entry)));
+      Block.Builder builder = Block.builder();
+      String resourceKey = null;
+      byte marker = input.readByte();
+      while (marker != END) {
+        if (marker == NEW_RESOURCE) {
+          resourceKey = input.readUTF();
+        }
+        byte[] hash = new byte[input.readUnsignedByte()];
+        input.readFully(hash);
+        handler.handle(builder
+          .setResourceId(resourceKey)
+          .setBlockHash(new ByteArray(hash))
+          .setIndexInFile(input.readInt())
+          .setLines(input.readInt(), input.readInt())
+          .build());
+        marker = input.readByte();
+      }
+      return true;
+    } catch (IOException e) {
+      LOG.debug("Fail to read duplications cache entry " + entry, e);
+      return false;
+    } finally {
+      IOUtils.closeQuietly(input);
+    }
+  }
+
+  /**
+   * @return null if the entry can't be written
+   */
+  @CheckForNull
+  public Writer newWriter(String language, int projectSnapshotId) {
+    String key = key(language, projectSnapshotId);
+    try {
+      return new Writer(key, dir.newTempFile(key));
+    } catch (IOException e) {
+      LOG.debug("Fail to write duplications cache entry " + key, e);
+      return null;
+    }
+  }
+
+  private String key(String language, int projectSnapshotId) {
+    return DigestUtils.sha1Hex(serverId + ":" + language + ":" + projectSnapshotId);
+  }
+
+  public class Writer {
+    private final String key;
+    private final File tmp;
+    private final DataOutputStream output;
+    private String resourceKey = null;
+    private boolean failed = false;
+
+    private Writer(String key, File tmp) throws IOException {
+      this.key = key;
+      this.tmp = tmp;
+      this.output = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(tmp)));
+    }
+
+    public void write(Block block) {
+      if (failed) {
+        return;
+      }
+      try {
+        if (block.getResourceId().equals(resourceKey)) {
+          output.writeByte(SAME_RESOURCE);
+        } else {
+          resourceKey = block.getResourceId();
+          output.writeByte(NEW_RESOURCE);
+          output.writeUTF(resourceKey);
+        }
+        byte[] hash = block.getBlockHash().getBytes();
+        output.writeByte(hash.length);
+        output.write(hash);
+        output.writeInt(block.getIndexInFile());
+        output.writeInt(block.getStartLine());
+        output.writeInt(block.getEndLine());
+      } catch (IOException e) {
+        fail(e);
+      }
+    }
+
+    /**
+     * Makes the entry available to next readers, unless writing failed.
+     */
+    public void commit() {
+      if (failed) {
+        return;
+      }
+      try {
+        output.writeByte(END);
+        output.close();
+        dir.put(key, tmp);
+      } catch (IOException e) {
+        fail(e);
+      }
+    }
+
+    private void fail(IOException e) {
+      failed = true;
+      LOG.debug("Fail to write duplications cache entry " + key, e);
+      IOUtils.closeQuietly(output);
+      FileUtils.deleteQuietly(tmp);
+    }
+  }
+}
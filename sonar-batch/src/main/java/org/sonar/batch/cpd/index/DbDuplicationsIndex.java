@@ -20,7 +20,11 @@
 package org.sonar.batch.cpd.index;
 
 import com.google.common.collect.Lists;
-import com.google.common.collect.Maps;
+import com.google.common.collect.Sets;
+import org.apache.ibatis.session.ResultContext;
+import org.apache.ibatis.session.ResultHandler;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
 import org.sonar.api.batch.fs.InputFile;
 import org.sonar.api.batch.fs.internal.DefaultInputFile;
 import org.sonar.api.database.DatabaseSession;
@@ -31,20 +35,25 @@ import org.sonar.core.duplication.DuplicationDao;
 import org.sonar.core.duplication.DuplicationUnitDto;
 import org.sonar.duplications.block.Block;
 import org.sonar.duplications.block.ByteArray;
+import org.sonar.duplications.index.CloneIndex;
+import org.sonar.duplications.index.OffHeapCloneIndex;
 
+import javax.annotation.CheckForNull;
+import javax.annotation.Nullable;
 import javax.persistence.Query;
 
 import java.util.Collection;
-import java.util.Collections;
 import java.util.List;
-import java.util.Map;
+import java.util.Set;
 
 public class DbDuplicationsIndex {
 
+  private static final Logger LOG = LoggerFactory.getLogger(DbDuplicationsIndex.class);
+
   private static final String RESOURCE_ID = "resourceId";
   private static final String LAST = "last";
-
-  private final Map<ByteArray, Collection<Block>> cache = Maps.newHashMap();
+  private static final int HASH_BYTES = 8;
+  private static final int INITIAL_CANDIDATES = 1024;
 
   private final int currentProjectSnapshotId;
   private final Integer lastSnapshotId;
@@ -52,10 +61,13 @@ public class DbDuplicationsIndex {
   private final DuplicationDao dao;
   private final DatabaseSession session;
   private final ResourceCache resourceCache;
+  private final CrossProjectBlocksCache cache;
+  private CrossProjectBlocksCache.Writer currentBlocksWriter;
 
   public DbDuplicationsIndex(Project currentProject, DuplicationDao dao,
-    String language, DatabaseSession session, ResourceCache resourceCache) {
+    String language, DatabaseSession session, ResourceCache resourceCache, @Nullable CrossProjectBlocksCache cache) {
     this.dao = dao;
+    this.cache = cache;
     this.session = session;
     this.resourceCache = resourceCache;
     Snapshot lastSnapshot = getLastSnapshot(currentProject.getId());
@@ -76,51 +88,66 @@ public class DbDuplicationsIndex {
     return resourceCache.get(((DefaultInputFile) inputFile).key()).snapshotId();
   }
 
-  public void prepareCache(InputFile inputFile) {
-    int resourceSnapshotId = getSnapshotIdFor(inputFile);
-    List<DuplicationUnitDto> units = dao.selectCandidates(resourceSnapshotId, lastSnapshotId, languageKey);
-    cache.clear();
-    // TODO Godin: maybe remove conversion of units to blocks?
-    for (DuplicationUnitDto unit : units) {
-      String hash = unit.getHash();
-      String resourceKey = unit.getResourceKey();
-      int indexInFile = unit.getIndexInFile();
-      int startLine = unit.getStartLine();
-      int endLine = unit.getEndLine();
-
-      // TODO Godin: in fact we could work directly with id instead of key - this will allow to decrease memory consumption
-      Block block = Block.builder()
-        .setResourceId(resourceKey)
-        .setBlockHash(new ByteArray(hash))
-        .setIndexInFile(indexInFile)
-        .setLines(startLine, endLine)
-        .build();
-
-      // Group blocks by hash
-      Collection<Block> sameHash = cache.get(block.getBlockHash());
-      if (sameHash == null) {
-        sameHash = Lists.newArrayList();
-        cache.put(block.getBlockHash(), sameHash);
-      }
-      sameHash.add(block);
+  /**
+   * Loads the blocks of the last analyses of other projects which share a hash with the given blocks of
+   * the current analysis. Blocks are loaded project by project, from the local cache when available, else
+   * from database.
+   * Must be called once all the blocks of the current analysis are inserted.
+   */
+  public CloneIndex loadCandidates(CloneIndex current) {
+    long start = System.currentTimeMillis();
+    if (currentBlocksWriter != null) {
+      currentBlocksWriter.commit();
+      currentBlocksWriter = null;
+    }
+    List<Integer> projectSnapshotIds = dao.selectCandidateProjectSnapshots(currentProjectSnapshotId, lastSnapshotId, languageKey);
+    Set<Integer> unreadableEntries = Sets.newHashSet();
+    CloneIndex candidates = loadCandidates(current, projectSnapshotIds, unreadableEntries);
+    while (candidates == null) {
+      // blocks of an unreadable cache entry have been partially inserted, so loading starts again without this entry
+      candidates = loadCandidates(current, projectSnapshotIds, unreadableEntries);
     }
+    LOG.debug("Duplication candidates loaded from {} projects in {} ms", projectSnapshotIds.size(), System.currentTimeMillis() - start);
+    return candidates;
   }
 
-  public Collection<Block> getByHash(ByteArray hash) {
-    Collection<Block> result = cache.get(hash);
-    if (result != null) {
-      return result;
-    } else {
-      return Collections.emptyList();
+  @CheckForNull
+  private CloneIndex loadCandidates(CloneIndex current, List<Integer> projectSnapshotIds, Set<Integer> unreadableEntries) {
+    // stored off-heap, as candidates can be millions of blocks. The index grows with the loaded blocks.
+    CloneIndex candidates = new OffHeapCloneIndex(HASH_BYTES, INITIAL_CANDIDATES);
+    for (Integer projectSnapshotId : projectSnapshotIds) {
+      CandidatesFilter filter = new CandidatesFilter(current, candidates);
+      if (cache != null && !unreadableEntries.contains(projectSnapshotId)) {
+        if (cache.read(languageKey, projectSnapshotId, filter)) {
+          continue;
+        }
+        if (filter.received > 0) {
+          unreadableEntries.add(projectSnapshotId);
+          return null;
+        }
+      }
+      // only the blocks that have the hash of a block of the current analysis, so they are not cached
+      dao.selectCandidates(projectSnapshotId, currentProjectSnapshotId, languageKey, new CandidatesHandler(candidates));
     }
+    return candidates;
   }
 
+  /**
+   * Saves the blocks of a file of the current analysis. All the blocks of the analysis are cached locally too, so
+   * that next analyses of other projects on this machine do not load them from database once this analysis is the last one.
+   */
   public void insert(InputFile inputFile, Collection<Block> blocks) {
     int resourceSnapshotId = getSnapshotIdFor(inputFile);
+    if (cache != null && currentBlocksWriter == null) {
+      currentBlocksWriter = cache.newWriter(languageKey, currentProjectSnapshotId);
+    }
 
     // TODO Godin: maybe remove conversion of blocks to units?
     List<DuplicationUnitDto> units = Lists.newArrayList();
     for (Block block : blocks) {
+      if (currentBlocksWriter != null) {
+        currentBlocksWriter.write(block);
+      }
       DuplicationUnitDto unit = new DuplicationUnitDto(
         currentProjectSnapshotId,
         resourceSnapshotId,
@@ -134,4 +161,49 @@ public class DbDuplicationsIndex {
     dao.insert(units);
   }
 
+  /**
+   * Inserts in the index of candidates the blocks whose hash is used by the current analysis
+   */
+  private static class CandidatesFilter implements CrossProjectBlocksCache.BlockHandler {
+    private final CloneIndex current;
+    private final CloneIndex candidates;
+    private int received = 0;
+
+    CandidatesFilter(CloneIndex current, CloneIndex candidates) {
+      this.current = current;
+      this.candidates = candidates;
+    }
+
+    @Override
+    public void handle(Block block) {
+      received++;
+      if (!current.getBySequenceHash(block.getBlockHash()).isEmpty()) {
+        candidates.insert(block);
+      }
+    }
+  }
+
+  /**
+   * Streams the candidates loaded from database to the index
+   */
+  private static class CandidatesHandler implements ResultHandler {
+    private final CloneIndex candidates;
+    private final Block.Builder builder = Block.builder();
+
+    CandidatesHandler(CloneIndex candidates) {
+      this.candidates = candidates;
+    }
+
+    @Override
+    public void handleResult(ResultContext context) {
+      DuplicationUnitDto unit = (DuplicationUnitDto) context.getResultObject();
+      candidates.insert(builder
+        .setResourceId(unit.getResourceKey())
+        .setBlockHash(new ByteArray(unit.getHash()))
+        .setIndexInFile(unit.getIndexInFile())
+        .setLines(unit.getStartLine(), unit.getEndLine())
+        .build());
+    }
+  }
+
 }
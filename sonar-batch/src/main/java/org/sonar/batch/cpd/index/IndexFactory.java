@@ -43,25 +43,28 @@ public class IndexFactory implements BatchComponent {
   private final DefaultAnalysisMode mode;
   private final DatabaseSession session;
   private final ResourceCache resourceCache;
+  private final CrossProjectBlocksCache blocksCache;
 
-  public IndexFactory(DefaultAnalysisMode mode, Settings settings, @Nullable DuplicationDao dao, @Nullable DatabaseSession session, ResourceCache resourceCache) {
+  public IndexFactory(DefaultAnalysisMode mode, Settings settings, @Nullable DuplicationDao dao, @Nullable DatabaseSession session, ResourceCache resourceCache,
+    @Nullable CrossProjectBlocksCache blocksCache) {
     this.mode = mode;
     this.settings = settings;
     this.dao = dao;
     this.session = session;
     this.resourceCache = resourceCache;
+    this.blocksCache = blocksCache;
   }
 
   /**
    * Used by new sensor mode
    */
   public IndexFactory(DefaultAnalysisMode mode, Settings settings, ResourceCache resourceCache) {
-    this(mode, settings, null, null, resourceCache);
+    this(mode, settings, null, null, resourceCache, null);
   }
 
   public SonarDuplicationsIndex create(@Nullable Project project, String languageKey) {
     if (verifyCrossProject(project, LOG) && dao != null && session != null) {
-      return new SonarDuplicationsIndex(new DbDuplicationsIndex(project, dao, languageKey, session, resourceCache));
+      return new SonarDuplicationsIndex(new DbDuplicationsIndex(project, dao, languageKey, session, resourceCache, blocksCache));
     }
     return new SonarDuplicationsIndex();
   }
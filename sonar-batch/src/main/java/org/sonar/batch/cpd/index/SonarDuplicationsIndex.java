@@ -19,6 +19,7 @@
  */
 package org.sonar.batch.cpd.index;
 
+import com.google.common.base.Preconditions;
 import com.google.common.collect.Lists;
 import org.sonar.api.batch.fs.InputFile;
 import org.sonar.duplications.block.Block;
@@ -34,6 +35,7 @@ public class SonarDuplicationsIndex extends AbstractCloneIndex {
 
   private final CloneIndex mem = new PackedMemoryCloneIndex();
   private final DbDuplicationsIndex db;
+  private CloneIndex candidates;
 
   public SonarDuplicationsIndex() {
     this.db = null;
@@ -53,21 +55,36 @@ public class SonarDuplicationsIndex extends AbstractCloneIndex {
   }
 
   public Collection<Block> getByInputFile(InputFile inputFile, String resourceKey) {
+    return mem.getByResourceId(resourceKey);
+  }
+
+  /**
+   * Loads the blocks of other projects when cross-project detection is enabled. Must be called once all the files
+   * are inserted, before the first query.
+   */
+  public void loadCandidates() {
     if (db != null) {
-      db.prepareCache(inputFile);
+      candidates = db.loadCandidates(mem);
     }
-    return mem.getByResourceId(resourceKey);
   }
 
+  /**
+   * Blocks of current analysis, plus blocks of other projects when cross-project detection is enabled.
+   * Once all files are inserted and candidates are loaded, queries can be executed concurrently.
+   */
   @Override
   public Collection<Block> getBySequenceHash(ByteArray hash) {
     if (db == null) {
       return mem.getBySequenceHash(hash);
-    } else {
-      List<Block> result = Lists.newArrayList(mem.getBySequenceHash(hash));
-      result.addAll(db.getByHash(hash));
-      return result;
     }
+    Preconditions.checkState(candidates != null, "Duplication candidates must be loaded before the first query");
+    Collection<Block> fromDb = candidates.getBySequenceHash(hash);
+    if (fromDb.isEmpty()) {
+      return mem.getBySequenceHash(hash);
+    }
+    List<Block> result = Lists.newArrayList(mem.getBySequenceHash(hash));
+    result.addAll(fromDb);
+    return result;
   }
 
   @Override
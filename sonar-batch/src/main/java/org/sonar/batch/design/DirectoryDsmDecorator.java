@@ -24,10 +24,7 @@ import org.sonar.api.batch.SonarIndex;
 import org.sonar.api.measures.CoreMetrics;
 import org.sonar.api.resources.Resource;
 import org.sonar.api.resources.ResourceUtils;
-import org.sonar.graph.Cycle;
 import org.sonar.graph.Edge;
-import org.sonar.graph.IncrementalCyclesAndFESSolver;
-import org.sonar.graph.MinimumFeedbackEdgeSetSolver;
 
 import java.util.ArrayList;
 import java.util.List;
@@ -39,6 +36,10 @@ public class DirectoryDsmDecorator extends DsmDecorator {
     super(index);
   }
 
+  public DirectoryDsmDecorator(SonarIndex index, DsmCache cache) {
+    super(index, cache);
+  }
+
   @Override
   protected List<Resource> getChildren(Resource resource, DecoratorContext context) {
     List<DecoratorContext> fileContexts = context.getChildren();
@@ -51,19 +52,14 @@ public class DirectoryDsmDecorator extends DsmDecorator {
 
   @Override
   protected Set<Edge> doProcess(List<Resource> children, DecoratorContext context) {
-    IncrementalCyclesAndFESSolver<Resource> cycleDetector = new IncrementalCyclesAndFESSolver<Resource>(getIndex(), children);
-    Set<Cycle> cycles = cycleDetector.getCycles();
-
-    MinimumFeedbackEdgeSetSolver solver = new MinimumFeedbackEdgeSetSolver(cycles);
-    Set<Edge> feedbackEdges = solver.getEdges();
-    int tangles = solver.getWeightOfFeedbackEdgeSet();
+    Tangles tangles = getTangles(children);
 
-    savePositiveMeasure(context, CoreMetrics.FILE_CYCLES, cycles.size());
-    savePositiveMeasure(context, CoreMetrics.FILE_FEEDBACK_EDGES, feedbackEdges.size());
-    savePositiveMeasure(context, CoreMetrics.FILE_TANGLES, tangles);
+    savePositiveMeasure(context, CoreMetrics.FILE_CYCLES, tangles.cycles());
+    savePositiveMeasure(context, CoreMetrics.FILE_FEEDBACK_EDGES, tangles.feedbackEdges().size());
+    savePositiveMeasure(context, CoreMetrics.FILE_TANGLES, tangles.feedbackEdgesWeight());
     savePositiveMeasure(context, CoreMetrics.FILE_EDGES_WEIGHT, getEdgesWeight(children));
 
-    return feedbackEdges;
+    return tangles.feedbackEdges();
   }
 
   @Override
@@ -0,0 +1,123 @@
+/*
+ * SonarQube, open source software quality management tool.
+ * Copyright (C) 2008-2014 SonarSource
+ * mailto:contact AT sonarsource DOT com
+ *
+ * SonarQube is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * SonarQube is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+ */
+package org.sonar.batch.design;
+
+import org.apache.commons.lang.StringUtils;
+import org.sonar.api.BatchComponent;
+import org.sonar.api.batch.InstantiationStrategy;
+import org.sonar.batch.util.LocalCacheDir;
+import org.sonar.batch.util.LocalCaches;
+
+import javax.annotation.CheckForNull;
+
+/**
+ * Local cache of the cycles and feedback edges of dependency graphs, see {@link LocalCaches}. Entries are identified
+ * by a fingerprint of the graph, so that the graph of a component is solved again only when its vertices or
+ * the dependencies between them change. Only graphs which contain cycles are cached, as other ones are solved
+ * without searching for cycles.
+ * Each entry is a single line: number of cycles, weight of feedback edges, then feedback edges as pairs
+ * of vertex indices.
+ */
+@InstantiationStrategy(InstantiationStrategy.PER_BATCH)
+public class DsmCache implements BatchComponent {
+
+  private static final int MAX_ENTRIES = 100000;
+
+  private final LocalCacheDir dir;
+
+  public DsmCache(LocalCaches caches) {
+    this(caches.get("_dsm", MAX_ENTRIES));
+  }
+
+  DsmCache(LocalCacheDir dir) {
+    this.dir = dir;
+  }
+
+  /**
+   * @return the entry of the graph, or null if a graph with this fingerprint has never been solved
+   */
+  @CheckForNull
+  public Entry get(String fingerprint) {
+    String content = dir.read(fingerprint);
+    return content == null ? null : Entry.parse(content);
+  }
+
+  public void put(String fingerprint, Entry entry) {
+    dir.write(fingerprint, entry.format());
+  }
+
+  public static final class Entry {
+    private final int cycles;
+    private final int feedbackEdgesWeight;
+    private final int[] feedbackEdges;
+
+    /**
+     * @param feedbackEdges source and target vertex indices of each feedback edge, in sequence
+     */
+    public Entry(int cycles, int feedbackEdgesWeight, int[] feedbackEdges) {
+      this.cycles = cycles;
+      this.feedbackEdgesWeight = feedbackEdgesWeight;
+      this.feedbackEdges = feedbackEdges;
+    }
+
+    public int cycles() {
+      return cycles;
+    }
+
+    public int feedbackEdgesWeight() {
+      return feedbackEdgesWeight;
+    }
+
+    public int[] feedbackEdges() {
+      return feedbackEdges;
+    }
+
+    String format() {
+      StringBuilder sb = new StringBuilder();
+      sb.append(cycles).append(' ').append(feedbackEdgesWeight);
+      for (int i = 0; i < feedbackEdges.length; i++) {
+        sb.append(i % 2 == 0 ? ' ' : ':').append(feedbackEdges[i]);
+      }
+      return sb.toString();
+    }
+
+    @CheckForNull
+    static Entry parse(String line) {
+      String[] fields = StringUtils.split(line.trim(), ' ');
+      if (fields.length < 2) {
+        return null;
+      }
+      try {
+        int[] feedbackEdges = new int[2 * (fields.length - 2)];
+        for (int i = 2; i < fields.length; i++) {
+          String[] edge = StringUtils.split(fields[i], ':');
+          if (edge.length != 2) {
+            return null;
+          }
+          feedbackEdges[2 * (i - 2)] = Integer.parseInt(edge[0]);
+          feedbackEdges[2 * (i - 2) + 1] = Integer.parseInt(edge[1]);
+        }
+        return new Entry(Integer.parseInt(fields[0]), Integer.parseInt(fields[1]), feedbackEdges);
+      } catch (NumberFormatException e) {
+        return null;
+      }
+    }
+  }
+}
@@ -19,6 +19,10 @@
  */
 package org.sonar.batch.design;
 
+import com.google.common.base.Charsets;
+import com.google.common.primitives.Ints;
+import org.apache.commons.codec.binary.Hex;
+import org.apache.commons.codec.digest.DigestUtils;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.sonar.api.batch.Decorator;
@@ -34,10 +38,21 @@ import org.sonar.api.resources.Resource;
 import org.sonar.graph.Dsm;
 import org.sonar.graph.DsmTopologicalSorter;
 import org.sonar.graph.Edge;
+import org.sonar.graph.IncrementalCyclesAndFESSolver;
+import org.sonar.graph.StronglyConnectedComponents;
 
+import javax.annotation.CheckForNull;
+import javax.annotation.Nullable;
+
+import java.security.MessageDigest;
 import java.util.ArrayList;
 import java.util.Collection;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.HashSet;
 import java.util.List;
+import java.util.Map;
 import java.util.Set;
 
 public abstract class DsmDecorator implements Decorator {
@@ -45,10 +60,19 @@ public abstract class DsmDecorator implements Decorator {
   private static final Logger LOG = LoggerFactory.getLogger(DsmDecorator.class);
 
   private static final int MAX_DSM_DIMENSION = 200;
+  // to be changed when the way cycles are solved changes, so that previous results are ignored
+  private static final String FINGERPRINT_VERSION = "1";
+
   private SonarIndex index;
+  private final DsmCache cache;
 
   public DsmDecorator(SonarIndex index) {
+    this(index, null);
+  }
+
+  public DsmDecorator(SonarIndex index, @Nullable DsmCache cache) {
     this.index = index;
+    this.cache = cache;
   }
 
   public final SonarIndex getIndex() {
@@ -97,6 +121,159 @@ public abstract class DsmDecorator implements Decorator {
     return dsm;
   }
 
+  /**
+   * Cycles and feedback edges of the dependencies between the given resources. They are reused from a previous
+   * analysis when the resources and the dependencies between them did not change.
+   */
+  protected final Tangles getTangles(List<Resource> children) {
+    if (!hasCycles(children)) {
+      // cheaper than the fingerprint, and nothing to cache
+      return new Tangles(0, Collections.<Edge>emptySet(), 0);
+    }
+    if (cache == null) {
+      return solve(children);
+    }
+    List<Resource> sortedChildren = sortByKey(children);
+    if (sortedChildren == null) {
+      return solve(children);
+    }
+    Map<Resource, Integer> indexByChild = new HashMap<Resource, Integer>();
+    for (int i = 0; i < sortedChildren.size(); i++) {
+      indexByChild.put(sortedChildren.get(i), i);
+    }
+    String fingerprint = fingerprint(sortedChildren, indexByChild);
+    DsmCache.Entry entry = cache.get(fingerprint);
+    if (entry != null) {
+      Tangles tangles = toTangles(entry, sortedChildren);
+      if (tangles != null) {
+        return tangles;
+      }
+    }
+    Tangles tangles = solve(children);
+    cache.put(fingerprint, toEntry(tangles, indexByChild));
+    return tangles;
+  }
+
+  private boolean hasCycles(List<Resource> children) {
+    for (Set<Resource> component : StronglyConnectedComponents.of(index, children)) {
+      if (StronglyConnectedComponents.isCyclic(index, component)) {
+        return true;
+      }
+    }
+    return false;
+  }
+
+  private Tangles solve(List<Resource> children) {
+    IncrementalCyclesAndFESSolver<Resource> cycleDetector = new IncrementalCyclesAndFESSolver<Resource>(index, children);
+    return new Tangles(cycleDetector.getCycles().size(), cycleDetector.getFeedbackEdgeSet(), cycleDetector.getWeightOfFeedbackEdgeSet());
+  }
+
+  @CheckForNull
+  private static List<Resource> sortByKey(List<Resource> children) {
+    for (Resource child : children) {
+      if (child.getKey() == null) {
+        return null;
+      }
+    }
+    List<Resource> sorted = new ArrayList<Resource>(children);
+    Collections.sort(sorted, new Comparator<Resource>() {
+      @Override
+      public int compare(Resource r1, Resource r2) {
+        return r1.getKey().compareTo(r2.getKey());
+      }
+    });
+    return sorted;
+  }
+
+  /**
+   * Hash of the keys of the resources and of the weighted dependencies between them. Dependencies to other
+   * resources are ignored, as they can't be part of cycles.
+   */
+  private String fingerprint(List<Resource> sortedChildren, Map<Resource, Integer> indexByChild) {
+    MessageDigest digest = DigestUtils.getSha1Digest();
+    update(digest, FINGERPRINT_VERSION);
+    List<int[]> dependencies = new ArrayList<int[]>();
+    for (Resource child : sortedChildren) {
+      update(digest, "\n" + child.getKey());
+      dependencies.clear();
+      Collection<Dependency> outgoingEdges = index.getOutgoingEdges(child);
+      if (outgoingEdges != null) {
+        for (Dependency dependency : outgoingEdges) {
+          Integer target = indexByChild.get(dependency.getTo());
+          if (target != null) {
+            dependencies.add(new int[] {target, dependency.getWeight()});
+          }
+        }
+      }
+      Collections.sort(dependencies, new Comparator<int[]>() {
+        @Override
+        public int compare(int[] d1, int[] d2) {
+          int result = Ints.compare(d1[0], d2[0]);
+          return result != 0 ? result : Ints.compare(d1[1], d2[1]);
+        }
+      });
+      for (int[] dependency : dependencies) {
+        update(digest, " " + dependency[0] + ":" + dependency[1]);
+      }
+    }
+    return Hex.encodeHexString(digest.digest());
+  }
+
+  private static void update(MessageDigest digest, String s) {
+    digest.update(s.getBytes(Charsets.UTF_8));
+  }
+
+  @CheckForNull
+  private Tangles toTangles(DsmCache.Entry entry, List<Resource> sortedChildren) {
+    int[] edges = entry.feedbackEdges();
+    Set<Edge> feedbackEdges = new HashSet<Edge>();
+    for (int i = 0; i + 1 < edges.length; i += 2) {
+      if (edges[i] < 0 || edges[i] >= sortedChildren.size() || edges[i + 1] < 0 || edges[i + 1] >= sortedChildren.size()) {
+        return null;
+      }
+      Dependency edge = index.getEdge(sortedChildren.get(edges[i]), sortedChildren.get(edges[i + 1]));
+      if (edge == null) {
+        return null;
+      }
+      feedbackEdges.add(edge);
+    }
+    return new Tangles(entry.cycles(), feedbackEdges, entry.feedbackEdgesWeight());
+  }
+
+  private static DsmCache.Entry toEntry(Tangles tangles, Map<Resource, Integer> indexByChild) {
+    int[] edges = new int[2 * tangles.feedbackEdges().size()];
+    int i = 0;
+    for (Edge edge : tangles.feedbackEdges()) {
+      edges[i++] = indexByChild.get(edge.getFrom());
+      edges[i++] = indexByChild.get(edge.getTo());
+    }
+    return new DsmCache.Entry(tangles.cycles(), tangles.feedbackEdgesWeight(), edges);
+  }
+
+  protected static final class Tangles {
+    private final int cycles;
+    private final Set<Edge> feedbackEdges;
+    private final int feedbackEdgesWeight;
+
+    Tangles(int cycles, Set<Edge> feedbackEdges, int feedbackEdgesWeight) {
+      this.cycles = cycles;
+      this.feedbackEdges = feedbackEdges;
+      this.feedbackEdgesWeight = feedbackEdgesWeight;
+    }
+
+    public int cycles() {
+      return cycles;
+    }
+
+    public Set<Edge> feedbackEdges() {
+      return feedbackEdges;
+    }
+
+    public int feedbackEdgesWeight() {
+      return feedbackEdgesWeight;
+    }
+  }
+
   protected final void savePositiveMeasure(DecoratorContext context, Metric<Integer> metric, double value) {
     if (value >= 0.0) {
       context.saveMeasure(new Measure(metric, value));
@@ -25,10 +25,7 @@ import org.sonar.api.measures.CoreMetrics;
 import org.sonar.api.resources.Project;
 import org.sonar.api.resources.Resource;
 import org.sonar.api.resources.ResourceUtils;
-import org.sonar.graph.Cycle;
 import org.sonar.graph.Edge;
-import org.sonar.graph.IncrementalCyclesAndFESSolver;
-import org.sonar.graph.MinimumFeedbackEdgeSetSolver;
 
 import java.util.ArrayList;
 import java.util.List;
@@ -40,6 +37,10 @@ public class SubProjectDsmDecorator extends DsmDecorator {
     super(index);
   }
 
+  public SubProjectDsmDecorator(SonarIndex index, DsmCache cache) {
+    super(index, cache);
+  }
+
   @Override
   protected List<Resource> getChildren(Resource resource, DecoratorContext context) {
     List<DecoratorContext> directoryContexts = context.getChildren();
@@ -52,18 +53,13 @@ public class SubProjectDsmDecorator extends DsmDecorator {
 
   @Override
   protected Set<Edge> doProcess(List<Resource> children, DecoratorContext context) {
-    IncrementalCyclesAndFESSolver<Resource> cycleDetector = new IncrementalCyclesAndFESSolver<Resource>(getIndex(), children);
-    Set<Cycle> cycles = cycleDetector.getCycles();
-
-    MinimumFeedbackEdgeSetSolver solver = new MinimumFeedbackEdgeSetSolver(cycles);
-    Set<Edge> feedbackEdges = solver.getEdges();
-    int tangles = solver.getWeightOfFeedbackEdgeSet();
+    Tangles tangles = getTangles(children);
 
-    savePositiveMeasure(context, CoreMetrics.DIRECTORY_CYCLES, cycles.size());
-    savePositiveMeasure(context, CoreMetrics.DIRECTORY_FEEDBACK_EDGES, feedbackEdges.size());
-    savePositiveMeasure(context, CoreMetrics.DIRECTORY_TANGLES, tangles);
+    savePositiveMeasure(context, CoreMetrics.DIRECTORY_CYCLES, tangles.cycles());
+    savePositiveMeasure(context, CoreMetrics.DIRECTORY_FEEDBACK_EDGES, tangles.feedbackEdges().size());
+    savePositiveMeasure(context, CoreMetrics.DIRECTORY_TANGLES, tangles.feedbackEdgesWeight());
     savePositiveMeasure(context, CoreMetrics.DIRECTORY_EDGES_WEIGHT, getEdgesWeight(children));
-    return feedbackEdges;
+    return tangles.feedbackEdges();
   }
 
   @Override
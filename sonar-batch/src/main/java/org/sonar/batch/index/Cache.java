@@ -20,10 +20,7 @@
 package org.sonar.batch.index;
 
 import com.google.common.collect.Sets;
-import com.persistit.Exchange;
 import com.persistit.Key;
-import com.persistit.KeyFilter;
-import com.persistit.exception.PersistitException;
 import org.apache.commons.lang.builder.ToStringBuilder;
 
 import javax.annotation.CheckForNull;
@@ -34,43 +31,44 @@ import java.util.Set;
 
 /**
  * <p>
- * This cache is not thread-safe, due to direct usage of {@link com.persistit.Exchange}
+ * This cache is thread-safe. Operations, including the steps of lazy iterations, are serialized
+ * as {@link CacheStorage} is not thread-safe.
  * </p>
  */
 public class Cache<V> {
 
   private final String name;
-  private final Exchange exchange;
+  private final CacheStorage storage;
 
-  Cache(String name, Exchange exchange) {
+  Cache(String name, CacheStorage storage) {
     this.name = name;
-    this.exchange = exchange;
+    this.storage = storage;
   }
 
-  public Cache<V> put(Object key, V value) {
+  public synchronized Cache<V> put(Object key, V value) {
     resetKey(key);
     return doPut(value);
   }
 
-  public Cache<V> put(Object firstKey, Object secondKey, V value) {
+  public synchronized Cache<V> put(Object firstKey, Object secondKey, V value) {
     resetKey(firstKey, secondKey);
     return doPut(value);
   }
 
-  public Cache<V> put(Object firstKey, Object secondKey, Object thirdKey, V value) {
+  public synchronized Cache<V> put(Object firstKey, Object secondKey, Object thirdKey, V value) {
     resetKey(firstKey, secondKey, thirdKey);
     return doPut(value);
   }
 
-  public Cache<V> put(Object[] key, V value) {
+  public synchronized Cache<V> put(Object[] key, V value) {
     resetKey(key);
     return doPut(value);
   }
 
   private Cache<V> doPut(V value) {
     try {
-      exchange.getValue().put(value);
-      exchange.store();
+      storage.value().put(value);
+      storage.store();
       return this;
     } catch (Exception e) {
       throw new IllegalStateException("Fail to put element in the cache " + name, e);
@@ -80,7 +78,7 @@ public class Cache<V> {
   /**
    * Returns the value object associated with keys, or null if not found.
    */
-  public V get(Object key) {
+  public synchronized V get(Object key) {
     resetKey(key);
     return doGet();
   }
@@ -89,7 +87,7 @@ public class Cache<V> {
    * Returns the value object associated with keys, or null if not found.
    */
   @CheckForNull
-  public V get(Object firstKey, Object secondKey) {
+  public synchronized V get(Object firstKey, Object secondKey) {
     resetKey(firstKey, secondKey);
     return doGet();
   }
@@ -98,7 +96,7 @@ public class Cache<V> {
    * Returns the value object associated with keys, or null if not found.
    */
   @CheckForNull
-  public V get(Object firstKey, Object secondKey, Object thirdKey) {
+  public synchronized V get(Object firstKey, Object secondKey, Object thirdKey) {
     resetKey(firstKey, secondKey, thirdKey);
     return doGet();
   }
@@ -107,7 +105,7 @@ public class Cache<V> {
    * Returns the value object associated with keys, or null if not found.
    */
   @CheckForNull
-  public V get(Object[] key) {
+  public synchronized V get(Object[] key) {
     resetKey(key);
     return doGet();
   }
@@ -116,70 +114,68 @@ public class Cache<V> {
   @CheckForNull
   private V doGet() {
     try {
-      exchange.fetch();
-      if (!exchange.getValue().isDefined()) {
+      if (!storage.fetch()) {
         return null;
       }
-      return (V) exchange.getValue().get();
+      return (V) storage.value().get();
     } catch (Exception e) {
       // TODO add parameters to message
       throw new IllegalStateException("Fail to get element from cache " + name, e);
     }
   }
 
-  public boolean containsKey(Object key) {
+  public synchronized boolean containsKey(Object key) {
     resetKey(key);
     return doContainsKey();
   }
 
-  public boolean containsKey(Object firstKey, Object secondKey) {
+  public synchronized boolean containsKey(Object firstKey, Object secondKey) {
     resetKey(firstKey, secondKey);
     return doContainsKey();
   }
 
-  public boolean containsKey(Object firstKey, Object secondKey, Object thirdKey) {
+  public synchronized boolean containsKey(Object firstKey, Object secondKey, Object thirdKey) {
     resetKey(firstKey, secondKey, thirdKey);
     return doContainsKey();
   }
 
-  public boolean containsKey(Object[] key) {
+  public synchronized boolean containsKey(Object[] key) {
     resetKey(key);
     return doContainsKey();
   }
 
   private boolean doContainsKey() {
     try {
-      exchange.fetch();
-      return exchange.isValueDefined();
+      return storage.fetch();
     } catch (Exception e) {
       // TODO add parameters to message
       throw new IllegalStateException("Fail to check if element is in cache " + name, e);
     }
   }
 
-  public boolean remove(Object key) {
+  public synchronized boolean remove(Object key) {
     resetKey(key);
     return doRemove();
   }
 
-  public boolean remove(Object firstKey, Object secondKey) {
+  public synchronized boolean remove(Object firstKey, Object secondKey) {
     resetKey(firstKey, secondKey);
     return doRemove();
   }
 
-  public boolean remove(Object firstKey, Object secondKey, Object thirdKey) {
+  public synchronized boolean remove(Object firstKey, Object secondKey, Object thirdKey) {
     resetKey(firstKey, secondKey, thirdKey);
     return doRemove();
   }
 
-  public boolean remove(Object[] key) {
+  public synchronized boolean remove(Object[] key) {
     resetKey(key);
     return doRemove();
   }
 
   private boolean doRemove() {
     try {
-      return exchange.remove();
+      return storage.remove();
     } catch (Exception e) {
       // TODO add parameters to message
       throw new IllegalStateException("Fail to get element from cache " + name, e);
@@ -191,31 +187,29 @@ public class Cache<V> {
    *
    * @param group The group name.
    */
-  public Cache<V> clear(Object key) {
+  public synchronized Cache<V> clear(Object key) {
     resetKey(key);
     return doClear();
   }
 
-  public Cache<V> clear(Object firstKey, Object secondKey) {
+  public synchronized Cache<V> clear(Object firstKey, Object secondKey) {
     resetKey(firstKey, secondKey);
     return doClear();
   }
 
-  public Cache<V> clear(Object firstKey, Object secondKey, Object thirdKey) {
+  public synchronized Cache<V> clear(Object firstKey, Object secondKey, Object thirdKey) {
     resetKey(firstKey, secondKey, thirdKey);
     return doClear();
   }
 
-  public Cache<V> clear(Object[] key) {
+  public synchronized Cache<V> clear(Object[] key) {
     resetKey(key);
     return doClear();
   }
 
   private Cache<V> doClear() {
     try {
-      Key to = new Key(exchange.getKey());
-      to.append(Key.AFTER);
-      exchange.removeKeyRange(exchange.getKey(), to);
+      storage.removeTree();
       return this;
     } catch (Exception e) {
       throw new IllegalStateException("Fail to clear values from cache " + name, e);
@@ -225,10 +219,9 @@ public class Cache<V> {
   /**
    * Clears the default as well as all group caches.
    */
-  public void clear() {
+  public synchronized void clear() {
     try {
-      exchange.clear();
-      exchange.removeAll();
+      storage.removeAll();
     } catch (Exception e) {
       throw new IllegalStateException("Fail to clear cache", e);
     }
@@ -242,38 +235,15 @@ public class Cache<V> {
    * @return The set of cache keys for this group.
    */
   @SuppressWarnings("rawtypes")
-  public Set keySet(Object key) {
-    try {
-      Set<Object> keys = Sets.newLinkedHashSet();
-      exchange.clear();
-      Exchange iteratorExchange = new Exchange(exchange);
-      iteratorExchange.append(key);
-      iteratorExchange.append(Key.BEFORE);
-      while (iteratorExchange.next(false)) {
-        keys.add(iteratorExchange.getKey().indexTo(-1).decode());
-      }
-      return keys;
-    } catch (Exception e) {
-      throw new IllegalStateException("Fail to get keys from cache " + name, e);
-    }
+  public synchronized Set keySet(Object key) {
+    resetKey(key);
+    return doKeySet();
   }
 
   @SuppressWarnings("rawtypes")
-  public Set keySet(Object firstKey, Object secondKey) {
-    try {
-      Set<Object> keys = Sets.newLinkedHashSet();
-      exchange.clear();
-      Exchange iteratorExchange = new Exchange(exchange);
-      iteratorExchange.append(firstKey);
-      iteratorExchange.append(secondKey);
-      iteratorExchange.append(Key.BEFORE);
-      while (iteratorExchange.next(false)) {
-        keys.add(iteratorExchange.getKey().indexTo(-1).decode());
-      }
-      return keys;
-    } catch (Exception e) {
-      throw new IllegalStateException("Fail to get keys from cache " + name, e);
-    }
+  public synchronized Set keySet(Object firstKey, Object secondKey) {
+    resetKey(firstKey, secondKey);
+    return doKeySet();
   }
 
   /**
@@ -281,14 +251,17 @@ public class Cache<V> {
    *
    * @return The set containing the keys for this cache.
    */
-  public Set<Object> keySet() {
+  public synchronized Set<Object> keySet() {
+    storage.key().clear();
+    return doKeySet();
+  }
+
+  private Set<Object> doKeySet() {
     try {
       Set<Object> keys = Sets.newLinkedHashSet();
-      exchange.clear();
-      Exchange iteratorExchange = new Exchange(exchange);
-      iteratorExchange.append(Key.BEFORE);
-      while (iteratorExchange.next(false)) {
-        keys.add(iteratorExchange.getKey().indexTo(-1).decode());
+      CacheStorage.Cursor cursor = storage.children(storage.key());
+      while (cursor.next()) {
+        keys.add(cursor.key().indexTo(-1).decode());
       }
       return keys;
     } catch (Exception e) {
@@ -300,50 +273,47 @@ public class Cache<V> {
    * Lazy-loading values for given keys
    */
   public Iterable<V> values(Object firstKey, Object secondKey) {
-    return new ValueIterable<V>(exchange, firstKey, secondKey);
+    return new ValueIterable<V>(this, storage, firstKey, secondKey);
   }
 
   /**
    * Lazy-loading values for a given key
    */
   public Iterable<V> values(Object firstKey) {
-    return new ValueIterable<V>(exchange, firstKey);
+    return new ValueIterable<V>(this, storage, firstKey);
   }
 
   /**
    * Lazy-loading values
    */
   public Iterable<V> values() {
-    return new ValueIterable<V>(exchange);
+    return new ValueIterable<V>(this, storage);
   }
 
   public Iterable<Entry<V>> entries() {
-    return new EntryIterable<V>(exchange);
+    return new EntryIterable<V>(this, storage);
   }
 
   public Iterable<Entry<V>> entries(Object firstKey) {
-    return new EntryIterable<V>(exchange, firstKey);
+    return new EntryIterable<V>(this, storage, firstKey);
   }
 
   private void resetKey(Object key) {
-    exchange.clear();
-    exchange.append(key);
+    storage.key().clear().append(key);
   }
 
   private void resetKey(Object first, Object second) {
-    exchange.clear();
-    exchange.append(first).append(second);
+    storage.key().clear().append(first).append(second);
   }
 
   private void resetKey(Object first, Object second, Object third) {
-    exchange.clear();
-    exchange.append(first).append(second).append(third);
+    storage.key().clear().append(first).append(second).append(third);
   }
 
   private void resetKey(Object[] keys) {
-    exchange.clear();
+    Key key = storage.key().clear();
     for (Object o : keys) {
-      exchange.append(o);
+      key.append(o);
     }
   }
 
@@ -351,131 +321,118 @@ public class Cache<V> {
   // LAZY ITERATORS AND ITERABLES
   //
 
+  private static Key prefix(CacheStorage storage, Object... keys) {
+    Key prefix = storage.key().clear();
+    for (Object key : keys) {
+      prefix.append(key);
+    }
+    return prefix;
+  }
+
   private static class ValueIterable<T> implements Iterable<T> {
-    private final Exchange originExchange;
+    private final Object lock;
+    private final CacheStorage storage;
     private final Object[] keys;
 
-    private ValueIterable(Exchange originExchange, Object... keys) {
-      this.originExchange = originExchange;
+    private ValueIterable(Object lock, CacheStorage storage, Object... keys) {
+      this.lock = lock;
+      this.storage = storage;
       this.keys = keys;
     }
 
     @Override
     public Iterator<T> iterator() {
-      originExchange.clear();
-      KeyFilter filter = new KeyFilter();
-      for (Object key : keys) {
-        originExchange.append(key);
-        filter = filter.append(KeyFilter.simpleTerm(key));
+      synchronized (lock) {
+        return new ValueIterator<T>(lock, storage.descendants(prefix(storage, keys)));
       }
-      originExchange.append(Key.BEFORE);
-      Exchange iteratorExchange = new Exchange(originExchange);
-      return new ValueIterator<T>(iteratorExchange, filter);
     }
   }
 
-  private static class ValueIterator<T> implements Iterator<T> {
-    private final Exchange exchange;
-    private final KeyFilter keyFilter;
+  private abstract static class CursorIterator<T> implements Iterator<T> {
+    private final Object lock;
+    private final CacheStorage.Cursor cursor;
+    private Boolean hasNext = null;
 
-    private ValueIterator(Exchange exchange, KeyFilter keyFilter) {
-      this.exchange = exchange;
-      this.keyFilter = keyFilter;
+    private CursorIterator(Object lock, CacheStorage.Cursor cursor) {
+      this.lock = lock;
+      this.cursor = cursor;
     }
 
     @Override
     public boolean hasNext() {
-      try {
-        return exchange.hasNext(keyFilter);
-      } catch (PersistitException e) {
-        throw new IllegalStateException(e);
+      if (hasNext == null) {
+        synchronized (lock) {
+          hasNext = cursor.next();
+        }
       }
+      return hasNext;
     }
 
-    @SuppressWarnings("unchecked")
     @Override
     public T next() {
-      try {
-        exchange.next(keyFilter);
-      } catch (PersistitException e) {
-        throw new IllegalStateException(e);
+      if (!hasNext()) {
+        throw new NoSuchElementException();
       }
-      if (exchange.getValue().isDefined()) {
-        return (T) exchange.getValue().get();
+      hasNext = null;
+      synchronized (lock) {
+        return load(cursor);
       }
-      throw new NoSuchElementException();
     }
 
+    protected abstract T load(CacheStorage.Cursor cursor);
+
     @Override
     public void remove() {
       throw new UnsupportedOperationException("Removing an item is not supported");
     }
   }
 
+  private static class ValueIterator<T> extends CursorIterator<T> {
+    private ValueIterator(Object lock, CacheStorage.Cursor cursor) {
+      super(lock, cursor);
+    }
+
+    @SuppressWarnings("unchecked")
+    @Override
+    protected T load(CacheStorage.Cursor cursor) {
+      return (T) cursor.value().get();
+    }
+  }
+
   private static class EntryIterable<T> implements Iterable<Entry<T>> {
-    private final Exchange originExchange;
+    private final Object lock;
+    private final CacheStorage storage;
     private final Object[] keys;
 
-    private EntryIterable(Exchange originExchange, Object... keys) {
-      this.originExchange = originExchange;
+    private EntryIterable(Object lock, CacheStorage storage, Object... keys) {
+      this.lock = lock;
+      this.storage = storage;
       this.keys = keys;
     }
 
     @Override
     public Iterator<Entry<T>> iterator() {
-      originExchange.clear();
-      KeyFilter filter = new KeyFilter();
-      for (Object key : keys) {
-        originExchange.append(key);
-        filter = filter.append(KeyFilter.simpleTerm(key));
+      synchronized (lock) {
+        return new EntryIterator<T>(lock, storage.descendants(prefix(storage, keys)));
       }
-      originExchange.append(Key.BEFORE);
-      Exchange iteratorExchange = new Exchange(originExchange);
-      return new EntryIterator<T>(iteratorExchange, filter);
     }
   }
 
-  private static class EntryIterator<T> implements Iterator<Entry<T>> {
-    private final Exchange exchange;
-    private final KeyFilter keyFilter;
-
-    private EntryIterator(Exchange exchange, KeyFilter keyFilter) {
-      this.exchange = exchange;
-      this.keyFilter = keyFilter;
-    }
-
-    @Override
-    public boolean hasNext() {
-      try {
-        return exchange.hasNext(keyFilter);
-      } catch (PersistitException e) {
-        throw new IllegalStateException(e);
-      }
+  private static class EntryIterator<T> extends CursorIterator<Entry<T>> {
+    private EntryIterator(Object lock, CacheStorage.Cursor cursor) {
+      super(lock, cursor);
     }
 
     @SuppressWarnings("unchecked")
     @Override
-    public Entry<T> next() {
-      try {
-        exchange.next(keyFilter);
-      } catch (PersistitException e) {
-        throw new IllegalStateException(e);
-      }
-      if (exchange.getValue().isDefined()) {
-        T value = (T) exchange.getValue().get();
-        Key key = exchange.getKey();
-        Object[] array = new Object[key.getDepth()];
-        for (int i = 0; i < key.getDepth(); i++) {
-          array[i] = key.indexTo(i - key.getDepth()).decode();
-        }
-        return new Entry<T>(array, value);
+    protected Entry<T> load(CacheStorage.Cursor cursor) {
+      T value = (T) cursor.value().get();
+      Key key = cursor.key();
+      Object[] array = new Object[key.getDepth()];
+      for (int i = 0; i < key.getDepth(); i++) {
+        array[i] = key.indexTo(i - key.getDepth()).decode();
       }
-      throw new NoSuchElementException();
-    }
-
-    @Override
-    public void remove() {
-      throw new UnsupportedOperationException("Removing an item is not supported");
+      return new Entry<T>(array, value);
     }
   }
 
@@ -483,7 +440,7 @@ public class Cache<V> {
     private final Object[] key;
     private final V value;
 
-    Entry(Object[] key, V value) {
+    public Entry(Object[] key, V value) {
       this.key = key;
       this.value = value;
     }
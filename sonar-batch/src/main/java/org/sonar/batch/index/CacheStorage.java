@@ -0,0 +1,97 @@
+/*
+ * SonarQube, open source software quality management tool.
+ * Copyright (C) 2008-2014 SonarSource
+ * mailto:contact AT sonarsource DOT com
+ *
+ * SonarQube is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * SonarQube is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+ */
+package org.sonar.batch.index;
+
+import com.persistit.Key;
+import com.persistit.Value;
+
+/**
+ * Storage of the entries of a {@link Cache}. Keys and values are encoded by Persistit,
+ * so that all the storages share the same ordering of keys and the same value coders.
+ * Encoding of a key is a prefix of the encoding of its descendants, for example
+ * the key ("a") is a prefix of ("a", "b").
+ * <p/>
+ * Operations apply to the working {@link #key()} and {@link #value()}. A storage is not thread-safe.
+ *
+ * @since 5.1
+ */
+interface CacheStorage {
+
+  /**
+   * Working key, to be set before each operation
+   */
+  Key key();
+
+  /**
+   * Working value, stored by {@link #store()} and loaded by {@link #fetch()}
+   */
+  Value value();
+
+  /**
+   * Associates the working value to the working key
+   */
+  void store();
+
+  /**
+   * Loads into the working value the value associated to the working key.
+   *
+   * @return false if the key is not found. The working value is then undefined.
+   */
+  boolean fetch();
+
+  /**
+   * Removes the working key, but not its descendants
+   *
+   * @return false if the key is not found
+   */
+  boolean remove();
+
+  /**
+   * Removes the working key and all its descendants
+   */
+  void removeTree();
+
+  void removeAll();
+
+  /**
+   * Lazily iterates, in the order of keys, on the entries whose keys are descendants of the given prefix.
+   * The prefix itself is excluded. An empty prefix iterates on all the entries.
+   */
+  Cursor descendants(Key prefix);
+
+  /**
+   * Lazily iterates, in the order of keys, on the distinct keys that have exactly one more segment than the given prefix
+   * and that are stored or have stored descendants. Values are not loaded.
+   */
+  Cursor children(Key prefix);
+
+  interface Cursor {
+    /**
+     * Moves to the next key
+     *
+     * @return false if there are no more keys
+     */
+    boolean next();
+
+    Key key();
+
+    Value value();
+  }
+}
@@ -21,40 +21,132 @@ package org.sonar.batch.index;
 
 import com.google.common.base.Preconditions;
 import com.google.common.collect.Sets;
-import com.persistit.Exchange;
 import com.persistit.Persistit;
-import com.persistit.Value;
-import com.persistit.Volume;
 import com.persistit.encoding.CoderManager;
 import com.persistit.encoding.ValueCoder;
 import com.persistit.exception.PersistitException;
 import com.persistit.logging.Slf4jAdapter;
+import com.google.common.annotations.VisibleForTesting;
 import org.apache.commons.io.FileUtils;
+import org.apache.commons.lang.StringUtils;
 import org.picocontainer.Startable;
+import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.sonar.api.BatchComponent;
+import org.sonar.api.batch.bootstrap.ProjectReactor;
+import org.sonar.api.utils.MessageException;
 import org.sonar.api.utils.TempFolder;
+import org.sonar.batch.bootstrap.BootstrapProperties;
+
+import javax.annotation.Nullable;
 
 import java.io.File;
 import java.util.Properties;
 import java.util.Set;
 
 /**
- * Factory of caches
+ * Factory of caches.
+ * <p/>
+ * Caches are stored by the engine selected by the bootstrap property {@link #ENGINE_PROPERTY}:
+ * <ul>
+ *   <li>{@link #PERSISTIT_ENGINE} (default): temporary Persistit volume. Pages that do not fit in the in-memory buffer pool
+ *   are evicted to disk without any size limit.</li>
+ *   <li>{@link #OFF_HEAP_ENGINE}: direct buffers out of the Java heap</li>
+ *   <li>{@link #MAPPED_FILE_ENGINE}: memory-mapped temporary file</li>
+ * </ul>
+ * The memory of caches, that is the size of the buffer pool or of the slabs of off-heap and mmap engines,
+ * is computed from the number of modules and from the maximum heap size, unless it is forced
+ * by the bootstrap property {@link #MEMORY_PROPERTY}.
  *
  * @since 3.6
  */
 public class Caches implements BatchComponent, Startable {
 
+  /**
+   * Size in Mb of the memory used by caches
+   * @since 5.1
+   */
+  public static final String MEMORY_PROPERTY = "sonar.batch.cache.memory";
+
+  /**
+   * Storage engine of caches: {@link #PERSISTIT_ENGINE}, {@link #OFF_HEAP_ENGINE} or {@link #MAPPED_FILE_ENGINE}
+   * @since 5.1
+   */
+  public static final String ENGINE_PROPERTY = "sonar.batch.cache.engine";
+  public static final String PERSISTIT_ENGINE = "persistit";
+  public static final String OFF_HEAP_ENGINE = "offheap";
+  public static final String MAPPED_FILE_ENGINE = "mmap";
+
+  private static final Logger LOG = LoggerFactory.getLogger(Caches.class);
+  private static final int PAGE_SIZE = 8192;
+  private static final int MIN_BUFFERS = 10;
+  private static final long KB = 1024L;
+  private static final long MB = 1024L * KB;
+  private static final long MIN_MEMORY = 8L * MB;
+  private static final long MEMORY_PER_MODULE = 2L * MB;
+  // large enough to never be reached, disk space being the actual limit
+  private static final long MAX_VOLUME_SIZE = 100L * 1024L * MB;
+  // caches must not use more than 1/5 of the heap, as they live beside the whole analysis
+  private static final int MAX_HEAP_RATIO = 5;
+  // slabs are allocated on demand, the memory of caches being split in 16 slabs
+  private static final int SLABS_IN_MEMORY = 16;
+  private static final long MIN_SLAB_SIZE = 64L * KB;
+  private static final long MAX_SLAB_SIZE = 16L * MB;
+
   private final Set<String> cacheNames = Sets.newHashSet();
   private File tempDir;
   private Persistit persistit;
-  private Volume volume;
+  private StorageEngine engine;
   private final TempFolder tempFolder;
+  private final String engineName;
+  private final long memory;
+
+  public Caches(TempFolder tempFolder, BootstrapProperties bootstrapProps, ProjectReactor reactor) {
+    this(tempFolder, StringUtils.defaultIfBlank(bootstrapProps.property(ENGINE_PROPERTY), PERSISTIT_ENGINE).trim(),
+      memory(bootstrapProps.property(MEMORY_PROPERTY), reactor.getProjects().size(), Runtime.getRuntime().maxMemory()));
+  }
 
   public Caches(TempFolder tempFolder) {
+    this(tempFolder, PERSISTIT_ENGINE, memory(null, 1, Runtime.getRuntime().maxMemory()));
+  }
+
+  private Caches(TempFolder tempFolder, String engineName, long memory) {
     this.tempFolder = tempFolder;
+    this.engineName = engineName;
+    this.memory = memory;
     initPersistit();
+    initEngine();
+  }
+
+  /**
+   * Memory of caches, in bytes
+   */
+  @VisibleForTesting
+  static long memory(@Nullable String forcedMemoryInMb, int modules, long maxHeap) {
+    if (StringUtils.isNotBlank(forcedMemoryInMb)) {
+      return Long.parseLong(forcedMemoryInMb.trim()) * MB;
+    }
+    return Math.min(Math.max(MIN_MEMORY, modules * MEMORY_PER_MODULE), maxHeap / MAX_HEAP_RATIO);
+  }
+
+  /**
+   * Number of pages of the buffer pool
+   */
+  @VisibleForTesting
+  static int bufferCount(@Nullable String forcedMemoryInMb, int modules, long maxHeap) {
+    return bufferCount(memory(forcedMemoryInMb, modules, maxHeap));
+  }
+
+  private static int bufferCount(long memory) {
+    return (int) Math.max(MIN_BUFFERS, Math.min(Integer.MAX_VALUE, memory / PAGE_SIZE));
+  }
+
+  /**
+   * Size of the slabs of off-heap and mmap engines
+   */
+  @VisibleForTesting
+  static int slabSize(long memory) {
+    return (int) Math.min(MAX_SLAB_SIZE, Math.max(MIN_SLAB_SIZE, memory / SLABS_IN_MEMORY));
   }
 
   private void initPersistit() {
@@ -66,36 +158,48 @@ public class Caches implements BatchComponent, Startable {
       props.setProperty("datapath", tempDir.getAbsolutePath());
       props.setProperty("logpath", "${datapath}/log");
       props.setProperty("logfile", "${logpath}/persistit_${timestamp}.log");
-      props.setProperty("buffer.count.8192", "10");
+      props.setProperty("buffer.count." + PAGE_SIZE, String.valueOf(bufferCount()));
       props.setProperty("journalpath", "${datapath}/journal");
       props.setProperty("tmpvoldir", "${datapath}");
-      props.setProperty("volume.1", "${datapath}/persistit,create,pageSize:8192,initialPages:10,extensionPages:100,maximumPages:25000");
+      props.setProperty("tmpvolpagesize", String.valueOf(PAGE_SIZE));
+      props.setProperty("tmpvolmaxsize", String.valueOf(MAX_VOLUME_SIZE));
+      props.setProperty("volume.1", "${datapath}/persistit,create,pageSize:" + PAGE_SIZE + ",initialPages:10,extensionPages:1000,maximumPages:" + MAX_VOLUME_SIZE / PAGE_SIZE);
       persistit.setProperties(props);
       persistit.initialize();
-      volume = persistit.createTemporaryVolume();
 
     } catch (Exception e) {
       throw new IllegalStateException("Fail to start caches", e);
     }
   }
 
+  private void initEngine() {
+    if (PERSISTIT_ENGINE.equals(engineName)) {
+      LOG.debug(String.format("Caches use %d Mb of memory", bufferCount() * (long) PAGE_SIZE / MB));
+      engine = new PersistitStorageEngine(persistit);
+    } else if (OFF_HEAP_ENGINE.equals(engineName)) {
+      LOG.debug(String.format("Caches are stored off-heap in slabs of %d Kb", slabSize(memory) / KB));
+      engine = new OffHeapStorageEngine(persistit, slabSize(memory));
+    } else if (MAPPED_FILE_ENGINE.equals(engineName)) {
+      LOG.debug(String.format("Caches are stored in a memory-mapped file in slabs of %d Kb", slabSize(memory) / KB));
+      engine = new MappedFileStorageEngine(persistit, slabSize(memory), new File(tempDir, "caches.mmap"));
+    } else {
+      stop();
+      throw MessageException.of(String.format("Unknown cache engine '%s'. Supported values of property %s are %s, %s and %s",
+        engineName, ENGINE_PROPERTY, PERSISTIT_ENGINE, OFF_HEAP_ENGINE, MAPPED_FILE_ENGINE));
+    }
+  }
+
   public void registerValueCoder(Class<?> clazz, ValueCoder coder) {
     CoderManager cm = persistit.getCoderManager();
     cm.registerValueCoder(clazz, coder);
   }
 
   public <V> Cache<V> createCache(String cacheName) {
-    Preconditions.checkState(volume != null && volume.isOpened(), "Caches are not initialized");
+    Preconditions.checkState(engine != null, "Caches are not initialized");
     Preconditions.checkState(!cacheNames.contains(cacheName), "Cache is already created: " + cacheName);
-    try {
-      Exchange exchange = persistit.getExchange(volume, cacheName, true);
-      exchange.setMaximumValueSize(Value.MAXIMUM_SIZE);
-      Cache<V> cache = new Cache<V>(cacheName, exchange);
-      cacheNames.add(cacheName);
-      return cache;
-    } catch (Exception e) {
-      throw new IllegalStateException("Fail to create cache: " + cacheName, e);
-    }
+    Cache<V> cache = new Cache<V>(cacheName, engine.createStorage(cacheName));
+    cacheNames.add(cacheName);
+    return cache;
   }
 
   @Override
@@ -105,11 +209,14 @@ public class Caches implements BatchComponent, Startable {
 
   @Override
   public void stop() {
+    if (engine != null) {
+      engine.close();
+      engine = null;
+    }
     if (persistit != null) {
       try {
         persistit.close(false);
         persistit = null;
-        volume = null;
       } catch (PersistitException e) {
         throw new IllegalStateException("Fail to close caches", e);
       }
@@ -119,6 +226,14 @@ public class Caches implements BatchComponent, Startable {
     cacheNames.clear();
   }
 
+  /**
+   * Number of pages of the Persistit buffer pool. Off-heap and mmap engines use Persistit only
+   * to encode keys and values, so they need a minimal pool.
+   */
+  int bufferCount() {
+    return PERSISTIT_ENGINE.equals(engineName) ? bufferCount(memory) : MIN_BUFFERS;
+  }
+
   File tempDir() {
     return tempDir;
   }
@@ -126,4 +241,8 @@ public class Caches implements BatchComponent, Startable {
   Persistit persistit() {
     return persistit;
   }
+
+  StorageEngine engine() {
+    return engine;
+  }
 }
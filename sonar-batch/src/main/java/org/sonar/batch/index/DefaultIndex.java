@@ -20,6 +20,8 @@
 package org.sonar.batch.index;
 
 import com.google.common.base.Preconditions;
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ImmutableSet;
 import com.google.common.collect.Lists;
 import com.google.common.collect.Maps;
 import com.google.common.collect.Sets;
@@ -54,6 +56,11 @@ import javax.annotation.Nullable;
 import java.io.IOException;
 import java.util.*;
 
+/**
+ * Index of the resources, measures and dependencies of the analysis. Public methods are synchronized, so that
+ * decorators that are executed concurrently can share the index, see {@link org.sonar.api.batch.ThreadSafeDecorator}.
+ * Returned collections are copies taken under the lock, as they are read while other threads keep on writing.
+ */
 public class DefaultIndex extends SonarIndex {
 
   private static final Logger LOG = LoggerFactory.getLogger(DefaultIndex.class);
@@ -163,11 +170,11 @@ public class DefaultIndex extends SonarIndex {
   }
 
   @Override
-  public Project getProject() {
+  public synchronized Project getProject() {
     return currentProject;
   }
 
-  public void setCurrentProject(Project project, ModuleIssues moduleIssues) {
+  public synchronized void setCurrentProject(Project project, ModuleIssues moduleIssues) {
     this.currentProject = project;
 
     // the following components depend on the current module, so they need to be reloaded.
@@ -177,7 +184,7 @@ public class DefaultIndex extends SonarIndex {
   /**
    * Keep only project stuff
    */
-  public void clear() {
+  public synchronized void clear() {
     Iterator<Map.Entry<Resource, Bucket>> it = buckets.entrySet().iterator();
     while (it.hasNext()) {
       Map.Entry<Resource, Bucket> entry = it.next();
@@ -206,13 +213,13 @@ public class DefaultIndex extends SonarIndex {
 
   @CheckForNull
   @Override
-  public Measure getMeasure(Resource resource, org.sonar.api.batch.measure.Metric<?> metric) {
+  public synchronized Measure getMeasure(Resource resource, org.sonar.api.batch.measure.Metric<?> metric) {
     return getMeasures(resource, MeasuresFilters.metric(metric));
   }
 
   @CheckForNull
   @Override
-  public <M> M getMeasures(Resource resource, MeasuresFilter<M> filter) {
+  public synchronized <M> M getMeasures(Resource resource, MeasuresFilter<M> filter) {
     // Reload resource so that effective key is populated
     Resource indexedResource = getResource(resource);
     if (indexedResource == null) {
@@ -235,7 +242,7 @@ public class DefaultIndex extends SonarIndex {
   }
 
   @Override
-  public Measure addMeasure(Resource resource, Measure measure) {
+  public synchronized Measure addMeasure(Resource resource, Measure measure) {
     Bucket bucket = getBucket(resource);
     if (bucket != null) {
       org.sonar.api.batch.measure.Metric metric = metricFinder.findByKey(measure.getMetricKey());
@@ -270,7 +277,7 @@ public class DefaultIndex extends SonarIndex {
   //
 
   @Override
-  public Dependency addDependency(Dependency dependency) {
+  public synchronized Dependency addDependency(Dependency dependency) {
     // Reload resources
     Resource from = getResource(dependency.getFrom());
     Preconditions.checkArgument(from != null, dependency.getFrom() + " is not indexed");
@@ -324,12 +331,12 @@ public class DefaultIndex extends SonarIndex {
   }
 
   @Override
-  public Set<Dependency> getDependencies() {
-    return dependencies;
+  public synchronized Set<Dependency> getDependencies() {
+    return ImmutableSet.copyOf(dependencies);
   }
 
   @Override
-  public Dependency getEdge(Resource from, Resource to) {
+  public synchronized Dependency getEdge(Resource from, Resource to) {
     Map<Resource, Dependency> map = outgoingDependenciesByResource.get(from);
     if (map != null) {
       return map.get(to);
@@ -338,29 +345,29 @@ public class DefaultIndex extends SonarIndex {
   }
 
   @Override
-  public boolean hasEdge(Resource from, Resource to) {
+  public synchronized boolean hasEdge(Resource from, Resource to) {
     return getEdge(from, to) != null;
   }
 
   @Override
-  public Set<Resource> getVertices() {
-    return buckets.keySet();
+  public synchronized Set<Resource> getVertices() {
+    return ImmutableSet.copyOf(buckets.keySet());
   }
 
   @Override
-  public Collection<Dependency> getOutgoingEdges(Resource from) {
+  public synchronized Collection<Dependency> getOutgoingEdges(Resource from) {
     Map<Resource, Dependency> deps = outgoingDependenciesByResource.get(from);
     if (deps != null) {
-      return deps.values();
+      return ImmutableList.copyOf(deps.values());
     }
     return Collections.emptyList();
   }
 
   @Override
-  public Collection<Dependency> getIncomingEdges(Resource to) {
+  public synchronized Collection<Dependency> getIncomingEdges(Resource to) {
     Map<Resource, Dependency> deps = incomingDependenciesByResource.get(to);
     if (deps != null) {
-      return deps.values();
+      return ImmutableList.copyOf(deps.values());
     }
     return Collections.emptyList();
   }
@@ -384,7 +391,7 @@ public class DefaultIndex extends SonarIndex {
   //
 
   @Override
-  public void addViolation(Violation violation, boolean force) {
+  public synchronized void addViolation(Violation violation, boolean force) {
     Resource resource = violation.getResource();
     if (resource == null) {
       violation.setResource(currentProject);
@@ -422,14 +429,14 @@ public class DefaultIndex extends SonarIndex {
   //
 
   @Override
-  public void addLink(ProjectLink link) {
+  public synchronized void addLink(ProjectLink link) {
     if (linkPersister != null) {
       linkPersister.saveLink(currentProject, link);
     }
   }
 
   @Override
-  public void deleteLink(String key) {
+  public synchronized void deleteLink(String key) {
     if (linkPersister != null) {
       linkPersister.deleteLink(currentProject, key);
     }
@@ -444,7 +451,7 @@ public class DefaultIndex extends SonarIndex {
   //
 
   @Override
-  public List<Event> getEvents(Resource resource) {
+  public synchronized List<Event> getEvents(Resource resource) {
     // currently events are not cached in memory
     Resource reload = getResource(resource);
     if (reload == null) {
@@ -457,14 +464,14 @@ public class DefaultIndex extends SonarIndex {
   }
 
   @Override
-  public void deleteEvent(Event event) {
+  public synchronized void deleteEvent(Event event) {
     if (eventPersister != null) {
       eventPersister.deleteEvent(event);
     }
   }
 
   @Override
-  public Event addEvent(Resource resource, String name, String description, String category, @Nullable Date date) {
+  public synchronized Event addEvent(Resource resource, String name, String description, String category, @Nullable Date date) {
     Event event = new Event(name, description, category);
     if (date != null) {
       event.setDate(date);
@@ -477,7 +484,7 @@ public class DefaultIndex extends SonarIndex {
   }
 
   @Override
-  public String getSource(Resource reference) {
+  public synchronized String getSource(Resource reference) {
     Resource resource = getResource(reference);
     if (resource instanceof File) {
       File file = (File) resource;
@@ -496,14 +503,14 @@ public class DefaultIndex extends SonarIndex {
    * Does nothing if the resource is already registered.
    */
   @Override
-  public Resource addResource(Resource resource) {
+  public synchronized Resource addResource(Resource resource) {
     Bucket bucket = doIndex(resource);
     return bucket != null ? bucket.getResource() : null;
   }
 
   @Override
   @CheckForNull
-  public <R extends Resource> R getResource(@Nullable R reference) {
+  public synchronized <R extends Resource> R getResource(@Nullable R reference) {
     Bucket bucket = getBucket(reference);
     if (bucket != null) {
       return (R) bucket.getResource();
@@ -512,7 +519,7 @@ public class DefaultIndex extends SonarIndex {
   }
 
   @Override
-  public List<Resource> getChildren(Resource resource) {
+  public synchronized List<Resource> getChildren(Resource resource) {
     List<Resource> children = Lists.newLinkedList();
     Bucket bucket = getBucket(resource);
     if (bucket != null) {
@@ -524,7 +531,7 @@ public class DefaultIndex extends SonarIndex {
   }
 
   @Override
-  public Resource getParent(Resource resource) {
+  public synchronized Resource getParent(Resource resource) {
     Bucket bucket = getBucket(resource);
     if (bucket != null && bucket.getParent() != null) {
       return bucket.getParent().getResource();
@@ -533,7 +540,7 @@ public class DefaultIndex extends SonarIndex {
   }
 
   @Override
-  public boolean index(Resource resource) {
+  public synchronized boolean index(Resource resource) {
     Bucket bucket = doIndex(resource);
     return bucket != null;
   }
@@ -546,7 +553,7 @@ public class DefaultIndex extends SonarIndex {
   }
 
   @Override
-  public boolean index(Resource resource, Resource parentReference) {
+  public synchronized boolean index(Resource resource, Resource parentReference) {
     Bucket bucket = doIndex(resource, parentReference);
     return bucket != null;
   }
@@ -589,12 +596,12 @@ public class DefaultIndex extends SonarIndex {
   }
 
   @Override
-  public boolean isExcluded(@Nullable Resource reference) {
+  public synchronized boolean isExcluded(@Nullable Resource reference) {
     return false;
   }
 
   @Override
-  public boolean isIndexed(@Nullable Resource reference, boolean acceptExcluded) {
+  public synchronized boolean isIndexed(@Nullable Resource reference, boolean acceptExcluded) {
     return getBucket(reference) != null;
   }
 
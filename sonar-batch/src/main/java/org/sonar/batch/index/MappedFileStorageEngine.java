@@ -0,0 +1,77 @@
+/*
+ * SonarQube, open source software quality management tool.
+ * Copyright (C) 2008-2014 SonarSource
+ * mailto:contact AT sonarsource DOT com
+ *
+ * SonarQube is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * SonarQube is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+ */
+package org.sonar.batch.index;
+
+import com.persistit.Persistit;
+import org.apache.commons.io.FileUtils;
+import org.apache.commons.io.IOUtils;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+
+/**
+ * Stores values in regions of a temporary file that are mapped in memory. The operating system
+ * decides which pages stay in memory, so the amount of data is limited by disk space only.
+ * Regions of values larger than slabs are not reused.
+ *
+ * @since 5.1
+ */
+class MappedFileStorageEngine extends SlabStorageEngine {
+
+  private final File file;
+  private final RandomAccessFile randomAccessFile;
+  private long fileSize = 0L;
+
+  MappedFileStorageEngine(Persistit persistit, int slabSize, File file) {
+    super(persistit, slabSize);
+    this.file = file;
+    try {
+      this.randomAccessFile = new RandomAccessFile(file, "rw");
+    } catch (IOException e) {
+      throw new IllegalStateException("Fail to create file " + file, e);
+    }
+  }
+
+  @Override
+  protected synchronized ByteBuffer allocate(int capacity) {
+    try {
+      ByteBuffer buffer = randomAccessFile.getChannel().map(FileChannel.MapMode.READ_WRITE, fileSize, capacity);
+      fileSize += capacity;
+      return buffer;
+    } catch (IOException e) {
+      throw new IllegalStateException("Fail to map " + capacity + " bytes of file " + file, e);
+    }
+  }
+
+  @Override
+  public synchronized void close() {
+    super.close();
+    IOUtils.closeQuietly(randomAccessFile);
+    // mapped regions are released on garbage collection, deletion may fail on Windows until then
+    FileUtils.deleteQuietly(file);
+  }
+
+  File file() {
+    return file;
+  }
+}
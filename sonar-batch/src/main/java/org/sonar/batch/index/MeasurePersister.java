@@ -20,9 +20,12 @@
 package org.sonar.batch.index;
 
 import com.google.common.annotations.VisibleForTesting;
+import com.google.common.collect.Lists;
+import com.google.common.collect.Maps;
 import org.sonar.api.database.model.MeasureMapper;
 import org.sonar.api.database.model.MeasureModel;
 import org.sonar.api.measures.Measure;
+import org.sonar.api.measures.Metric;
 import org.sonar.api.measures.MetricFinder;
 import org.sonar.api.measures.RuleMeasure;
 import org.sonar.api.resources.Resource;
@@ -33,21 +36,34 @@ import org.sonar.api.rules.RuleFinder;
 import org.sonar.api.technicaldebt.batch.Characteristic;
 import org.sonar.batch.index.Cache.Entry;
 import org.sonar.batch.scan.measure.MeasureCache;
+import org.sonar.core.persistence.Database;
 import org.sonar.core.persistence.DbSession;
 import org.sonar.core.persistence.MyBatis;
 
 import javax.annotation.Nullable;
 
+import java.util.List;
+import java.util.Map;
+
 public class MeasurePersister implements ScanPersister {
+
+  /**
+   * Number of measures inserted by a single multi-rows statement. Limited by the
+   * maximum number of parameters of a statement on MS SQL Server (2100).
+   */
+  static final int ROWS_PER_INSERT = 50;
+
   private final MyBatis mybatis;
+  private final Database database;
   private final RuleFinder ruleFinder;
   private final MeasureCache measureCache;
   private final ResourceCache resourceCache;
   private final MetricFinder metricFinder;
 
-  public MeasurePersister(MyBatis mybatis, RuleFinder ruleFinder, MetricFinder metricFinder,
+  public MeasurePersister(MyBatis mybatis, Database database, RuleFinder ruleFinder, MetricFinder metricFinder,
     MeasureCache measureCache, ResourceCache resourceCache) {
     this.mybatis = mybatis;
+    this.database = database;
     this.ruleFinder = ruleFinder;
     this.metricFinder = metricFinder;
     this.measureCache = measureCache;
@@ -56,8 +72,11 @@ public class MeasurePersister implements ScanPersister {
 
   @Override
   public void persist() {
+    boolean multipleRowsInsert = database.getDialect().supportsMultipleRowsInsert();
+    Map<String, Metric> metricsByKey = Maps.newHashMap();
     try (DbSession session = mybatis.openSession(true)) {
       MeasureMapper mapper = session.getMapper(MeasureMapper.class);
+      List<MeasureModel> rows = Lists.newArrayListWithCapacity(ROWS_PER_INSERT);
 
       for (Entry<Measure> entry : measureCache.entries()) {
         String effectiveKey = entry.key()[0].toString();
@@ -65,13 +84,24 @@ public class MeasurePersister implements ScanPersister {
         BatchResource batchResource = resourceCache.get(effectiveKey);
 
         // Reload Metric to have all Hibernate fields populated
-        measure.setMetric(metricFinder.findByKey(measure.getMetricKey()));
+        measure.setMetric(metric(metricsByKey, measure.getMetricKey()));
 
         if (shouldPersistMeasure(batchResource.resource(), measure)) {
           MeasureModel measureModel = model(measure, ruleFinder).setSnapshotId(batchResource.snapshotId());
-          mapper.insert(measureModel);
+          if (multipleRowsInsert) {
+            rows.add(measureModel);
+            if (rows.size() == ROWS_PER_INSERT) {
+              mapper.insertRows(rows);
+              rows = Lists.newArrayListWithCapacity(ROWS_PER_INSERT);
+            }
+          } else {
+            mapper.insert(measureModel);
+          }
         }
       }
+      if (!rows.isEmpty()) {
+        mapper.insertRows(rows);
+      }
 
       session.commit();
     } catch (Exception e) {
@@ -79,6 +109,15 @@ public class MeasurePersister implements ScanPersister {
     }
   }
 
+  private Metric metric(Map<String, Metric> metricsByKey, String metricKey) {
+    Metric metric = metricsByKey.get(metricKey);
+    if (metric == null) {
+      metric = metricFinder.findByKey(metricKey);
+      metricsByKey.put(metricKey, metric);
+    }
+    return metric;
+  }
+
   @VisibleForTesting
   static boolean shouldPersistMeasure(@Nullable Resource resource, @Nullable Measure measure) {
     if (resource == null || measure == null) {
@@ -0,0 +1,42 @@
+/*
+ * SonarQube, open source software quality management tool.
+ * Copyright (C) 2008-2014 SonarSource
+ * mailto:contact AT sonarsource DOT com
+ *
+ * SonarQube is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * SonarQube is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+ */
+package org.sonar.batch.index;
+
+import com.persistit.Persistit;
+
+import java.nio.ByteBuffer;
+
+/**
+ * Stores values in direct buffers. Memory is not limited by the heap size but by
+ * the JVM option -XX:MaxDirectMemorySize, which defaults to the maximum heap size.
+ *
+ * @since 5.1
+ */
+class OffHeapStorageEngine extends SlabStorageEngine {
+
+  OffHeapStorageEngine(Persistit persistit, int slabSize) {
+    super(persistit, slabSize);
+  }
+
+  @Override
+  protected ByteBuffer allocate(int capacity) {
+    return ByteBuffer.allocateDirect(capacity);
+  }
+}
@@ -0,0 +1,212 @@
+/*
+ * SonarQube, open source software quality management tool.
+ * Copyright (C) 2008-2014 SonarSource
+ * mailto:contact AT sonarsource DOT com
+ *
+ * SonarQube is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * SonarQube is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+ */
+package org.sonar.batch.index;
+
+import com.persistit.Exchange;
+import com.persistit.Key;
+import com.persistit.Persistit;
+import com.persistit.Value;
+import com.persistit.Volume;
+import com.persistit.exception.PersistitException;
+
+/**
+ * Stores caches in a temporary Persistit volume. Pages that do not fit in the buffer pool are
+ * evicted to disk.
+ *
+ * @since 5.1
+ */
+class PersistitStorageEngine implements StorageEngine {
+
+  private final Persistit persistit;
+  private final Volume volume;
+
+  PersistitStorageEngine(Persistit persistit) {
+    this.persistit = persistit;
+    try {
+      this.volume = persistit.createTemporaryVolume();
+    } catch (PersistitException e) {
+      throw new IllegalStateException("Fail to create temporary volume", e);
+    }
+  }
+
+  @Override
+  public CacheStorage createStorage(String cacheName) {
+    return new PersistitStorage(this, cacheName, newExchange(cacheName));
+  }
+
+  private Exchange newExchange(String cacheName) {
+    try {
+      Exchange exchange = persistit.getExchange(volume, cacheName, true);
+      exchange.setMaximumValueSize(Value.MAXIMUM_SIZE);
+      return exchange;
+    } catch (PersistitException e) {
+      throw new IllegalStateException("Fail to create cache: " + cacheName, e);
+    }
+  }
+
+  @Override
+  public void close() {
+    // the temporary volume is deleted when Persistit is closed
+  }
+
+  /**
+   * An exchange is bound to the thread that creates it, so each thread gets its own exchange
+   */
+  private static class PersistitStorage implements CacheStorage {
+    private final ThreadLocal<Exchange> exchanges;
+
+    PersistitStorage(final PersistitStorageEngine engine, final String cacheName, Exchange exchange) {
+      this.exchanges = new ThreadLocal<Exchange>() {
+        @Override
+        protected Exchange initialValue() {
+          return engine.newExchange(cacheName);
+        }
+      };
+      this.exchanges.set(exchange);
+    }
+
+    @Override
+    public Key key() {
+      return exchanges.get().getKey();
+    }
+
+    @Override
+    public Value value() {
+      return exchanges.get().getValue();
+    }
+
+    @Override
+    public void store() {
+      Exchange exchange = exchanges.get();
+      try {
+        exchange.store();
+      } catch (PersistitException e) {
+        throw new IllegalStateException(e);
+      }
+    }
+
+    @Override
+    public boolean fetch() {
+      Exchange exchange = exchanges.get();
+      try {
+        exchange.fetch();
+        return exchange.getValue().isDefined();
+      } catch (PersistitException e) {
+        throw new IllegalStateException(e);
+      }
+    }
+
+    @Override
+    public boolean remove() {
+      Exchange exchange = exchanges.get();
+      try {
+        return exchange.remove();
+      } catch (PersistitException e) {
+        throw new IllegalStateException(e);
+      }
+    }
+
+    @Override
+    public void removeTree() {
+      Exchange exchange = exchanges.get();
+      try {
+        Key to = new Key(exchange.getKey());
+        to.append(Key.AFTER);
+        exchange.removeKeyRange(exchange.getKey(), to);
+      } catch (PersistitException e) {
+        throw new IllegalStateException(e);
+      }
+    }
+
+    @Override
+    public void removeAll() {
+      Exchange exchange = exchanges.get();
+      try {
+        exchange.clear();
+        exchange.removeAll();
+      } catch (PersistitException e) {
+        throw new IllegalStateException(e);
+      }
+    }
+
+    @Override
+    public Cursor descendants(Key prefix) {
+      return new PersistitCursor(newExchange(prefix), prefix, true);
+    }
+
+    @Override
+    public Cursor children(Key prefix) {
+      return new PersistitCursor(newExchange(prefix), prefix, false);
+    }
+
+    private Exchange newExchange(Key prefix) {
+      Exchange iteratorExchange = new Exchange(exchanges.get());
+      prefix.copyTo(iteratorExchange.getKey());
+      iteratorExchange.append(Key.BEFORE);
+      return iteratorExchange;
+    }
+  }
+
+  private static class PersistitCursor implements CacheStorage.Cursor {
+    private final Exchange exchange;
+    private final Key prefix;
+    private final boolean deep;
+
+    PersistitCursor(Exchange exchange, Key prefix, boolean deep) {
+      this.exchange = exchange;
+      this.prefix = new Key(prefix);
+      this.deep = deep;
+    }
+
+    @Override
+    public boolean next() {
+      try {
+        // non-deep traversal stays in the siblings of the first child
+        return exchange.next(deep) && (!deep || isDescendantOfPrefix(exchange.getKey()));
+      } catch (PersistitException e) {
+        throw new IllegalStateException(e);
+      }
+    }
+
+    private boolean isDescendantOfPrefix(Key key) {
+      if (key.getEncodedSize() <= prefix.getEncodedSize()) {
+        return false;
+      }
+      byte[] keyBytes = key.getEncodedBytes();
+      byte[] prefixBytes = prefix.getEncodedBytes();
+      for (int i = 0; i < prefix.getEncodedSize(); i++) {
+        if (keyBytes[i] != prefixBytes[i]) {
+          return false;
+        }
+      }
+      return true;
+    }
+
+    @Override
+    public Key key() {
+      return exchange.getKey();
+    }
+
+    @Override
+    public Value value() {
+      return exchange.getValue();
+    }
+  }
+}
@@ -0,0 +1,384 @@
+/*
+ * SonarQube, open source software quality management tool.
+ * Copyright (C) 2008-2014 SonarSource
+ * mailto:contact AT sonarsource DOT com
+ *
+ * SonarQube is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * SonarQube is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+ */
+package org.sonar.batch.index;
+
+import com.google.common.primitives.UnsignedBytes;
+import com.persistit.Key;
+import com.persistit.Persistit;
+import com.persistit.Value;
+
+import javax.annotation.CheckForNull;
+
+import java.nio.ByteBuffer;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Deque;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.NavigableMap;
+import java.util.TreeMap;
+
+/**
+ * Stores values in large buffers, named slabs, that are allocated outside of the Java heap. Only the
+ * sorted index of encoded keys is kept in heap. Each value is appended to the current slab, prefixed
+ * by its size. A slab is recycled as soon as all its values are removed or replaced. Values larger
+ * than slabs get their own buffer.
+ *
+ * @since 5.1
+ */
+abstract class SlabStorageEngine implements StorageEngine {
+
+  private static final int HEADER_SIZE = 4;
+  private static final int INITIAL_VALUE_SIZE = 256;
+
+  private final Persistit persistit;
+  private final int slabSize;
+  private final List<Slab> slabs = new ArrayList<Slab>();
+  private final Deque<Integer> freeSlabs = new ArrayDeque<Integer>();
+  // indices of the released oversized slabs, reused by the next added slabs
+  private final Deque<Integer> emptySlots = new ArrayDeque<Integer>();
+  private int currentSlab = -1;
+
+  SlabStorageEngine(Persistit persistit, int slabSize) {
+    this.persistit = persistit;
+    this.slabSize = slabSize;
+  }
+
+  /**
+   * Allocates a buffer of the given capacity
+   */
+  protected abstract ByteBuffer allocate(int capacity);
+
+  @Override
+  public CacheStorage createStorage(String cacheName) {
+    return new SlabStorage(this, new Key(persistit), newValue());
+  }
+
+  private Value newValue() {
+    return new Value(persistit, INITIAL_VALUE_SIZE, Value.MAXIMUM_SIZE);
+  }
+
+  @Override
+  public synchronized void close() {
+    slabs.clear();
+    freeSlabs.clear();
+    emptySlots.clear();
+    currentSlab = -1;
+  }
+
+  int slabSize() {
+    return slabSize;
+  }
+
+  synchronized int slabCount() {
+    int count = 0;
+    for (Slab slab : slabs) {
+      if (slab != null) {
+        count++;
+      }
+    }
+    return count;
+  }
+
+  /**
+   * Number of slots of slabs, including the slots of released slabs
+   */
+  synchronized int slotCount() {
+    return slabs.size();
+  }
+
+  /**
+   * @return the address of the value, made of the index of the slab (high-order int) and of the offset in the slab
+   */
+  synchronized long write(Value value) {
+    int size = value.getEncodedSize();
+    int length = HEADER_SIZE + size;
+    int index;
+    if (length > slabSize) {
+      index = addSlab(allocate(length));
+    } else {
+      if (currentSlab < 0 || slabs.get(currentSlab).buffer.remaining() < length) {
+        currentSlab = freeSlabs.isEmpty() ? addSlab(allocate(slabSize)) : freeSlabs.pop();
+      }
+      index = currentSlab;
+    }
+    Slab slab = slabs.get(index);
+    int offset = slab.buffer.position();
+    slab.buffer.putInt(size);
+    slab.buffer.put(value.getEncodedBytes(), 0, size);
+    slab.liveBytes += length;
+    return ((long) index << 32) | offset;
+  }
+
+  synchronized void read(long address, Value value) {
+    ByteBuffer reader = slabs.get((int) (address >>> 32)).reader;
+    reader.position((int) address);
+    int size = reader.getInt();
+    value.clear();
+    value.ensureFit(size);
+    reader.get(value.getEncodedBytes(), 0, size);
+    value.setEncodedSize(size);
+  }
+
+  synchronized void free(long address) {
+    int index = (int) (address >>> 32);
+    Slab slab = slabs.get(index);
+    slab.liveBytes -= HEADER_SIZE + slab.buffer.getInt((int) address);
+    if (slab.liveBytes == 0) {
+      if (slab.buffer.capacity() > slabSize) {
+        slabs.set(index, null);
+        emptySlots.push(index);
+      } else {
+        slab.buffer.clear();
+        if (index != currentSlab) {
+          freeSlabs.push(index);
+        }
+      }
+    }
+  }
+
+  private int addSlab(ByteBuffer buffer) {
+    if (!emptySlots.isEmpty()) {
+      int index = emptySlots.pop();
+      slabs.set(index, new Slab(buffer));
+      return index;
+    }
+    slabs.add(new Slab(buffer));
+    return slabs.size() - 1;
+  }
+
+  private static class Slab {
+    private final ByteBuffer buffer;
+    private final ByteBuffer reader;
+    private int liveBytes = 0;
+
+    Slab(ByteBuffer buffer) {
+      this.buffer = buffer;
+      this.reader = buffer.duplicate();
+    }
+  }
+
+  static byte[] encodedBytes(Key key) {
+    return Arrays.copyOf(key.getEncodedBytes(), key.getEncodedSize());
+  }
+
+  static boolean startsWith(byte[] bytes, byte[] prefix) {
+    if (bytes.length < prefix.length) {
+      return false;
+    }
+    for (int i = 0; i < prefix.length; i++) {
+      if (bytes[i] != prefix[i]) {
+        return false;
+      }
+    }
+    return true;
+  }
+
+  private static void setEncodedBytes(Key key, byte[] bytes) {
+    System.arraycopy(bytes, 0, key.getEncodedBytes(), 0, bytes.length);
+    key.setEncodedSize(bytes.length);
+  }
+
+  private static class SlabStorage implements CacheStorage {
+    private final SlabStorageEngine engine;
+    private final NavigableMap<byte[], Long> index = new TreeMap<byte[], Long>(UnsignedBytes.lexicographicalComparator());
+    private final Key key;
+    private final Value value;
+    // incremented on each change of index, so that cursors know when they have to seek their position again
+    private int modCount = 0;
+
+    SlabStorage(SlabStorageEngine engine, Key key, Value value) {
+      this.engine = engine;
+      this.key = key;
+      this.value = value;
+    }
+
+    @Override
+    public Key key() {
+      return key;
+    }
+
+    @Override
+    public Value value() {
+      return value;
+    }
+
+    @Override
+    public void store() {
+      Long previous = index.put(encodedBytes(key), engine.write(value));
+      modCount++;
+      if (previous != null) {
+        engine.free(previous);
+      }
+    }
+
+    @Override
+    public boolean fetch() {
+      Long address = index.get(encodedBytes(key));
+      if (address == null) {
+        value.clear();
+        return false;
+      }
+      engine.read(address, value);
+      return true;
+    }
+
+    @Override
+    public boolean remove() {
+      Long address = index.remove(encodedBytes(key));
+      if (address != null) {
+        modCount++;
+        engine.free(address);
+        return true;
+      }
+      return false;
+    }
+
+    @Override
+    public void removeTree() {
+      byte[] prefix = encodedBytes(key);
+      Iterator<Map.Entry<byte[], Long>> entries = index.tailMap(prefix, true).entrySet().iterator();
+      while (entries.hasNext()) {
+        Map.Entry<byte[], Long> entry = entries.next();
+        if (!startsWith(entry.getKey(), prefix)) {
+          break;
+        }
+        engine.free(entry.getValue());
+        entries.remove();
+        modCount++;
+      }
+    }
+
+    @Override
+    public void removeAll() {
+      for (Long address : index.values()) {
+        engine.free(address);
+      }
+      index.clear();
+      modCount++;
+    }
+
+    @Override
+    public Cursor descendants(Key prefix) {
+      return new DescendantCursor(this, prefix);
+    }
+
+    @Override
+    public Cursor children(Key prefix) {
+      return new ChildCursor(this, prefix);
+    }
+  }
+
+  private abstract static class SlabCursor implements CacheStorage.Cursor {
+    protected final SlabStorage storage;
+    protected final byte[] prefix;
+    protected final int prefixDepth;
+    protected final Key key;
+    protected final Value value;
+    protected byte[] current;
+
+    SlabCursor(SlabStorage storage, Key prefix) {
+      this.storage = storage;
+      this.prefix = encodedBytes(prefix);
+      this.prefixDepth = prefix.getDepth();
+      this.key = new Key(prefix);
+      this.value = storage.engine.newValue();
+      this.current = this.prefix;
+    }
+
+    @Override
+    public boolean next() {
+      Map.Entry<byte[], Long> entry = nextEntry();
+      if (entry == null || !startsWith(entry.getKey(), prefix)) {
+        return false;
+      }
+      load(entry);
+      return true;
+    }
+
+    @CheckForNull
+    protected abstract Map.Entry<byte[], Long> nextEntry();
+
+    protected abstract void load(Map.Entry<byte[], Long> entry);
+
+    @Override
+    public Key key() {
+      return key;
+    }
+
+    @Override
+    public Value value() {
+      return value;
+    }
+  }
+
+  private static class DescendantCursor extends SlabCursor {
+    private Iterator<Map.Entry<byte[], Long>> entries;
+    private int expectedModCount;
+
+    DescendantCursor(SlabStorage storage, Key prefix) {
+      super(storage, prefix);
+    }
+
+    @Override
+    protected Map.Entry<byte[], Long> nextEntry() {
+      if (entries == null || expectedModCount != storage.modCount) {
+        // first call, or the cache has been modified during iteration: seek again after the current key
+        entries = storage.index.tailMap(current, false).entrySet().iterator();
+        expectedModCount = storage.modCount;
+      }
+      return entries.hasNext() ? entries.next() : null;
+    }
+
+    @Override
+    protected void load(Map.Entry<byte[], Long> entry) {
+      current = entry.getKey();
+      setEncodedBytes(key, current);
+      storage.engine.read(entry.getValue(), value);
+    }
+  }
+
+  private static class ChildCursor extends SlabCursor {
+    ChildCursor(SlabStorage storage, Key prefix) {
+      super(storage, prefix);
+    }
+
+    @Override
+    protected Map.Entry<byte[], Long> nextEntry() {
+      if (current == prefix) {
+        return storage.index.higherEntry(prefix);
+      }
+      // skip the descendants of the current child: the encoding of a segment ends with 0, so incrementing
+      // the last byte gives the lowest key greater than the whole subtree
+      byte[] afterChild = Arrays.copyOf(current, current.length);
+      afterChild[afterChild.length - 1]++;
+      return storage.index.ceilingEntry(afterChild);
+    }
+
+    @Override
+    protected void load(Map.Entry<byte[], Long> entry) {
+      setEncodedBytes(key, entry.getKey());
+      key.setDepth(prefixDepth + 1);
+      current = encodedBytes(key);
+    }
+  }
+}
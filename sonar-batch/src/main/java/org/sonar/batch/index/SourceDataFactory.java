@@ -28,14 +28,11 @@ import org.sonar.api.batch.sensor.duplication.Duplication;
 import org.sonar.api.batch.sensor.duplication.internal.DefaultDuplication;
 import org.sonar.api.batch.sensor.symbol.Symbol;
 import org.sonar.api.measures.CoreMetrics;
-import org.sonar.api.measures.Measure;
-import org.sonar.api.utils.DateUtils;
-import org.sonar.api.utils.KeyValueFormat;
 import org.sonar.batch.duplication.DuplicationCache;
 import org.sonar.batch.highlighting.SyntaxHighlightingData;
 import org.sonar.batch.highlighting.SyntaxHighlightingRule;
 import org.sonar.batch.scan.filesystem.InputFileMetadata;
-import org.sonar.batch.scan.measure.MeasureCache;
+import org.sonar.batch.scan.measure.LineMeasureCache;
 import org.sonar.batch.source.CodeColorizers;
 import org.sonar.batch.symbol.SymbolData;
 import org.sonar.core.source.SnapshotDataTypes;
@@ -48,7 +45,6 @@ import java.util.Collections;
 import java.util.Comparator;
 import java.util.Iterator;
 import java.util.List;
-import java.util.Map;
 
 /**
  * Consolidate different caches for the export of file sources to server.
@@ -58,14 +54,14 @@ public class SourceDataFactory implements BatchComponent {
 
   private static final String BOM = "\uFEFF";
 
-  private final MeasureCache measureCache;
+  private final LineMeasureCache lineMeasureCache;
   private final ComponentDataCache componentDataCache;
   private final DuplicationCache duplicationCache;
   private final CodeColorizers codeColorizers;
 
-  public SourceDataFactory(MeasureCache measureCache, ComponentDataCache componentDataCache,
+  public SourceDataFactory(LineMeasureCache lineMeasureCache, ComponentDataCache componentDataCache,
     DuplicationCache duplicationCache, CodeColorizers codeColorizers) {
-    this.measureCache = measureCache;
+    this.lineMeasureCache = lineMeasureCache;
     this.componentDataCache = componentDataCache;
     this.duplicationCache = duplicationCache;
     this.codeColorizers = codeColorizers;
@@ -96,100 +92,114 @@ public class SourceDataFactory implements BatchComponent {
   }
 
   void applyLineMeasures(DefaultInputFile file, FileSourceDb.Data.Builder dataBuilder) {
-    applyLineMeasure(file.key(), CoreMetrics.SCM_AUTHORS_BY_LINE_KEY, dataBuilder, new MeasureOperation() {
+    String fileKey = file.key();
+    applyStringLineMeasure(fileKey, CoreMetrics.SCM_AUTHORS_BY_LINE_KEY, dataBuilder, new StringLineOperation() {
       @Override
       public void apply(String value, FileSourceDb.Line.Builder lineBuilder) {
         lineBuilder.setScmAuthor(value);
       }
     });
-    applyLineMeasure(file.key(), CoreMetrics.SCM_REVISIONS_BY_LINE_KEY, dataBuilder, new MeasureOperation() {
+    applyStringLineMeasure(fileKey, CoreMetrics.SCM_REVISIONS_BY_LINE_KEY, dataBuilder, new StringLineOperation() {
       @Override
       public void apply(String value, FileSourceDb.Line.Builder lineBuilder) {
         lineBuilder.setScmRevision(value);
       }
     });
-    applyLineMeasure(file.key(), CoreMetrics.SCM_LAST_COMMIT_DATETIMES_BY_LINE_KEY, dataBuilder, new MeasureOperation() {
-      @Override
-      public void apply(String value, FileSourceDb.Line.Builder lineBuilder) {
-        lineBuilder.setScmDate(DateUtils.parseDateTimeQuietly(value).getTime());
+    long[] scmDates = lineMeasureCache.longValues(fileKey, CoreMetrics.SCM_LAST_COMMIT_DATETIMES_BY_LINE_KEY);
+    if (scmDates != null) {
+      int count = Math.min(scmDates.length, dataBuilder.getLinesCount());
+      for (int i = 0; i < count; i++) {
+        if (scmDates[i] != LineMeasureCache.NO_LONG_VALUE) {
+          dataBuilder.getLinesBuilder(i).setScmDate(scmDates[i]);
+        }
       }
-    });
-    applyLineMeasure(file.key(), CoreMetrics.COVERAGE_LINE_HITS_DATA_KEY, dataBuilder, new MeasureOperation() {
+    }
+    applyIntLineMeasure(fileKey, CoreMetrics.COVERAGE_LINE_HITS_DATA_KEY, dataBuilder, new IntLineOperation() {
       @Override
-      public void apply(String value, FileSourceDb.Line.Builder lineBuilder) {
-        lineBuilder.setUtLineHits(Integer.parseInt(value));
+      public void apply(int value, FileSourceDb.Line.Builder lineBuilder) {
+        lineBuilder.setUtLineHits(value);
       }
     });
-    applyLineMeasure(file.key(), CoreMetrics.CONDITIONS_BY_LINE_KEY, dataBuilder, new MeasureOperation() {
+    applyIntLineMeasure(fileKey, CoreMetrics.CONDITIONS_BY_LINE_KEY, dataBuilder, new IntLineOperation() {
       @Override
-      public void apply(String value, FileSourceDb.Line.Builder lineBuilder) {
-        lineBuilder.setUtConditions(Integer.parseInt(value));
+      public void apply(int value, FileSourceDb.Line.Builder lineBuilder) {
+        lineBuilder.setUtConditions(value);
       }
     });
-    applyLineMeasure(file.key(), CoreMetrics.COVERED_CONDITIONS_BY_LINE_KEY, dataBuilder, new MeasureOperation() {
+    applyIntLineMeasure(fileKey, CoreMetrics.COVERED_CONDITIONS_BY_LINE_KEY, dataBuilder, new IntLineOperation() {
       @Override
-      public void apply(String value, FileSourceDb.Line.Builder lineBuilder) {
-        lineBuilder.setUtCoveredConditions(Integer.parseInt(value));
+      public void apply(int value, FileSourceDb.Line.Builder lineBuilder) {
+        lineBuilder.setUtCoveredConditions(value);
       }
     });
-    applyLineMeasure(file.key(), CoreMetrics.IT_COVERAGE_LINE_HITS_DATA_KEY, dataBuilder, new MeasureOperation() {
+    applyIntLineMeasure(fileKey, CoreMetrics.IT_COVERAGE_LINE_HITS_DATA_KEY, dataBuilder, new IntLineOperation() {
       @Override
-      public void apply(String value, FileSourceDb.Line.Builder lineBuilder) {
-        lineBuilder.setItLineHits(Integer.parseInt(value));
+      public void apply(int value, FileSourceDb.Line.Builder lineBuilder) {
+        lineBuilder.setItLineHits(value);
       }
     });
-    applyLineMeasure(file.key(), CoreMetrics.IT_CONDITIONS_BY_LINE_KEY, dataBuilder, new MeasureOperation() {
+    applyIntLineMeasure(fileKey, CoreMetrics.IT_CONDITIONS_BY_LINE_KEY, dataBuilder, new IntLineOperation() {
       @Override
-      public void apply(String value, FileSourceDb.Line.Builder lineBuilder) {
-        lineBuilder.setItConditions(Integer.parseInt(value));
+      public void apply(int value, FileSourceDb.Line.Builder lineBuilder) {
+        lineBuilder.setItConditions(value);
       }
     });
-    applyLineMeasure(file.key(), CoreMetrics.IT_COVERED_CONDITIONS_BY_LINE_KEY, dataBuilder, new MeasureOperation() {
+    applyIntLineMeasure(fileKey, CoreMetrics.IT_COVERED_CONDITIONS_BY_LINE_KEY, dataBuilder, new IntLineOperation() {
       @Override
-      public void apply(String value, FileSourceDb.Line.Builder lineBuilder) {
-        lineBuilder.setItCoveredConditions(Integer.parseInt(value));
+      public void apply(int value, FileSourceDb.Line.Builder lineBuilder) {
+        lineBuilder.setItCoveredConditions(value);
       }
     });
-    applyLineMeasure(file.key(), CoreMetrics.OVERALL_COVERAGE_LINE_HITS_DATA_KEY, dataBuilder, new MeasureOperation() {
+    applyIntLineMeasure(fileKey, CoreMetrics.OVERALL_COVERAGE_LINE_HITS_DATA_KEY, dataBuilder, new IntLineOperation() {
       @Override
-      public void apply(String value, FileSourceDb.Line.Builder lineBuilder) {
-        lineBuilder.setOverallLineHits(Integer.parseInt(value));
+      public void apply(int value, FileSourceDb.Line.Builder lineBuilder) {
+        lineBuilder.setOverallLineHits(value);
       }
     });
-    applyLineMeasure(file.key(), CoreMetrics.OVERALL_CONDITIONS_BY_LINE_KEY, dataBuilder, new MeasureOperation() {
+    applyIntLineMeasure(fileKey, CoreMetrics.OVERALL_CONDITIONS_BY_LINE_KEY, dataBuilder, new IntLineOperation() {
       @Override
-      public void apply(String value, FileSourceDb.Line.Builder lineBuilder) {
-        lineBuilder.setOverallConditions(Integer.parseInt(value));
+      public void apply(int value, FileSourceDb.Line.Builder lineBuilder) {
+        lineBuilder.setOverallConditions(value);
       }
     });
-    applyLineMeasure(file.key(), CoreMetrics.OVERALL_COVERED_CONDITIONS_BY_LINE_KEY, dataBuilder, new MeasureOperation() {
+    applyIntLineMeasure(fileKey, CoreMetrics.OVERALL_COVERED_CONDITIONS_BY_LINE_KEY, dataBuilder, new IntLineOperation() {
       @Override
-      public void apply(String value, FileSourceDb.Line.Builder lineBuilder) {
-        lineBuilder.setOverallCoveredConditions(Integer.parseInt(value));
+      public void apply(int value, FileSourceDb.Line.Builder lineBuilder) {
+        lineBuilder.setOverallCoveredConditions(value);
       }
     });
   }
 
-  void applyLineMeasure(String inputFileKey, String metricKey, FileSourceDb.Data.Builder to, MeasureOperation op) {
-    Iterable<Measure> measures = measureCache.byMetric(inputFileKey, metricKey);
-    if (measures != null) {
-      for (Measure measure : measures) {
-        Map<Integer, String> lineMeasures = KeyValueFormat.parseIntString((String) measure.value());
-        for (Map.Entry<Integer, String> lineMeasure : lineMeasures.entrySet()) {
-          int lineIdx = lineMeasure.getKey();
-          if (lineIdx <= to.getLinesCount()) {
-            String value = lineMeasure.getValue();
-            if (StringUtils.isNotEmpty(value)) {
-              FileSourceDb.Line.Builder lineBuilder = to.getLinesBuilder(lineIdx - 1);
-              op.apply(value, lineBuilder);
-            }
-          }
+  void applyIntLineMeasure(String inputFileKey, String metricKey, FileSourceDb.Data.Builder to, IntLineOperation op) {
+    int[] values = lineMeasureCache.intValues(inputFileKey, metricKey);
+    if (values != null) {
+      // values of lines that do not exist are ignored
+      int count = Math.min(values.length, to.getLinesCount());
+      for (int i = 0; i < count; i++) {
+        if (values[i] != LineMeasureCache.NO_INT_VALUE) {
+          op.apply(values[i], to.getLinesBuilder(i));
         }
       }
     }
   }
 
-  static interface MeasureOperation {
+  void applyStringLineMeasure(String inputFileKey, String metricKey, FileSourceDb.Data.Builder to, StringLineOperation op) {
+    String[] values = lineMeasureCache.stringValues(inputFileKey, metricKey);
+    if (values != null) {
+      int count = Math.min(values.length, to.getLinesCount());
+      for (int i = 0; i < count; i++) {
+        if (StringUtils.isNotEmpty(values[i])) {
+          op.apply(values[i], to.getLinesBuilder(i));
+        }
+      }
+    }
+  }
+
+  static interface IntLineOperation {
+    void apply(int value, FileSourceDb.Line.Builder lineBuilder);
+  }
+
+  static interface StringLineOperation {
     void apply(String value, FileSourceDb.Line.Builder lineBuilder);
   }
 
@@ -21,6 +21,7 @@ package org.sonar.batch.index;
 
 import org.apache.commons.codec.binary.Hex;
 import org.apache.commons.codec.digest.DigestUtils;
+import org.apache.commons.lang.StringUtils;
 import org.apache.ibatis.session.ResultContext;
 import org.apache.ibatis.session.ResultHandler;
 import org.sonar.api.batch.fs.InputFile;
@@ -100,7 +101,7 @@ public class SourcePersister implements ScanPersister {
         .setBinaryData(data)
         .setDataHash(dataHash)
         .setSrcHash(metadata.hash())
-        .setLineHashes(lineHashesAsMd5Hex(inputFile))
+        .setLineHashes(lineHashesAsMd5Hex(inputFile, metadata))
         .setCreatedAt(system2.now())
         .setUpdatedAt(system2.now());
       mapper.insert(dto);
@@ -112,7 +113,7 @@ public class SourcePersister implements ScanPersister {
           .setBinaryData(data)
           .setDataHash(dataHash)
           .setSrcHash(metadata.hash())
-          .setLineHashes(lineHashesAsMd5Hex(inputFile))
+          .setLineHashes(lineHashesAsMd5Hex(inputFile, metadata))
           .setUpdatedAt(system2.now());
         mapper.update(previousDto);
         session.commit();
@@ -121,10 +122,14 @@ public class SourcePersister implements ScanPersister {
   }
 
   @CheckForNull
-  private String lineHashesAsMd5Hex(DefaultInputFile f) {
+  private String lineHashesAsMd5Hex(DefaultInputFile f, InputFileMetadata metadata) {
     if (f.lines() == 0) {
       return null;
     }
+    if (metadata.lineHashes() != null) {
+      // already computed when indexing file
+      return StringUtils.join(FileMetadata.lineHashesAsHex(metadata.lineHashes()), '\n');
+    }
     // A md5 string is 32 char long + '\n' = 33
     final StringBuilder result = new StringBuilder(f.lines() * (32 + 1));
 
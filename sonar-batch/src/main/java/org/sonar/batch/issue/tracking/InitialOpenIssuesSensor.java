@@ -19,21 +19,29 @@
  */
 package org.sonar.batch.issue.tracking;
 
-import org.sonar.api.batch.RequiresDB;
-
+import com.google.common.base.Function;
+import com.google.common.collect.Lists;
 import org.apache.commons.lang.time.DateUtils;
 import org.apache.ibatis.session.ResultContext;
 import org.apache.ibatis.session.ResultHandler;
+import org.sonar.api.batch.RequiresDB;
 import org.sonar.api.batch.Sensor;
 import org.sonar.api.batch.SensorContext;
 import org.sonar.api.resources.Project;
+import org.sonar.batch.components.Period;
+import org.sonar.batch.components.TimeMachineConfiguration;
 import org.sonar.core.issue.db.IssueChangeDao;
 import org.sonar.core.issue.db.IssueChangeDto;
 import org.sonar.core.issue.db.IssueDao;
 import org.sonar.core.issue.db.IssueDto;
+import org.sonar.core.persistence.DaoUtils;
+
+import javax.annotation.CheckForNull;
 
 import java.util.Calendar;
+import java.util.Collections;
 import java.util.Date;
+import java.util.List;
 
 /**
  * Load all the issues referenced during the previous scan.
@@ -44,11 +52,14 @@ public class InitialOpenIssuesSensor implements Sensor {
   private final InitialOpenIssuesStack initialOpenIssuesStack;
   private final IssueDao issueDao;
   private final IssueChangeDao issueChangeDao;
+  private final TimeMachineConfiguration timeMachineConfiguration;
 
-  public InitialOpenIssuesSensor(InitialOpenIssuesStack initialOpenIssuesStack, IssueDao issueDao, IssueChangeDao issueChangeDao) {
+  public InitialOpenIssuesSensor(InitialOpenIssuesStack initialOpenIssuesStack, IssueDao issueDao, IssueChangeDao issueChangeDao,
+    TimeMachineConfiguration timeMachineConfiguration) {
     this.initialOpenIssuesStack = initialOpenIssuesStack;
     this.issueDao = issueDao;
     this.issueChangeDao = issueChangeDao;
+    this.timeMachineConfiguration = timeMachineConfiguration;
   }
 
   @Override
@@ -61,6 +72,8 @@ public class InitialOpenIssuesSensor implements Sensor {
     // Adding one second is a hack for resolving conflicts with concurrent user
     // changes during issue persistence
     final Date now = DateUtils.addSeconds(DateUtils.truncate(new Date(), Calendar.MILLISECOND), 1);
+    final Date oldestPeriodDate = oldestPeriodDate();
+    final List<String> updatedIssueKeys = Lists.newArrayList();
 
     issueDao.selectNonClosedIssuesByModule(project.getId(), new ResultHandler() {
       @Override
@@ -68,18 +81,38 @@ public class InitialOpenIssuesSensor implements Sensor {
         IssueDto dto = (IssueDto) rc.getResultObject();
         dto.setSelectedAt(now.getTime());
         initialOpenIssuesStack.addIssue(dto);
+        if (oldestPeriodDate != null && (dto.getIssueUpdateDate() == null || !dto.getIssueUpdateDate().before(oldestPeriodDate))) {
+          updatedIssueKeys.add(dto.getKee());
+        }
       }
     });
 
-    issueChangeDao.selectChangelogOnNonClosedIssuesByModuleAndType(project.getId(), new ResultHandler() {
+    // The changelog is only used to compute the variations of technical debt over periods. Changes done
+    // before the oldest period do not impact them, so only the changelog of the issues updated since then is loaded.
+    // It is loaded by chunks of issues, each chunk being moved to the disk-backed stack.
+    DaoUtils.executeLargeInputs(updatedIssueKeys, new Function<List<String>, List<IssueChangeDto>>() {
       @Override
-      public void handleResult(ResultContext rc) {
-        IssueChangeDto dto = (IssueChangeDto) rc.getResultObject();
-        initialOpenIssuesStack.addChangelog(dto);
+      public List<IssueChangeDto> apply(List<String> issueKeys) {
+        for (IssueChangeDto dto : issueChangeDao.selectChangelogByIssues(issueKeys)) {
+          initialOpenIssuesStack.addChangelog(dto);
+        }
+        return Collections.emptyList();
       }
     });
   }
 
+  @CheckForNull
+  private Date oldestPeriodDate() {
+    Date oldest = null;
+    for (Period period : timeMachineConfiguration.periods()) {
+      Date date = period.getDate();
+      if (date != null && (oldest == null || date.before(oldest))) {
+        oldest = date;
+      }
+    }
+    return oldest;
+  }
+
   @Override
   public String toString() {
     return getClass().getSimpleName();
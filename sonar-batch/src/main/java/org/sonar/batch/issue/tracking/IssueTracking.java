@@ -177,7 +177,7 @@ public class IssueTracking implements BatchComponent {
       if (isNotAlreadyMapped(newIssue, result)) {
         mapIssue(
           newIssue,
-          findLastIssueWithSameChecksumAndMessage(newIssue, result.unmatchedByKeyForRule(newIssue.ruleKey()).values()),
+          result.firstUnmatchedForRuleAndChecksumAndMessage(newIssue.ruleKey(), newIssue.checksum(), newIssue.message()),
           result);
       }
     }
@@ -187,7 +187,7 @@ public class IssueTracking implements BatchComponent {
       if (isNotAlreadyMapped(newIssue, result)) {
         mapIssue(
           newIssue,
-          findLastIssueWithSameLineAndMessage(newIssue, result.unmatchedByKeyForRule(newIssue.ruleKey()).values()),
+          result.firstUnmatchedForRuleAndLineAndMessage(newIssue.ruleKey(), newIssue.line(), newIssue.message()),
           result);
       }
     }
@@ -198,7 +198,7 @@ public class IssueTracking implements BatchComponent {
       if (isNotAlreadyMapped(newIssue, result)) {
         mapIssue(
           newIssue,
-          findLastIssueWithSameChecksum(newIssue, result.unmatchedByKeyForRule(newIssue.ruleKey()).values()),
+          result.firstUnmatchedForRuleAndChecksum(newIssue.ruleKey(), newIssue.checksum()),
           result);
       }
     }
@@ -237,33 +237,6 @@ public class IssueTracking implements BatchComponent {
     return previousIssuesByLines;
   }
 
-  private PreviousIssue findLastIssueWithSameChecksum(DefaultIssue newIssue, Collection<PreviousIssue> previousIssues) {
-    for (PreviousIssue previousIssue : previousIssues) {
-      if (isSameChecksum(newIssue, previousIssue)) {
-        return previousIssue;
-      }
-    }
-    return null;
-  }
-
-  private PreviousIssue findLastIssueWithSameLineAndMessage(DefaultIssue newIssue, Collection<PreviousIssue> previousIssues) {
-    for (PreviousIssue previousIssue : previousIssues) {
-      if (isSameLine(newIssue, previousIssue) && isSameMessage(newIssue, previousIssue)) {
-        return previousIssue;
-      }
-    }
-    return null;
-  }
-
-  private PreviousIssue findLastIssueWithSameChecksumAndMessage(DefaultIssue newIssue, Collection<PreviousIssue> previousIssues) {
-    for (PreviousIssue previousIssue : previousIssues) {
-      if (isSameChecksum(newIssue, previousIssue) && isSameMessage(newIssue, previousIssue)) {
-        return previousIssue;
-      }
-    }
-    return null;
-  }
-
   private PreviousIssue findLastIssueWithSameLineAndChecksum(DefaultIssue newIssue, IssueTrackingResult result) {
     Collection<PreviousIssue> sameRuleAndSameLineAndSameChecksum = result.unmatchedForRuleAndForLineAndForChecksum(newIssue.ruleKey(), newIssue.line(), newIssue.checksum());
     if (!sameRuleAndSameLineAndSameChecksum.isEmpty()) {
@@ -273,25 +246,13 @@ public class IssueTracking implements BatchComponent {
   }
 
   private boolean isNotAlreadyMapped(PreviousIssue previousIssue, IssueTrackingResult result) {
-    return result.unmatched().contains(previousIssue);
+    return result.isUnmatched(previousIssue);
   }
 
   private boolean isNotAlreadyMapped(DefaultIssue newIssue, IssueTrackingResult result) {
     return !result.isMatched(newIssue);
   }
 
-  private boolean isSameChecksum(DefaultIssue newIssue, PreviousIssue previousIssue) {
-    return Objects.equal(previousIssue.checksum(), newIssue.checksum());
-  }
-
-  private boolean isSameLine(DefaultIssue newIssue, PreviousIssue previousIssue) {
-    return Objects.equal(previousIssue.line(), newIssue.line());
-  }
-
-  private boolean isSameMessage(DefaultIssue newIssue, PreviousIssue previousIssue) {
-    return Objects.equal(newIssue.message(), previousIssue.message());
-  }
-
   private void mapIssue(DefaultIssue issue, @Nullable PreviousIssue ref, IssueTrackingResult result) {
     if (ref != null) {
       result.setMatch(issue, ref);
@@ -21,22 +21,44 @@ package org.sonar.batch.issue.tracking;
 
 import javax.annotation.Nullable;
 
+import java.util.HashMap;
+import java.util.Map;
+
 public class IssueTrackingBlocksRecognizer {
 
-  private final FileHashes a;
-  private final FileHashes b;
+  /**
+   * Line hashes of both versions are replaced by int identifiers, shared by the two versions, so that
+   * comparing lines does not require to compare strings.
+   */
+  private final int[] a;
+  private final int[] b;
 
   public IssueTrackingBlocksRecognizer(FileHashes a, FileHashes b) {
-    this.a = a;
-    this.b = b;
+    Map<String, Integer> idsByHash = new HashMap<>();
+    this.a = toIds(a, idsByHash);
+    this.b = toIds(b, idsByHash);
+  }
+
+  private static int[] toIds(FileHashes hashes, Map<String, Integer> idsByHash) {
+    int[] ids = new int[hashes.length()];
+    for (int line = 1; line <= ids.length; line++) {
+      String hash = hashes.getHash(line);
+      Integer id = idsByHash.get(hash);
+      if (id == null) {
+        id = idsByHash.size();
+        idsByHash.put(hash, id);
+      }
+      ids[line - 1] = id;
+    }
+    return ids;
   }
 
   public boolean isValidLineInReference(@Nullable Integer line) {
-    return (line != null) && (0 <= line - 1) && (line - 1 < a.length());
+    return (line != null) && (0 <= line - 1) && (line - 1 < a.length);
   }
 
   public boolean isValidLineInSource(@Nullable Integer line) {
-    return (line != null) && (0 <= line - 1) && (line - 1 < b.length());
+    return (line != null) && (0 <= line - 1) && (line - 1 < b.length);
   }
 
   /**
@@ -44,20 +66,20 @@ public class IssueTrackingBlocksRecognizer {
    * @param startB number of line from second version of text (numbering starts from 1)
    */
   public int computeLengthOfMaximalBlock(int startA, int startB) {
-    if (!a.getHash(startA).equals(b.getHash(startB))) {
+    if (a[startA - 1] != b[startB - 1]) {
       return 0;
     }
     int length = 0;
-    int ai = startA;
-    int bi = startB;
-    while (ai <= a.length() && bi <= b.length() && a.getHash(ai).equals(b.getHash(bi))) {
+    int ai = startA - 1;
+    int bi = startB - 1;
+    while (ai < a.length && bi < b.length && a[ai] == b[bi]) {
       ai++;
       bi++;
       length++;
     }
-    ai = startA;
-    bi = startB;
-    while (ai > 0 && bi > 0 && a.getHash(ai).equals(b.getHash(bi))) {
+    ai = startA - 1;
+    bi = startB - 1;
+    while (ai >= 0 && bi >= 0 && a[ai] == b[bi]) {
       ai--;
       bi--;
       length++;
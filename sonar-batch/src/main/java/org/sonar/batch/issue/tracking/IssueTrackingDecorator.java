@@ -50,6 +50,7 @@ import org.sonar.api.utils.Duration;
 import org.sonar.api.utils.KeyValueFormat;
 import org.sonar.batch.issue.IssueCache;
 import org.sonar.batch.scan.LastLineHashes;
+import org.sonar.batch.scan.filesystem.InputFileMetadata;
 import org.sonar.batch.scan.filesystem.InputPathCache;
 import org.sonar.core.issue.IssueUpdater;
 import org.sonar.core.issue.db.IssueChangeDto;
@@ -134,7 +135,8 @@ public class IssueTrackingDecorator implements Decorator {
       if (file == null) {
         throw new IllegalStateException("File " + resource + " was not found in InputPath cache");
       }
-      sourceHashHolder = new SourceHashHolder((DefaultInputFile) file, lastLineHashes);
+      InputFileMetadata metadata = inputPathCache.getFileMetadata(project.getEffectiveKey(), sonarFile.getPath());
+      sourceHashHolder = new SourceHashHolder((DefaultInputFile) file, lastLineHashes, metadata != null ? metadata.lineHashes() : null);
     }
 
     IssueTrackingResult trackingResult = tracking.track(sourceHashHolder, dbOpenIssues, issues);
@@ -19,49 +19,71 @@
  */
 package org.sonar.batch.issue.tracking;
 
-import com.google.common.collect.HashMultimap;
+import com.google.common.base.Objects;
+import com.google.common.collect.LinkedHashMultimap;
 import com.google.common.collect.Maps;
 import com.google.common.collect.Multimap;
 import org.apache.commons.lang.StringUtils;
 import org.sonar.api.issue.internal.DefaultIssue;
 import org.sonar.api.rule.RuleKey;
 
+import javax.annotation.CheckForNull;
 import javax.annotation.Nullable;
 
 import java.util.Collection;
 import java.util.Collections;
 import java.util.HashMap;
+import java.util.Iterator;
 import java.util.Map;
 
+/**
+ * Unmatched previous issues are indexed by all the combinations of fields used by {@link IssueTracking},
+ * so that looking for a candidate does not require to iterate over all the unmatched issues.
+ */
 class IssueTrackingResult {
   private final Map<String, PreviousIssue> unmatchedByKey = new HashMap<>();
   private final Map<RuleKey, Map<String, PreviousIssue>> unmatchedByRuleAndKey = new HashMap<>();
-  private final Map<RuleKey, Map<Integer, Multimap<String, PreviousIssue>>> unmatchedByRuleAndLineAndChecksum = new HashMap<>();
+  private final Multimap<IndexKey, PreviousIssue> unmatchedByRuleAndLineAndChecksum = LinkedHashMultimap.create();
+  private final Multimap<IndexKey, PreviousIssue> unmatchedByRuleAndChecksumAndMessage = LinkedHashMultimap.create();
+  private final Multimap<IndexKey, PreviousIssue> unmatchedByRuleAndLineAndMessage = LinkedHashMultimap.create();
+  private final Multimap<IndexKey, PreviousIssue> unmatchedByRuleAndChecksum = LinkedHashMultimap.create();
   private final Map<DefaultIssue, PreviousIssue> matched = Maps.newIdentityHashMap();
 
   Collection<PreviousIssue> unmatched() {
     return unmatchedByKey.values();
   }
 
+  boolean isUnmatched(PreviousIssue issue) {
+    return unmatchedByKey.get(issue.key()) == issue;
+  }
+
   Map<String, PreviousIssue> unmatchedByKeyForRule(RuleKey ruleKey) {
     return unmatchedByRuleAndKey.containsKey(ruleKey) ? unmatchedByRuleAndKey.get(ruleKey) : Collections.<String, PreviousIssue>emptyMap();
   }
 
   Collection<PreviousIssue> unmatchedForRuleAndForLineAndForChecksum(RuleKey ruleKey, @Nullable Integer line, @Nullable String checksum) {
-    if (!unmatchedByRuleAndLineAndChecksum.containsKey(ruleKey)) {
-      return Collections.emptyList();
-    }
-    Map<Integer, Multimap<String, PreviousIssue>> unmatchedForRule = unmatchedByRuleAndLineAndChecksum.get(ruleKey);
-    Integer lineNotNull = line != null ? line : 0;
-    if (!unmatchedForRule.containsKey(lineNotNull)) {
-      return Collections.emptyList();
-    }
-    Multimap<String, PreviousIssue> unmatchedForRuleAndLine = unmatchedForRule.get(lineNotNull);
-    String checksumNotNull = StringUtils.defaultString(checksum, "");
-    if (!unmatchedForRuleAndLine.containsKey(checksumNotNull)) {
-      return Collections.emptyList();
-    }
-    return unmatchedForRuleAndLine.get(checksumNotNull);
+    return unmatchedByRuleAndLineAndChecksum.get(new IndexKey(ruleKey, lineNotNull(line), checksumNotNull(checksum)));
+  }
+
+  @CheckForNull
+  PreviousIssue firstUnmatchedForRuleAndChecksumAndMessage(RuleKey ruleKey, @Nullable String checksum, @Nullable String message) {
+    return first(unmatchedByRuleAndChecksumAndMessage.get(new IndexKey(ruleKey, checksum, message)));
+  }
+
+  @CheckForNull
+  PreviousIssue firstUnmatchedForRuleAndLineAndMessage(RuleKey ruleKey, @Nullable Integer line, @Nullable String message) {
+    return first(unmatchedByRuleAndLineAndMessage.get(new IndexKey(ruleKey, line, message)));
+  }
+
+  @CheckForNull
+  PreviousIssue firstUnmatchedForRuleAndChecksum(RuleKey ruleKey, @Nullable String checksum) {
+    return first(unmatchedByRuleAndChecksum.get(new IndexKey(ruleKey, checksum, null)));
+  }
+
+  @CheckForNull
+  private static PreviousIssue first(Collection<PreviousIssue> issues) {
+    Iterator<PreviousIssue> it = issues.iterator();
+    return it.hasNext() ? it.next() : null;
   }
 
   Collection<DefaultIssue> matched() {
@@ -81,31 +103,61 @@ class IssueTrackingResult {
     RuleKey ruleKey = i.ruleKey();
     if (!unmatchedByRuleAndKey.containsKey(ruleKey)) {
       unmatchedByRuleAndKey.put(ruleKey, new HashMap<String, PreviousIssue>());
-      unmatchedByRuleAndLineAndChecksum.put(ruleKey, new HashMap<Integer, Multimap<String, PreviousIssue>>());
     }
     unmatchedByRuleAndKey.get(ruleKey).put(i.key(), i);
-    Map<Integer, Multimap<String, PreviousIssue>> unmatchedForRule = unmatchedByRuleAndLineAndChecksum.get(ruleKey);
-    Integer lineNotNull = lineNotNull(i);
-    if (!unmatchedForRule.containsKey(lineNotNull)) {
-      unmatchedForRule.put(lineNotNull, HashMultimap.<String, PreviousIssue>create());
-    }
-    Multimap<String, PreviousIssue> unmatchedForRuleAndLine = unmatchedForRule.get(lineNotNull);
-    String checksumNotNull = StringUtils.defaultString(i.checksum(), "");
-    unmatchedForRuleAndLine.put(checksumNotNull, i);
+    unmatchedByRuleAndLineAndChecksum.put(new IndexKey(ruleKey, lineNotNull(i.line()), checksumNotNull(i.checksum())), i);
+    unmatchedByRuleAndChecksumAndMessage.put(new IndexKey(ruleKey, i.checksum(), i.message()), i);
+    unmatchedByRuleAndLineAndMessage.put(new IndexKey(ruleKey, i.line(), i.message()), i);
+    unmatchedByRuleAndChecksum.put(new IndexKey(ruleKey, i.checksum(), null), i);
   }
 
-  private Integer lineNotNull(PreviousIssue i) {
-    Integer line = i.line();
+  private static Integer lineNotNull(@Nullable Integer line) {
     return line != null ? line : 0;
   }
 
+  private static String checksumNotNull(@Nullable String checksum) {
+    return StringUtils.defaultString(checksum, "");
+  }
+
   void setMatch(DefaultIssue issue, PreviousIssue matching) {
     matched.put(issue, matching);
     RuleKey ruleKey = matching.ruleKey();
     unmatchedByRuleAndKey.get(ruleKey).remove(matching.key());
     unmatchedByKey.remove(matching.key());
-    Integer lineNotNull = lineNotNull(matching);
-    String checksumNotNull = StringUtils.defaultString(matching.checksum(), "");
-    unmatchedByRuleAndLineAndChecksum.get(ruleKey).get(lineNotNull).get(checksumNotNull).remove(matching);
+    unmatchedByRuleAndLineAndChecksum.remove(new IndexKey(ruleKey, lineNotNull(matching.line()), checksumNotNull(matching.checksum())), matching);
+    unmatchedByRuleAndChecksumAndMessage.remove(new IndexKey(ruleKey, matching.checksum(), matching.message()), matching);
+    unmatchedByRuleAndLineAndMessage.remove(new IndexKey(ruleKey, matching.line(), matching.message()), matching);
+    unmatchedByRuleAndChecksum.remove(new IndexKey(ruleKey, matching.checksum(), null), matching);
+  }
+
+  private static final class IndexKey {
+    private final RuleKey ruleKey;
+    private final Object first;
+    private final Object second;
+    private final int hashCode;
+
+    IndexKey(RuleKey ruleKey, @Nullable Object first, @Nullable Object second) {
+      this.ruleKey = ruleKey;
+      this.first = first;
+      this.second = second;
+      this.hashCode = Objects.hashCode(ruleKey, first, second);
+    }
+
+    @Override
+    public boolean equals(Object o) {
+      if (this == o) {
+        return true;
+      }
+      if (!(o instanceof IndexKey)) {
+        return false;
+      }
+      IndexKey other = (IndexKey) o;
+      return hashCode == other.hashCode && Objects.equal(ruleKey, other.ruleKey) && Objects.equal(first, other.first) && Objects.equal(second, other.second);
+    }
+
+    @Override
+    public int hashCode() {
+      return hashCode;
+    }
   }
 }
@@ -38,6 +38,7 @@ import org.sonar.batch.index.ResourceCache;
 import org.sonar.batch.issue.IssueCache;
 import org.sonar.batch.protocol.input.ProjectRepositories;
 import org.sonar.batch.scan.LastLineHashes;
+import org.sonar.batch.scan.filesystem.InputFileMetadata;
 import org.sonar.batch.scan.filesystem.InputPathCache;
 import org.sonar.core.issue.IssueUpdater;
 import org.sonar.core.issue.workflow.IssueWorkflow;
@@ -111,7 +112,8 @@ public class LocalIssueTracking implements BatchComponent {
       if (file == null) {
         throw new IllegalStateException("Resource " + component.resource() + " was not found in InputPath cache");
       }
-      sourceHashHolder = new SourceHashHolder((DefaultInputFile) file, lastLineHashes);
+      InputFileMetadata metadata = inputPathCache.getFileMetadata(file.moduleKey(), file.relativePath());
+      sourceHashHolder = new SourceHashHolder(file, lastLineHashes, metadata != null ? metadata.lineHashes() : null);
     }
 
     IssueTrackingResult trackingResult = tracking.track(sourceHashHolder, previousIssues, issues);
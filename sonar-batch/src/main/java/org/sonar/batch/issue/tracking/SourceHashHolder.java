@@ -23,8 +23,10 @@ import com.google.common.collect.ImmutableSet;
 import org.sonar.api.batch.fs.InputFile.Status;
 import org.sonar.api.batch.fs.internal.DefaultInputFile;
 import org.sonar.batch.scan.LastLineHashes;
+import org.sonar.batch.scan.filesystem.FileMetadata;
 
 import javax.annotation.CheckForNull;
+import javax.annotation.Nullable;
 
 import java.util.Collection;
 
@@ -35,23 +37,33 @@ public class SourceHashHolder {
   private FileHashes hashedReference;
   private FileHashes hashedSource;
   private DefaultInputFile inputFile;
+  private final byte[] lineHashes;
 
   public SourceHashHolder(DefaultInputFile inputFile, LastLineHashes lastSnapshots) {
+    this(inputFile, lastSnapshots, null);
+  }
+
+  /**
+   * @param lineHashes hashes of lines computed when indexing file, see {@link org.sonar.batch.scan.filesystem.InputFileMetadata#lineHashes()}.
+   *                   If null, then file is read again.
+   */
+  public SourceHashHolder(DefaultInputFile inputFile, LastLineHashes lastSnapshots, @Nullable byte[] lineHashes) {
     this.inputFile = inputFile;
     this.lastSnapshots = lastSnapshots;
+    this.lineHashes = lineHashes;
   }
 
   private void initHashes() {
     if (hashedSource == null) {
-      hashedSource = FileHashes.create(inputFile);
+      hashedSource = lineHashes != null ? FileHashes.create(FileMetadata.lineHashesAsHex(lineHashes)) : FileHashes.create(inputFile);
       Status status = inputFile.status();
       if (status == Status.ADDED) {
         hashedReference = null;
       } else if (status == Status.SAME) {
         hashedReference = hashedSource;
       } else {
-        String[] lineHashes = lastSnapshots.getLineHashes(inputFile.key());
-        hashedReference = lineHashes != null ? FileHashes.create(lineHashes) : null;
+        String[] previousLineHashes = lastSnapshots.getLineHashes(inputFile.key());
+        hashedReference = previousLineHashes != null ? FileHashes.create(previousLineHashes) : null;
       }
     }
   }
@@ -23,10 +23,16 @@ import org.sonar.batch.deprecated.decorator.DefaultDecoratorContext;
 
 import org.sonar.batch.deprecated.decorator.DecoratorsSelector;
 import com.google.common.collect.Lists;
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
 import org.sonar.api.BatchComponent;
+import org.sonar.api.CoreProperties;
 import org.sonar.api.batch.Decorator;
 import org.sonar.api.batch.DecoratorContext;
 import org.sonar.api.batch.SonarIndex;
+import org.sonar.api.batch.ThreadSafeDecorator;
+import org.sonar.api.config.Settings;
 import org.sonar.api.measures.MetricFinder;
 import org.sonar.api.resources.Project;
 import org.sonar.api.resources.Resource;
@@ -38,11 +44,41 @@ import org.sonar.batch.events.EventBus;
 import org.sonar.batch.scan.measure.MeasureCache;
 import org.sonar.batch.sensor.coverage.CoverageExclusions;
 
+import javax.annotation.Nullable;
+
+import java.util.Arrays;
 import java.util.Collection;
 import java.util.List;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
 
 public class DecoratorsExecutor implements BatchComponent {
 
+  /**
+   * Number of threads that execute the decorators annotated with {@link ThreadSafeDecorator}.
+   * Decoration is sequential by default.
+   * <p/>
+   * Decorators executed by these threads are not profiled: when {@link org.sonar.api.CoreProperties#PROFILING_LOG_PROPERTY}
+   * is enabled, the profiling of the decoration phase lists only the decorators that are not thread-safe.
+   * @since 5.1
+   */
+  public static final String THREADS_PROPERTY = "sonar.batch.decorators.threads";
+
+  private static final Logger LOG = LoggerFactory.getLogger(DecoratorsExecutor.class);
+
+  private static final Runnable END_OF_DECORATION = new Runnable() {
+    @Override
+    public void run() {
+      // marker of the queue of tasks executed by caller
+    }
+  };
+
   private DecoratorsSelector decoratorsSelector;
   private SonarIndex index;
   private EventBus eventBus;
@@ -51,13 +87,15 @@ public class DecoratorsExecutor implements BatchComponent {
   private MeasureCache measureCache;
   private MetricFinder metricFinder;
   private final DuplicationCache duplicationCache;
+  private final Settings settings;
 
   public DecoratorsExecutor(BatchExtensionDictionnary batchExtDictionnary,
     Project project, SonarIndex index, EventBus eventBus, CoverageExclusions coverageFilter, MeasureCache measureCache, MetricFinder metricFinder,
-    DuplicationCache duplicationCache) {
+    DuplicationCache duplicationCache, Settings settings) {
     this.measureCache = measureCache;
     this.metricFinder = metricFinder;
     this.duplicationCache = duplicationCache;
+    this.settings = settings;
     this.decoratorsSelector = new DecoratorsSelector(batchExtDictionnary);
     this.index = index;
     this.eventBus = eventBus;
@@ -68,7 +106,15 @@ public class DecoratorsExecutor implements BatchComponent {
   public void execute() {
     Collection<Decorator> decorators = decoratorsSelector.select(project);
     eventBus.fireEvent(new DecoratorsPhaseEvent(Lists.newArrayList(decorators), true));
-    ((DefaultDecoratorContext) decorateResource(project, decorators, true)).end();
+    int threads = settings.getInt(THREADS_PROPERTY);
+    if (threads > 1 && hasThreadSafeDecorator(decorators)) {
+      if (settings.getBoolean(CoreProperties.PROFILING_LOG_PROPERTY)) {
+        LOG.warn("Decorators executed concurrently are not profiled. Set " + THREADS_PROPERTY + " to 1 to profile all of them.");
+      }
+      decorateConcurrently(decorators, threads).end();
+    } else {
+      ((DefaultDecoratorContext) decorateResource(project, decorators, true)).end();
+    }
     eventBus.fireEvent(new DecoratorsPhaseEvent(Lists.newArrayList(decorators), false));
   }
 
@@ -80,8 +126,7 @@ public class DecoratorsExecutor implements BatchComponent {
       childrenContexts.add(childContext.end());
     }
 
-    DefaultDecoratorContext context = new DefaultDecoratorContext(resource, index, childrenContexts, measureCache, metricFinder, duplicationCache, coverageFilter);
-    context.init();
+    DefaultDecoratorContext context = newContext(resource, childrenContexts);
     if (executeDecorators) {
       for (Decorator decorator : decorators) {
         executeDecorator(decorator, context, resource);
@@ -90,11 +135,25 @@ public class DecoratorsExecutor implements BatchComponent {
     return context;
   }
 
+  private DefaultDecoratorContext newContext(Resource resource, List<DecoratorContext> childrenContexts) {
+    DefaultDecoratorContext context = new DefaultDecoratorContext(resource, index, childrenContexts, measureCache, metricFinder, duplicationCache, coverageFilter);
+    context.init();
+    return context;
+  }
+
   void executeDecorator(Decorator decorator, DefaultDecoratorContext context, Resource resource) {
+    executeDecorator(decorator, context, resource, true);
+  }
+
+  private void executeDecorator(Decorator decorator, DefaultDecoratorContext context, Resource resource, boolean fireEvents) {
     try {
-      eventBus.fireEvent(new DecoratorExecutionEvent(decorator, true));
+      if (fireEvents) {
+        eventBus.fireEvent(new DecoratorExecutionEvent(decorator, true));
+      }
       decorator.decorate(resource, context);
-      eventBus.fireEvent(new DecoratorExecutionEvent(decorator, false));
+      if (fireEvents) {
+        eventBus.fireEvent(new DecoratorExecutionEvent(decorator, false));
+      }
 
     } catch (MessageException e) {
       throw e;
@@ -105,4 +164,159 @@ public class DecoratorsExecutor implements BatchComponent {
     }
   }
 
+  private static boolean hasThreadSafeDecorator(Collection<Decorator> decorators) {
+    for (Decorator decorator : decorators) {
+      if (isThreadSafe(decorator)) {
+        return true;
+      }
+    }
+    LOG.debug("Decorators are executed sequentially as none of them is thread-safe");
+    return false;
+  }
+
+  private static boolean isThreadSafe(Decorator decorator) {
+    return decorator.getClass().isAnnotationPresent(ThreadSafeDecorator.class);
+  }
+
+  /**
+   * Resources are decorated by a pool of threads as soon as all their children are decorated. Only the decorators
+   * annotated with {@link ThreadSafeDecorator} are executed by the pool. The other ones are executed one at a time by the
+   * calling thread, which may rely on thread-bound resources like database sessions. Events are fired only for the
+   * latter, as events of concurrent executions would be interleaved.
+   */
+  DefaultDecoratorContext decorateConcurrently(Collection<Decorator> decorators, int threads) {
+    return new ConcurrentDecoration(decorators, threads).execute();
+  }
+
+  private class ConcurrentDecoration {
+    private final Collection<Decorator> decorators;
+    private final ExecutorService pool;
+    private final BlockingQueue<Runnable> callerTasks = new LinkedBlockingQueue<Runnable>();
+    private final AtomicReference<Throwable> failure = new AtomicReference<Throwable>();
+    private volatile DefaultDecoratorContext projectContext;
+
+    ConcurrentDecoration(Collection<Decorator> decorators, int threads) {
+      this.decorators = decorators;
+      this.pool = Executors.newFixedThreadPool(threads, new ThreadFactoryBuilder().setNameFormat("decorator-%d").setDaemon(true).build());
+    }
+
+    DefaultDecoratorContext execute() {
+      List<Node> leaves = Lists.newArrayList();
+      addNode(project, null, 0, true, leaves);
+      try {
+        for (Node leaf : leaves) {
+          submit(leaf);
+        }
+        Runnable task = callerTasks.take();
+        while (task != END_OF_DECORATION) {
+          task.run();
+          task = callerTasks.take();
+        }
+      } catch (InterruptedException e) {
+        Thread.currentThread().interrupt();
+        throw new IllegalStateException("Decoration is interrupted", e);
+      } finally {
+        pool.shutdownNow();
+      }
+      Throwable error = failure.get();
+      if (error instanceof RuntimeException) {
+        throw (RuntimeException) error;
+      }
+      if (error != null) {
+        throw new IllegalStateException("Fail to decorate", error);
+      }
+      return projectContext;
+    }
+
+    private void submit(final Node node) {
+      pool.execute(new Runnable() {
+        @Override
+        public void run() {
+          try {
+            decorate(node);
+          } catch (Throwable e) {
+            if (failure.compareAndSet(null, e)) {
+              callerTasks.add(END_OF_DECORATION);
+            }
+          }
+        }
+      });
+    }
+
+    private void decorate(Node node) throws InterruptedException {
+      final DefaultDecoratorContext context = newContext(node.resource, Arrays.asList(node.childrenContexts));
+      if (node.executeDecorators) {
+        for (final Decorator decorator : decorators) {
+          if (isThreadSafe(decorator)) {
+            executeDecorator(decorator, context, node.resource, false);
+          } else {
+            final Resource resource = node.resource;
+            executeByCaller(new Runnable() {
+              @Override
+              public void run() {
+                executeDecorator(decorator, context, resource, true);
+              }
+            });
+          }
+        }
+      }
+      Node parent = node.parent;
+      if (parent == null) {
+        projectContext = context;
+        callerTasks.add(END_OF_DECORATION);
+      } else {
+        parent.childrenContexts[node.indexInParent] = context.end();
+        if (parent.pendingChildren.decrementAndGet() == 0) {
+          submit(parent);
+        }
+      }
+    }
+
+    private void executeByCaller(Runnable runnable) throws InterruptedException {
+      FutureTask<Void> task = new FutureTask<Void>(runnable, null);
+      callerTasks.add(task);
+      try {
+        task.get();
+      } catch (ExecutionException e) {
+        if (e.getCause() instanceof RuntimeException) {
+          throw (RuntimeException) e.getCause();
+        }
+        throw new IllegalStateException(e.getCause());
+      }
+    }
+  }
+
+  private void addNode(Resource resource, @Nullable Node parent, int indexInParent, boolean executeDecorators, List<Node> leaves) {
+    Collection<Resource> children = index.getChildren(resource);
+    Node node = new Node(resource, parent, indexInParent, executeDecorators, children.size());
+    int childIndex = 0;
+    for (Resource child : children) {
+      addNode(child, node, childIndex, !(child instanceof Project), leaves);
+      childIndex++;
+    }
+    if (children.isEmpty()) {
+      leaves.add(node);
+    }
+  }
+
+  /**
+   * Resource to be decorated when all its children are decorated
+   */
+  private static class Node {
+    private final Resource resource;
+    private final Node parent;
+    private final int indexInParent;
+    private final boolean executeDecorators;
+    private final DecoratorContext[] childrenContexts;
+    private final AtomicInteger pendingChildren;
+
+    Node(Resource resource, @Nullable Node parent, int indexInParent, boolean executeDecorators, int childrenCount) {
+      this.resource = resource;
+      this.parent = parent;
+      this.indexInParent = indexInParent;
+      this.executeDecorators = executeDecorators;
+      this.childrenContexts = new DecoratorContext[childrenCount];
+      this.pendingChildren = new AtomicInteger(childrenCount);
+    }
+  }
 }
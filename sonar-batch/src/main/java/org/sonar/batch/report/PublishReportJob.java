@@ -21,7 +21,9 @@ package org.sonar.batch.report;
 
 import com.github.kevinsawicki.http.HttpRequest;
 import com.google.common.annotations.VisibleForTesting;
+import org.apache.commons.codec.digest.DigestUtils;
 import org.apache.commons.io.FileUtils;
+import org.apache.commons.io.IOUtils;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.sonar.api.BatchComponent;
@@ -30,14 +32,15 @@ import org.sonar.api.config.Settings;
 import org.sonar.api.platform.Server;
 import org.sonar.api.resources.Project;
 import org.sonar.api.utils.TempFolder;
-import org.sonar.api.utils.ZipUtils;
 import org.sonar.batch.bootstrap.DefaultAnalysisMode;
 import org.sonar.batch.bootstrap.ServerClient;
 import org.sonar.batch.index.ResourceCache;
 import org.sonar.batch.protocol.output.BatchOutputWriter;
 
 import java.io.File;
+import java.io.FileInputStream;
 import java.io.IOException;
+import java.io.InputStream;
 import java.net.MalformedURLException;
 import java.net.URL;
 
@@ -84,26 +87,19 @@ public class PublishReportJob implements BatchComponent {
   }
 
   private File prepareReport() {
+    long startTime = System.currentTimeMillis();
+    File report = temp.newFile("batch-report", ".pb");
+    BatchOutputWriter writer = new BatchOutputWriter(report);
     try {
-      long startTime = System.currentTimeMillis();
-      File reportDir = temp.newDir("batch-report");
-      BatchOutputWriter writer = new BatchOutputWriter(reportDir);
       for (ReportPublisher publisher : publishers) {
         publisher.publish(writer);
       }
-      long stopTime = System.currentTimeMillis();
-      LOG.info("Analysis reports generated in " + (stopTime - startTime) + "ms, dir size=" + FileUtils.byteCountToDisplaySize(FileUtils.sizeOfDirectory(reportDir)));
-
-      startTime = System.currentTimeMillis();
-      File reportZip = temp.newFile("batch-report", ".zip");
-      ZipUtils.zipDir(reportDir, reportZip);
-      FileUtils.deleteDirectory(reportDir);
-      stopTime = System.currentTimeMillis();
-      LOG.info("Analysis reports compressed in " + (stopTime - startTime) + "ms, zip size=" + FileUtils.byteCountToDisplaySize(FileUtils.sizeOf(reportZip)));
-      return reportZip;
-    } catch (IOException e) {
-      throw new IllegalStateException("Unable to prepare batch report", e);
+    } finally {
+      writer.close();
     }
+    long stopTime = System.currentTimeMillis();
+    LOG.info("Analysis report generated in " + (stopTime - startTime) + "ms, size=" + FileUtils.byteCountToDisplaySize(FileUtils.sizeOf(report)));
+    return report;
   }
 
   @VisibleForTesting
@@ -113,7 +109,8 @@ public class PublishReportJob implements BatchComponent {
     URL url;
     try {
       int snapshotId = resourceCache.get(project.getEffectiveKey()).snapshotId();
-      url = new URL(serverClient.getURL() + "/api/computation/submit_report?projectKey=" + project.getEffectiveKey() + "&snapshot=" + snapshotId);
+      url = new URL(serverClient.getURL() + "/api/computation/submit_report?projectKey=" + project.getEffectiveKey() + "&snapshot=" + snapshotId
+        + "&checksum=" + checksum(report));
     } catch (MalformedURLException e) {
       throw new IllegalArgumentException("Invalid URL", e);
     }
@@ -138,6 +135,21 @@ public class PublishReportJob implements BatchComponent {
     LOG.info("Analysis reports sent to server in " + (stopTime - startTime) + "ms");
   }
 
+  /**
+   * SHA-1 of the report, verified by server so that truncated uploads are rejected
+   */
+  private static String checksum(File report) {
+    InputStream input = null;
+    try {
+      input = new FileInputStream(report);
+      return DigestUtils.sha1Hex(input);
+    } catch (IOException e) {
+      throw new IllegalStateException("Fail to compute checksum of " + report, e);
+    } finally {
+      IOUtils.closeQuietly(input);
+    }
+  }
+
   @VisibleForTesting
   void logSuccess(Logger logger) {
     if (analysisMode.isPreview() || analysisMode.isMediumTest()) {
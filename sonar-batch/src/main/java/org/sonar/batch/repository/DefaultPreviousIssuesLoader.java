@@ -27,14 +27,17 @@ import org.sonar.api.utils.HttpDownloader;
 import org.sonar.batch.bootstrap.ServerClient;
 import org.sonar.batch.protocol.input.issues.PreviousIssue;
 import org.sonar.batch.protocol.input.issues.PreviousIssueHelper;
+import org.sonar.batch.protocol.input.issues.PreviousIssueProtobufHelper;
 
+import java.io.BufferedInputStream;
 import java.io.IOException;
 import java.io.InputStream;
 import java.io.InputStreamReader;
-import java.io.Reader;
 
 public class DefaultPreviousIssuesLoader implements PreviousIssuesLoader {
 
+  private static final int FORMAT_PEEK_LENGTH = 16;
+
   private final ServerClient serverClient;
 
   public DefaultPreviousIssuesLoader(ServerClient serverClient) {
@@ -43,9 +46,16 @@ public class DefaultPreviousIssuesLoader implements PreviousIssuesLoader {
 
   @Override
   public void load(ProjectReactor reactor, Function<PreviousIssue, Void> consumer) {
-    InputSupplier<InputStream> request = serverClient.doRequest("/batch/issues?key=" + ServerClient.encodeForUrl(reactor.getRoot().getKeyWithBranch()), "GET", null);
-    try (InputStream is = request.getInput(); Reader reader = new InputStreamReader(is, Charsets.UTF_8)) {
-      for (PreviousIssue issue : PreviousIssueHelper.getIssues(reader)) {
+    InputSupplier<InputStream> request = serverClient.doRequest("/batch/issues?format=protobuf&key=" + ServerClient.encodeForUrl(reactor.getRoot().getKeyWithBranch()),
+      "GET", null);
+    try (InputStream is = new BufferedInputStream(request.getInput())) {
+      Iterable<PreviousIssue> issues;
+      if (isJson(is)) {
+        issues = PreviousIssueHelper.getIssues(new InputStreamReader(is, Charsets.UTF_8));
+      } else {
+        issues = PreviousIssueProtobufHelper.getIssues(is);
+      }
+      for (PreviousIssue issue : issues) {
         consumer.apply(issue);
       }
     } catch (HttpDownloader.HttpException e) {
@@ -55,4 +65,30 @@ public class DefaultPreviousIssuesLoader implements PreviousIssuesLoader {
     }
   }
 
+  /**
+   * Servers that do not support the parameter "format" ignore it and return a JSON array. It can't be confused
+   * with a stream of protobuf messages, as the first message would then start with the key of an issue made
+   * of whitespaces, '{' or ']'.
+   */
+  static boolean isJson(InputStream is) throws IOException {
+    is.mark(FORMAT_PEEK_LENGTH);
+    try {
+      if (is.read() != '[') {
+        return false;
+      }
+      for (int i = 1; i < FORMAT_PEEK_LENGTH; i++) {
+        int c = is.read();
+        if (c == '{' || c == ']') {
+          return true;
+        }
+        if (!Character.isWhitespace(c)) {
+          return false;
+        }
+      }
+      return false;
+    } finally {
+      is.reset();
+    }
+  }
+
 }
@@ -19,10 +19,6 @@
  */
 package org.sonar.batch.scan.filesystem;
 
-import org.apache.commons.io.FileUtils;
-import org.apache.commons.io.filefilter.FileFilterUtils;
-import org.apache.commons.io.filefilter.HiddenFileFilter;
-import org.apache.commons.io.filefilter.IOFileFilter;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.sonar.api.BatchComponent;
@@ -36,18 +32,21 @@ import org.sonar.api.utils.MessageException;
 import org.sonar.batch.util.ProgressReport;
 
 import java.io.File;
+import java.io.IOException;
+import java.nio.file.FileVisitOption;
+import java.nio.file.FileVisitResult;
+import java.nio.file.Files;
 import java.nio.file.Path;
-import java.util.ArrayList;
-import java.util.Collection;
+import java.nio.file.SimpleFileVisitor;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.EnumSet;
 import java.util.HashSet;
 import java.util.List;
 import java.util.Set;
-import java.util.concurrent.Callable;
-import java.util.concurrent.ExecutionException;
-import java.util.concurrent.ExecutorService;
-import java.util.concurrent.Executors;
-import java.util.concurrent.Future;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.ThreadPoolExecutor;
 import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReference;
 
 /**
  * Index input files into {@link InputPathCache}.
@@ -56,8 +55,11 @@ public class FileIndexer implements BatchComponent {
 
   private static final Logger LOG = LoggerFactory.getLogger(FileIndexer.class);
 
-  private static final IOFileFilter DIR_FILTER = FileFilterUtils.and(HiddenFileFilter.VISIBLE, FileFilterUtils.notFileFilter(FileFilterUtils.prefixFileFilter(".")));
-  private static final IOFileFilter FILE_FILTER = HiddenFileFilter.VISIBLE;
+  /**
+   * Number of pending files per indexing thread. When queue is full, files are indexed by the thread
+   * walking the file tree, so that the tree is never fully loaded in memory.
+   */
+  private static final int QUEUE_SIZE_PER_THREAD = 100;
 
   private final List<InputFileFilter> filters;
   private final boolean isAggregator;
@@ -66,8 +68,8 @@ public class FileIndexer implements BatchComponent {
   private final InputPathCache inputPathCache;
 
   private ProgressReport progressReport;
-  private ExecutorService executorService;
-  private List<Future<Void>> tasks;
+  private ThreadPoolExecutor executorService;
+  private final AtomicReference<RuntimeException> failure = new AtomicReference<>();
 
   public FileIndexer(List<InputFileFilter> filters, ExclusionFilters exclusionFilters, InputFileBuilderFactory inputFileBuilderFactory,
     ProjectDefinition def, InputPathCache inputPathCache) {
@@ -90,8 +92,10 @@ public class FileIndexer implements BatchComponent {
     Progress progress = new Progress();
 
     InputFileBuilder inputFileBuilder = inputFileBuilderFactory.create(fileSystem);
-    executorService = Executors.newFixedThreadPool(Math.max(1, Runtime.getRuntime().availableProcessors() - 1));
-    tasks = new ArrayList<Future<Void>>();
+    int threads = Math.max(1, Runtime.getRuntime().availableProcessors() - 1);
+    executorService = new ThreadPoolExecutor(threads, threads, 0L, TimeUnit.MILLISECONDS, new ArrayBlockingQueue<Runnable>(threads * QUEUE_SIZE_PER_THREAD),
+      new ThreadPoolExecutor.CallerRunsPolicy());
+    failure.set(null);
     indexFiles(fileSystem, progress, inputFileBuilder, fileSystem.sources(), InputFile.Type.MAIN);
     indexFiles(fileSystem, progress, inputFileBuilder, fileSystem.tests(), InputFile.Type.TEST);
 
@@ -106,15 +110,22 @@ public class FileIndexer implements BatchComponent {
 
   private void waitForTasksToComplete() {
     executorService.shutdown();
-    for (Future<Void> task : tasks) {
-      try {
-        task.get();
-      } catch (ExecutionException e) {
-        // Unwrap ExecutionException
-        throw e.getCause() instanceof RuntimeException ? (RuntimeException) e.getCause() : new IllegalStateException(e.getCause());
-      } catch (InterruptedException e) {
-        throw new IllegalStateException(e);
+    try {
+      while (!executorService.awaitTermination(1, TimeUnit.SECONDS)) {
+        // still indexing
       }
+    } catch (InterruptedException e) {
+      executorService.shutdownNow();
+      Thread.currentThread().interrupt();
+      throw new IllegalStateException(e);
+    }
+    checkFailure();
+  }
+
+  private void checkFailure() {
+    RuntimeException e = failure.get();
+    if (e != null) {
+      throw e;
     }
   }
 
@@ -128,13 +139,42 @@ public class FileIndexer implements BatchComponent {
     }
   }
 
-  private void indexDirectory(InputFileBuilder inputFileBuilder, DefaultModuleFileSystem fileSystem, Progress status, File dirToIndex, InputFile.Type type) {
-    Collection<File> files = FileUtils.listFiles(dirToIndex, FILE_FILTER, DIR_FILTER);
-    for (File file : files) {
-      indexFile(inputFileBuilder, fileSystem, status, file, type);
+  private void indexDirectory(final InputFileBuilder inputFileBuilder, final DefaultModuleFileSystem fileSystem, final Progress status,
+    final File dirToIndex, final InputFile.Type type) {
+    final Path root = dirToIndex.toPath();
+    try {
+      Files.walkFileTree(root, EnumSet.of(FileVisitOption.FOLLOW_LINKS), Integer.MAX_VALUE, new SimpleFileVisitor<Path>() {
+        @Override
+        public FileVisitResult preVisitDirectory(Path dir, BasicFileAttributes attrs) throws IOException {
+          if (!dir.equals(root) && isHidden(dir)) {
+            return FileVisitResult.SKIP_SUBTREE;
+          }
+          return failure.get() != null ? FileVisitResult.TERMINATE : FileVisitResult.CONTINUE;
+        }
+
+        @Override
+        public FileVisitResult visitFile(Path file, BasicFileAttributes attrs) throws IOException {
+          if (attrs.isRegularFile() && !Files.isHidden(file)) {
+            indexFile(inputFileBuilder, fileSystem, status, file.toFile(), type);
+          }
+          return FileVisitResult.CONTINUE;
+        }
+
+        @Override
+        public FileVisitResult visitFileFailed(Path file, IOException e) {
+          LOG.debug("Unable to index " + file, e);
+          return FileVisitResult.CONTINUE;
+        }
+      });
+    } catch (IOException e) {
+      throw new IllegalStateException("Unable to index files of " + dirToIndex, e);
     }
   }
 
+  private static boolean isHidden(Path dir) throws IOException {
+    return Files.isHidden(dir) || dir.getFileName().toString().startsWith(".");
+  }
+
   private void indexFile(InputFileBuilder inputFileBuilder, DefaultModuleFileSystem fileSystem, Progress progress, File sourceFile, InputFile.Type type) {
     DeprecatedDefaultInputFile inputFile = inputFileBuilder.create(sourceFile);
     if (inputFile != null) {
@@ -151,25 +191,35 @@ public class FileIndexer implements BatchComponent {
   private void indexFile(final InputFileBuilder inputFileBuilder, final DefaultModuleFileSystem fs,
     final Progress status, final DeprecatedDefaultInputFile inputFile, final InputFile.Type type) {
 
-    tasks.add(executorService.submit(new Callable<Void>() {
+    executorService.execute(new Runnable() {
       @Override
-      public Void call() {
-        InputFileMetadata metadata = inputFileBuilder.completeAndComputeMetadata(inputFile, type);
-        if (metadata != null && accept(inputFile)) {
-          fs.add(inputFile);
-          status.markAsIndexed(inputFile);
-          inputPathCache.put(inputFile.moduleKey(), inputFile.relativePath(), metadata);
-          File parentDir = inputFile.file().getParentFile();
-          String relativePath = new PathResolver().relativePath(fs.baseDir(), parentDir);
-          if (relativePath != null) {
-            DefaultInputDir inputDir = new DefaultInputDir(fs.moduleKey(), relativePath);
-            fs.add(inputDir);
-          }
+      public void run() {
+        try {
+          doIndexFile(inputFileBuilder, fs, status, inputFile, type);
+        } catch (RuntimeException e) {
+          failure.compareAndSet(null, e);
         }
-        return null;
       }
-    }));
+    });
+  }
 
+  private void doIndexFile(InputFileBuilder inputFileBuilder, DefaultModuleFileSystem fs, Progress status, DeprecatedDefaultInputFile inputFile, InputFile.Type type) {
+    if (failure.get() != null) {
+      // fail fast, no need to index remaining files
+      return;
+    }
+    InputFileMetadata metadata = inputFileBuilder.completeAndComputeMetadata(inputFile, type);
+    if (metadata != null && accept(inputFile)) {
+      fs.add(inputFile);
+      status.markAsIndexed(inputFile);
+      inputPathCache.put(inputFile.moduleKey(), inputFile.relativePath(), metadata);
+      File parentDir = inputFile.file().getParentFile();
+      String relativePath = new PathResolver().relativePath(fs.baseDir(), parentDir);
+      if (relativePath != null) {
+        DefaultInputDir inputDir = new DefaultInputDir(fs.moduleKey(), relativePath);
+        fs.add(inputDir);
+      }
+    }
   }
 
   private boolean accept(InputFile inputFile) {
@@ -36,6 +36,7 @@ import javax.annotation.CheckForNull;
 import javax.annotation.Nullable;
 
 import java.io.BufferedReader;
+import java.io.ByteArrayOutputStream;
 import java.io.File;
 import java.io.FileInputStream;
 import java.io.IOException;
@@ -44,6 +45,7 @@ import java.io.Reader;
 import java.nio.charset.Charset;
 import java.security.MessageDigest;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.List;
 
 /**
@@ -56,6 +58,14 @@ public class FileMetadata implements BatchComponent {
 
   private static final char LINE_FEED = '\n';
   private static final char CARRIAGE_RETURN = '\r';
+  private static final int READ_BUFFER_SIZE = 64 * 1024;
+
+  /**
+   * Number of bytes of the MD5 hash of a line. Hashes of blank lines are stored as zeros.
+   */
+  public static final int LINE_HASH_LENGTH = 16;
+  private static final byte[] BLANK_LINE_HASH = new byte[LINE_HASH_LENGTH];
+
   private final AnalysisMode analysisMode;
 
   public FileMetadata(AnalysisMode analysisMode) {
@@ -222,7 +232,24 @@ public class FileMetadata implements BatchComponent {
   }
 
   /**
-   * Compute hash of a file ignoring line ends differences.
+   * Concatenates the binary line hashes computed by {@link LineHashComputer}, see {@link #LINE_HASH_LENGTH}.
+   */
+  private static class LineHashesBuilder implements LineHashConsumer {
+    private final ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+
+    @Override
+    public void consume(int lineIdx, @Nullable byte[] hash) {
+      bytes.write(hash != null ? hash : BLANK_LINE_HASH, 0, LINE_HASH_LENGTH);
+    }
+
+    byte[] build() {
+      return bytes.toByteArray();
+    }
+  }
+
+  /**
+   * Compute hash of a file ignoring line ends differences, as well as the hashes of lines used
+   * by issue tracking. File is read only once.
    * Maximum performance is needed.
    */
   Metadata read(File file, Charset encoding) {
@@ -230,20 +257,23 @@ public class FileMetadata implements BatchComponent {
     FileHashComputer fileHashComputer = new FileHashComputer();
     LineOffsetCounter lineOffsetCounter = new LineOffsetCounter();
     if (!analysisMode.isPreview()) {
-      scanFile(file, encoding, lineCounter, fileHashComputer, lineOffsetCounter);
-    } else {
-      // No need to compute line offsets in preview mode since there is no syntax highlighting
-      scanFile(file, encoding, lineCounter, fileHashComputer);
+      LineHashesBuilder lineHashes = new LineHashesBuilder();
+      scanFile(file, encoding, lineCounter, fileHashComputer, lineOffsetCounter, new LineHashComputer(lineHashes));
+      return new Metadata(lineCounter.lines(), lineCounter.nonBlankLines(), fileHashComputer.getHash(), lineOffsetCounter.getOriginalLineOffsets(),
+        lineCounter.isEmpty(), lineHashes.build());
     }
+    // No need to compute line offsets in preview mode since there is no syntax highlighting. Line hashes are not
+    // computed either, as sources are not persisted. Issue tracking reads the few files having issues again.
+    scanFile(file, encoding, lineCounter, fileHashComputer);
     return new Metadata(lineCounter.lines(), lineCounter.nonBlankLines(), fileHashComputer.getHash(), lineOffsetCounter.getOriginalLineOffsets(),
-      lineCounter.isEmpty());
+      lineCounter.isEmpty(), null);
   }
 
   private static void scanFile(File file, Charset encoding, CharHandler... handlers) {
     char c = (char) 0;
     try (BOMInputStream bomIn = new BOMInputStream(new FileInputStream(file),
       ByteOrderMark.UTF_8, ByteOrderMark.UTF_16LE, ByteOrderMark.UTF_16BE, ByteOrderMark.UTF_32LE, ByteOrderMark.UTF_32BE);
-      Reader reader = new BufferedReader(new InputStreamReader(bomIn, encoding))) {
+      Reader reader = new BufferedReader(new InputStreamReader(bomIn, encoding), READ_BUFFER_SIZE)) {
       int i = reader.read();
       boolean afterCR = false;
       while (i != -1) {
@@ -289,13 +319,15 @@ public class FileMetadata implements BatchComponent {
     final String hash;
     final int[] originalLineOffsets;
     final boolean empty;
+    final byte[] lineHashes;
 
-    private Metadata(int lines, int nonBlankLines, String hash, List<Integer> originalLineOffsets, boolean empty) {
+    private Metadata(int lines, int nonBlankLines, String hash, List<Integer> originalLineOffsets, boolean empty, @Nullable byte[] lineHashes) {
       this.lines = lines;
       this.nonBlankLines = nonBlankLines;
       this.hash = hash;
       this.empty = empty;
       this.originalLineOffsets = Ints.toArray(originalLineOffsets);
+      this.lineHashes = lineHashes;
     }
   }
 
@@ -311,4 +343,17 @@ public class FileMetadata implements BatchComponent {
   public static void computeLineHashesForIssueTracking(DefaultInputFile f, LineHashConsumer consumer) {
     scanFile(f.file(), f.charset(), new LineHashComputer(consumer));
   }
+
+  /**
+   * Converts the line hashes stored in {@link InputFileMetadata#lineHashes()} to hex strings. Hash of a blank line is empty.
+   */
+  public static String[] lineHashesAsHex(byte[] lineHashes) {
+    String[] result = new String[lineHashes.length / LINE_HASH_LENGTH];
+    byte[] hash = new byte[LINE_HASH_LENGTH];
+    for (int i = 0; i < result.length; i++) {
+      System.arraycopy(lineHashes, i * LINE_HASH_LENGTH, hash, 0, LINE_HASH_LENGTH);
+      result[i] = Arrays.equals(hash, BLANK_LINE_HASH) ? "" : Hex.encodeHexString(hash);
+    }
+    return result;
+  }
 }
@@ -112,6 +112,7 @@ class InputFileBuilder {
     result.setHash(metadata.hash);
     result.setOriginalLineOffsets(metadata.originalLineOffsets);
     result.setEmpty(metadata.empty);
+    result.setLineHashes(metadata.lineHashes);
 
     inputFile.setStatus(statusDetection.status(inputFile.moduleKey(), inputFile.relativePath(), metadata.hash));
     if (analysisMode.isIncremental() && inputFile.status() == InputFile.Status.SAME) {
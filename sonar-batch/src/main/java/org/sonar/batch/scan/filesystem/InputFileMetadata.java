@@ -19,6 +19,9 @@
  */
 package org.sonar.batch.scan.filesystem;
 
+import javax.annotation.CheckForNull;
+import javax.annotation.Nullable;
+
 import java.io.Serializable;
 
 /**
@@ -30,6 +33,7 @@ public class InputFileMetadata implements Serializable {
   private int nonBlankLines;
   private int[] originalLineOffsets;
   private boolean empty;
+  private byte[] lineHashes;
 
   /**
    * Digest hash of the file.
@@ -61,6 +65,21 @@ public class InputFileMetadata implements Serializable {
     return this;
   }
 
+  /**
+   * MD5 hashes of lines, ignoring blank chars, {@link FileMetadata#LINE_HASH_LENGTH} bytes per line. These hashes
+   * are used by issue tracking. They are not computed in preview mode.
+   * @see FileMetadata#lineHashesAsHex(byte[])
+   */
+  @CheckForNull
+  public byte[] lineHashes() {
+    return lineHashes;
+  }
+
+  public InputFileMetadata setLineHashes(@Nullable byte[] lineHashes) {
+    this.lineHashes = lineHashes;
+    return this;
+  }
+
   public boolean isEmpty() {
     return this.empty;
   }
@@ -0,0 +1,344 @@
+/*
+ * SonarQube, open source software quality management tool.
+ * Copyright (C) 2008-2014 SonarSource
+ * mailto:contact AT sonarsource DOT com
+ *
+ * SonarQube is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * SonarQube is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+ */
+package org.sonar.batch.scan.measure;
+
+import com.google.common.collect.ImmutableSet;
+import com.google.common.collect.Maps;
+import org.apache.commons.lang.StringUtils;
+import org.sonar.api.BatchComponent;
+import org.sonar.api.measures.CoreMetrics;
+import org.sonar.api.measures.Measure;
+import org.sonar.api.measures.RuleMeasure;
+import org.sonar.api.utils.DateUtils;
+import org.sonar.api.utils.KeyValueFormat;
+import org.sonar.batch.index.Cache;
+import org.sonar.batch.index.Caches;
+
+import javax.annotation.CheckForNull;
+import javax.annotation.Nullable;
+
+import java.util.Arrays;
+import java.util.Date;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Cache of the per-line measures of files (coverage and SCM), stored as arrays indexed by line - 1.
+ * Data of these measures is decoded once when saved in {@link MeasureCache}, so that it does not have to
+ * be parsed again when sources are consolidated. Arrays are the source of the data of these measures:
+ * {@link MeasureCache} does not keep their string data, unless it can't be formatted again exactly as it was saved.
+ * Data is formatted again only when requested, generally when measures are persisted.
+ * @since 5.1
+ */
+public class LineMeasureCache implements BatchComponent {
+
+  /**
+   * Value of lines without data in int arrays
+   */
+  public static final int NO_INT_VALUE = Integer.MIN_VALUE;
+
+  /**
+   * Value of lines without data in long arrays
+   */
+  public static final long NO_LONG_VALUE = Long.MIN_VALUE;
+
+  private static final Set<String> INT_METRICS = ImmutableSet.of(
+    CoreMetrics.COVERAGE_LINE_HITS_DATA_KEY,
+    CoreMetrics.CONDITIONS_BY_LINE_KEY,
+    CoreMetrics.COVERED_CONDITIONS_BY_LINE_KEY,
+    CoreMetrics.IT_COVERAGE_LINE_HITS_DATA_KEY,
+    CoreMetrics.IT_CONDITIONS_BY_LINE_KEY,
+    CoreMetrics.IT_COVERED_CONDITIONS_BY_LINE_KEY,
+    CoreMetrics.OVERALL_COVERAGE_LINE_HITS_DATA_KEY,
+    CoreMetrics.OVERALL_CONDITIONS_BY_LINE_KEY,
+    CoreMetrics.OVERALL_COVERED_CONDITIONS_BY_LINE_KEY);
+
+  private static final Set<String> STRING_METRICS = ImmutableSet.of(
+    CoreMetrics.SCM_AUTHORS_BY_LINE_KEY,
+    CoreMetrics.SCM_REVISIONS_BY_LINE_KEY);
+
+  private static final Set<String> DATETIME_METRICS = ImmutableSet.of(
+    CoreMetrics.SCM_LAST_COMMIT_DATETIMES_BY_LINE_KEY);
+
+  private static final int INITIAL_CAPACITY = 64;
+
+  private final Cache<Object> cache;
+
+  public LineMeasureCache(Caches caches) {
+    cache = caches.createCache("lineMeasures");
+  }
+
+  @CheckForNull
+  public int[] intValues(String fileKey, String metricKey) {
+    return (int[]) cache.get(fileKey, metricKey);
+  }
+
+  @CheckForNull
+  public long[] longValues(String fileKey, String metricKey) {
+    return (long[]) cache.get(fileKey, metricKey);
+  }
+
+  @CheckForNull
+  public String[] stringValues(String fileKey, String metricKey) {
+    return (String[]) cache.get(fileKey, metricKey);
+  }
+
+  /**
+   * Decodes and stores the data of the measure if it's a per-line measure. Other measures are ignored.
+   *
+   * @return true if the data of the measure can be formatted again from the stored arrays, so that it does not
+   * have to be kept. It's false when some lines are lost by decoding, for example lines with empty values or
+   * with unparseable dates.
+   */
+  boolean put(String resourceKey, Measure measure) {
+    if (!isLineMeasure(measure)) {
+      return false;
+    }
+    String metricKey = measure.getMetricKey();
+    String data = measure.getData();
+    if (data == null) {
+      cache.remove(resourceKey, metricKey);
+      return false;
+    }
+    if (INT_METRICS.contains(metricKey)) {
+      int[] values = parseInts(data);
+      cache.put(resourceKey, metricKey, values);
+      return countValues(values) == countEntries(data);
+    }
+    if (STRING_METRICS.contains(metricKey)) {
+      // empty values are kept as empty strings
+      cache.put(resourceKey, metricKey, parseStrings(data));
+      return true;
+    }
+    long[] values = parseDateTimes(data);
+    cache.put(resourceKey, metricKey, values);
+    return countValues(values) == countEntries(data);
+  }
+
+  /**
+   * Formats the data of a per-line measure from the stored arrays
+   */
+  @CheckForNull
+  String formatData(String resourceKey, String metricKey) {
+    if (INT_METRICS.contains(metricKey)) {
+      return formatInts(intValues(resourceKey, metricKey));
+    }
+    if (STRING_METRICS.contains(metricKey)) {
+      return formatStrings(stringValues(resourceKey, metricKey));
+    }
+    if (DATETIME_METRICS.contains(metricKey)) {
+      return formatDateTimes(longValues(resourceKey, metricKey));
+    }
+    return null;
+  }
+
+  static boolean isLineMeasure(Measure measure) {
+    String metricKey = measure.getMetricKey();
+    return measure.getPersonId() == null && measure.getCharacteristic() == null && !(measure instanceof RuleMeasure)
+      && (INT_METRICS.contains(metricKey) || STRING_METRICS.contains(metricKey) || DATETIME_METRICS.contains(metricKey));
+  }
+
+  /**
+   * Number of "line=value" entries, values of int and date metrics not containing '='
+   */
+  private static int countEntries(String data) {
+    return StringUtils.countMatches(data, "=");
+  }
+
+  private static int countValues(int[] values) {
+    int count = 0;
+    for (int value : values) {
+      if (value != NO_INT_VALUE) {
+        count++;
+      }
+    }
+    return count;
+  }
+
+  private static int countValues(long[] values) {
+    int count = 0;
+    for (long value : values) {
+      if (value != NO_LONG_VALUE) {
+        count++;
+      }
+    }
+    return count;
+  }
+
+  /**
+   * Fast path for "line=value;line=value" data with integer values. Lines with empty values are skipped.
+   */
+  static int[] parseInts(String data) {
+    try {
+      int[] values = newIntArray(INITIAL_CAPACITY);
+      int maxLine = 0;
+      int length = data.length();
+      int pos = 0;
+      while (pos < length) {
+        int end = data.indexOf(';', pos);
+        if (end < 0) {
+          end = length;
+        }
+        int separator = data.indexOf('=', pos);
+        if (separator < 0 || separator > end) {
+          throw new NumberFormatException("Missing value at index " + pos);
+        }
+        int line = parseInt(data, pos, separator);
+        if (line > 0 && separator + 1 < end) {
+          if (line > values.length) {
+            values = grow(values, line);
+          }
+          values[line - 1] = parseInt(data, separator + 1, end);
+          maxLine = Math.max(maxLine, line);
+        }
+        pos = end + 1;
+      }
+      return Arrays.copyOf(values, maxLine);
+    } catch (NumberFormatException e) {
+      // escaped or unusual format
+      return parseIntsWithKeyValueFormat(data);
+    }
+  }
+
+  private static int[] parseIntsWithKeyValueFormat(String data) {
+    Map<Integer, String> valuesByLine = KeyValueFormat.parseIntString(data);
+    int[] values = newIntArray(maxLine(valuesByLine));
+    for (Map.Entry<Integer, String> entry : valuesByLine.entrySet()) {
+      if (entry.getKey() > 0 && StringUtils.isNotEmpty(entry.getValue())) {
+        values[entry.getKey() - 1] = Integer.parseInt(entry.getValue());
+      }
+    }
+    return values;
+  }
+
+  private static int parseInt(String s, int from, int to) {
+    if (from == to) {
+      throw new NumberFormatException("Empty number at index " + from);
+    }
+    boolean negative = s.charAt(from) == '-';
+    int start = negative ? from + 1 : from;
+    if (start == to || to - start > 9) {
+      // let Integer.parseInt() deal with sign only and overflows
+      return Integer.parseInt(s.substring(from, to));
+    }
+    int result = 0;
+    for (int i = start; i < to; i++) {
+      int digit = s.charAt(i) - '0';
+      if (digit < 0 || digit > 9) {
+        throw new NumberFormatException("Not a digit at index " + i);
+      }
+      result = result * 10 + digit;
+    }
+    return negative ? -result : result;
+  }
+
+  private static int[] newIntArray(int size) {
+    int[] values = new int[size];
+    Arrays.fill(values, NO_INT_VALUE);
+    return values;
+  }
+
+  private static int[] grow(int[] values, int minSize) {
+    int[] result = Arrays.copyOf(values, Math.max(minSize, values.length * 2));
+    Arrays.fill(result, values.length, result.length, NO_INT_VALUE);
+    return result;
+  }
+
+  /**
+   * Lines with empty values, for example lines without SCM author, are kept as empty strings, so that data is
+   * formatted again as it was saved. Lines without value are null.
+   */
+  static String[] parseStrings(String data) {
+    Map<Integer, String> valuesByLine = KeyValueFormat.parseIntString(data);
+    String[] values = new String[maxLine(valuesByLine)];
+    for (Map.Entry<Integer, String> entry : valuesByLine.entrySet()) {
+      if (entry.getKey() > 0) {
+        values[entry.getKey() - 1] = StringUtils.defaultString(entry.getValue());
+      }
+    }
+    return values;
+  }
+
+  static long[] parseDateTimes(String data) {
+    Map<Integer, String> valuesByLine = KeyValueFormat.parseIntString(data);
+    long[] values = new long[maxLine(valuesByLine)];
+    Arrays.fill(values, NO_LONG_VALUE);
+    for (Map.Entry<Integer, String> entry : valuesByLine.entrySet()) {
+      Date date = DateUtils.parseDateTimeQuietly(entry.getValue());
+      if (entry.getKey() > 0 && date != null) {
+        values[entry.getKey() - 1] = date.getTime();
+      }
+    }
+    return values;
+  }
+
+  @CheckForNull
+  static String formatInts(@Nullable int[] values) {
+    if (values == null) {
+      return null;
+    }
+    StringBuilder sb = new StringBuilder();
+    for (int i = 0; i < values.length; i++) {
+      if (values[i] != NO_INT_VALUE) {
+        if (sb.length() > 0) {
+          sb.append(';');
+        }
+        sb.append(i + 1).append('=').append(values[i]);
+      }
+    }
+    return sb.toString();
+  }
+
+  @CheckForNull
+  static String formatStrings(@Nullable String[] values) {
+    if (values == null) {
+      return null;
+    }
+    Map<Integer, String> valuesByLine = Maps.newTreeMap();
+    for (int i = 0; i < values.length; i++) {
+      if (values[i] != null) {
+        valuesByLine.put(i + 1, values[i]);
+      }
+    }
+    return KeyValueFormat.formatIntString(valuesByLine);
+  }
+
+  @CheckForNull
+  static String formatDateTimes(@Nullable long[] values) {
+    if (values == null) {
+      return null;
+    }
+    Map<Integer, Date> valuesByLine = Maps.newTreeMap();
+    for (int i = 0; i < values.length; i++) {
+      if (values[i] != NO_LONG_VALUE) {
+        valuesByLine.put(i + 1, new Date(values[i]));
+      }
+    }
+    return KeyValueFormat.formatIntDateTime(valuesByLine);
+  }
+
+  private static int maxLine(Map<Integer, String> valuesByLine) {
+    int max = 0;
+    for (Integer line : valuesByLine.keySet()) {
+      max = Math.max(max, line);
+    }
+    return max;
+  }
+}
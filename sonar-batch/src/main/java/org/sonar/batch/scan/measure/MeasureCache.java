@@ -19,10 +19,13 @@
  */
 package org.sonar.batch.scan.measure;
 
+import com.google.common.base.Function;
 import com.google.common.base.Preconditions;
+import com.google.common.collect.Iterables;
 import org.sonar.api.BatchComponent;
 import org.sonar.api.batch.measure.MetricFinder;
 import org.sonar.api.measures.Measure;
+import org.sonar.api.measures.Metric;
 import org.sonar.api.measures.RuleMeasure;
 import org.sonar.api.resources.Resource;
 import org.sonar.api.technicaldebt.batch.Characteristic;
@@ -37,27 +40,44 @@ import org.sonar.batch.index.Caches;
 public class MeasureCache implements BatchComponent {
 
   private final Cache<Measure> cache;
+  private final LineMeasureCache lineMeasureCache;
 
-  public MeasureCache(Caches caches, MetricFinder metricFinder, TechnicalDebtModel techDebtModel) {
+  public MeasureCache(Caches caches, MetricFinder metricFinder, TechnicalDebtModel techDebtModel, LineMeasureCache lineMeasureCache) {
     caches.registerValueCoder(Measure.class, new MeasureValueCoder(metricFinder, techDebtModel));
     cache = caches.createCache("measures");
+    this.lineMeasureCache = lineMeasureCache;
   }
 
-  public MeasureCache(Caches caches, MetricFinder metricFinder) {
+  public MeasureCache(Caches caches, MetricFinder metricFinder, LineMeasureCache lineMeasureCache) {
     caches.registerValueCoder(Measure.class, new MeasureValueCoder(metricFinder, null));
     cache = caches.createCache("measures");
+    this.lineMeasureCache = lineMeasureCache;
   }
 
   public Iterable<Entry<Measure>> entries() {
-    return cache.entries();
+    return Iterables.transform(cache.entries(), new Function<Entry<Measure>, Entry<Measure>>() {
+      @Override
+      public Entry<Measure> apply(Entry<Measure> entry) {
+        Measure measure = entry.value();
+        if (measure == null) {
+          return entry;
+        }
+        return new Entry<Measure>(entry.key(), withLineData((String) entry.key()[0], measure));
+      }
+    });
   }
 
   public Iterable<Measure> all() {
-    return cache.values();
+    return Iterables.transform(entries(), new Function<Entry<Measure>, Measure>() {
+      @Override
+      public Measure apply(Entry<Measure> entry) {
+        return entry.value();
+      }
+    });
   }
 
   public Iterable<Measure> byResource(Resource r) {
-    return cache.values(r.getEffectiveKey());
+    return withLineData(r.getEffectiveKey(), cache.values(r.getEffectiveKey()));
   }
 
   public Iterable<Measure> byMetric(Resource r, String metricKey) {
@@ -65,13 +85,36 @@ public class MeasureCache implements BatchComponent {
   }
 
   public Iterable<Measure> byMetric(String resourceKey, String metricKey) {
-    return cache.values(resourceKey, metricKey);
+    return withLineData(resourceKey, cache.values(resourceKey, metricKey));
+  }
+
+  private Iterable<Measure> withLineData(final String resourceKey, Iterable<Measure> measures) {
+    return Iterables.transform(measures, new Function<Measure, Measure>() {
+      @Override
+      public Measure apply(Measure measure) {
+        return withLineData(resourceKey, measure);
+      }
+    });
+  }
+
+  private Measure withLineData(String resourceKey, Measure measure) {
+    if (measure.getData() == null && LineMeasureCache.isLineMeasure(measure)) {
+      return new LineMeasure(measure, lineMeasureCache, resourceKey);
+    }
+    return measure;
   }
 
   public MeasureCache put(Resource resource, Measure measure) {
     Preconditions.checkNotNull(resource.getEffectiveKey());
     Preconditions.checkNotNull(measure.getMetricKey());
-    cache.put(resource.getEffectiveKey(), measure.getMetricKey(), computeMeasureKey(measure), measure);
+    Measure cached = measure;
+    if (lineMeasureCache.put(resource.getEffectiveKey(), measure)) {
+      // data of per-line measures is only kept as arrays by LineMeasureCache
+      cached = copy(measure, new Measure(measure.getMetricKey()));
+    } else if (measure instanceof LineMeasure) {
+      cached = copy(measure, new Measure(measure.getMetricKey())).setData(measure.getData());
+    }
+    cache.put(resource.getEffectiveKey(), measure.getMetricKey(), computeMeasureKey(measure), cached);
     return this;
   }
 
@@ -103,4 +146,80 @@ public class MeasureCache implements BatchComponent {
     return sb.toString();
   }
 
+  /**
+   * Copies all the fields encoded by {@link MeasureValueCoder}, except data
+   */
+  private static <M extends Measure> M copy(Measure from, M to) {
+    if (from.getMetric() != null) {
+      to.setMetric(from.getMetric());
+    }
+    to.setRawValue(from.getValue());
+    to.setDescription(from.getDescription());
+    to.setAlertStatus(from.getAlertStatus());
+    to.setAlertText(from.getAlertText());
+    to.setTendency(from.getTendency());
+    to.setDate(from.getDate());
+    to.setVariation1(from.getVariation1());
+    to.setVariation2(from.getVariation2());
+    to.setVariation3(from.getVariation3());
+    to.setVariation4(from.getVariation4());
+    to.setVariation5(from.getVariation5());
+    to.setUrl(from.getUrl());
+    to.setCharacteristic(from.getCharacteristic());
+    to.setRequirement(from.getRequirement());
+    to.setPersonId(from.getPersonId());
+    to.setPersistenceMode(from.getPersistenceMode());
+    to.setFromCore(from.isFromCore());
+    return to;
+  }
+
+  /**
+   * Per-line measure read from cache. Its data is formatted from {@link LineMeasureCache} only when it's requested,
+   * for example when the measure is persisted.
+   */
+  private static class LineMeasure extends Measure {
+    private final LineMeasureCache lineMeasureCache;
+    private final String resourceKey;
+    private boolean dataLoaded = false;
+
+    LineMeasure(Measure from, LineMeasureCache lineMeasureCache, String resourceKey) {
+      super(from.getMetricKey());
+      copy(from, this);
+      this.lineMeasureCache = lineMeasureCache;
+      this.resourceKey = resourceKey;
+    }
+
+    @Override
+    public String getData() {
+      if (!dataLoaded) {
+        data = lineMeasureCache.formatData(resourceKey, getMetricKey());
+        dataLoaded = true;
+      }
+      return data;
+    }
+
+    @Override
+    public boolean hasData() {
+      return getData() != null;
+    }
+
+    @Override
+    public Measure setData(String s) {
+      dataLoaded = true;
+      return super.setData(s);
+    }
+
+    @Override
+    public Measure setData(Metric.Level level) {
+      dataLoaded = true;
+      return super.setData(level);
+    }
+
+    @Override
+    public Measure unsetData() {
+      dataLoaded = true;
+      return super.unsetData();
+    }
+  }
+
 }
@@ -0,0 +1,78 @@
+/*
+ * SonarQube, open source software quality management tool.
+ * Copyright (C) 2008-2014 SonarSource
+ * mailto:contact AT sonarsource DOT com
+ *
+ * SonarQube is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * SonarQube is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+ */
+package org.sonar.batch.scm;
+
+import com.google.common.base.Joiner;
+import org.apache.commons.codec.digest.DigestUtils;
+import org.apache.commons.lang.StringUtils;
+import org.sonar.api.BatchComponent;
+import org.sonar.api.batch.InstantiationStrategy;
+import org.sonar.api.batch.fs.InputFile;
+import org.sonar.api.batch.fs.internal.DefaultInputFile;
+import org.sonar.batch.util.LocalCacheDir;
+import org.sonar.batch.util.LocalCaches;
+
+import javax.annotation.CheckForNull;
+
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Local cache of blame results, see {@link LocalCaches}. Entries are identified by the SCM provider, the file
+ * and the hash of its content, so that unchanged files are never blamed again.
+ * Each entry is a text file of three lines: authors, dates and revisions by line.
+ */
+@InstantiationStrategy(InstantiationStrategy.PER_BATCH)
+public class BlameCache implements BatchComponent {
+
+  private static final int MAX_ENTRIES = 100000;
+
+  private final LocalCacheDir dir;
+
+  public BlameCache(LocalCaches caches) {
+    this(caches.get("_scm", MAX_ENTRIES));
+  }
+
+  BlameCache(LocalCacheDir dir) {
+    this.dir = dir;
+  }
+
+  /**
+   * @return authors, dates and revisions by line, or null if the file has never been blamed with this content
+   */
+  @CheckForNull
+  public List<String> get(String providerKey, InputFile file, String contentHash) {
+    String content = dir.read(key(providerKey, file, contentHash));
+    if (content == null) {
+      return null;
+    }
+    String[] lines = StringUtils.splitPreserveAllTokens(content, '\n');
+    return lines.length == 3 ? Arrays.asList(lines) : null;
+  }
+
+  public void put(String providerKey, InputFile file, String contentHash, String authors, String dates, String revisions) {
+    dir.write(key(providerKey, file, contentHash), Joiner.on('\n').join(authors, dates, revisions));
+  }
+
+  private static String key(String providerKey, InputFile file, String contentHash) {
+    String moduleKey = file instanceof DefaultInputFile ? ((DefaultInputFile) file).moduleKey() : "";
+    return DigestUtils.sha1Hex(providerKey + ":" + moduleKey + ":" + file.relativePath() + ":" + contentHash);
+  }
+}
@@ -35,9 +35,11 @@ import org.sonar.batch.util.ProgressReport;
 import javax.annotation.Nullable;
 
 import java.text.Normalizer;
+import java.util.Collections;
 import java.util.Date;
 import java.util.HashSet;
 import java.util.List;
+import java.util.Map;
 import java.util.Set;
 import java.util.concurrent.TimeUnit;
 import java.util.regex.Pattern;
@@ -51,12 +53,27 @@ class DefaultBlameOutput implements BlameOutput {
 
   private final SensorContext context;
   private final Set<InputFile> allFilesToBlame = new HashSet<InputFile>();
+  private final BlameCache blameCache;
+  private final String providerKey;
+  private final Map<InputFile, String> contentHashes;
   private ProgressReport progressReport;
   private int count;
   private int total;
 
   DefaultBlameOutput(SensorContext context, List<InputFile> filesToBlame) {
+    this(context, filesToBlame, null, null, Collections.<InputFile, String>emptyMap());
+  }
+
+  /**
+   * @param contentHashes hash of content of the files to be blamed. Results of the files that are
+   *                      referenced are stored in the blame cache.
+   */
+  DefaultBlameOutput(SensorContext context, List<InputFile> filesToBlame, @Nullable BlameCache blameCache, @Nullable String providerKey,
+    Map<InputFile, String> contentHashes) {
     this.context = context;
+    this.blameCache = blameCache;
+    this.providerKey = providerKey;
+    this.contentHashes = contentHashes;
     this.allFilesToBlame.addAll(filesToBlame);
     count = 0;
     total = filesToBlame.size();
@@ -87,7 +104,14 @@ class DefaultBlameOutput implements BlameOutput {
       revisions.add(lineNumber, line.revision());
       lineNumber++;
     }
-    ScmSensor.saveMeasures(context, file, authors.buildData(), dates.buildData(), revisions.buildData());
+    String authorsData = authors.buildData();
+    String datesData = dates.buildData();
+    String revisionsData = revisions.buildData();
+    ScmSensor.saveMeasures(context, file, authorsData, datesData, revisionsData);
+    String contentHash = contentHashes.get(file);
+    if (blameCache != null && contentHash != null) {
+      blameCache.put(providerKey, file, contentHash, authorsData, datesData, revisionsData);
+    }
     allFilesToBlame.remove(file);
     count++;
     progressReport.message(count + "/" + total + " files analyzed, last one was " + file.absolutePath());
@@ -51,6 +51,18 @@ import java.util.Map;
     project = false,
     global = false,
     category = CoreProperties.CATEGORY_SCM
+  ),
+  @Property(
+    key = ScmConfiguration.THREADS_KEY,
+    defaultValue = "1",
+    type = PropertyType.INTEGER,
+    name = "Number of threads used to blame files",
+    description = "Files are split into as many groups, each of them being blamed in parallel by the SCM provider. "
+      + "Ignored if the SCM provider does not support concurrent blame.",
+    module = false,
+    project = false,
+    global = false,
+    category = CoreProperties.CATEGORY_SCM
   )
 })
 @InstantiationStrategy(InstantiationStrategy.PER_BATCH)
@@ -58,6 +70,7 @@ public final class ScmConfiguration implements BatchComponent, Startable {
   private static final Logger LOG = LoggerFactory.getLogger(ScmConfiguration.class);
 
   public static final String FORCE_RELOAD_KEY = "sonar.scm.forceReloadAll";
+  public static final String THREADS_KEY = "sonar.scm.threads";
 
   private final ProjectReactor projectReactor;
   private final Settings settings;
@@ -162,6 +175,10 @@ public final class ScmConfiguration implements BatchComponent, Startable {
     return settings.getBoolean(FORCE_RELOAD_KEY);
   }
 
+  public int threads() {
+    return Math.max(1, settings.getInt(THREADS_KEY));
+  }
+
   @Override
   public void stop() {
     // Nothing to do
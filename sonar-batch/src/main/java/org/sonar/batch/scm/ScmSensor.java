@@ -19,6 +19,9 @@
  */
 package org.sonar.batch.scm;
 
+import com.google.common.collect.Lists;
+import com.google.common.collect.Maps;
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.sonar.api.CoreProperties;
@@ -27,6 +30,7 @@ import org.sonar.api.batch.fs.FileSystem;
 import org.sonar.api.batch.fs.InputFile;
 import org.sonar.api.batch.fs.InputFile.Status;
 import org.sonar.api.batch.fs.internal.DefaultInputFile;
+import org.sonar.api.batch.scm.BlameCommand;
 import org.sonar.api.batch.sensor.Sensor;
 import org.sonar.api.batch.sensor.SensorContext;
 import org.sonar.api.batch.sensor.SensorDescriptor;
@@ -37,22 +41,30 @@ import org.sonar.batch.protocol.input.ProjectRepositories;
 import org.sonar.batch.scan.filesystem.InputFileMetadata;
 import org.sonar.batch.scan.filesystem.InputPathCache;
 
-import java.util.LinkedList;
+import java.util.ArrayList;
 import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
 
 public final class ScmSensor implements Sensor {
 
   private static final Logger LOG = LoggerFactory.getLogger(ScmSensor.class);
+  private static final int GROUPS_PER_THREAD = 4;
 
   private final ProjectDefinition projectDefinition;
   private final ScmConfiguration configuration;
   private final FileSystem fs;
   private final ProjectRepositories projectReferentials;
   private final InputPathCache inputPathCache;
+  private final BlameCache blameCache;
 
   public ScmSensor(ProjectDefinition projectDefinition, ScmConfiguration configuration,
-    ProjectRepositories projectReferentials, FileSystem fs, InputPathCache inputPathCache) {
+    ProjectRepositories projectReferentials, FileSystem fs, InputPathCache inputPathCache, BlameCache blameCache) {
     this.projectDefinition = projectDefinition;
+    this.blameCache = blameCache;
     this.configuration = configuration;
     this.projectReferentials = projectReferentials;
     this.fs = fs;
@@ -76,37 +88,81 @@ public final class ScmSensor implements Sensor {
       return;
     }
 
-    List<InputFile> filesToBlame = collectFilesToBlame(context);
+    String key = configuration.provider().key();
+    Map<InputFile, String> contentHashes = Maps.newHashMap();
+    List<InputFile> filesToBlame = collectFilesToBlame(context, key, contentHashes);
     if (!filesToBlame.isEmpty()) {
-      String key = configuration.provider().key();
       LOG.info("SCM provider for this project is: " + key);
-      DefaultBlameOutput output = new DefaultBlameOutput(context, filesToBlame);
-      configuration.provider().blameCommand().blame(new DefaultBlameInput(fs, filesToBlame), output);
+      DefaultBlameOutput output = new DefaultBlameOutput(context, filesToBlame, blameCache, key, contentHashes);
+      blame(filesToBlame, output);
       output.finish();
     }
   }
 
-  private List<InputFile> collectFilesToBlame(final SensorContext context) {
+  /**
+   * Files are split into groups that are blamed concurrently, when the provider supports it. Results are saved as
+   * soon as they are sent by the provider.
+   */
+  private void blame(List<InputFile> filesToBlame, final DefaultBlameOutput output) {
+    final BlameCommand blameCommand = configuration.provider().blameCommand();
+    int threads = Math.min(configuration.threads(), filesToBlame.size());
+    if (threads > 1 && !blameCommand.supportsConcurrentBlame()) {
+      LOG.debug("SCM provider " + configuration.provider().key() + " does not support concurrent blame. Files are blamed on a single thread.");
+      threads = 1;
+    }
+    if (threads <= 1) {
+      blameCommand.blame(new DefaultBlameInput(fs, filesToBlame), output);
+      return;
+    }
+    // smaller groups than threads, so that work is balanced when some files are longer to blame
+    int groupSize = (int) Math.ceil((double) filesToBlame.size() / (threads * GROUPS_PER_THREAD));
+    ExecutorService executor = Executors.newFixedThreadPool(threads, new ThreadFactoryBuilder().setNameFormat("scm-blame-%d").setDaemon(true).build());
+    try {
+      List<Future<?>> futures = Lists.newArrayList();
+      for (final List<InputFile> group : Lists.partition(filesToBlame, groupSize)) {
+        futures.add(executor.submit(new Runnable() {
+          @Override
+          public void run() {
+            blameCommand.blame(new DefaultBlameInput(fs, group), output);
+          }
+        }));
+      }
+      for (Future<?> future : futures) {
+        future.get();
+      }
+    } catch (ExecutionException e) {
+      throw new IllegalStateException("Fail to blame files", e.getCause());
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+      throw new IllegalStateException("Interrupted while blaming files", e);
+    } finally {
+      executor.shutdownNow();
+    }
+  }
+
+  private List<InputFile> collectFilesToBlame(final SensorContext context, String providerKey, Map<InputFile, String> contentHashes) {
     if (configuration.forceReloadAll()) {
       LOG.warn("Forced reloading of SCM data for all files.");
     }
-    List<InputFile> filesToBlame = new LinkedList<InputFile>();
+    List<InputFile> filesToBlame = new ArrayList<InputFile>();
     for (InputFile f : fs.inputFiles(fs.predicates().all())) {
       if (!configuration.forceReloadAll()) {
-        copyPreviousMeasuresForUnmodifiedFiles(context, filesToBlame, f);
+        copyPreviousMeasuresForUnmodifiedFiles(context, filesToBlame, providerKey, contentHashes, f);
       } else {
         filesToBlame.add(f);
+        putContentHash(contentHashes, f);
       }
     }
     return filesToBlame;
   }
 
-  private void copyPreviousMeasuresForUnmodifiedFiles(final SensorContext context, List<InputFile> filesToBlame, InputFile f) {
+  private void copyPreviousMeasuresForUnmodifiedFiles(final SensorContext context, List<InputFile> filesToBlame, String providerKey,
+    Map<InputFile, String> contentHashes, InputFile f) {
     FileData fileData = projectReferentials.fileData(projectDefinition.getKeyWithBranch(), f.relativePath());
 
     if (f.status() == Status.SAME && fileData != null) {
       if (fileData.needBlame()) {
-        addIfNotEmpty(filesToBlame, (DefaultInputFile) f);
+        addIfNotEmptyAndNotCached(context, filesToBlame, providerKey, contentHashes, (DefaultInputFile) f);
       } else {
         // Copy previous measures
         String scmAuthorsByLine = fileData.scmAuthorsByLine();
@@ -119,14 +175,33 @@ public final class ScmSensor implements Sensor {
         }
       }
     } else {
-      addIfNotEmpty(filesToBlame, (DefaultInputFile) f);
+      addIfNotEmptyAndNotCached(context, filesToBlame, providerKey, contentHashes, (DefaultInputFile) f);
     }
   }
 
-  private void addIfNotEmpty(List<InputFile> filesToBlame, DefaultInputFile f) {
+  private void addIfNotEmptyAndNotCached(SensorContext context, List<InputFile> filesToBlame, String providerKey, Map<InputFile, String> contentHashes,
+    DefaultInputFile f) {
     InputFileMetadata metadata = inputPathCache.getFileMetadata(f.moduleKey(), f.relativePath());
-    if (!metadata.isEmpty()) {
-      filesToBlame.add(f);
+    if (metadata.isEmpty()) {
+      return;
+    }
+    String contentHash = metadata.hash();
+    if (contentHash != null) {
+      List<String> cachedBlame = blameCache.get(providerKey, f, contentHash);
+      if (cachedBlame != null) {
+        saveMeasures(context, f, cachedBlame.get(0), cachedBlame.get(1), cachedBlame.get(2));
+        return;
+      }
+      contentHashes.put(f, contentHash);
+    }
+    filesToBlame.add(f);
+  }
+
+  private void putContentHash(Map<InputFile, String> contentHashes, InputFile f) {
+    DefaultInputFile inputFile = (DefaultInputFile) f;
+    InputFileMetadata metadata = inputPathCache.getFileMetadata(inputFile.moduleKey(), inputFile.relativePath());
+    if (metadata != null && metadata.hash() != null) {
+      contentHashes.put(f, metadata.hash());
     }
   }
 
@@ -0,0 +1,180 @@
+/*
+ * SonarQube, open source software quality management tool.
+ * Copyright (C) 2008-2014 SonarSource
+ * mailto:contact AT sonarsource DOT com
+ *
+ * SonarQube is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * SonarQube is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+ */
+package org.sonar.batch.util;
+
+import com.google.common.base.Charsets;
+import org.apache.commons.io.FileUtils;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import javax.annotation.CheckForNull;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Directory of text entries in the user cache, shared by analyses and by concurrent processes.
+ * Entries are identified by a hexadecimal key and are written atomically. They are usually text, but
+ * binary entries can be streamed from and to their file. Entries that are not
+ * read or written during {@code maxAgeMs} are evicted, as well as the least recently used ones when
+ * there are more than {@code maxEntries}.
+ */
+public class LocalCacheDir {
+
+  private static final Logger LOG = LoggerFactory.getLogger(LocalCacheDir.class);
+  private static final String TMP_SUFFIX = ".tmp";
+  private static final long TMP_MAX_AGE_MS = TimeUnit.DAYS.toMillis(1);
+
+  private final File dir;
+  private final int maxEntries;
+  private final long maxAgeMs;
+
+  public LocalCacheDir(File dir, int maxEntries, long maxAgeMs) {
+    this.dir = dir;
+    this.maxEntries = maxEntries;
+    this.maxAgeMs = maxAgeMs;
+  }
+
+  /**
+   * @return content of the entry, or null if it does not exist or can't be read
+   */
+  @CheckForNull
+  public String read(String key) {
+    File entry = get(key);
+    if (entry == null) {
+      return null;
+    }
+    try {
+      return FileUtils.readFileToString(entry, Charsets.UTF_8.name());
+    } catch (IOException e) {
+      LOG.debug("Fail to read cache entry " + entry, e);
+      return null;
+    }
+  }
+
+  public void write(String key, String content) {
+    File tmp = null;
+    try {
+      tmp = newTempFile(key);
+      FileUtils.writeStringToFile(tmp, content, Charsets.UTF_8.name());
+      put(key, tmp);
+    } catch (IOException e) {
+      LOG.debug("Fail to write cache entry " + entry(key), e);
+      FileUtils.deleteQuietly(tmp);
+    }
+  }
+
+  /**
+   * Entries that are not text are read directly from their file.
+   *
+   * @return the file of the entry, or null if it does not exist
+   */
+  @CheckForNull
+  public File get(String key) {
+    File entry = entry(key);
+    if (!entry.isFile()) {
+      return null;
+    }
+    // last modification date is the date of last use, on which eviction relies
+    entry.setLastModified(System.currentTimeMillis());
+    return entry;
+  }
+
+  /**
+   * Creates the temporary file into which an entry is written before being published by {@link #put(String, File)}.
+   */
+  public File newTempFile(String key) throws IOException {
+    File entry = entry(key);
+    FileUtils.forceMkdir(entry.getParentFile());
+    // in the same directory as the entry, so that it can be renamed
+    return File.createTempFile(entry.getName(), TMP_SUFFIX, entry.getParentFile());
+  }
+
+  /**
+   * Replaces the entry by the temporary file created by {@link #newTempFile(String)}. Entry is renamed, so that
+   * other processes never read partially written entries.
+   */
+  public void put(String key, File tmp) {
+    File entry = entry(key);
+    // rename does not replace an existing file on all platforms
+    if (!tmp.renameTo(entry) && !(entry.delete() && tmp.renameTo(entry))) {
+      FileUtils.deleteQuietly(tmp);
+    }
+  }
+
+  public void evict() {
+    evict(System.currentTimeMillis());
+  }
+
+  void evict(long now) {
+    File[] subDirs = dir.listFiles();
+    if (subDirs == null) {
+      return;
+    }
+    List<UsedEntry> entries = new ArrayList<UsedEntry>();
+    for (File subDir : subDirs) {
+      File[] files = subDir.listFiles();
+      if (files == null) {
+        continue;
+      }
+      for (File file : files) {
+        boolean tmp = file.getName().endsWith(TMP_SUFFIX);
+        long lastUse = file.lastModified();
+        if (now - lastUse > (tmp ? TMP_MAX_AGE_MS : maxAgeMs)) {
+          FileUtils.deleteQuietly(file);
+        } else if (!tmp) {
+          entries.add(new UsedEntry(file, lastUse));
+        }
+      }
+    }
+    if (entries.size() > maxEntries) {
+      Collections.sort(entries, new Comparator<UsedEntry>() {
+        @Override
+        public int compare(UsedEntry e1, UsedEntry e2) {
+          return Long.compare(e1.lastUse, e2.lastUse);
+        }
+      });
+      for (UsedEntry entry : entries.subList(0, entries.size() - maxEntries)) {
+        FileUtils.deleteQuietly(entry.file);
+      }
+    }
+  }
+
+  private static class UsedEntry {
+    private final File file;
+    // read once, as it can be changed by other processes during eviction
+    private final long lastUse;
+
+    UsedEntry(File file, long lastUse) {
+      this.file = file;
+      this.lastUse = lastUse;
+    }
+  }
+
+  File entry(String key) {
+    // two-level layout to avoid too many files in a single directory
+    return new File(new File(dir, key.substring(0, 2)), key);
+  }
+}
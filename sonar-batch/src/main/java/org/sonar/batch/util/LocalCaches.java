@@ -0,0 +1,80 @@
+/*
+ * SonarQube, open source software quality management tool.
+ * Copyright (C) 2008-2014 SonarSource
+ * mailto:contact AT sonarsource DOT com
+ *
+ * SonarQube is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * SonarQube is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+ */
+package org.sonar.batch.util;
+
+import org.picocontainer.Startable;
+import org.sonar.api.BatchComponent;
+import org.sonar.api.batch.InstantiationStrategy;
+import org.sonar.home.cache.FileCache;
+
+import java.io.File;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Local caches shared by analyses, for example of the results of expensive computations on unchanged data.
+ * Each cache is a {@link LocalCacheDir} in the user cache directory. Entries unused for {@link #MAX_AGE_DAYS} days
+ * are evicted at the end of the analysis.
+ * <p/>
+ * Caches are only reused when the user cache directory is kept between analyses. Analyses that start with an empty
+ * user cache, for example on disposable CI agents, compute everything again.
+ */
+@InstantiationStrategy(InstantiationStrategy.PER_BATCH)
+public class LocalCaches implements BatchComponent, Startable {
+
+  private static final int MAX_AGE_DAYS = 30;
+
+  private final File dir;
+  private final Map<String, LocalCacheDir> caches = new HashMap<String, LocalCacheDir>();
+
+  public LocalCaches(FileCache fileCache) {
+    this(fileCache.getDir());
+  }
+
+  public LocalCaches(File dir) {
+    this.dir = dir;
+  }
+
+  /**
+   * @param name name of the directory of the cache, unique among caches
+   * @param maxEntries number of entries above which the least recently used ones are evicted
+   */
+  public synchronized LocalCacheDir get(String name, int maxEntries) {
+    LocalCacheDir cache = caches.get(name);
+    if (cache == null) {
+      cache = new LocalCacheDir(new File(dir, name), maxEntries, TimeUnit.DAYS.toMillis(MAX_AGE_DAYS));
+      caches.put(name, cache);
+    }
+    return cache;
+  }
+
+  @Override
+  public void start() {
+    // nothing to do
+  }
+
+  @Override
+  public synchronized void stop() {
+    for (LocalCacheDir cache : caches.values()) {
+      cache.evict();
+    }
+  }
+}
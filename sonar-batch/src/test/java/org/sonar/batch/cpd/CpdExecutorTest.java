@@ -0,0 +1,84 @@
+/*
+ * SonarQube, open source software quality management tool.
+ * Copyright (C) 2008-2014 SonarSource
+ * mailto:contact AT sonarsource DOT com
+ *
+ * SonarQube is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * SonarQube is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+ */
+package org.sonar.batch.cpd;
+
+import com.google.common.collect.Lists;
+import org.junit.Test;
+import org.sonar.api.batch.fs.InputFile;
+import org.sonar.api.batch.fs.internal.DeprecatedDefaultInputFile;
+import org.sonar.api.config.Settings;
+import org.sonar.batch.cpd.index.SonarDuplicationsIndex;
+import org.sonar.duplications.block.Block;
+import org.sonar.duplications.block.ByteArray;
+import org.sonar.duplications.index.CloneGroup;
+
+import javax.annotation.Nullable;
+
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+public class CpdExecutorTest {
+
+  Settings settings = new Settings();
+
+  @Test
+  public void one_thread_per_processor_by_default() {
+    assertThat(new CpdExecutor(settings).threads()).isEqualTo(Runtime.getRuntime().availableProcessors());
+
+    settings.setProperty(CpdExecutor.THREADS_KEY, 3);
+    assertThat(new CpdExecutor(settings).threads()).isEqualTo(3);
+  }
+
+  @Test
+  public void results_are_consumed_in_order_of_files() {
+    settings.setProperty(CpdExecutor.THREADS_KEY, 4);
+    SonarDuplicationsIndex index = new SonarDuplicationsIndex();
+    List<InputFile> files = Lists.newArrayList();
+    for (int i = 0; i < 50; i++) {
+      DeprecatedDefaultInputFile file = new DeprecatedDefaultInputFile("foo", "src/File" + i + ".java");
+      files.add(file);
+      List<Block> blocks = Lists.newArrayList();
+      for (int j = 0; j < 3; j++) {
+        // files i and i + 10 have the same blocks
+        blocks.add(Block.builder()
+          .setResourceId(file.key())
+          .setBlockHash(new ByteArray((long) (i % 10) * 10 + j))
+          .setIndexInFile(j)
+          .setLines(j + 1, j + 2)
+          .build());
+      }
+      index.insert(file, blocks);
+    }
+
+    final List<InputFile> consumed = Lists.newArrayList();
+    new CpdExecutor(settings).execute(index, files, new CpdExecutor.Callback() {
+      @Override
+      public void onClones(InputFile inputFile, @Nullable List<CloneGroup> clones) {
+        assertThat(clones).hasSize(1);
+        assertThat(clones.get(0).getCloneParts()).hasSize(5);
+        consumed.add(inputFile);
+      }
+    });
+
+    assertThat(consumed).isEqualTo(files);
+  }
+
+}
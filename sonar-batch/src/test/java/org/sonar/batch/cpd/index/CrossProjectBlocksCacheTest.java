@@ -0,0 +1,100 @@
+/*
+ * SonarQube, open source software quality management tool.
+ * Copyright (C) 2008-2014 SonarSource
+ * mailto:contact AT sonarsource DOT com
+ *
+ * SonarQube is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * SonarQube is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+ */
+package org.sonar.batch.cpd.index;
+
+import com.google.common.collect.Lists;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.sonar.batch.util.LocalCacheDir;
+import org.sonar.duplications.block.Block;
+import org.sonar.duplications.block.ByteArray;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+public class CrossProjectBlocksCacheTest {
+
+  @Rule
+  public TemporaryFolder temp = new TemporaryFolder();
+
+  CrossProjectBlocksCache cache;
+
+  @Before
+  public void setUp() throws Exception {
+    cache = new CrossProjectBlocksCache(new LocalCacheDir(temp.newFolder(), 10, TimeUnit.DAYS.toMillis(1)), "server");
+  }
+
+  @Test
+  public void read_written_blocks() {
+    assertThat(cache.read("java", 42, new Collector())).isFalse();
+
+    CrossProjectBlocksCache.Writer writer = cache.newWriter("java", 42);
+    writer.write(newBlock("bar:Foo.java", 1L, 0));
+    writer.write(newBlock("bar:Foo.java", 2L, 1));
+    writer.write(newBlock("bar:Bar.java", 1L, 0));
+    writer.commit();
+
+    Collector collector = new Collector();
+    assertThat(cache.read("java", 42, collector)).isTrue();
+    assertThat(collector.blocks).containsExactly(newBlock("bar:Foo.java", 1L, 0), newBlock("bar:Foo.java", 2L, 1), newBlock("bar:Bar.java", 1L, 0));
+    assertThat(collector.blocks.get(1).getStartLine()).isEqualTo(2);
+    assertThat(collector.blocks.get(1).getEndLine()).isEqualTo(3);
+  }
+
+  @Test
+  public void ignore_blocks_of_other_snapshot_or_language() {
+    CrossProjectBlocksCache.Writer writer = cache.newWriter("java", 42);
+    writer.write(newBlock("bar:Foo.java", 1L, 0));
+    writer.commit();
+
+    assertThat(cache.read("java", 43, new Collector())).isFalse();
+    assertThat(cache.read("php", 42, new Collector())).isFalse();
+  }
+
+  @Test
+  public void entry_is_not_available_until_committed() {
+    CrossProjectBlocksCache.Writer writer = cache.newWriter("java", 42);
+    writer.write(newBlock("bar:Foo.java", 1L, 0));
+
+    assertThat(cache.read("java", 42, new Collector())).isFalse();
+  }
+
+  private static Block newBlock(String resourceKey, long hash, int index) {
+    return Block.builder()
+      .setResourceId(resourceKey)
+      .setBlockHash(new ByteArray(hash))
+      .setIndexInFile(index)
+      .setLines(index + 1, index + 2)
+      .build();
+  }
+
+  private static class Collector implements CrossProjectBlocksCache.BlockHandler {
+    private final List<Block> blocks = Lists.newArrayList();
+
+    @Override
+    public void handle(Block block) {
+      blocks.add(block);
+    }
+  }
+}
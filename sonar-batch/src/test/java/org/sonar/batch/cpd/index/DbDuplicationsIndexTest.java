@@ -0,0 +1,206 @@
+/*
+ * SonarQube, open source software quality management tool.
+ * Copyright (C) 2008-2014 SonarSource
+ * mailto:contact AT sonarsource DOT com
+ *
+ * SonarQube is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * SonarQube is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+ */
+package org.sonar.batch.cpd.index;
+
+import org.apache.ibatis.session.ResultContext;
+import org.apache.ibatis.session.ResultHandler;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.mockito.invocation.InvocationOnMock;
+import org.mockito.stubbing.Answer;
+import org.sonar.api.batch.fs.internal.DefaultInputFile;
+import org.sonar.api.database.DatabaseSession;
+import org.sonar.api.database.model.Snapshot;
+import org.sonar.api.resources.File;
+import org.sonar.api.resources.Project;
+import org.sonar.batch.index.ResourceCache;
+import org.sonar.batch.util.LocalCacheDir;
+import org.sonar.core.duplication.DuplicationDao;
+import org.sonar.core.duplication.DuplicationUnitDto;
+import org.sonar.duplications.block.Block;
+import org.sonar.duplications.block.ByteArray;
+import org.sonar.duplications.index.CloneIndex;
+import org.sonar.duplications.index.PackedMemoryCloneIndex;
+
+import javax.annotation.Nullable;
+import javax.persistence.Query;
+
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.concurrent.TimeUnit;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.Matchers.any;
+import static org.mockito.Matchers.anyInt;
+import static org.mockito.Matchers.anyString;
+import static org.mockito.Matchers.eq;
+import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+public class DbDuplicationsIndexTest {
+
+  private static final String HASH = "0000000000000001";
+  private static final String OTHER_HASH = "0000000000000002";
+  private static final String UNUSED_HASH = "0000000000000003";
+
+  @Rule
+  public TemporaryFolder temp = new TemporaryFolder();
+
+  DuplicationDao dao = mock(DuplicationDao.class);
+  DatabaseSession session = mock(DatabaseSession.class);
+  Project project;
+  ResourceCache resourceCache;
+
+  @Before
+  public void setUp() {
+    project = new Project("foo");
+    project.setId(1);
+    resourceCache = new ResourceCache();
+    resourceCache.add(project, null).setSnapshot(new Snapshot().setId(10));
+
+    Query query = mock(Query.class);
+    when(session.createQuery(anyString())).thenReturn(query);
+    when(session.getSingleResult(query, null)).thenReturn(new Snapshot().setId(7));
+  }
+
+  @Test
+  public void load_candidates_of_current_project_snapshot() {
+    projects(3, 5);
+    blocks(3, unit("bar:File1", HASH, 0, 1, 2), unit("bar:File1", HASH, 3, 4, 5));
+    blocks(5, unit("baz:File2", OTHER_HASH, 0, 10, 20));
+
+    CloneIndex candidates = newIndex(null).loadCandidates(current());
+
+    Collection<Block> blocks = candidates.getBySequenceHash(new ByteArray(HASH));
+    assertThat(blocks).hasSize(2);
+    assertThat(blocks).extracting("resourceId").containsOnly("bar:File1");
+    assertThat(blocks).extracting("indexInFile").containsOnly(0, 3);
+
+    blocks = candidates.getBySequenceHash(new ByteArray(OTHER_HASH));
+    assertThat(blocks).hasSize(1);
+    Block block = blocks.iterator().next();
+    assertThat(block.getResourceId()).isEqualTo("baz:File2");
+    assertThat(block.getStartLine()).isEqualTo(10);
+    assertThat(block.getEndLine()).isEqualTo(20);
+  }
+
+  @Test
+  public void load_blocks_of_other_projects_from_local_cache() throws Exception {
+    CrossProjectBlocksCache cache = new CrossProjectBlocksCache(new LocalCacheDir(temp.newFolder(), 10, TimeUnit.DAYS.toMillis(1)), "server");
+
+    // analysis of other project caches its blocks
+    Project otherProject = new Project("bar");
+    otherProject.setId(2);
+    ResourceCache otherResourceCache = new ResourceCache();
+    otherResourceCache.add(otherProject, null).setSnapshot(new Snapshot().setId(3));
+    File file = File.create("File1");
+    file.setEffectiveKey("bar:File1");
+    otherResourceCache.add(file, otherProject).setSnapshot(new Snapshot().setId(4));
+    DbDuplicationsIndex otherIndex = new DbDuplicationsIndex(otherProject, mock(DuplicationDao.class), "java", session, otherResourceCache, cache);
+    otherIndex.insert(new DefaultInputFile("bar", "File1"), Arrays.asList(block("bar:File1", HASH, 0), block("bar:File1", UNUSED_HASH, 1)));
+    otherIndex.loadCandidates(new PackedMemoryCloneIndex());
+
+    // current analysis does not load blocks from db, as the other project has not been analysed again
+    projects(3);
+    CloneIndex candidates = newIndex(cache).loadCandidates(current());
+
+    verify(dao, never()).selectCandidates(anyInt(), anyInt(), anyString(), any(ResultHandler.class));
+    assertThat(candidates.getBySequenceHash(new ByteArray(HASH))).extracting("resourceId").containsOnly("bar:File1");
+    // blocks whose hash is not used by current analysis are not kept
+    assertThat(candidates.getBySequenceHash(new ByteArray(UNUSED_HASH))).isEmpty();
+  }
+
+  @Test
+  public void load_blocks_from_db_again_when_cache_entry_is_partially_read() throws Exception {
+    CrossProjectBlocksCache cache = mock(CrossProjectBlocksCache.class);
+    when(cache.read(eq("java"), eq(3), any(CrossProjectBlocksCache.BlockHandler.class))).thenAnswer(new Answer<Boolean>() {
+      @Override
+      public Boolean answer(InvocationOnMock invocation) {
+        CrossProjectBlocksCache.BlockHandler handler = (CrossProjectBlocksCache.BlockHandler) invocation.getArguments()[2];
+        handler.handle(Block.builder().setResourceId("bar:File1").setBlockHash(new ByteArray(HASH)).setIndexInFile(0).setLines(1, 2).build());
+        // reading fails after the first block
+        return false;
+      }
+    });
+    projects(3);
+    blocks(3, unit("bar:File1", HASH, 0, 1, 2), unit("bar:File1", HASH, 3, 4, 5));
+
+    CloneIndex candidates = newIndex(cache).loadCandidates(current());
+
+    // the block read from cache is not duplicated
+    assertThat(candidates.getBySequenceHash(new ByteArray(HASH))).extracting("indexInFile").containsOnly(0, 3).hasSize(2);
+    verify(cache).read(eq("java"), eq(3), any(CrossProjectBlocksCache.BlockHandler.class));
+  }
+
+  @Test
+  public void no_candidates() {
+    projects();
+
+    CloneIndex candidates = newIndex(null).loadCandidates(current());
+
+    assertThat(candidates.getBySequenceHash(new ByteArray(HASH))).isEmpty();
+    verify(dao, never()).selectCandidates(anyInt(), anyInt(), anyString(), any(ResultHandler.class));
+  }
+
+  private DbDuplicationsIndex newIndex(@Nullable CrossProjectBlocksCache cache) {
+    return new DbDuplicationsIndex(project, dao, "java", session, resourceCache, cache);
+  }
+
+  private static CloneIndex current() {
+    CloneIndex current = new PackedMemoryCloneIndex();
+    current.insert(Block.builder().setResourceId("foo:File").setBlockHash(new ByteArray(HASH)).setIndexInFile(0).setLines(1, 2).build());
+    current.insert(Block.builder().setResourceId("foo:File").setBlockHash(new ByteArray(OTHER_HASH)).setIndexInFile(1).setLines(3, 4).build());
+    return current;
+  }
+
+  private static Block block(String resourceKey, String hash, int indexInFile) {
+    return Block.builder().setResourceId(resourceKey).setBlockHash(new ByteArray(hash)).setIndexInFile(indexInFile).setLines(1, 2).build();
+  }
+
+  private static DuplicationUnitDto unit(String resourceKey, String hash, int indexInFile, int startLine, int endLine) {
+    DuplicationUnitDto unit = new DuplicationUnitDto(3, 4, hash, indexInFile, startLine, endLine);
+    unit.setResourceKey(resourceKey);
+    return unit;
+  }
+
+  private void projects(Integer... projectSnapshotIds) {
+    when(dao.selectCandidateProjectSnapshots(10, 7, "java")).thenReturn(Arrays.asList(projectSnapshotIds));
+  }
+
+  private void blocks(int projectSnapshotId, final DuplicationUnitDto... units) {
+    doAnswer(new Answer<Void>() {
+      @Override
+      public Void answer(InvocationOnMock invocation) {
+        ResultHandler handler = (ResultHandler) invocation.getArguments()[3];
+        for (DuplicationUnitDto unit : units) {
+          ResultContext context = mock(ResultContext.class);
+          when(context.getResultObject()).thenReturn(unit);
+          handler.handleResult(context);
+        }
+        return null;
+      }
+    }).when(dao).selectCandidates(eq(projectSnapshotId), eq(10), eq("java"), any(ResultHandler.class));
+  }
+}
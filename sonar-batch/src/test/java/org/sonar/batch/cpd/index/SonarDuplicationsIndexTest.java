@@ -0,0 +1,92 @@
+/*
+ * SonarQube, open source software quality management tool.
+ * Copyright (C) 2008-2014 SonarSource
+ * mailto:contact AT sonarsource DOT com
+ *
+ * SonarQube is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * SonarQube is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+ */
+package org.sonar.batch.cpd.index;
+
+import org.junit.Test;
+import org.sonar.api.batch.fs.InputFile;
+import org.sonar.duplications.block.Block;
+import org.sonar.duplications.block.ByteArray;
+import org.sonar.duplications.index.CloneIndex;
+import org.sonar.duplications.index.PackedMemoryCloneIndex;
+
+import java.util.Arrays;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.Matchers.any;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+public class SonarDuplicationsIndexTest {
+
+  private static final ByteArray HASH = new ByteArray("0000000000000001");
+  private static final ByteArray OTHER_HASH = new ByteArray("0000000000000002");
+
+  InputFile inputFile = mock(InputFile.class);
+
+  @Test
+  public void get_blocks_of_current_analysis() {
+    SonarDuplicationsIndex index = new SonarDuplicationsIndex();
+    Block block = block("foo:File1", HASH, 0);
+    index.insert(inputFile, Arrays.asList(block));
+
+    assertThat(index.getBySequenceHash(HASH)).containsOnly(block);
+    assertThat(index.getBySequenceHash(OTHER_HASH)).isEmpty();
+    assertThat(index.getByInputFile(inputFile, "foo:File1")).containsOnly(block);
+  }
+
+  @Test
+  public void get_blocks_of_current_analysis_and_of_other_projects() {
+    DbDuplicationsIndex db = mock(DbDuplicationsIndex.class);
+    CloneIndex candidates = new PackedMemoryCloneIndex();
+    Block candidate = block("bar:File2", HASH, 3);
+    candidates.insert(candidate);
+    when(db.loadCandidates(any(CloneIndex.class))).thenReturn(candidates);
+
+    SonarDuplicationsIndex index = new SonarDuplicationsIndex(db);
+    List<Block> blocks = Arrays.asList(block("foo:File1", HASH, 0), block("foo:File1", OTHER_HASH, 1));
+    index.insert(inputFile, blocks);
+    verify(db).insert(inputFile, blocks);
+    index.loadCandidates();
+
+    assertThat(index.getBySequenceHash(HASH)).containsOnly(blocks.get(0), candidate);
+    assertThat(index.getBySequenceHash(OTHER_HASH)).containsOnly(blocks.get(1));
+    verify(db, times(1)).loadCandidates(any(CloneIndex.class));
+  }
+
+  @Test(expected = IllegalStateException.class)
+  public void fail_to_query_before_loading_candidates() {
+    SonarDuplicationsIndex index = new SonarDuplicationsIndex(mock(DbDuplicationsIndex.class));
+    index.insert(inputFile, Arrays.asList(block("foo:File1", HASH, 0)));
+
+    index.getBySequenceHash(HASH);
+  }
+
+  private static Block block(String resourceId, ByteArray hash, int indexInFile) {
+    return Block.builder()
+      .setResourceId(resourceId)
+      .setBlockHash(hash)
+      .setIndexInFile(indexInFile)
+      .setLines(indexInFile, indexInFile + 1)
+      .build();
+  }
+}
@@ -20,9 +20,12 @@
 package org.sonar.batch.design;
 
 import edu.emory.mathcs.backport.java.util.Collections;
+import org.apache.commons.io.FileUtils;
 import org.apache.commons.lang.ObjectUtils;
 import org.junit.Before;
+import org.junit.Rule;
 import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
 import org.mockito.ArgumentMatcher;
 import org.sonar.api.batch.DecoratorContext;
 import org.sonar.api.batch.SonarIndex;
@@ -33,8 +36,10 @@ import org.sonar.api.measures.Metric;
 import org.sonar.api.resources.Directory;
 import org.sonar.api.resources.File;
 import org.sonar.api.resources.Project;
+import org.sonar.batch.util.LocalCaches;
 
 import java.util.ArrayList;
+import java.util.Collection;
 import java.util.Arrays;
 import java.util.List;
 
@@ -49,6 +54,9 @@ import static org.mockito.Mockito.when;
 
 public class DirectoryDsmDecoratorTest {
 
+  @Rule
+  public TemporaryFolder temp = new TemporaryFolder();
+
   private DirectoryDsmDecorator decorator;
   private Directory dir;
   private DecoratorContext dirContext;
@@ -187,6 +195,66 @@ public class DirectoryDsmDecoratorTest {
         "[{\"i\":2,\"n\":\"Foo2.java\",\"q\":\"FIL\",\"v\":[{},{\"i\":50,\"w\":1}]},{\"i\":1,\"n\":\"Foo1.java\",\"q\":\"FIL\",\"v\":[{\"i\":51,\"w\":2},{}]}]"));
   }
 
+  @Test
+  public void do_not_cache_dependencies_without_cycles() throws Exception {
+    java.io.File cacheDir = temp.newFolder();
+    decorator = new DirectoryDsmDecorator(index, new DsmCache(new LocalCaches(cacheDir)));
+    Dependency dependency = new Dependency(file1, file2).setWeight(1).setId(51L);
+    when(index.getEdge(file1, file2)).thenReturn(dependency);
+    when(index.hasEdge(file1, file2)).thenReturn(true);
+    when(index.getOutgoingEdges(file1)).thenReturn(Arrays.asList(dependency));
+    when(index.getIncomingEdges(file2)).thenReturn(Arrays.asList(dependency));
+
+    decorator.decorate(dir, dirContext);
+
+    verify(dirContext).saveMeasure(isMeasureWithValue(CoreMetrics.FILE_CYCLES, 0.0));
+    verify(dirContext).saveMeasure(isMeasureWithValue(CoreMetrics.FILE_EDGES_WEIGHT, 1.0));
+    assertThat(cacheEntries(cacheDir)).isEmpty();
+  }
+
+  @Test
+  public void reuse_cycles_of_unchanged_dependencies() throws Exception {
+    java.io.File cacheDir = temp.newFolder();
+    decorator = new DirectoryDsmDecorator(index, new DsmCache(new LocalCaches(cacheDir)));
+    Dependency dependency1to2 = new Dependency(file1, file2).setWeight(1).setId(50L);
+    when(index.getEdge(file1, file2)).thenReturn(dependency1to2);
+    when(index.hasEdge(file1, file2)).thenReturn(true);
+    when(index.getOutgoingEdges(file1)).thenReturn(Arrays.asList(dependency1to2));
+    when(index.getIncomingEdges(file2)).thenReturn(Arrays.asList(dependency1to2));
+    Dependency dependency2to1 = new Dependency(file2, file1).setWeight(2).setId(51L);
+    when(index.getEdge(file2, file1)).thenReturn(dependency2to1);
+    when(index.hasEdge(file2, file1)).thenReturn(true);
+    when(index.getOutgoingEdges(file2)).thenReturn(Arrays.asList(dependency2to1));
+    when(index.getIncomingEdges(file1)).thenReturn(Arrays.asList(dependency2to1));
+
+    decorator.decorate(dir, dirContext);
+    assertThat(cacheEntries(cacheDir)).hasSize(1);
+
+    // second analysis, with the files listed in another order
+    DecoratorContext otherDirContext = mock(DecoratorContext.class);
+    when(otherDirContext.getChildren()).thenReturn(Arrays.asList(file2Context, file1Context));
+    decorator.decorate(dir, otherDirContext);
+
+    assertThat(cacheEntries(cacheDir)).hasSize(1);
+    verify(otherDirContext, times(5)).saveMeasure(any(Measure.class));
+    verify(otherDirContext).saveMeasure(isMeasureWithValue(CoreMetrics.FILE_CYCLES, 1.0));
+    verify(otherDirContext).saveMeasure(isMeasureWithValue(CoreMetrics.FILE_FEEDBACK_EDGES, 1.0));
+    verify(otherDirContext).saveMeasure(isMeasureWithValue(CoreMetrics.FILE_TANGLES, 1.0));
+    verify(otherDirContext).saveMeasure(isMeasureWithValue(CoreMetrics.FILE_EDGES_WEIGHT, 3.0));
+    verify(otherDirContext).saveMeasure(
+      isMeasureWithValue(CoreMetrics.DEPENDENCY_MATRIX,
+        "[{\"i\":2,\"n\":\"Foo2.java\",\"q\":\"FIL\",\"v\":[{},{\"i\":50,\"w\":1}]},{\"i\":1,\"n\":\"Foo1.java\",\"q\":\"FIL\",\"v\":[{\"i\":51,\"w\":2},{}]}]"));
+
+    // weight of a dependency changed
+    dependency2to1.setWeight(3);
+    decorator.decorate(dir, dirContext);
+    assertThat(cacheEntries(cacheDir)).hasSize(2);
+  }
+
+  private static Collection<java.io.File> cacheEntries(java.io.File cacheDir) {
+    return FileUtils.listFiles(cacheDir, null, true);
+  }
+
   Measure isMeasureWithValue(Metric metric, Double value) {
     return argThat(new IsMeasureWithValue(metric, value));
   }
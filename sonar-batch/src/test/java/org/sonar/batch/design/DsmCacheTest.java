@@ -0,0 +1,76 @@
+/*
+ * SonarQube, open source software quality management tool.
+ * Copyright (C) 2008-2014 SonarSource
+ * mailto:contact AT sonarsource DOT com
+ *
+ * SonarQube is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * SonarQube is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+ */
+package org.sonar.batch.design;
+
+import org.apache.commons.io.FileUtils;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.sonar.batch.util.LocalCacheDir;
+
+import java.io.File;
+import java.util.concurrent.TimeUnit;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+public class DsmCacheTest {
+
+  @Rule
+  public TemporaryFolder temp = new TemporaryFolder();
+
+  File dir;
+  DsmCache cache;
+
+  @Before
+  public void setUp() throws Exception {
+    dir = temp.newFolder();
+    cache = new DsmCache(new LocalCacheDir(dir, 10, TimeUnit.DAYS.toMillis(1)));
+  }
+
+  @Test
+  public void get_entry_of_same_fingerprint() throws Exception {
+    assertThat(cache.get("abcdef")).isNull();
+
+    cache.put("abcdef", new DsmCache.Entry(3, 5, new int[] {0, 1, 2, 0}));
+
+    DsmCache.Entry entry = cache.get("abcdef");
+    assertThat(entry.cycles()).isEqualTo(3);
+    assertThat(entry.feedbackEdgesWeight()).isEqualTo(5);
+    assertThat(entry.feedbackEdges()).containsExactly(0, 1, 2, 0);
+    assertThat(cache.get("abcdeg")).isNull();
+  }
+
+  @Test
+  public void entry_without_feedback_edges() throws Exception {
+    cache.put("abcdef", new DsmCache.Entry(0, 0, new int[0]));
+
+    DsmCache.Entry entry = cache.get("abcdef");
+    assertThat(entry.cycles()).isEqualTo(0);
+    assertThat(entry.feedbackEdges()).isEmpty();
+  }
+
+  @Test
+  public void ignore_corrupted_entry() throws Exception {
+    FileUtils.write(new File(new File(dir, "ab"), "abcdef"), "3 5 0:");
+
+    assertThat(cache.get("abcdef")).isNull();
+  }
+}
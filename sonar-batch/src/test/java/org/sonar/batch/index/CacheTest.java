@@ -20,25 +20,47 @@
 package org.sonar.batch.index;
 
 import com.google.common.collect.Iterables;
+import com.google.common.collect.Lists;
 import org.junit.After;
 import org.junit.Before;
 import org.junit.Rule;
 import org.junit.Test;
 import org.junit.rules.TemporaryFolder;
+import org.junit.runner.RunWith;
+import org.junit.runners.Parameterized;
 import org.sonar.batch.index.Cache.Entry;
 
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
 import static org.assertj.core.api.Assertions.assertThat;
 
+@RunWith(Parameterized.class)
 public class CacheTest {
 
   @Rule
   public TemporaryFolder temp = new TemporaryFolder();
 
+  @Parameterized.Parameters(name = "{0}")
+  public static Collection<Object[]> engines() {
+    return Arrays.asList(new Object[][] {{Caches.PERSISTIT_ENGINE}, {Caches.OFF_HEAP_ENGINE}, {Caches.MAPPED_FILE_ENGINE}});
+  }
+
+  private final String engine;
+
   Caches caches;
 
+  public CacheTest(String engine) {
+    this.engine = engine;
+  }
+
   @Before
   public void start() throws Exception {
-    caches = CachesTest.createCacheOnTemp(temp);
+    caches = CachesTest.createCacheOnTemp(temp, engine);
     caches.start();
   }
 
@@ -85,6 +107,34 @@ public class CacheTest {
     assertThat(values).isEmpty();
   }
 
+  @Test
+  public void put_get_and_iterate_from_multiple_threads() throws Exception {
+    final Cache<String> cache = caches.createCache("concurrent");
+    ExecutorService executor = Executors.newFixedThreadPool(4);
+    List<Future<?>> futures = Lists.newArrayList();
+    for (int t = 0; t < 4; t++) {
+      final int thread = t;
+      futures.add(executor.submit(new Runnable() {
+        @Override
+        public void run() {
+          for (int i = 0; i < 1000; i++) {
+            cache.put("thread" + thread, i, "value" + i);
+            assertThat(cache.get("thread" + thread, i)).isEqualTo("value" + i);
+          }
+          assertThat(cache.values("thread" + thread)).hasSize(1000);
+        }
+      }));
+    }
+    for (Future<?> future : futures) {
+      future.get();
+    }
+    executor.shutdown();
+
+    for (int t = 0; t < 4; t++) {
+      assertThat(cache.values("thread" + t)).hasSize(1000);
+    }
+  }
+
   @Test
   public void test_key_being_prefix_of_another_key() throws Exception {
     Cache<String> cache = caches.createCache("components");
@@ -26,6 +26,9 @@ import org.junit.ClassRule;
 import org.junit.Test;
 import org.junit.rules.TemporaryFolder;
 import org.sonar.api.CoreProperties;
+import org.sonar.api.batch.bootstrap.ProjectDefinition;
+import org.sonar.api.batch.bootstrap.ProjectReactor;
+import org.sonar.api.utils.MessageException;
 import org.sonar.batch.bootstrap.BootstrapProperties;
 import org.sonar.batch.bootstrap.TempFolderProvider;
 
@@ -50,6 +53,17 @@ public class CachesTest {
     }
   }
 
+  public static Caches createCacheOnTemp(TemporaryFolder temp, String engine) {
+    try {
+      BootstrapProperties bootstrapProps = new BootstrapProperties(ImmutableMap.of(
+        CoreProperties.WORKING_DIRECTORY, temp.newFolder().getAbsolutePath(),
+        Caches.ENGINE_PROPERTY, engine));
+      return new Caches(new TempFolderProvider().provide(bootstrapProps), bootstrapProps, new ProjectReactor(ProjectDefinition.create()));
+    } catch (IOException e) {
+      throw new RuntimeException(e);
+    }
+  }
+
   Caches caches;
 
   @Before
@@ -95,6 +109,93 @@ public class CachesTest {
     }
   }
 
+  @Test
+  public void compute_buffer_count_from_modules_and_heap() throws Exception {
+    long mb = 1024L * 1024L;
+    // at least 8Mb
+    assertThat(Caches.bufferCount(null, 1, 1024 * mb)).isEqualTo(1024);
+    // 2Mb per module
+    assertThat(Caches.bufferCount(null, 100, 1024 * mb)).isEqualTo(25600);
+    // no more than 1/5 of heap
+    assertThat(Caches.bufferCount(null, 1000, 1000 * mb)).isEqualTo(25600);
+    // never less than 10 buffers
+    assertThat(Caches.bufferCount(null, 1, 1L)).isEqualTo(10);
+  }
+
+  @Test
+  public void force_memory_of_caches() throws Exception {
+    assertThat(Caches.bufferCount("100", 1, 1024L * 1024L)).isEqualTo(12800);
+  }
+
+  @Test
+  public void size_caches_from_reactor() throws Exception {
+    caches.stop();
+    BootstrapProperties bootstrapProps = new BootstrapProperties(ImmutableMap.of(
+      CoreProperties.WORKING_DIRECTORY, temp.newFolder().getAbsolutePath(),
+      Caches.MEMORY_PROPERTY, "16"));
+    caches = new Caches(new TempFolderProvider().provide(bootstrapProps), bootstrapProps, new ProjectReactor(ProjectDefinition.create()));
+    caches.start();
+
+    assertThat(caches.bufferCount()).isEqualTo(2048);
+    Cache<String> cache = caches.createCache("foo");
+    for (int i = 0; i < 10000; i++) {
+      cache.put(i, "value " + i);
+    }
+    assertThat(cache.get(42)).isEqualTo("value 42");
+  }
+
+  @Test
+  public void compute_slab_size_from_memory() throws Exception {
+    long mb = 1024L * 1024L;
+    // 1/16 of memory
+    assertThat(Caches.slabSize(8 * mb)).isEqualTo(512 * 1024);
+    // at least 64Kb
+    assertThat(Caches.slabSize(mb)).isEqualTo(64 * 1024);
+    // no more than 16Mb
+    assertThat(Caches.slabSize(1024 * mb)).isEqualTo(16 * 1024 * 1024);
+  }
+
+  @Test
+  public void use_persistit_engine_by_default() throws Exception {
+    assertThat(caches.engine()).isInstanceOf(PersistitStorageEngine.class);
+  }
+
+  @Test
+  public void select_off_heap_engine() throws Exception {
+    caches.stop();
+    caches = createCacheOnTemp(temp, Caches.OFF_HEAP_ENGINE);
+
+    assertThat(caches.engine()).isInstanceOf(OffHeapStorageEngine.class);
+    // Persistit only encodes keys and values
+    assertThat(caches.bufferCount()).isEqualTo(10);
+  }
+
+  @Test
+  public void select_mapped_file_engine_and_delete_file_on_stop() throws Exception {
+    caches.stop();
+    caches = createCacheOnTemp(temp, Caches.MAPPED_FILE_ENGINE);
+    Cache<String> cache = caches.createCache("foo");
+    cache.put("foo", "bar");
+
+    File file = ((MappedFileStorageEngine) caches.engine()).file();
+    assertThat(file).exists();
+    assertThat(file.getParentFile()).isEqualTo(caches.tempDir());
+
+    caches.stop();
+    assertThat(file).doesNotExist();
+  }
+
+  @Test
+  public void fail_if_unknown_engine() throws Exception {
+    caches.stop();
+    try {
+      caches = createCacheOnTemp(temp, "unknown");
+      fail();
+    } catch (MessageException e) {
+      assertThat(e).hasMessage("Unknown cache engine 'unknown'. Supported values of property sonar.batch.cache.engine are persistit, offheap and mmap");
+    }
+  }
+
   static class Element implements Serializable {
 
   }
@@ -25,6 +25,7 @@ import org.junit.Test;
 import org.junit.rules.TemporaryFolder;
 import org.sonar.api.batch.bootstrap.ProjectDefinition;
 import org.sonar.api.batch.measure.MetricFinder;
+import org.sonar.api.design.Dependency;
 import org.sonar.api.measures.CoreMetrics;
 import org.sonar.api.measures.Measure;
 import org.sonar.api.measures.MeasuresFilters;
@@ -43,6 +44,8 @@ import org.sonar.batch.issue.ModuleIssues;
 import org.sonar.batch.scan.measure.MeasureCache;
 
 import java.io.IOException;
+import java.util.Collection;
+import java.util.Set;
 
 import static org.assertj.core.api.Assertions.assertThat;
 import static org.mockito.Mockito.mock;
@@ -123,6 +126,29 @@ public class DefaultIndexTest {
     assertThat(index.getParent(fileRef)).isInstanceOf(Directory.class);
   }
 
+  @Test
+  public void dependencies_are_copies_not_modified_by_next_writes() {
+    Directory directory = Directory.create("src/org/foo");
+    File bar = File.create("src/org/foo/Bar.java", Java.INSTANCE, false);
+    File baz = File.create("src/org/foo/Baz.java", Java.INSTANCE, false);
+    index.index(directory);
+    index.index(bar, directory);
+    index.index(baz, directory);
+    index.addDependency(new Dependency(bar, baz));
+
+    Set<Dependency> dependencies = index.getDependencies();
+    Collection<Dependency> outgoing = index.getOutgoingEdges(bar);
+    Collection<Dependency> incoming = index.getIncomingEdges(baz);
+    index.addDependency(new Dependency(baz, bar));
+    index.addDependency(new Dependency(bar, directory));
+
+    assertThat(dependencies).hasSize(1);
+    assertThat(outgoing).hasSize(1);
+    assertThat(incoming).hasSize(1);
+    assertThat(index.getDependencies()).hasSize(3);
+    assertThat(index.getOutgoingEdges(bar)).hasSize(2);
+  }
+
   @Test
   public void shouldGetSource() throws Exception {
     Directory directory = Directory.create("src/org/foo");
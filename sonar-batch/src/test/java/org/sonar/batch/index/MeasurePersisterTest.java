@@ -19,6 +19,7 @@
  */
 package org.sonar.batch.index;
 
+import com.google.common.collect.Lists;
 import org.apache.commons.lang.StringUtils;
 import org.junit.Before;
 import org.junit.Test;
@@ -39,8 +40,15 @@ import org.sonar.api.rules.RuleFinder;
 import org.sonar.api.rules.RulePriority;
 import org.sonar.batch.scan.measure.MeasureCache;
 import org.sonar.core.persistence.AbstractDaoTestCase;
+import org.sonar.core.persistence.Database;
+import org.sonar.core.persistence.dialect.Oracle;
 
+import java.sql.Connection;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
 import java.util.Arrays;
+import java.util.List;
 
 import static org.assertj.core.api.Assertions.assertThat;
 import static org.mockito.Mockito.mock;
@@ -67,22 +75,24 @@ public class MeasurePersisterTest extends AbstractDaoTestCase {
   BatchResource dirResource = batchResource(aDirectory, PACKAGE_SNAPSHOT_ID);
   BatchResource fileResource = batchResource(aFile, FILE_SNAPSHOT_ID);
   MeasureCache measureCache;
+  ResourceCache resourceCache;
+  MetricFinder metricFinder;
 
   @Before
   public void mockResourcePersister() {
     measureCache = mock(MeasureCache.class);
-    ResourceCache resourceCache = mock(ResourceCache.class);
+    resourceCache = mock(ResourceCache.class);
     when(resourceCache.get("foo")).thenReturn(projectResource);
     when(resourceCache.get("foo:org/foo/Bar.java")).thenReturn(fileResource);
     when(resourceCache.get("foo:org/foo")).thenReturn(dirResource);
 
-    MetricFinder metricFinder = mock(MetricFinder.class);
+    metricFinder = mock(MetricFinder.class);
     Metric ncloc = ncloc();
     Metric coverage = coverage();
     when(metricFinder.findByKey(ncloc.getKey())).thenReturn(ncloc);
     when(metricFinder.findByKey(coverage.getKey())).thenReturn(coverage);
 
-    measurePersister = new MeasurePersister(getMyBatis(), ruleFinder, metricFinder, measureCache, resourceCache);
+    measurePersister = new MeasurePersister(getMyBatis(), getDatabase(), ruleFinder, metricFinder, measureCache, resourceCache);
   }
 
   @Test
@@ -175,6 +185,41 @@ public class MeasurePersisterTest extends AbstractDaoTestCase {
     checkTables("shouldAlwaysPersistNonFileMeasures", "project_measures");
   }
 
+  @Test
+  public void should_insert_measures_one_by_one_if_multiple_rows_insert_is_not_supported() {
+    setupData("empty");
+
+    Database database = mock(Database.class);
+    when(database.getDialect()).thenReturn(new Oracle());
+    measurePersister = new MeasurePersister(getMyBatis(), database, ruleFinder, metricFinder, measureCache, resourceCache);
+
+    Measure measure1 = new Measure(ncloc()).setValue(200.0);
+    Measure measure2 = new Measure(ncloc()).setValue(300.0);
+    when(measureCache.entries()).thenReturn(Arrays.asList(
+      new Cache.Entry<Measure>(new String[] {"foo", "ncloc"}, measure1),
+      new Cache.Entry<Measure>(new String[] {"foo:org/foo", "ncloc"}, measure2)));
+
+    measurePersister.persist();
+
+    checkTables("shouldAlwaysPersistNonFileMeasures", "project_measures");
+  }
+
+  @Test
+  public void should_insert_many_measures() throws Exception {
+    setupData("empty");
+
+    List<Cache.Entry<Measure>> entries = Lists.newArrayList();
+    int count = MeasurePersister.ROWS_PER_INSERT * 3 + 7;
+    for (int i = 0; i < count; i++) {
+      entries.add(new Cache.Entry<Measure>(new String[] {"foo", "ncloc"}, new Measure(ncloc()).setValue((double) i)));
+    }
+    when(measureCache.entries()).thenReturn(entries);
+
+    measurePersister.persist();
+
+    assertThat(countRowsOfProjectMeasures()).isEqualTo(count);
+  }
+
   @Test
   public void should_not_save_some_file_measures_with_best_value() {
     assertThat(MeasurePersister.shouldPersistMeasure(aFile, new Measure(CoreMetrics.LINES, 200.0))).isTrue();
@@ -219,4 +264,13 @@ public class MeasurePersisterTest extends AbstractDaoTestCase {
     when(coverage.getBestValue()).thenReturn(100.0);
     return coverage;
   }
+
+  private int countRowsOfProjectMeasures() throws SQLException {
+    try (Connection connection = getConnection();
+      Statement stmt = connection.createStatement();
+      ResultSet rs = stmt.executeQuery("select count(*) from project_measures")) {
+      rs.next();
+      return rs.getInt(1);
+    }
+  }
 }
@@ -0,0 +1,189 @@
+/*
+ * SonarQube, open source software quality management tool.
+ * Copyright (C) 2008-2014 SonarSource
+ * mailto:contact AT sonarsource DOT com
+ *
+ * SonarQube is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * SonarQube is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+ */
+package org.sonar.batch.index;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+public class SlabStorageEngineTest {
+
+  @Rule
+  public TemporaryFolder temp = new TemporaryFolder();
+
+  Caches caches;
+  SlabStorageEngine engine;
+
+  @Before
+  public void start() throws Exception {
+    caches = CachesTest.createCacheOnTemp(temp);
+    // room for 4 values of 16 bytes
+    engine = new OffHeapStorageEngine(caches.persistit(), 4 * (4 + 16));
+  }
+
+  @After
+  public void stop() {
+    engine.close();
+    caches.stop();
+  }
+
+  @Test
+  public void store_values_in_slabs() throws Exception {
+    CacheStorage storage = engine.createStorage("foo");
+    for (int i = 0; i < 10; i++) {
+      put(storage, i, "0123456789abcd");
+    }
+    assertThat(engine.slabCount()).isEqualTo(3);
+
+    for (int i = 0; i < 10; i++) {
+      storage.key().clear().append(i);
+      assertThat(storage.fetch()).isTrue();
+      assertThat(storage.value().getString()).isEqualTo("0123456789abcd");
+    }
+    storage.key().clear().append(10);
+    assertThat(storage.fetch()).isFalse();
+    assertThat(storage.value().isDefined()).isFalse();
+  }
+
+  @Test
+  public void recycle_slabs_of_removed_values() throws Exception {
+    CacheStorage storage = engine.createStorage("foo");
+    for (int i = 0; i < 8; i++) {
+      put(storage, i, "0123456789abcd");
+    }
+    assertThat(engine.slabCount()).isEqualTo(2);
+
+    // first slab is free
+    for (int i = 0; i < 4; i++) {
+      storage.key().clear().append(i);
+      assertThat(storage.remove()).isTrue();
+    }
+    for (int i = 8; i < 12; i++) {
+      put(storage, i, "0123456789abcd");
+    }
+    assertThat(engine.slabCount()).isEqualTo(2);
+
+    // replaced values are freed too
+    for (int j = 0; j < 10; j++) {
+      for (int i = 4; i < 12; i++) {
+        put(storage, i, "abcd0123456789");
+      }
+    }
+    assertThat(engine.slabCount()).isEqualTo(3);
+    storage.key().clear().append(4);
+    storage.fetch();
+    assertThat(storage.value().getString()).isEqualTo("abcd0123456789");
+  }
+
+  @Test
+  public void allocate_dedicated_slab_to_large_values() throws Exception {
+    CacheStorage storage = engine.createStorage("foo");
+    String large = "0123456789abcdefghijklmnopqrstuvwxyz0123456789abcdefghijklmnopqrstuvwxyz0123456789abcdefghijklmnopqrstuvwxyz";
+    put(storage, "large", large);
+    put(storage, "small", "small");
+    assertThat(engine.slabCount()).isEqualTo(2);
+
+    storage.key().clear().append("large");
+    assertThat(storage.fetch()).isTrue();
+    assertThat(storage.value().getString()).isEqualTo(large);
+
+    assertThat(storage.remove()).isTrue();
+    assertThat(engine.slabCount()).isEqualTo(1);
+  }
+
+  @Test
+  public void reuse_slots_of_released_large_slabs() throws Exception {
+    CacheStorage storage = engine.createStorage("foo");
+    String large = "0123456789abcdefghijklmnopqrstuvwxyz0123456789abcdefghijklmnopqrstuvwxyz0123456789abcdefghijklmnopqrstuvwxyz";
+    put(storage, "small", "small");
+    for (int i = 0; i < 10; i++) {
+      put(storage, "large", large + i);
+    }
+    assertThat(engine.slabCount()).isEqualTo(2);
+    // a replaced value is freed after its new value is written, so two slots alternate
+    assertThat(engine.slotCount()).isEqualTo(3);
+
+    storage.key().clear().append("large");
+    assertThat(storage.fetch()).isTrue();
+    assertThat(storage.value().getString()).isEqualTo(large + 9);
+  }
+
+  @Test
+  public void storages_share_slabs() throws Exception {
+    CacheStorage first = engine.createStorage("first");
+    CacheStorage second = engine.createStorage("second");
+    put(first, "key", "first");
+    put(second, "key", "second");
+    assertThat(engine.slabCount()).isEqualTo(1);
+
+    first.key().clear().append("key");
+    first.fetch();
+    assertThat(first.value().getString()).isEqualTo("first");
+    second.removeAll();
+    second.key().clear().append("key");
+    assertThat(second.fetch()).isFalse();
+    assertThat(first.fetch()).isTrue();
+  }
+
+  @Test
+  public void iterate_on_descendants_while_modifying_storage() throws Exception {
+    CacheStorage storage = engine.createStorage("foo");
+    for (int i = 0; i < 5; i++) {
+      put(storage, new Object[] {"a", i}, "value" + i);
+    }
+    put(storage, new Object[] {"b", 0}, "other");
+
+    CacheStorage.Cursor cursor = storage.descendants(storage.key().clear().append("a"));
+    assertThat(cursor.next()).isTrue();
+    assertThat(cursor.value().getString()).isEqualTo("value0");
+    put(storage, new Object[] {"a", 1}, "replaced");
+    put(storage, new Object[] {"a", 5}, "value5");
+    storage.key().clear().append("a").append(2);
+    storage.remove();
+
+    assertThat(cursor.next()).isTrue();
+    assertThat(cursor.value().getString()).isEqualTo("replaced");
+    assertThat(cursor.next()).isTrue();
+    assertThat(cursor.key().indexTo(-1).decodeInt()).isEqualTo(3);
+    assertThat(cursor.next()).isTrue();
+    assertThat(cursor.next()).isTrue();
+    assertThat(cursor.value().getString()).isEqualTo("value5");
+    assertThat(cursor.next()).isFalse();
+  }
+
+  private void put(CacheStorage storage, Object[] key, String value) {
+    storage.key().clear();
+    for (Object o : key) {
+      storage.key().append(o);
+    }
+    storage.value().put(value);
+    storage.store();
+  }
+
+  private void put(CacheStorage storage, Object key, String value) {
+    storage.key().clear().append(key);
+    storage.value().put(value);
+    storage.store();
+  }
+}
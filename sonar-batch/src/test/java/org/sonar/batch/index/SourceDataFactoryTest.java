@@ -32,13 +32,12 @@ import org.sonar.api.batch.sensor.duplication.Duplication;
 import org.sonar.api.batch.sensor.duplication.internal.DefaultDuplication;
 import org.sonar.api.batch.sensor.highlighting.TypeOfText;
 import org.sonar.api.measures.CoreMetrics;
-import org.sonar.api.measures.Measure;
 import org.sonar.api.measures.Metric;
 import org.sonar.batch.duplication.DuplicationCache;
 import org.sonar.batch.highlighting.SyntaxHighlightingData;
 import org.sonar.batch.highlighting.SyntaxHighlightingDataBuilder;
 import org.sonar.batch.scan.filesystem.InputFileMetadata;
-import org.sonar.batch.scan.measure.MeasureCache;
+import org.sonar.batch.scan.measure.LineMeasureCache;
 import org.sonar.batch.source.CodeColorizers;
 import org.sonar.batch.symbol.DefaultSymbolTableBuilder;
 import org.sonar.core.source.SnapshotDataTypes;
@@ -52,19 +51,21 @@ import static org.assertj.core.api.Assertions.assertThat;
 import static org.mockito.Matchers.anyString;
 import static org.mockito.Mockito.mock;
 import static org.mockito.Mockito.when;
+import static org.sonar.batch.scan.measure.LineMeasureCache.NO_INT_VALUE;
+import static org.sonar.batch.scan.measure.LineMeasureCache.NO_LONG_VALUE;
 
 public class SourceDataFactoryTest {
 
   @Rule
   public TemporaryFolder temp = new TemporaryFolder();
 
-  MeasureCache measureCache = mock(MeasureCache.class);
+  LineMeasureCache lineMeasureCache = mock(LineMeasureCache.class);
   ComponentDataCache componentDataCache = mock(ComponentDataCache.class);
   DuplicationCache duplicationCache = mock(DuplicationCache.class);
   CodeColorizers colorizers = mock(CodeColorizers.class);
   DefaultInputFile inputFile;
   InputFileMetadata metadata;
-  SourceDataFactory sut = new SourceDataFactory(measureCache, componentDataCache, duplicationCache, colorizers);
+  SourceDataFactory sut = new SourceDataFactory(lineMeasureCache, componentDataCache, duplicationCache, colorizers);
   FileSourceDb.Data.Builder output;
 
   @Before
@@ -98,16 +99,15 @@ public class SourceDataFactoryTest {
   }
 
   @Test
-  public void applyLineMeasure() throws Exception {
+  public void applyIntLineMeasure() throws Exception {
     Metric metric = CoreMetrics.COVERAGE_LINE_HITS_DATA;
-    when(measureCache.byMetric("component_key", metric.key())).thenReturn(
-      // line 1 has 10 hits, ...
-      Arrays.asList(new Measure().setData("1=10;3=4").setMetric(metric)));
+    // line 1 has 10 hits, line 2 has no data
+    when(lineMeasureCache.intValues("component_key", metric.key())).thenReturn(new int[] {10, NO_INT_VALUE, 4});
 
-    sut.applyLineMeasure("component_key", metric.key(), output, new SourceDataFactory.MeasureOperation() {
+    sut.applyIntLineMeasure("component_key", metric.key(), output, new SourceDataFactory.IntLineOperation() {
       @Override
-      public void apply(String value, FileSourceDb.Line.Builder lineBuilder) {
-        lineBuilder.setUtLineHits(Integer.parseInt(value));
+      public void apply(int value, FileSourceDb.Line.Builder lineBuilder) {
+        lineBuilder.setUtLineHits(value);
       }
     });
 
@@ -118,38 +118,40 @@ public class SourceDataFactoryTest {
   }
 
   @Test
-  public void applyLineMeasure_ignore_bad_line_numbers() throws Exception {
+  public void applyIntLineMeasure_ignore_bad_line_numbers() throws Exception {
     Metric metric = CoreMetrics.COVERAGE_LINE_HITS_DATA;
-    when(measureCache.byMetric("component_key", metric.key())).thenReturn(
-      // line 30 does not exist
-      Arrays.asList(new Measure().setData("30=42").setMetric(metric)));
+    // line 30 does not exist
+    int[] values = new int[30];
+    Arrays.fill(values, NO_INT_VALUE);
+    values[29] = 42;
+    when(lineMeasureCache.intValues("component_key", metric.key())).thenReturn(values);
 
-    sut.applyLineMeasure("component_key", metric.key(), output, new SourceDataFactory.MeasureOperation() {
+    sut.applyIntLineMeasure("component_key", metric.key(), output, new SourceDataFactory.IntLineOperation() {
       @Override
-      public void apply(String value, FileSourceDb.Line.Builder lineBuilder) {
-        lineBuilder.setUtLineHits(Integer.parseInt(value));
+      public void apply(int value, FileSourceDb.Line.Builder lineBuilder) {
+        lineBuilder.setUtLineHits(value);
       }
     });
 
     FileSourceDb.Data data = output.build();
     assertThat(data.getLinesCount()).isEqualTo(3);
+    assertThat(data.getLines(2).hasUtLineHits()).isFalse();
   }
 
   @Test
   public void applyLineMeasures() throws Exception {
-    setupLineMeasure(CoreMetrics.SCM_AUTHORS_BY_LINE, "1=him;2=her");
-    setupLineMeasure(CoreMetrics.SCM_LAST_COMMIT_DATETIMES_BY_LINE, "1=2014-10-11T16:44:02+0100;2=2014-10-12T16:44:02+0100;3=2014-10-13T16:44:02+0100");
-    setupLineMeasure(CoreMetrics.SCM_REVISIONS_BY_LINE, "1=ABC;2=234;3=345");
-    setupLineMeasure(CoreMetrics.COVERAGE_LINE_HITS_DATA, "1=10;3=4");
-    setupLineMeasure(CoreMetrics.CONDITIONS_BY_LINE, "1=10;3=4");
-    setupLineMeasure(CoreMetrics.CONDITIONS_BY_LINE, "1=10;3=4");
-    setupLineMeasure(CoreMetrics.COVERED_CONDITIONS_BY_LINE, "1=10;3=4");
-    setupLineMeasure(CoreMetrics.IT_COVERAGE_LINE_HITS_DATA, "1=11;2=4");
-    setupLineMeasure(CoreMetrics.IT_COVERED_CONDITIONS_BY_LINE, "1=10;3=4");
-    setupLineMeasure(CoreMetrics.IT_CONDITIONS_BY_LINE, "1=10;3=4");
-    setupLineMeasure(CoreMetrics.OVERALL_COVERAGE_LINE_HITS_DATA, "1=10;3=4");
-    setupLineMeasure(CoreMetrics.OVERALL_CONDITIONS_BY_LINE, "1=10;3=4");
-    setupLineMeasure(CoreMetrics.OVERALL_COVERED_CONDITIONS_BY_LINE, "1=10;3=4");
+    when(lineMeasureCache.stringValues(inputFile.key(), CoreMetrics.SCM_AUTHORS_BY_LINE_KEY)).thenReturn(new String[] {"him", "her"});
+    when(lineMeasureCache.longValues(inputFile.key(), CoreMetrics.SCM_LAST_COMMIT_DATETIMES_BY_LINE_KEY)).thenReturn(new long[] {1413042242000L, NO_LONG_VALUE, 1413215042000L});
+    when(lineMeasureCache.stringValues(inputFile.key(), CoreMetrics.SCM_REVISIONS_BY_LINE_KEY)).thenReturn(new String[] {"ABC", "234", "345"});
+    setupLineMeasure(CoreMetrics.COVERAGE_LINE_HITS_DATA, 10, NO_INT_VALUE, 4);
+    setupLineMeasure(CoreMetrics.CONDITIONS_BY_LINE, 10, NO_INT_VALUE, 4);
+    setupLineMeasure(CoreMetrics.COVERED_CONDITIONS_BY_LINE, 10, NO_INT_VALUE, 4);
+    setupLineMeasure(CoreMetrics.IT_COVERAGE_LINE_HITS_DATA, 11, 4);
+    setupLineMeasure(CoreMetrics.IT_COVERED_CONDITIONS_BY_LINE, 10, NO_INT_VALUE, 4);
+    setupLineMeasure(CoreMetrics.IT_CONDITIONS_BY_LINE, 10, NO_INT_VALUE, 4);
+    setupLineMeasure(CoreMetrics.OVERALL_COVERAGE_LINE_HITS_DATA, 10, NO_INT_VALUE, 4);
+    setupLineMeasure(CoreMetrics.OVERALL_CONDITIONS_BY_LINE, 10, NO_INT_VALUE, 4);
+    setupLineMeasure(CoreMetrics.OVERALL_COVERED_CONDITIONS_BY_LINE, 10, NO_INT_VALUE, 4);
 
     sut.applyLineMeasures(inputFile, output);
 
@@ -158,18 +160,19 @@ public class SourceDataFactoryTest {
     assertThat(data.getLines(0).getItLineHits()).isEqualTo(11);
     assertThat(data.getLines(0).getScmRevision()).isEqualTo("ABC");
     assertThat(data.getLines(0).getScmAuthor()).isEqualTo("him");
+    assertThat(data.getLines(0).getScmDate()).isEqualTo(1413042242000L);
 
     assertThat(data.getLines(1).hasUtLineHits()).isFalse();
     assertThat(data.getLines(1).getItLineHits()).isEqualTo(4);
     assertThat(data.getLines(1).getScmAuthor()).isEqualTo("her");
+    assertThat(data.getLines(1).hasScmDate()).isFalse();
 
     assertThat(data.getLines(2).getUtLineHits()).isEqualTo(4);
     assertThat(data.getLines(2).hasScmAuthor()).isFalse();
   }
 
-  private void setupLineMeasure(Metric metric, String dataPerLine) {
-    when(measureCache.byMetric(inputFile.key(), metric.key())).thenReturn(
-      Arrays.asList(new Measure().setData(dataPerLine).setMetric(metric)));
+  private void setupLineMeasure(Metric metric, int... valuesPerLine) {
+    when(lineMeasureCache.intValues(inputFile.key(), metric.key())).thenReturn(valuesPerLine);
   }
 
   @Test
@@ -19,42 +19,94 @@
  */
 package org.sonar.batch.issue.tracking;
 
+import org.apache.ibatis.session.ResultContext;
 import org.apache.ibatis.session.ResultHandler;
+import org.junit.Before;
 import org.junit.Test;
+import org.mockito.invocation.InvocationOnMock;
+import org.mockito.stubbing.Answer;
 import org.sonar.api.resources.Project;
+import org.sonar.batch.components.Period;
+import org.sonar.batch.components.TimeMachineConfiguration;
 import org.sonar.core.issue.db.IssueChangeDao;
+import org.sonar.core.issue.db.IssueChangeDto;
 import org.sonar.core.issue.db.IssueDao;
+import org.sonar.core.issue.db.IssueDto;
 
+import java.util.Date;
+
+import static com.google.common.collect.Lists.newArrayList;
 import static org.assertj.core.api.Assertions.assertThat;
 import static org.mockito.Matchers.any;
+import static org.mockito.Matchers.anyListOf;
 import static org.mockito.Matchers.eq;
+import static org.mockito.Mockito.doAnswer;
 import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.times;
 import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.verifyZeroInteractions;
+import static org.mockito.Mockito.when;
 
 public class InitialOpenIssuesSensorTest {
 
   InitialOpenIssuesStack stack = mock(InitialOpenIssuesStack.class);
   IssueDao issueDao = mock(IssueDao.class);
   IssueChangeDao issueChangeDao = mock(IssueChangeDao.class);
+  TimeMachineConfiguration timeMachineConfiguration = mock(TimeMachineConfiguration.class);
+
+  InitialOpenIssuesSensor sensor = new InitialOpenIssuesSensor(stack, issueDao, issueChangeDao, timeMachineConfiguration);
+
+  Project project = new Project("key");
 
-  InitialOpenIssuesSensor sensor = new InitialOpenIssuesSensor(stack, issueDao, issueChangeDao);
+  @Before
+  public void setUp() {
+    project.setId(1);
+  }
 
   @Test
   public void should_select_module_open_issues() {
-    Project project = new Project("key");
-    project.setId(1);
     sensor.analyse(project, null);
 
     verify(issueDao).selectNonClosedIssuesByModule(eq(1), any(ResultHandler.class));
   }
 
   @Test
-  public void should_select_module_open_issues_changelog() {
-    Project project = new Project("key");
-    project.setId(1);
+  public void should_select_changelog_of_issues_updated_since_oldest_period() {
+    when(timeMachineConfiguration.periods()).thenReturn(newArrayList(new Period(1, new Date(1400000000000L)), new Period(2, null),
+      new Period(3, new Date(1300000000000L))));
+    issues(new IssueDto().setKee("UPDATED").setIssueUpdateDate(new Date(1350000000000L)),
+      new IssueDto().setKee("UNCHANGED").setIssueUpdateDate(new Date(1200000000000L)));
+    IssueChangeDto change = new IssueChangeDto().setIssueKey("UPDATED");
+    when(issueChangeDao.selectChangelogByIssues(newArrayList("UPDATED"))).thenReturn(newArrayList(change));
+
+    sensor.analyse(project, null);
+
+    verify(issueChangeDao).selectChangelogByIssues(newArrayList("UPDATED"));
+    verify(stack).addChangelog(change);
+  }
+
+  @Test
+  public void should_select_changelog_by_chunks_of_issues() {
+    when(timeMachineConfiguration.periods()).thenReturn(newArrayList(new Period(1, new Date(1300000000000L))));
+    IssueDto[] dtos = new IssueDto[1500];
+    for (int i = 0; i < dtos.length; i++) {
+      dtos[i] = new IssueDto().setKee("ISSUE" + i).setIssueUpdateDate(new Date(1350000000000L));
+    }
+    issues(dtos);
+
     sensor.analyse(project, null);
 
-    verify(issueChangeDao).selectChangelogOnNonClosedIssuesByModuleAndType(eq(1), any(ResultHandler.class));
+    verify(issueChangeDao, times(2)).selectChangelogByIssues(anyListOf(String.class));
+  }
+
+  @Test
+  public void should_not_select_changelog_without_period_date() {
+    when(timeMachineConfiguration.periods()).thenReturn(newArrayList(new Period(1, null)));
+    issues(new IssueDto().setKee("UPDATED").setIssueUpdateDate(new Date(1350000000000L)));
+
+    sensor.analyse(project, null);
+
+    verifyZeroInteractions(issueChangeDao);
   }
 
   @Test
@@ -62,4 +114,19 @@ public class InitialOpenIssuesSensorTest {
     assertThat(sensor.toString()).isEqualTo("InitialOpenIssuesSensor");
 
   }
+
+  private void issues(final IssueDto... dtos) {
+    doAnswer(new Answer<Void>() {
+      @Override
+      public Void answer(InvocationOnMock invocation) {
+        ResultHandler handler = (ResultHandler) invocation.getArguments()[1];
+        for (IssueDto dto : dtos) {
+          ResultContext context = mock(ResultContext.class);
+          when(context.getResultObject()).thenReturn(dto);
+          handler.handleResult(context);
+        }
+        return null;
+      }
+    }).when(issueDao).selectNonClosedIssuesByModule(eq(1), any(ResultHandler.class));
+  }
 }
@@ -43,6 +43,7 @@ import java.io.File;
 import java.io.IOException;
 import java.util.Arrays;
 import java.util.Collections;
+import java.util.List;
 
 import static com.google.common.collect.Lists.newArrayList;
 import static org.assertj.core.api.Assertions.assertThat;
@@ -152,6 +153,25 @@ public class IssueTrackingTest {
     assertThat(result.matching(newIssue)).isSameAs(referenceIssue);
   }
 
+  @Test
+  public void match_many_issues_by_checksum_and_message() {
+    List<PreviousIssue> referenceIssues = newArrayList();
+    List<DefaultIssue> newIssues = newArrayList();
+    for (int i = 0; i < 10000; i++) {
+      referenceIssues.add(newReferenceIssue("message" + (i % 10), i + 1, "squid", "AvoidCycle", "checksum" + i));
+      // all lines are moved
+      newIssues.add(newDefaultIssue("message" + (i % 10), i + 2, RuleKey.of("squid", "AvoidCycle"), "checksum" + i));
+    }
+
+    IssueTrackingResult result = new IssueTrackingResult();
+    tracking.mapIssues(newIssues, referenceIssues, null, result);
+    assertThat(result.matched()).hasSize(10000);
+    assertThat(result.unmatched()).isEmpty();
+    for (int i = 0; i < 10000; i++) {
+      assertThat(result.matching(newIssues.get(i))).isSameAs(referenceIssues.get(i));
+    }
+  }
+
   /**
    * SONAR-2812
    */
@@ -23,10 +23,15 @@ import org.junit.Test;
 import org.sonar.api.batch.Decorator;
 import org.sonar.api.batch.DecoratorContext;
 import org.sonar.api.batch.SonarIndex;
+import org.sonar.api.batch.ThreadSafeDecorator;
+import org.sonar.api.config.Settings;
+import org.sonar.api.measures.Measure;
 import org.sonar.api.measures.MetricFinder;
+import org.sonar.api.resources.Directory;
 import org.sonar.api.resources.File;
 import org.sonar.api.resources.Project;
 import org.sonar.api.resources.Resource;
+import org.sonar.api.utils.MessageException;
 import org.sonar.api.utils.SonarException;
 import org.sonar.batch.bootstrap.BatchExtensionDictionnary;
 import org.sonar.batch.deprecated.decorator.DefaultDecoratorContext;
@@ -35,11 +40,17 @@ import org.sonar.batch.events.EventBus;
 import org.sonar.batch.scan.measure.MeasureCache;
 import org.sonar.batch.sensor.coverage.CoverageExclusions;
 
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
 import static org.assertj.core.api.Assertions.assertThat;
 import static org.junit.Assert.fail;
 import static org.mockito.Matchers.any;
 import static org.mockito.Mockito.doThrow;
 import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
 
 public class DecoratorsExecutorTest {
 
@@ -67,7 +78,7 @@ public class DecoratorsExecutorTest {
     doThrow(new SonarException()).when(decorator).decorate(any(Resource.class), any(DecoratorContext.class));
 
     DecoratorsExecutor executor = new DecoratorsExecutor(mock(BatchExtensionDictionnary.class), new Project("key"), mock(SonarIndex.class),
-      mock(EventBus.class), mock(CoverageExclusions.class), mock(MeasureCache.class), mock(MetricFinder.class), mock(DuplicationCache.class));
+      mock(EventBus.class), mock(CoverageExclusions.class), mock(MeasureCache.class), mock(MetricFinder.class), mock(DuplicationCache.class), new Settings());
     try {
       executor.executeDecorator(decorator, mock(DefaultDecoratorContext.class), File.create("src/org/foo/Bar.java", null, false));
       fail("Exception has not been thrown");
@@ -77,6 +88,106 @@ public class DecoratorsExecutorTest {
     }
   }
 
+  @Test
+  public void decorate_resources_concurrently() {
+    Project project = new Project("key");
+    Directory dir1 = Directory.create("src/dir1");
+    Directory dir2 = Directory.create("src/dir2");
+    File fileA = File.create("src/dir1/A.java");
+    File fileB = File.create("src/dir1/B.java");
+    File fileC = File.create("src/dir2/C.java");
+    SonarIndex index = mock(SonarIndex.class);
+    when(index.getChildren(project)).thenReturn(Arrays.<Resource>asList(dir1, dir2));
+    when(index.getChildren(dir1)).thenReturn(Arrays.<Resource>asList(fileA, fileB));
+    when(index.getChildren(dir2)).thenReturn(Arrays.<Resource>asList(fileC));
+
+    ThreadSafeRecorder threadSafe = new ThreadSafeRecorder();
+    Recorder sequential = new Recorder();
+    newExecutor(project, index).decorateConcurrently(Arrays.<Decorator>asList(threadSafe, sequential), 4);
+
+    assertThat(threadSafe.decorated).containsOnly(project, dir1, dir2, fileA, fileB, fileC);
+    assertThat(sequential.decorated).containsOnly(project, dir1, dir2, fileA, fileB, fileC);
+    // a resource is decorated after its children
+    assertThat(threadSafe.decorated.indexOf(dir1)).isGreaterThan(threadSafe.decorated.indexOf(fileA)).isGreaterThan(threadSafe.decorated.indexOf(fileB));
+    assertThat(threadSafe.decorated.indexOf(dir2)).isGreaterThan(threadSafe.decorated.indexOf(fileC));
+    assertThat(threadSafe.decorated.get(5)).isEqualTo(project);
+    assertThat(sequential.decorated.get(5)).isEqualTo(project);
+    // decorators that are not thread-safe are executed by the calling thread
+    assertThat(sequential.threads).containsOnly(Thread.currentThread());
+    assertThat(threadSafe.threads).doesNotContain(Thread.currentThread());
+  }
+
+  @Test
+  public void fail_if_decorator_fails_during_concurrent_decoration() {
+    Project project = new Project("key");
+    File file = File.create("src/A.java");
+    SonarIndex index = mock(SonarIndex.class);
+    when(index.getChildren(project)).thenReturn(Arrays.<Resource>asList(file));
+    Decorator decorator = mock(Decorator.class);
+    doThrow(MessageException.of("Invalid")).when(decorator).decorate(any(Resource.class), any(DecoratorContext.class));
+
+    try {
+      newExecutor(project, index).decorateConcurrently(Arrays.<Decorator>asList(new ThreadSafeRecorder(), decorator), 2);
+      fail("Exception has not been thrown");
+
+    } catch (MessageException e) {
+      assertThat(e.getMessage()).isEqualTo("Invalid");
+    }
+  }
+
+  @Test
+  public void include_resource_in_exception_of_thread_safe_decorator() {
+    Project project = new Project("key");
+    SonarIndex index = mock(SonarIndex.class);
+    when(index.getChildren(project)).thenReturn(Arrays.<Resource>asList(File.create("src/A.java")));
+
+    try {
+      newExecutor(project, index).decorateConcurrently(Arrays.<Decorator>asList(new FailingThreadSafeDecorator()), 2);
+      fail("Exception has not been thrown");
+
+    } catch (SonarException e) {
+      assertThat(e.getMessage()).contains("src/A.java");
+    }
+  }
+
+  private DecoratorsExecutor newExecutor(Project project, SonarIndex index) {
+    MeasureCache measureCache = mock(MeasureCache.class);
+    when(measureCache.byResource(any(Resource.class))).thenReturn(Collections.<Measure>emptyList());
+    return new DecoratorsExecutor(mock(BatchExtensionDictionnary.class), project, index,
+      mock(EventBus.class), mock(CoverageExclusions.class), measureCache, mock(MetricFinder.class), mock(DuplicationCache.class), new Settings());
+  }
+
+  static class Recorder implements Decorator {
+    final List<Resource> decorated = Collections.synchronizedList(new ArrayList<Resource>());
+    final List<Thread> threads = Collections.synchronizedList(new ArrayList<Thread>());
+
+    public void decorate(Resource resource, DecoratorContext context) {
+      decorated.add(resource);
+      threads.add(Thread.currentThread());
+    }
+
+    public boolean shouldExecuteOnProject(Project project) {
+      return true;
+    }
+  }
+
+  @ThreadSafeDecorator
+  static class ThreadSafeRecorder extends Recorder {
+  }
+
+  @ThreadSafeDecorator
+  static class FailingThreadSafeDecorator implements Decorator {
+    public void decorate(Resource resource, DecoratorContext context) {
+      if (resource instanceof File) {
+        throw new IllegalStateException("Fail");
+      }
+    }
+
+    public boolean shouldExecuteOnProject(Project project) {
+      return true;
+    }
+  }
+
   static class Decorator1 implements Decorator {
     public void decorate(Resource resource, DecoratorContext context) {
     }
@@ -77,8 +77,9 @@ public class ComponentsPublisherTest {
     testFile.setId(6).setUuid("TEST_FILE_UUID");
     resourceCache.add(testFile, dir).setSnapshot(new Snapshot().setId(16));
 
-    BatchOutputWriter writer = new BatchOutputWriter(temp.newFolder());
+    BatchOutputWriter writer = new BatchOutputWriter(temp.newFile());
     publisher.publish(writer);
+    writer.close();
 
     assertThat(writer.hasComponentData(FileStructure.Domain.COMPONENT, 1)).isTrue();
     assertThat(writer.hasComponentData(FileStructure.Domain.COMPONENT, 2)).isTrue();
@@ -0,0 +1,137 @@
+/*
+ * SonarQube, open source software quality management tool.
+ * Copyright (C) 2008-2014 SonarSource
+ * mailto:contact AT sonarsource DOT com
+ *
+ * SonarQube is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * SonarQube is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+ */
+package org.sonar.batch.repository;
+
+import com.google.common.base.Charsets;
+import com.google.common.base.Function;
+import com.google.common.io.InputSupplier;
+import org.junit.Before;
+import org.junit.Test;
+import org.sonar.api.batch.bootstrap.ProjectDefinition;
+import org.sonar.api.batch.bootstrap.ProjectReactor;
+import org.sonar.batch.bootstrap.ServerClient;
+import org.sonar.batch.protocol.input.issues.PreviousIssue;
+import org.sonar.batch.protocol.input.issues.PreviousIssueHelper;
+import org.sonar.batch.protocol.input.issues.PreviousIssueProtobufHelper;
+import org.sonar.batch.protocol.input.issues.PreviousIssueWriter;
+
+import javax.annotation.Nullable;
+
+import java.io.BufferedInputStream;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.InputStream;
+import java.io.OutputStreamWriter;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.Matchers.anyString;
+import static org.mockito.Matchers.eq;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+public class DefaultPreviousIssuesLoaderTest {
+
+  private ServerClient serverClient;
+  private DefaultPreviousIssuesLoader loader;
+  private ProjectReactor reactor;
+
+  @Before
+  public void prepare() {
+    serverClient = mock(ServerClient.class);
+    loader = new DefaultPreviousIssuesLoader(serverClient);
+    reactor = new ProjectReactor(ProjectDefinition.create().setKey("foo"));
+  }
+
+  @Test
+  public void load_protobuf_issues() {
+    ByteArrayOutputStream out = new ByteArrayOutputStream();
+    write(PreviousIssueProtobufHelper.create(out), "ABCDE", "EFGHI");
+    respond(out.toByteArray());
+
+    assertThat(loadKeys()).containsExactly("ABCDE", "EFGHI");
+  }
+
+  @Test
+  public void fallback_to_json_issues_of_servers_that_ignore_format() {
+    ByteArrayOutputStream out = new ByteArrayOutputStream();
+    write(PreviousIssueHelper.create(new OutputStreamWriter(out, Charsets.UTF_8)), "ABCDE", "EFGHI");
+    respond(out.toByteArray());
+
+    assertThat(loadKeys()).containsExactly("ABCDE", "EFGHI");
+  }
+
+  @Test
+  public void load_no_issues() {
+    respond(new byte[0]);
+    assertThat(loadKeys()).isEmpty();
+
+    respond("[]".getBytes(Charsets.UTF_8));
+    assertThat(loadKeys()).isEmpty();
+  }
+
+  @Test
+  public void detect_json() throws Exception {
+    assertThat(DefaultPreviousIssuesLoader.isJson(stream("[\n  {\"key\": \"ABCDE\"}]"))).isTrue();
+    assertThat(DefaultPreviousIssuesLoader.isJson(stream("[]"))).isTrue();
+    assertThat(DefaultPreviousIssuesLoader.isJson(stream(""))).isFalse();
+    assertThat(DefaultPreviousIssuesLoader.isJson(stream("[\n"))).isFalse();
+    // protobuf message of 91 bytes, starting with the key
+    assertThat(DefaultPreviousIssuesLoader.isJson(stream("[\n\u0005ABCDE"))).isFalse();
+  }
+
+  private static BufferedInputStream stream(String s) {
+    return new BufferedInputStream(new ByteArrayInputStream(s.getBytes(Charsets.UTF_8)));
+  }
+
+  private void respond(final byte[] response) {
+    when(serverClient.doRequest(anyString(), eq("GET"), (Integer) eq(null))).thenReturn(new InputSupplier<InputStream>() {
+      @Override
+      public InputStream getInput() {
+        return new ByteArrayInputStream(response);
+      }
+    });
+  }
+
+  private List<String> loadKeys() {
+    final List<String> keys = new ArrayList<>();
+    loader.load(reactor, new Function<PreviousIssue, Void>() {
+      @Override
+      public Void apply(@Nullable PreviousIssue issue) {
+        keys.add(issue.key());
+        return null;
+      }
+    });
+    return keys;
+  }
+
+  private static void write(PreviousIssueWriter writer, String... keys) {
+    for (String key : keys) {
+      writer.addIssue(new PreviousIssue().setKey(key).setComponentKey("foo"), new PreviousIssueHelper.Function<PreviousIssue, PreviousIssue>() {
+        @Override
+        public PreviousIssue apply(@Nullable PreviousIssue from) {
+          return from;
+        }
+      });
+    }
+    writer.close();
+  }
+}
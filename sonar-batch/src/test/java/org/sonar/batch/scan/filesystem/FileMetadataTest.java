@@ -33,6 +33,7 @@ import java.nio.charset.Charset;
 import static org.apache.commons.codec.digest.DigestUtils.md5Hex;
 import static org.assertj.core.api.Assertions.assertThat;
 import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
 
 public class FileMetadataTest {
 
@@ -198,6 +199,29 @@ public class FileMetadataTest {
     assertThat(metadata.lines).isEqualTo(3);
     assertThat(metadata.nonBlankLines).isEqualTo(3);
     assertThat(metadata.hash).isEqualTo(md5Hex(" foo\nb ar\nbaz \t"));
+    assertThat(metadata.lineHashes).hasSize(3 * FileMetadata.LINE_HASH_LENGTH);
+    assertThat(FileMetadata.lineHashesAsHex(metadata.lineHashes)).containsExactly(md5Hex("foo"), md5Hex("bar"), md5Hex("baz"));
+  }
+
+  @Test
+  public void compute_line_hashes_of_blank_lines() throws Exception {
+    File tempFile = temp.newFile();
+    FileUtils.write(tempFile, "foo\n \n\nbar\n", Charsets.UTF_8, true);
+
+    FileMetadata.Metadata metadata = new FileMetadata(mode).read(tempFile, Charsets.UTF_8);
+    assertThat(metadata.lines).isEqualTo(5);
+    assertThat(FileMetadata.lineHashesAsHex(metadata.lineHashes)).containsExactly(md5Hex("foo"), "", "", md5Hex("bar"), "");
+  }
+
+  @Test
+  public void do_not_compute_line_hashes_in_preview_mode() throws Exception {
+    File tempFile = temp.newFile();
+    FileUtils.write(tempFile, "foo\nbar\n", Charsets.UTF_8, true);
+    when(mode.isPreview()).thenReturn(true);
+
+    FileMetadata.Metadata metadata = new FileMetadata(mode).read(tempFile, Charsets.UTF_8);
+    assertThat(metadata.lines).isEqualTo(3);
+    assertThat(metadata.lineHashes).isNull();
   }
 
   @Test
@@ -0,0 +1,144 @@
+/*
+ * SonarQube, open source software quality management tool.
+ * Copyright (C) 2008-2014 SonarSource
+ * mailto:contact AT sonarsource DOT com
+ *
+ * SonarQube is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * SonarQube is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+ */
+package org.sonar.batch.scan.measure;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.sonar.api.measures.CoreMetrics;
+import org.sonar.api.measures.Measure;
+import org.sonar.api.utils.DateUtils;
+import org.sonar.batch.index.Caches;
+import org.sonar.batch.index.CachesTest;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.sonar.batch.scan.measure.LineMeasureCache.NO_INT_VALUE;
+import static org.sonar.batch.scan.measure.LineMeasureCache.NO_LONG_VALUE;
+
+public class LineMeasureCacheTest {
+
+  @Rule
+  public TemporaryFolder temp = new TemporaryFolder();
+
+  Caches caches;
+  LineMeasureCache cache;
+
+  @Before
+  public void start() throws Exception {
+    caches = CachesTest.createCacheOnTemp(temp);
+    caches.start();
+    cache = new LineMeasureCache(caches);
+  }
+
+  @After
+  public void stop() {
+    caches.stop();
+  }
+
+  @Test
+  public void store_int_measures() {
+    cache.put("foo:src/Foo.java", new Measure(CoreMetrics.COVERAGE_LINE_HITS_DATA, "1=10;3=0;4="));
+
+    assertThat(cache.intValues("foo:src/Foo.java", CoreMetrics.COVERAGE_LINE_HITS_DATA_KEY)).containsExactly(10, NO_INT_VALUE, 0);
+    assertThat(cache.intValues("foo:src/Foo.java", CoreMetrics.CONDITIONS_BY_LINE_KEY)).isNull();
+    assertThat(cache.intValues("foo:src/Bar.java", CoreMetrics.COVERAGE_LINE_HITS_DATA_KEY)).isNull();
+  }
+
+  @Test
+  public void store_string_and_datetime_measures() {
+    cache.put("foo:src/Foo.java", new Measure(CoreMetrics.SCM_AUTHORS_BY_LINE, "1=him;2=;3=her"));
+    cache.put("foo:src/Foo.java", new Measure(CoreMetrics.SCM_LAST_COMMIT_DATETIMES_BY_LINE, "1=2014-10-11T16:44:02+0100;3=2014-10-13T16:44:02+0100"));
+
+    assertThat(cache.stringValues("foo:src/Foo.java", CoreMetrics.SCM_AUTHORS_BY_LINE_KEY)).containsExactly("him", "", "her");
+    assertThat(cache.longValues("foo:src/Foo.java", CoreMetrics.SCM_LAST_COMMIT_DATETIMES_BY_LINE_KEY)).containsExactly(
+      DateUtils.parseDateTime("2014-10-11T16:44:02+0100").getTime(), NO_LONG_VALUE, DateUtils.parseDateTime("2014-10-13T16:44:02+0100").getTime());
+  }
+
+  @Test
+  public void ignore_other_measures() {
+    cache.put("foo:src/Foo.java", new Measure(CoreMetrics.NCLOC, 12.0));
+    cache.put("foo:src/Foo.java", new Measure(CoreMetrics.COVERAGE_LINE_HITS_DATA, "1=10").setPersonId(3));
+
+    assertThat(cache.intValues("foo:src/Foo.java", CoreMetrics.COVERAGE_LINE_HITS_DATA_KEY)).isNull();
+  }
+
+  @Test
+  public void parse_ints() {
+    assertThat(LineMeasureCache.parseInts("")).isEmpty();
+    assertThat(LineMeasureCache.parseInts("2=-3;1=2147483647")).containsExactly(Integer.MAX_VALUE, -3);
+    assertThat(LineMeasureCache.parseInts("0=3;2=1;")).containsExactly(NO_INT_VALUE, 1);
+
+    int[] values = LineMeasureCache.parseInts("1000=1;1=2");
+    assertThat(values).hasSize(1000);
+    assertThat(values[0]).isEqualTo(2);
+    assertThat(values[999]).isEqualTo(1);
+  }
+
+  @Test
+  public void parse_escaped_ints() {
+    assertThat(LineMeasureCache.parseInts("1=\"5\";2=4")).containsExactly(5, 4);
+  }
+
+  @Test
+  public void format_data() {
+    cache.put("foo:src/Foo.java", new Measure(CoreMetrics.COVERAGE_LINE_HITS_DATA, "1=10;3=0;4="));
+    cache.put("foo:src/Foo.java", new Measure(CoreMetrics.SCM_AUTHORS_BY_LINE, "1=him;2=;3=her"));
+
+    assertThat(cache.formatData("foo:src/Foo.java", CoreMetrics.COVERAGE_LINE_HITS_DATA_KEY)).isEqualTo("1=10;3=0");
+    assertThat(cache.formatData("foo:src/Foo.java", CoreMetrics.SCM_AUTHORS_BY_LINE_KEY)).isEqualTo("1=him;2=;3=her");
+    assertThat(cache.formatData("foo:src/Foo.java", CoreMetrics.CONDITIONS_BY_LINE_KEY)).isNull();
+  }
+
+  @Test
+  public void data_must_be_kept_if_it_can_not_be_formatted_again_exactly() {
+    assertThat(cache.put("foo:src/Foo.java", new Measure(CoreMetrics.COVERAGE_LINE_HITS_DATA, "1=10;3=0"))).isTrue();
+    assertThat(cache.put("foo:src/Foo.java", new Measure(CoreMetrics.SCM_AUTHORS_BY_LINE, "1=him;2=;3=her"))).isTrue();
+    assertThat(cache.put("foo:src/Foo.java", new Measure(CoreMetrics.SCM_LAST_COMMIT_DATETIMES_BY_LINE, "1=2014-10-11T16:44:02+0100"))).isTrue();
+
+    // empty values
+    assertThat(cache.put("foo:src/Foo.java", new Measure(CoreMetrics.COVERAGE_LINE_HITS_DATA, "1=10;3=0;4="))).isFalse();
+    assertThat(cache.put("foo:src/Foo.java", new Measure(CoreMetrics.SCM_LAST_COMMIT_DATETIMES_BY_LINE, "1=2014-10-11T16:44:02+0100;2="))).isFalse();
+    // unparseable date
+    assertThat(cache.put("foo:src/Foo.java", new Measure(CoreMetrics.SCM_LAST_COMMIT_DATETIMES_BY_LINE, "1=yesterday"))).isFalse();
+    // arrays are stored anyway
+    assertThat(cache.intValues("foo:src/Foo.java", CoreMetrics.COVERAGE_LINE_HITS_DATA_KEY)).containsExactly(10, NO_INT_VALUE, 0);
+
+    // other measures
+    assertThat(cache.put("foo:src/Foo.java", new Measure(CoreMetrics.NCLOC, 12.0))).isFalse();
+  }
+
+  @Test
+  public void remove_values_of_measure_without_data() {
+    cache.put("foo:src/Foo.java", new Measure(CoreMetrics.COVERAGE_LINE_HITS_DATA, "1=10"));
+    assertThat(cache.put("foo:src/Foo.java", new Measure(CoreMetrics.COVERAGE_LINE_HITS_DATA))).isFalse();
+
+    assertThat(cache.intValues("foo:src/Foo.java", CoreMetrics.COVERAGE_LINE_HITS_DATA_KEY)).isNull();
+  }
+
+  @Test
+  public void format_date_times() {
+    long date = DateUtils.parseDateTime("2014-10-11T16:44:02+0100").getTime();
+    String data = LineMeasureCache.formatDateTimes(new long[] {date, NO_LONG_VALUE});
+
+    assertThat(LineMeasureCache.parseDateTimes(data)).containsExactly(date);
+  }
+}
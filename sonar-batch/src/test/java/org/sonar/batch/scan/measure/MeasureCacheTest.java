@@ -49,7 +49,11 @@ import java.util.Date;
 import java.util.Iterator;
 
 import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.Matchers.anyString;
 import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.spy;
+import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.when;
 
 public class MeasureCacheTest {
@@ -66,6 +70,8 @@ public class MeasureCacheTest {
 
   private TechnicalDebtModel techDebtModel;
 
+  private LineMeasureCache lineMeasureCache;
+
   private MeasureCache cache;
 
   @Before
@@ -74,8 +80,11 @@ public class MeasureCacheTest {
     caches.start();
     metricFinder = mock(MetricFinder.class);
     when(metricFinder.findByKey(CoreMetrics.NCLOC_KEY)).thenReturn(CoreMetrics.NCLOC);
+    when(metricFinder.findByKey(CoreMetrics.COVERAGE_LINE_HITS_DATA_KEY)).thenReturn(CoreMetrics.COVERAGE_LINE_HITS_DATA);
+    when(metricFinder.findByKey(CoreMetrics.SCM_LAST_COMMIT_DATETIMES_BY_LINE_KEY)).thenReturn(CoreMetrics.SCM_LAST_COMMIT_DATETIMES_BY_LINE);
     techDebtModel = mock(TechnicalDebtModel.class);
-    cache = new MeasureCache(caches, metricFinder, techDebtModel);
+    lineMeasureCache = new LineMeasureCache(caches);
+    cache = new MeasureCache(caches, metricFinder, techDebtModel, lineMeasureCache);
   }
 
   @After
@@ -269,6 +278,59 @@ public class MeasureCacheTest {
     assertThat(cache.byResource(dir).iterator().next()).isEqualTo(mDir);
   }
 
+  @Test
+  public void should_store_data_of_per_line_measures_as_arrays() throws Exception {
+    Resource file = File.create("foo/bar/File1.txt").setEffectiveKey("struts:foo/bar/File1.txt");
+
+    Measure m = new Measure(CoreMetrics.COVERAGE_LINE_HITS_DATA, "1=3;3=0");
+    cache.put(file, m);
+
+    assertThat(m.getData()).isEqualTo("1=3;3=0");
+    assertThat(lineMeasureCache.intValues("struts:foo/bar/File1.txt", CoreMetrics.COVERAGE_LINE_HITS_DATA_KEY)).containsExactly(3, LineMeasureCache.NO_INT_VALUE, 0);
+    assertThat(cache.byMetric(file, CoreMetrics.COVERAGE_LINE_HITS_DATA_KEY).iterator().next().getData()).isEqualTo("1=3;3=0");
+    assertThat(cache.byResource(file).iterator().next().getData()).isEqualTo("1=3;3=0");
+    assertThat(cache.entries().iterator().next().value().getData()).isEqualTo("1=3;3=0");
+    assertThat(cache.all().iterator().next().getData()).isEqualTo("1=3;3=0");
+  }
+
+  @Test
+  public void should_not_modify_measure_of_caller() throws Exception {
+    Resource file = File.create("foo/bar/File1.txt").setEffectiveKey("struts:foo/bar/File1.txt");
+
+    Measure m = new Measure(CoreMetrics.COVERAGE_LINE_HITS_DATA, "1=3;3=0").setVariation1(2.0);
+    Measure copy = spy(m);
+    cache.put(file, copy);
+
+    verify(copy, never()).setData(anyString());
+    Measure saved = cache.byMetric(file, CoreMetrics.COVERAGE_LINE_HITS_DATA_KEY).iterator().next();
+    assertThat(saved.getVariation1()).isEqualTo(2.0);
+    assertThat(saved.getData()).isEqualTo("1=3;3=0");
+  }
+
+  @Test
+  public void should_keep_data_of_per_line_measures_that_can_not_be_formatted_again() throws Exception {
+    Resource file = File.create("foo/bar/File1.txt").setEffectiveKey("struts:foo/bar/File1.txt");
+
+    cache.put(file, new Measure(CoreMetrics.COVERAGE_LINE_HITS_DATA, "1=3;2=;3=0"));
+    cache.put(file, new Measure(CoreMetrics.SCM_LAST_COMMIT_DATETIMES_BY_LINE, "1=yesterday"));
+
+    assertThat(cache.byMetric(file, CoreMetrics.COVERAGE_LINE_HITS_DATA_KEY).iterator().next().getData()).isEqualTo("1=3;2=;3=0");
+    assertThat(cache.byMetric(file, CoreMetrics.SCM_LAST_COMMIT_DATETIMES_BY_LINE_KEY).iterator().next().getData()).isEqualTo("1=yesterday");
+  }
+
+  @Test
+  public void should_save_again_per_line_measure_read_from_cache() throws Exception {
+    Resource file = File.create("foo/bar/File1.txt").setEffectiveKey("struts:foo/bar/File1.txt");
+    cache.put(file, new Measure(CoreMetrics.COVERAGE_LINE_HITS_DATA, "1=3;3=0"));
+
+    Measure read = cache.byMetric(file, CoreMetrics.COVERAGE_LINE_HITS_DATA_KEY).iterator().next();
+    read.setData("1=4;2=;3=0");
+    cache.put(file, read);
+
+    assertThat(cache.byMetric(file, CoreMetrics.COVERAGE_LINE_HITS_DATA_KEY).iterator().next().getData()).isEqualTo("1=4;2=;3=0");
+    assertThat(lineMeasureCache.intValues("struts:foo/bar/File1.txt", CoreMetrics.COVERAGE_LINE_HITS_DATA_KEY)).containsExactly(4, LineMeasureCache.NO_INT_VALUE, 0);
+  }
+
   @Test
   public void test_measure_coder() throws Exception {
     Resource file1 = File.create("foo/bar/File1.txt").setEffectiveKey("struts:foo/bar/File1.txt");
@@ -0,0 +1,62 @@
+/*
+ * SonarQube, open source software quality management tool.
+ * Copyright (C) 2008-2014 SonarSource
+ * mailto:contact AT sonarsource DOT com
+ *
+ * SonarQube is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * SonarQube is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+ */
+package org.sonar.batch.scm;
+
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.sonar.api.batch.fs.InputFile;
+import org.sonar.api.batch.fs.internal.DefaultInputFile;
+import org.sonar.batch.util.LocalCaches;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+public class BlameCacheTest {
+
+  @Rule
+  public TemporaryFolder temp = new TemporaryFolder();
+
+  BlameCache cache;
+  InputFile file = new DefaultInputFile("foo", "src/main/java/Foo.java");
+
+  @Before
+  public void setUp() throws Exception {
+    cache = new BlameCache(new LocalCaches(temp.newFolder()));
+  }
+
+  @Test
+  public void get_blame_of_file_with_same_content() throws Exception {
+    assertThat(cache.get("git", file, "abc")).isNull();
+
+    cache.put("git", file, "abc", "1=simon", "1=2015-01-01T10:00:00+0100", "1=r1");
+
+    assertThat(cache.get("git", file, "abc")).containsExactly("1=simon", "1=2015-01-01T10:00:00+0100", "1=r1");
+  }
+
+  @Test
+  public void ignore_blame_of_file_with_different_content_or_provider() throws Exception {
+    cache.put("git", file, "abc", "1=simon", "1=2015-01-01T10:00:00+0100", "1=r1");
+
+    assertThat(cache.get("git", file, "def")).isNull();
+    assertThat(cache.get("svn", file, "abc")).isNull();
+    assertThat(cache.get("git", new DefaultInputFile("foo", "src/main/java/Bar.java"), "abc")).isNull();
+  }
+}
@@ -0,0 +1,206 @@
+/*
+ * SonarQube, open source software quality management tool.
+ * Copyright (C) 2008-2014 SonarSource
+ * mailto:contact AT sonarsource DOT com
+ *
+ * SonarQube is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * SonarQube is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+ */
+package org.sonar.batch.scm;
+
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.mockito.ArgumentCaptor;
+import org.mockito.invocation.InvocationOnMock;
+import org.mockito.stubbing.Answer;
+import org.sonar.api.CoreProperties;
+import org.sonar.api.batch.AnalysisMode;
+import org.sonar.api.batch.bootstrap.ProjectDefinition;
+import org.sonar.api.batch.bootstrap.ProjectReactor;
+import org.sonar.api.batch.fs.InputFile;
+import org.sonar.api.batch.fs.internal.DefaultFileSystem;
+import org.sonar.api.batch.fs.internal.DefaultInputFile;
+import org.sonar.api.batch.scm.BlameCommand;
+import org.sonar.api.batch.scm.BlameLine;
+import org.sonar.api.batch.scm.ScmProvider;
+import org.sonar.api.batch.sensor.SensorContext;
+import org.sonar.api.batch.sensor.internal.SensorStorage;
+import org.sonar.api.batch.sensor.measure.Measure;
+import org.sonar.api.batch.sensor.measure.NewMeasure;
+import org.sonar.api.batch.sensor.measure.internal.DefaultMeasure;
+import org.sonar.api.config.Settings;
+import org.sonar.api.measures.CoreMetrics;
+import org.sonar.api.utils.DateUtils;
+import org.sonar.batch.protocol.input.ProjectRepositories;
+import org.sonar.batch.scan.filesystem.InputFileMetadata;
+import org.sonar.batch.scan.filesystem.InputPathCache;
+import org.sonar.batch.util.LocalCaches;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Date;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.Matchers.any;
+import static org.mockito.Mockito.atLeastOnce;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+public class ScmSensorTest {
+
+  private static final Date DATE = DateUtils.parseDateTime("2015-01-01T10:00:00+0100");
+
+  @Rule
+  public TemporaryFolder temp = new TemporaryFolder();
+
+  ProjectDefinition project = ProjectDefinition.create().setKey("foo");
+  Settings settings = new Settings();
+  InputPathCache inputPathCache = mock(InputPathCache.class);
+  SensorStorage storage = mock(SensorStorage.class);
+  SensorContext context = mock(SensorContext.class);
+  FakeBlameCommand blameCommand = new FakeBlameCommand();
+  DefaultFileSystem fs;
+  BlameCache blameCache;
+  List<InputFile> files = new ArrayList<InputFile>();
+
+  @Before
+  public void setUp() throws Exception {
+    fs = new DefaultFileSystem(temp.newFolder().toPath());
+    blameCache = new BlameCache(new LocalCaches(temp.newFolder()));
+    for (int i = 0; i < 20; i++) {
+      DefaultInputFile file = new DefaultInputFile("foo", "src/Foo" + i + ".java").setLines(1);
+      fs.add(file);
+      files.add(file);
+      when(inputPathCache.getFileMetadata("foo", file.relativePath())).thenReturn(new InputFileMetadata().setHash("hash" + i));
+    }
+    when(context.newMeasure()).thenAnswer(new Answer<NewMeasure>() {
+      @Override
+      public NewMeasure answer(InvocationOnMock invocation) {
+        return new DefaultMeasure(storage);
+      }
+    });
+    settings.setProperty(CoreProperties.SCM_PROVIDER_KEY, "fake");
+  }
+
+  @Test
+  public void blame_groups_of_files_concurrently_when_supported_by_provider() {
+    blameCommand.concurrent = true;
+    settings.setProperty(ScmConfiguration.THREADS_KEY, 4);
+
+    newSensor().execute(context);
+
+    assertThat(blameCommand.blamedFiles).containsOnly(files.toArray(new InputFile[0]));
+    assertThat(blameCommand.calls).isGreaterThan(1);
+    for (String threadName : blameCommand.threadNames) {
+      assertThat(threadName).startsWith("scm-blame-");
+    }
+    assertThat(savedMeasures()).hasSize(3 * files.size());
+  }
+
+  @Test
+  public void blame_all_files_on_current_thread_when_provider_does_not_support_concurrency() {
+    blameCommand.concurrent = false;
+    settings.setProperty(ScmConfiguration.THREADS_KEY, 4);
+
+    newSensor().execute(context);
+
+    assertThat(blameCommand.blamedFiles).containsOnly(files.toArray(new InputFile[0]));
+    assertThat(blameCommand.calls).isEqualTo(1);
+    assertThat(blameCommand.threadNames).containsOnly(Thread.currentThread().getName());
+  }
+
+  @Test
+  public void do_not_blame_files_with_cached_blame() {
+    InputFile cachedFile = files.get(0);
+    blameCache.put("fake", cachedFile, "hash0", "1=cached", "1=2015-01-01T10:00:00+0100", "1=r0");
+
+    newSensor().execute(context);
+
+    assertThat(blameCommand.blamedFiles).hasSize(files.size() - 1).doesNotContain(cachedFile);
+    List<Measure> measuresOfCachedFile = new ArrayList<Measure>();
+    for (Measure measure : savedMeasures()) {
+      if (cachedFile.equals(measure.inputFile())) {
+        measuresOfCachedFile.add(measure);
+      }
+    }
+    assertThat(measuresOfCachedFile).hasSize(3);
+    for (Measure measure : measuresOfCachedFile) {
+      if (measure.metric().equals(CoreMetrics.SCM_AUTHORS_BY_LINE)) {
+        assertThat(measure.value()).isEqualTo("1=cached");
+      }
+    }
+  }
+
+  @Test
+  public void cache_blame_of_blamed_files() {
+    newSensor().execute(context);
+
+    assertThat(blameCache.get("fake", files.get(3), "hash3")).containsExactly("1=author", "1=" + DateUtils.formatDateTime(DATE), "1=r");
+  }
+
+  private ScmSensor newSensor() {
+    AnalysisMode analysisMode = mock(AnalysisMode.class);
+    ScmProvider provider = new ScmProvider() {
+      @Override
+      public String key() {
+        return "fake";
+      }
+
+      @Override
+      public BlameCommand blameCommand() {
+        return blameCommand;
+      }
+    };
+    ScmConfiguration configuration = new ScmConfiguration(new ProjectReactor(project), analysisMode, settings, provider);
+    configuration.start();
+    return new ScmSensor(project, configuration, new ProjectRepositories(), fs, inputPathCache, blameCache);
+  }
+
+  private List<Measure> savedMeasures() {
+    ArgumentCaptor<Measure> captor = ArgumentCaptor.forClass(Measure.class);
+    verify(storage, atLeastOnce()).store(captor.capture());
+    return captor.getAllValues();
+  }
+
+  private static class FakeBlameCommand extends BlameCommand {
+    boolean concurrent;
+    int calls = 0;
+    Set<String> threadNames = Collections.newSetFromMap(new ConcurrentHashMap<String, Boolean>());
+    List<InputFile> blamedFiles = Collections.synchronizedList(new ArrayList<InputFile>());
+
+    @Override
+    public boolean supportsConcurrentBlame() {
+      return concurrent;
+    }
+
+    @Override
+    public void blame(BlameInput input, BlameOutput output) {
+      synchronized (this) {
+        calls++;
+      }
+      threadNames.add(Thread.currentThread().getName());
+      for (InputFile file : input.filesToBlame()) {
+        blamedFiles.add(file);
+        output.blameResult(file, Arrays.asList(new BlameLine().author("author").date(DATE).revision("r")));
+      }
+    }
+  }
+}
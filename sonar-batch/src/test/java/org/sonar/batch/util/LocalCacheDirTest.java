@@ -0,0 +1,125 @@
+/*
+ * SonarQube, open source software quality management tool.
+ * Copyright (C) 2008-2014 SonarSource
+ * mailto:contact AT sonarsource DOT com
+ *
+ * SonarQube is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * SonarQube is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+ */
+package org.sonar.batch.util;
+
+import org.apache.commons.io.FileUtils;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.File;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+public class LocalCacheDirTest {
+
+  private static final long NOW = 1000000000000L;
+  private static final long MAX_AGE = 1000L;
+
+  @Rule
+  public TemporaryFolder temp = new TemporaryFolder();
+
+  File dir;
+  LocalCacheDir cache;
+
+  @Before
+  public void setUp() throws Exception {
+    dir = temp.newFolder();
+    cache = new LocalCacheDir(dir, 2, MAX_AGE);
+  }
+
+  @Test
+  public void read_written_entry() {
+    assertThat(cache.read("abcdef")).isNull();
+
+    cache.write("abcdef", "foo\nbar");
+
+    assertThat(cache.read("abcdef")).isEqualTo("foo\nbar");
+    assertThat(cache.read("abcdeg")).isNull();
+    // no temporary file is left
+    assertThat(FileUtils.listFiles(dir, null, true)).hasSize(1);
+  }
+
+  @Test
+  public void overwrite_entry() {
+    cache.write("abcdef", "foo");
+    cache.write("abcdef", "bar");
+
+    assertThat(cache.read("abcdef")).isEqualTo("bar");
+  }
+
+  @Test
+  public void put_file_written_by_caller() throws Exception {
+    assertThat(cache.get("abcdef")).isNull();
+
+    File tmp = cache.newTempFile("abcdef");
+    FileUtils.writeByteArrayToFile(tmp, new byte[] {1, 2, 3});
+    cache.put("abcdef", tmp);
+
+    assertThat(FileUtils.readFileToByteArray(cache.get("abcdef"))).isEqualTo(new byte[] {1, 2, 3});
+    assertThat(tmp).doesNotExist();
+  }
+
+  @Test
+  public void evict_entries_not_used_recently() {
+    cache.write("abcdef", "old");
+    cache.write("abcdeg", "recent");
+    cache.entry("abcdef").setLastModified(NOW - MAX_AGE - 1);
+    cache.entry("abcdeg").setLastModified(NOW - MAX_AGE + 1);
+
+    cache.evict(NOW);
+
+    assertThat(cache.read("abcdef")).isNull();
+    assertThat(cache.read("abcdeg")).isEqualTo("recent");
+  }
+
+  @Test
+  public void evict_least_recently_used_entries_when_too_many() {
+    cache.write("aa0001", "1");
+    cache.write("bb0002", "2");
+    cache.write("cc0003", "3");
+    cache.entry("aa0001").setLastModified(NOW - 10);
+    cache.entry("bb0002").setLastModified(NOW - 30);
+    cache.entry("cc0003").setLastModified(NOW - 20);
+
+    cache.evict(NOW);
+
+    assertThat(cache.read("aa0001")).isEqualTo("1");
+    assertThat(cache.read("bb0002")).isNull();
+    assertThat(cache.read("cc0003")).isEqualTo("3");
+  }
+
+  @Test
+  public void evict_stale_temporary_files() throws Exception {
+    File tmp = new File(new File(dir, "ab"), "abcdef123.tmp");
+    FileUtils.write(tmp, "partial");
+    tmp.setLastModified(NOW - 2 * 24 * 3600 * 1000L);
+
+    cache.evict(NOW);
+
+    assertThat(tmp).doesNotExist();
+  }
+
+  @Test
+  public void evict_does_not_fail_if_dir_does_not_exist() {
+    new LocalCacheDir(new File(dir, "unknown"), 2, MAX_AGE).evict();
+  }
+}
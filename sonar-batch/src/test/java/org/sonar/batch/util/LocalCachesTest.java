@@ -0,0 +1,64 @@
+/*
+ * SonarQube, open source software quality management tool.
+ * Copyright (C) 2008-2014 SonarSource
+ * mailto:contact AT sonarsource DOT com
+ *
+ * SonarQube is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * SonarQube is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+ */
+package org.sonar.batch.util;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.File;
+import java.util.concurrent.TimeUnit;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+public class LocalCachesTest {
+
+  @Rule
+  public TemporaryFolder temp = new TemporaryFolder();
+
+  @Test
+  public void one_directory_by_cache() throws Exception {
+    File dir = temp.newFolder();
+    LocalCaches caches = new LocalCaches(dir);
+
+    caches.get("_foo", 10).write("abcdef", "foo");
+    caches.get("_bar", 10).write("abcdef", "bar");
+
+    assertThat(caches.get("_foo", 10)).isSameAs(caches.get("_foo", 10));
+    assertThat(caches.get("_foo", 10).read("abcdef")).isEqualTo("foo");
+    assertThat(new File(dir, "_bar/ab/abcdef")).exists();
+  }
+
+  @Test
+  public void evict_entries_of_all_caches_on_stop() throws Exception {
+    File dir = temp.newFolder();
+    LocalCaches caches = new LocalCaches(dir);
+    caches.get("_foo", 10).write("abcdef", "foo");
+    caches.get("_bar", 10).write("abcdef", "bar");
+    File oldEntry = new File(dir, "_foo/ab/abcdef");
+    assertThat(oldEntry.setLastModified(System.currentTimeMillis() - TimeUnit.DAYS.toMillis(31))).isTrue();
+
+    caches.start();
+    caches.stop();
+
+    assertThat(oldEntry).doesNotExist();
+    assertThat(new File(dir, "_bar/ab/abcdef")).exists();
+  }
+}
@@ -19,12 +19,15 @@
  */
 package org.sonar.core.duplication;
 
+import org.apache.ibatis.session.ResultHandler;
 import org.apache.ibatis.session.SqlSession;
 import org.sonar.api.BatchComponent;
 import org.sonar.api.ServerComponent;
 import org.sonar.core.persistence.DbSession;
 import org.sonar.core.persistence.MyBatis;
 
+import javax.annotation.Nullable;
+
 import java.util.Collection;
 import java.util.List;
 
@@ -36,11 +39,32 @@ public class DuplicationDao implements BatchComponent, ServerComponent {
     this.mybatis = mybatis;
   }
 
-  public List<DuplicationUnitDto> selectCandidates(int resourceSnapshotId, Integer lastSnapshotId, String language) {
+  /**
+   * Last snapshots of other projects which have at least one block in common with the given project snapshot.
+   *
+   * @since 5.1
+   */
+  public List<Integer> selectCandidateProjectSnapshots(int projectSnapshotId, @Nullable Integer lastSnapshotId, String language) {
+    SqlSession session = mybatis.openSession(false);
+    try {
+      DuplicationMapper mapper = session.getMapper(DuplicationMapper.class);
+      return mapper.selectCandidateProjectSnapshots(projectSnapshotId, lastSnapshotId, language);
+    } finally {
+      MyBatis.closeQuietly(session);
+    }
+  }
+
+  /**
+   * Streams the blocks of the files of the given language in a candidate project snapshot, which have the same hash as
+   * a block of the given project snapshot. The handler receives instances of {@link DuplicationUnitDto}.
+   *
+   * @since 5.1
+   */
+  public void selectCandidates(int candidateProjectSnapshotId, int projectSnapshotId, String language, ResultHandler handler) {
     SqlSession session = mybatis.openSession(false);
     try {
       DuplicationMapper mapper = session.getMapper(DuplicationMapper.class);
-      return mapper.selectCandidates(resourceSnapshotId, lastSnapshotId, language);
+      mapper.selectCandidates(candidateProjectSnapshotId, projectSnapshotId, language, handler);
     } finally {
       MyBatis.closeQuietly(session);
     }
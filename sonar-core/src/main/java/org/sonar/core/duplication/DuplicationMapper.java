@@ -20,16 +20,23 @@
 package org.sonar.core.duplication;
 
 import org.apache.ibatis.annotations.Param;
+import org.apache.ibatis.session.ResultHandler;
 
 import java.util.List;
 
 public interface DuplicationMapper {
 
-  List<DuplicationUnitDto> selectCandidates(
-      @Param("resource_snapshot_id") int resourceSnapshotId,
+  List<Integer> selectCandidateProjectSnapshots(
+      @Param("project_snapshot_id") int projectSnapshotId,
       @Param("last_project_snapshot_id") Integer lastSnapshotId,
       @Param("language") String language);
 
+  void selectCandidates(
+      @Param("candidate_project_snapshot_id") int candidateProjectSnapshotId,
+      @Param("project_snapshot_id") int projectSnapshotId,
+      @Param("language") String language,
+      ResultHandler handler);
+
   void batchInsert(DuplicationUnitDto unit);
 
 }
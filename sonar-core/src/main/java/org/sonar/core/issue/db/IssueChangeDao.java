@@ -20,6 +20,7 @@
 
 package org.sonar.core.issue.db;
 
+import com.google.common.base.Function;
 import com.google.common.collect.Lists;
 import org.apache.ibatis.session.ResultHandler;
 import org.sonar.api.BatchComponent;
@@ -27,6 +28,7 @@ import org.sonar.api.ServerComponent;
 import org.sonar.api.issue.internal.DefaultIssueComment;
 import org.sonar.api.issue.internal.FieldDiffs;
 import org.sonar.core.persistence.DaoComponent;
+import org.sonar.core.persistence.DaoUtils;
 import org.sonar.core.persistence.DbSession;
 import org.sonar.core.persistence.MyBatis;
 
@@ -73,6 +75,24 @@ public class IssueChangeDao implements DaoComponent, BatchComponent, ServerCompo
     }
   }
 
+  /**
+   * Field changes of the given issues, ordered by date of change
+   * @since 5.1
+   */
+  public List<IssueChangeDto> selectChangelogByIssues(Collection<String> issueKeys) {
+    final DbSession session = mybatis.openSession(false);
+    try {
+      return DaoUtils.executeLargeInputs(issueKeys, new Function<List<String>, List<IssueChangeDto>>() {
+        @Override
+        public List<IssueChangeDto> apply(List<String> partition) {
+          return session.getMapper(IssueChangeMapper.class).selectByIssuesAndTypeOrderedByChangeDate(partition, IssueChangeDto.TYPE_FIELD_CHANGE);
+        }
+      });
+    } finally {
+      MyBatis.closeQuietly(session);
+    }
+  }
+
   public void selectChangelogOnNonClosedIssuesByModuleAndType(Integer componentId, ResultHandler handler) {
     DbSession session = mybatis.openSession(false);
     try {
@@ -47,4 +47,10 @@ public interface IssueChangeMapper {
                                              @Param("changeType") String changeType);
 
   List<IssueChangeDto> selectByIssue(String issueKey);
+
+  /**
+   * Issue changes by date of change, as set when the issue was updated
+   */
+  List<IssueChangeDto> selectByIssuesAndTypeOrderedByChangeDate(@Param("issueKeys") List<String> issueKeys,
+                                                                @Param("changeType") String changeType);
 }
@@ -303,6 +303,16 @@ public class MyBatis implements BatchComponent, ServerComponent {
     return new DbSession(queue, session);
   }
 
+  /**
+   * Same as {@link #openSession(boolean)} in batch mode, except that statements are automatically
+   * committed every {@code batchSize} statements instead of {@link BatchSession#MAX_BATCH_SIZE}.
+   * @since 5.1
+   */
+  public BatchSession openBatchSession(int batchSize) {
+    SqlSession session = sessionFactory.openSession(ExecutorType.BATCH);
+    return new BatchSession(queue, session, batchSize);
+  }
+
   private void loadMappers(Configuration mybatisConf, Class<?>... mapperClasses) {
     for (Class mapperClass : mapperClasses) {
       loadMapper(mybatisConf, mapperClass);
@@ -87,4 +87,14 @@ abstract class AbstractDialect implements Dialect {
   public int getScrollSingleRowFetchSize() {
     return 1;
   }
+
+  @Override
+  public boolean supportsMultipleRowsInsert() {
+    return true;
+  }
+
+  @Override
+  public int getBatchSize() {
+    return 1000;
+  }
 }
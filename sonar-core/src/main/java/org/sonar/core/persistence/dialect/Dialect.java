@@ -87,4 +87,19 @@ public interface Dialect {
    * @since 5.0
    */
   int getScrollSingleRowFetchSize();
+
+  /**
+   * Whether a single INSERT statement can insert many rows:
+   * <code>INSERT INTO foo (a, b) VALUES (1, 2), (3, 4)</code>
+   *
+   * @since 5.1
+   */
+  boolean supportsMultipleRowsInsert();
+
+  /**
+   * Maximum number of statements sent in a single JDBC batch
+   *
+   * @since 5.1
+   */
+  int getBatchSize();
 }
@@ -46,6 +46,20 @@ public class Oracle extends AbstractDialect {
     return StringUtils.startsWithIgnoreCase(jdbcConnectionURL, "jdbc:oracle:");
   }
 
+  @Override
+  public boolean supportsMultipleRowsInsert() {
+    return false;
+  }
+
+  /**
+   * The Oracle driver keeps all the statements of a batch in memory and does not return
+   * update counts, so batches are smaller than on other databases.
+   */
+  @Override
+  public int getBatchSize() {
+    return 250;
+  }
+
   public static class Oracle10gWithDecimalDialect extends Oracle10gDialect {
     public Oracle10gWithDecimalDialect() {
       super();
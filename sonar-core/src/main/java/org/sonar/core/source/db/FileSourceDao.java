@@ -21,15 +21,18 @@
 package org.sonar.core.source.db;
 
 import com.google.common.base.Function;
+import com.google.common.collect.Lists;
 import org.apache.commons.dbutils.DbUtils;
 import org.apache.commons.io.IOUtils;
 import org.sonar.api.BatchComponent;
 import org.sonar.api.ServerComponent;
 import org.sonar.core.persistence.DaoComponent;
+import org.sonar.core.persistence.DaoUtils;
 import org.sonar.core.persistence.DbSession;
 import org.sonar.core.persistence.MyBatis;
 
 import javax.annotation.CheckForNull;
+import javax.annotation.Nullable;
 
 import java.io.InputStream;
 import java.io.Reader;
@@ -37,9 +40,14 @@ import java.sql.Connection;
 import java.sql.PreparedStatement;
 import java.sql.ResultSet;
 import java.sql.SQLException;
+import java.util.Collection;
+import java.util.List;
 
 public class FileSourceDao implements BatchComponent, ServerComponent, DaoComponent {
 
+  // prevent issues with ORACLE and MsSQL when too many elements in 'in' clause
+  private static final int MAX_FILES_PER_QUERY = 1000;
+
   private final MyBatis mybatis;
 
   public FileSourceDao(MyBatis myBatis) {
@@ -80,6 +88,53 @@ public class FileSourceDao implements BatchComponent, ServerComponent, DaoCompon
     }
   }
 
+  /**
+   * Reads the column BINARY_DATA of multiple files in a few queries. The handler is called
+   * for each file that exists in db. Order of files is not guaranteed.
+   * @since 5.1
+   */
+  public void readDataStreams(Collection<String> fileUuids, DataStreamHandler handler) {
+    if (fileUuids.isEmpty()) {
+      return;
+    }
+    DbSession dbSession = mybatis.openSession(false);
+    Connection connection = dbSession.getConnection();
+    try {
+      for (List<String> partition : Lists.partition(Lists.newArrayList(fileUuids), MAX_FILES_PER_QUERY)) {
+        readDataStreams(connection, partition, handler);
+      }
+    } finally {
+      DbUtils.closeQuietly(connection);
+      MyBatis.closeQuietly(dbSession);
+    }
+  }
+
+  private static void readDataStreams(Connection connection, List<String> fileUuids, DataStreamHandler handler) {
+    PreparedStatement pstmt = null;
+    ResultSet rs = null;
+    try {
+      pstmt = connection.prepareStatement("SELECT file_uuid, binary_data FROM file_sources WHERE file_uuid IN ("
+        + DaoUtils.repeatCondition("?", fileUuids.size(), ",") + ")");
+      for (int i = 0; i < fileUuids.size(); i++) {
+        pstmt.setString(i + 1, fileUuids.get(i));
+      }
+      rs = pstmt.executeQuery();
+      while (rs.next()) {
+        InputStream input = rs.getBinaryStream(2);
+        try {
+          handler.handle(rs.getString(1), input);
+        } finally {
+          IOUtils.closeQuietly(input);
+        }
+      }
+    } catch (SQLException e) {
+      throw new IllegalStateException("Fail to read FILE_SOURCES.BINARY_DATA of files " + fileUuids, e);
+    } finally {
+      DbUtils.closeQuietly(rs);
+      DbUtils.closeQuietly(pstmt);
+    }
+  }
+
   public <T> void readLineHashesStream(DbSession dbSession, String fileUuid, Function<Reader, T> function) {
     Connection connection = dbSession.getConnection();
     PreparedStatement pstmt = null;
@@ -121,4 +176,15 @@ public class FileSourceDao implements BatchComponent, ServerComponent, DaoCompon
     }
   }
 
+  /**
+   * @see #readDataStreams(java.util.Collection, org.sonar.core.source.db.FileSourceDao.DataStreamHandler)
+   * @since 5.1
+   */
+  public interface DataStreamHandler {
+    /**
+     * @param data the column BINARY_DATA, which can be null. Stream is closed by caller.
+     */
+    void handle(String fileUuid, @Nullable InputStream data);
+  }
+
 }
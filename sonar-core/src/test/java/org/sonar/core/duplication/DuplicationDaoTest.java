@@ -19,13 +19,18 @@
  */
 package org.sonar.core.duplication;
 
+import org.apache.ibatis.session.ResultContext;
+import org.apache.ibatis.session.ResultHandler;
 import org.junit.Before;
 import org.junit.Test;
 import org.sonar.core.persistence.AbstractDaoTestCase;
 
+import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.List;
 
+import static org.hamcrest.Matchers.contains;
+import static org.hamcrest.Matchers.containsInAnyOrder;
 import static org.hamcrest.Matchers.is;
 import static org.junit.Assert.assertThat;
 
@@ -39,22 +44,34 @@ public class DuplicationDaoTest extends AbstractDaoTestCase {
   }
 
   @Test
-  public void shouldGetByHash() throws Exception {
+  public void select_candidate_project_snapshots() throws Exception {
     setupData("shouldGetByHash");
 
-    List<DuplicationUnitDto> blocks = dao.selectCandidates(10, 7, "java");
-    assertThat(blocks.size(), is(1));
+    assertThat(dao.selectCandidateProjectSnapshots(9, 7, "java"), contains(3));
+    assertThat(dao.selectCandidateProjectSnapshots(9, null, "java"), containsInAnyOrder(3, 7));
+    assertThat(dao.selectCandidateProjectSnapshots(9, null, "grvy"), contains(1));
+  }
 
-    DuplicationUnitDto block = blocks.get(0);
-    assertThat("block resourceId", block.getResourceKey(), is("bar-last"));
-    assertThat("block hash", block.getHash(), is("aa"));
-    assertThat("block index in file", block.getIndexInFile(), is(0));
-    assertThat("block start line", block.getStartLine(), is(1));
-    assertThat("block end line", block.getEndLine(), is(2));
+  @Test
+  public void select_candidates() throws Exception {
+    setupData("shouldGetByHash");
+
+    final List<DuplicationUnitDto> blocks = new ArrayList<DuplicationUnitDto>();
+    // block of bar-last is selected only once, even if two blocks of current analysis have its hash
+    dao.selectCandidates(3, 9, "java", new ResultHandler() {
+      @Override
+      public void handleResult(ResultContext context) {
+        blocks.add((DuplicationUnitDto) context.getResultObject());
+      }
+    });
 
-    // check null for lastSnapshotId
-    blocks = dao.selectCandidates(10, null, "java");
-    assertThat(blocks.size(), is(2));
+    assertThat(blocks.size(), is(1));
+    DuplicationUnitDto block = blocks.get(0);
+    assertThat(block.getResourceKey(), is("bar-last"));
+    assertThat(block.getHash(), is("aa"));
+    assertThat(block.getIndexInFile(), is(0));
+    assertThat(block.getStartLine(), is(1));
+    assertThat(block.getEndLine(), is(2));
   }
 
   @Test
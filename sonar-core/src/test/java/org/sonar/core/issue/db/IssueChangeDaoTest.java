@@ -114,6 +114,19 @@ public class IssueChangeDaoTest extends AbstractDaoTestCase {
     assertThat(changelog.get(0).diffs().get("severity").oldValue()).isEqualTo("MAJOR");
   }
 
+  @Test
+  public void select_issue_changelog_from_issue_keys() {
+    setupData("shared");
+
+    List<IssueChangeDto> changelog = dao.selectChangelogByIssues(Arrays.asList("1000", "1001", "UNKNOWN"));
+    assertThat(changelog).hasSize(3);
+    assertThat(changelog).extracting("issueKey").containsOnly("1000", "1001");
+    // ordered by date of change
+    assertThat(changelog.get(0).getKey()).isEqualTo("OPQR");
+
+    assertThat(dao.selectChangelogByIssues(Collections.<String>emptyList())).isEmpty();
+  }
+
   @Test
   public void select_issue_changelog_by_module() {
     setupData("select_issue_changelog_by_module");
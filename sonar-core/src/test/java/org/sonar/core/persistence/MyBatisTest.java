@@ -73,4 +73,18 @@ public class MyBatisTest {
       session.close();
     }
   }
+
+  @Test
+  public void open_batch_session_with_custom_size() {
+    MyBatis myBatis = new MyBatis(database, logback, queue);
+    myBatis.start();
+
+    BatchSession session = myBatis.openBatchSession(1000);
+    try {
+      assertThat(session.getConnection(), notNullValue());
+      assertThat(session.getMapper(RuleMapper.class), notNullValue());
+    } finally {
+      session.close();
+    }
+  }
 }
@@ -51,4 +51,14 @@ public class H2Test {
   public void testFetchSizeForScrolling() throws Exception {
     assertThat(dialect.getScrollDefaultFetchSize()).isEqualTo(200);
   }
+
+  @Test
+  public void multiple_rows_insert() throws Exception {
+    assertThat(dialect.supportsMultipleRowsInsert()).isTrue();
+  }
+
+  @Test
+  public void batch_size() throws Exception {
+    assertThat(dialect.getBatchSize()).isEqualTo(1000);
+  }
 }
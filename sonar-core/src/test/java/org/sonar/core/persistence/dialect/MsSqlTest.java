@@ -49,4 +49,9 @@ public class MsSqlTest {
     assertThat(msSql.getDefaultDriverClassName()).isEqualTo("net.sourceforge.jtds.jdbc.Driver");
     assertThat(msSql.getValidationQuery()).isEqualTo("SELECT 1");
   }
+
+  @Test
+  public void multiple_rows_insert() throws Exception {
+    assertThat(msSql.supportsMultipleRowsInsert()).isTrue();
+  }
 }
@@ -52,4 +52,14 @@ public class OracleTest {
     assertThat(dialect.getScrollDefaultFetchSize()).isEqualTo(200);
     assertThat(dialect.getScrollSingleRowFetchSize()).isEqualTo(1);
   }
+
+  @Test
+  public void multiple_rows_insert() throws Exception {
+    assertThat(dialect.supportsMultipleRowsInsert()).isFalse();
+  }
+
+  @Test
+  public void batch_size() throws Exception {
+    assertThat(dialect.getBatchSize()).isEqualTo(250);
+  }
 }
@@ -57,4 +57,9 @@ public class PostgreSqlTest {
   public void testFetchSizeForScrolling() throws Exception {
     assertThat(dialect.getScrollDefaultFetchSize()).isEqualTo(200);
   }
+
+  @Test
+  public void multiple_rows_insert() throws Exception {
+    assertThat(dialect.supportsMultipleRowsInsert()).isTrue();
+  }
 }
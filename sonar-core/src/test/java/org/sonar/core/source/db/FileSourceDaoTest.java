@@ -31,6 +31,10 @@ import org.sonar.core.persistence.DbSession;
 import java.io.IOException;
 import java.io.InputStream;
 import java.io.Reader;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
 
 import static org.assertj.core.api.Assertions.assertThat;
 
@@ -75,6 +79,36 @@ public class FileSourceDaoTest extends AbstractDaoTestCase {
     assertThat(fn.result).isNotEmpty();
   }
 
+  @Test
+  public void select_data_of_multiple_files() throws Exception {
+    setupData("shared");
+
+    final Map<String, String> dataByFile = new HashMap<>();
+    dao.readDataStreams(Arrays.asList("FILE1_UUID", "UNKNOWN"), new FileSourceDao.DataStreamHandler() {
+      @Override
+      public void handle(String fileUuid, InputStream data) {
+        try {
+          dataByFile.put(fileUuid, IOUtils.toString(data));
+        } catch (IOException e) {
+          throw new IllegalStateException(e);
+        }
+      }
+    });
+
+    assertThat(dataByFile).hasSize(1);
+    assertThat(dataByFile.get("FILE1_UUID")).isNotEmpty();
+  }
+
+  @Test
+  public void select_data_of_no_files() throws Exception {
+    dao.readDataStreams(Collections.<String>emptyList(), new FileSourceDao.DataStreamHandler() {
+      @Override
+      public void handle(String fileUuid, InputStream data) {
+        throw new IllegalStateException("Should not be called");
+      }
+    });
+  }
+
   @Test
   public void select_line_hashes() throws Exception {
     setupData("shared");
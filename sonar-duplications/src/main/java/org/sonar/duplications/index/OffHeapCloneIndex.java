@@ -0,0 +1,362 @@
+/*
+ * SonarQube, open source software quality management tool.
+ * Copyright (C) 2008-2014 SonarSource
+ * mailto:contact AT sonarsource DOT com
+ *
+ * SonarQube is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * SonarQube is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+ */
+package org.sonar.duplications.index;
+
+import com.google.common.collect.Lists;
+import com.google.common.collect.Maps;
+import org.sonar.duplications.block.Block;
+import org.sonar.duplications.block.ByteArray;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.IntBuffer;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Provides an index which stores blocks outside of the Java heap, for very large indexes like the ones of cross-project detection.
+ * <p>
+ * Same layout as {@link PackedMemoryCloneIndex}, but flat arrays are replaced by direct buffers, so that neither the heap
+ * nor the garbage collector are loaded by millions of blocks. Only the distinct resource ids are kept on heap, blocks
+ * refer to them by position.
+ * The index should be created with the expected number of blocks when it is known, as growing it requires to copy all
+ * the blocks in new buffers. Buffers are limited to 2 GB, so the max number of blocks depends on the size of hashes.
+ * </p>
+ * <p>
+ * Insertions are not thread-safe. Once all blocks are inserted, queries can be executed concurrently.
+ * </p>
+ */
+public class OffHeapCloneIndex extends AbstractCloneIndex {
+
+  /**
+   * Resource, index in file, first and last lines, first and last units.
+   */
+  private static final int BLOCK_INTS = 6;
+
+  private static final int INT_BYTES = 4;
+
+  private final int hashInts;
+
+  private final int blockInts;
+
+  private final int maxCapacity;
+
+  /**
+   * Indicates that index is sorted, so that queries can be performed without lock. Reset by each insertion.
+   */
+  private volatile boolean sorted;
+
+  /**
+   * Current number of blocks in index.
+   */
+  private int size;
+
+  private int capacity;
+
+  private final List<String> resourceIds = Lists.newArrayList();
+  private final Map<String, Integer> resourceIndexes = Maps.newHashMap();
+
+  /**
+   * Blocks sorted by hash.
+   */
+  private IntBuffer blockData;
+
+  /**
+   * Positions of blocks sorted by resource.
+   */
+  private IntBuffer byResourceIndex;
+
+  /**
+   * @param hashBytes size of hash in bytes
+   * @param expectedBlocks the expected number of blocks
+   */
+  public OffHeapCloneIndex(int hashBytes, int expectedBlocks) {
+    this.sorted = false;
+    this.hashInts = hashBytes / 4;
+    this.blockInts = hashInts + BLOCK_INTS;
+    this.maxCapacity = Integer.MAX_VALUE / INT_BYTES / blockInts;
+    this.size = 0;
+    this.capacity = Math.max(1, expectedBlocks);
+    this.blockData = allocate((long) capacity * blockInts);
+    this.byResourceIndex = allocate(capacity);
+  }
+
+  private IntBuffer allocate(long ints) {
+    long bytes = ints * INT_BYTES;
+    if (bytes > Integer.MAX_VALUE) {
+      throw new IllegalStateException("Off-heap clone index is limited to " + maxCapacity + " blocks, but " + ints / blockInts + " are requested");
+    }
+    return ByteBuffer.allocateDirect((int) bytes).order(ByteOrder.nativeOrder()).asIntBuffer();
+  }
+
+  /**
+   * {@inheritDoc}
+   * <p>
+   * <strong>Note that this implementation does not guarantee that blocks would be sorted by index.</strong>
+   * </p>
+   */
+  @Override
+  public Collection<Block> getByResourceId(String resourceId) {
+    ensureSorted();
+
+    List<Block> result = Lists.newArrayList();
+    Integer resourceIndex = resourceIndexes.get(resourceId);
+    if (resourceIndex == null) {
+      return result;
+    }
+    int index = lowerBoundByResource(resourceIndex);
+    Block.Builder blockBuilder = Block.builder();
+    while (index < size && resourceAt(byResourceIndex.get(index)) == resourceIndex) {
+      int offset = byResourceIndex.get(index) * blockInts;
+      int[] hash = new int[hashInts];
+      for (int j = 0; j < hashInts; j++) {
+        hash[j] = blockData.get(offset++);
+      }
+      result.add(buildBlock(blockBuilder, resourceId, new ByteArray(hash), offset + 1));
+      index++;
+    }
+    return result;
+  }
+
+  /**
+   * {@inheritDoc}
+   */
+  @Override
+  public Collection<Block> getBySequenceHash(ByteArray sequenceHash) {
+    ensureSorted();
+
+    int[] hash = sequenceHash.toIntArray();
+    if (hash.length != hashInts) {
+      throw new IllegalArgumentException("Expected " + hashInts + " ints in hash, but got " + hash.length);
+    }
+    int index = lowerBoundByHash(hash);
+
+    List<Block> result = Lists.newArrayList();
+    Block.Builder blockBuilder = Block.builder();
+    while (index < size && compareHash(index, hash) == 0) {
+      String resourceId = resourceIds.get(resourceAt(index));
+      result.add(buildBlock(blockBuilder, resourceId, sequenceHash, index * blockInts + hashInts + 1));
+      index++;
+    }
+    return result;
+  }
+
+  /**
+   * @param offset position of the index in file of the block
+   */
+  private Block buildBlock(Block.Builder blockBuilder, String resourceId, ByteArray hash, int offset) {
+    int position = offset;
+    int indexInFile = blockData.get(position++);
+    int firstLineNumber = blockData.get(position++);
+    int lastLineNumber = blockData.get(position++);
+    int startUnit = blockData.get(position++);
+    int endUnit = blockData.get(position);
+    return blockBuilder
+      .setResourceId(resourceId)
+      .setBlockHash(hash)
+      .setIndexInFile(indexInFile)
+      .setLines(firstLineNumber, lastLineNumber)
+      .setUnit(startUnit, endUnit)
+      .build();
+  }
+
+  /**
+   * {@inheritDoc}
+   * <p>
+   * <strong>Note that this implementation allows insertion of two blocks with same index for one resource.</strong>
+   * </p>
+   */
+  @Override
+  public void insert(Block block) {
+    int[] hash = block.getBlockHash().toIntArray();
+    if (hash.length != hashInts) {
+      throw new IllegalArgumentException("Expected " + hashInts + " ints in hash, but got " + hash.length);
+    }
+    sorted = false;
+    ensureCapacity();
+
+    Integer resourceIndex = resourceIndexes.get(block.getResourceId());
+    if (resourceIndex == null) {
+      resourceIndex = resourceIds.size();
+      resourceIds.add(block.getResourceId());
+      resourceIndexes.put(block.getResourceId(), resourceIndex);
+    }
+
+    int offset = size * blockInts;
+    for (int i = 0; i < hashInts; i++) {
+      blockData.put(offset++, hash[i]);
+    }
+    blockData.put(offset++, resourceIndex);
+    blockData.put(offset++, block.getIndexInFile());
+    blockData.put(offset++, block.getStartLine());
+    blockData.put(offset++, block.getEndLine());
+    blockData.put(offset++, block.getStartUnit());
+    blockData.put(offset, block.getEndUnit());
+
+    size++;
+  }
+
+  /**
+   * Increases the capacity, if necessary.
+   */
+  private void ensureCapacity() {
+    if (size < capacity) {
+      return;
+    }
+    if (capacity >= maxCapacity) {
+      throw new IllegalStateException("Off-heap clone index is limited to " + maxCapacity + " blocks");
+    }
+    capacity = (int) Math.min(maxCapacity, capacity * 3L / 2 + 1);
+    IntBuffer oldBlockData = blockData;
+    blockData = allocate((long) capacity * blockInts);
+    oldBlockData.rewind();
+    blockData.put(oldBlockData);
+    // no need to copy old positions, because would be restored in method ensureSorted
+    byResourceIndex = allocate(capacity);
+  }
+
+  /**
+   * Performs sorting, if necessary. Queries on a sorted index do not lock, while the first
+   * concurrent queries do not sort the index twice.
+   */
+  private void ensureSorted() {
+    if (sorted) {
+      return;
+    }
+    synchronized (this) {
+      if (sorted) {
+        return;
+      }
+      DataUtils.sort(byBlockHash);
+      for (int i = 0; i < size; i++) {
+        byResourceIndex.put(i, i);
+      }
+      DataUtils.sort(byResource);
+
+      sorted = true;
+    }
+  }
+
+  private int resourceAt(int index) {
+    return blockData.get(index * blockInts + hashInts);
+  }
+
+  private int lowerBoundByResource(int resourceIndex) {
+    int lower = 0;
+    int upper = size;
+    while (lower < upper) {
+      int mid = (lower + upper) >>> 1;
+      if (resourceAt(byResourceIndex.get(mid)) < resourceIndex) {
+        lower = mid + 1;
+      } else {
+        upper = mid;
+      }
+    }
+    return lower;
+  }
+
+  private int lowerBoundByHash(int[] hash) {
+    int lower = 0;
+    int upper = size;
+    while (lower < upper) {
+      int mid = (lower + upper) >>> 1;
+      if (compareHash(mid, hash) < 0) {
+        lower = mid + 1;
+      } else {
+        upper = mid;
+      }
+    }
+    return lower;
+  }
+
+  private int compareHash(int index, int[] hash) {
+    int offset = index * blockInts;
+    for (int k = 0; k < hashInts; k++, offset++) {
+      int value = blockData.get(offset);
+      if (value < hash[k]) {
+        return -1;
+      }
+      if (value > hash[k]) {
+        return 1;
+      }
+    }
+    return 0;
+  }
+
+  private boolean isLessByHash(int i, int j) {
+    int i2 = i * blockInts;
+    int j2 = j * blockInts;
+    for (int k = 0; k < hashInts; k++, i2++, j2++) {
+      int x = blockData.get(i2);
+      int y = blockData.get(j2);
+      if (x < y) {
+        return true;
+      }
+      if (x > y) {
+        return false;
+      }
+    }
+    return false;
+  }
+
+  private final DataUtils.Sortable byBlockHash = new DataUtils.Sortable() {
+    @Override
+    public void swap(int i, int j) {
+      int i2 = i * blockInts;
+      int j2 = j * blockInts;
+      for (int k = 0; k < blockInts; k++, i2++, j2++) {
+        int x = blockData.get(i2);
+        blockData.put(i2, blockData.get(j2));
+        blockData.put(j2, x);
+      }
+    }
+
+    @Override
+    public boolean isLess(int i, int j) {
+      return isLessByHash(i, j);
+    }
+
+    @Override
+    public int size() {
+      return size;
+    }
+  };
+
+  private final DataUtils.Sortable byResource = new DataUtils.Sortable() {
+    @Override
+    public void swap(int i, int j) {
+      int tmp = byResourceIndex.get(i);
+      byResourceIndex.put(i, byResourceIndex.get(j));
+      byResourceIndex.put(j, tmp);
+    }
+
+    @Override
+    public boolean isLess(int i, int j) {
+      return resourceAt(byResourceIndex.get(i)) < resourceAt(byResourceIndex.get(j));
+    }
+
+    @Override
+    public int size() {
+      return size;
+    }
+  };
+
+}
@@ -21,22 +21,50 @@ package org.sonar.graph;
 
 import javax.annotation.CheckForNull;
 
+import java.util.Arrays;
 import java.util.Collection;
 import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
 import java.util.Set;
 
+/**
+ * Dependency structure matrix. Only the non-empty cells are stored: they are attached to the vertices
+ * rather than to positions, so that permutations only swap indices and do not move cells.
+ */
 public class Dsm<V> {
 
   private final V[] vertices;
-  private final DsmCell[][] cells;
   private final int dimension;
   private final DirectedGraphAccessor<V, ? extends Edge<V>> graph;
 
+  // vertices are identified by their index in the initial collection
+  private final int[] vertexByPosition;
+  private final int[] positionByVertex;
+
+  // sorted indices of the target vertices of the outgoing cells of each vertex
+  private final int[][] targets;
+  private final DsmCell[][] outgoingCells;
+
+  // indices of the source vertices of the incoming cells of each vertex
+  private final int[][] sources;
+  private final DsmCell[][] incomingCells;
+
   public Dsm(DirectedGraphAccessor<V, ? extends Edge<V>> graph, Collection<V> vertices, Set<Edge> feedbackEdges) {
     this.graph = graph;
     this.dimension = vertices.size();
     this.vertices = initVertices(vertices);
-    this.cells = initCells(feedbackEdges);
+    this.vertexByPosition = new int[dimension];
+    this.positionByVertex = new int[dimension];
+    for (int i = 0; i < dimension; i++) {
+      vertexByPosition[i] = i;
+      positionByVertex[i] = i;
+    }
+    this.targets = new int[dimension][];
+    this.outgoingCells = new DsmCell[dimension][];
+    this.sources = new int[dimension][];
+    this.incomingCells = new DsmCell[dimension][];
+    initCells(feedbackEdges);
   }
 
   public Dsm(DirectedGraphAccessor<V, ? extends Edge<V>> acyclicGraph, Set<Edge> feedbackEdges) {
@@ -47,21 +75,72 @@ public class Dsm<V> {
     this(acyclicGraph, acyclicGraph.getVertices(), Collections.<Edge>emptySet());
   }
 
-  private DsmCell[][] initCells(Set<Edge> feedbackEdges) {
-    DsmCell[][] result = new DsmCell[dimension][dimension];
-    for (int x = 0; x < dimension; x++) {
-      for (int y = 0; y < dimension; y++) {
-        V from = vertices[x];
-        V to = vertices[y];
+  private void initCells(Set<Edge> feedbackEdges) {
+    Map<V, Integer> indexByVertex = new HashMap<V, Integer>();
+    for (int i = 0; i < dimension; i++) {
+      indexByVertex.put(vertices[i], i);
+    }
 
-        Edge<V> edge = graph.getEdge(from, to);
+    int[] incomingCounts = new int[dimension];
+    for (int x = 0; x < dimension; x++) {
+      V from = vertices[x];
+      int[] tos = targetIndices(from, indexByVertex);
+      int count = 0;
+      DsmCell[] cells = new DsmCell[tos.length];
+      for (int to : tos) {
+        Edge<V> edge = graph.getEdge(from, vertices[to]);
         if (edge != null) {
-          boolean isFeedbackEdge = feedbackEdges.contains(edge);
-          result[x][y] = new DsmCell(edge, isFeedbackEdge);
+          tos[count] = to;
+          cells[count] = new DsmCell(edge, feedbackEdges.contains(edge));
+          incomingCounts[to]++;
+          count++;
         }
       }
+      targets[x] = Arrays.copyOf(tos, count);
+      outgoingCells[x] = Arrays.copyOf(cells, count);
     }
-    return result;
+
+    for (int y = 0; y < dimension; y++) {
+      sources[y] = new int[incomingCounts[y]];
+      incomingCells[y] = new DsmCell[incomingCounts[y]];
+      incomingCounts[y] = 0;
+    }
+    for (int x = 0; x < dimension; x++) {
+      for (int i = 0; i < targets[x].length; i++) {
+        int y = targets[x][i];
+        sources[y][incomingCounts[y]] = x;
+        incomingCells[y][incomingCounts[y]] = outgoingCells[x][i];
+        incomingCounts[y]++;
+      }
+    }
+  }
+
+  /**
+   * Sorted and distinct indices of the vertices of the DSM that are targets of the outgoing edges of the given vertex
+   */
+  private int[] targetIndices(V from, Map<V, Integer> indexByVertex) {
+    Collection<? extends Edge<V>> edges = graph.getOutgoingEdges(from);
+    if (edges == null || edges.isEmpty()) {
+      return new int[0];
+    }
+    int[] result = new int[edges.size()];
+    int count = 0;
+    for (Edge<V> edge : edges) {
+      Integer to = indexByVertex.get(edge.getTo());
+      if (to != null) {
+        result[count] = to;
+        count++;
+      }
+    }
+    Arrays.sort(result, 0, count);
+    int distinct = 0;
+    for (int i = 0; i < count; i++) {
+      if (distinct == 0 || result[distinct - 1] != result[i]) {
+        result[distinct] = result[i];
+        distinct++;
+      }
+    }
+    return Arrays.copyOf(result, distinct);
   }
 
   private V[] initVertices(Collection<V> verticesCol) {
@@ -86,8 +165,7 @@ public class Dsm<V> {
     if (fromIndex != toIndex) {
       checkIndicesBoudaries(fromIndex, toIndex);
       permuteVertice(fromIndex, toIndex);
-      permuteColumns(fromIndex, toIndex);
-      permuteRows(fromIndex, toIndex);
+      permutePositions(fromIndex, toIndex);
     }
   }
 
@@ -111,45 +189,35 @@ public class Dsm<V> {
     vertices[toIndex] = fromVertex;
   }
 
-  private void permuteRows(int fromYIndex, int toYIndex) {
-    for (int x = 0; x < dimension; x++) {
-      permuteCells(x, fromYIndex, x, toYIndex);
-    }
-  }
-
-  private void permuteColumns(int fromXIndex, int toXIndex) {
-    for (int y = 0; y < dimension; y++) {
-      permuteCells(fromXIndex, y, toXIndex, y);
-    }
-  }
-
-  private void permuteCells(int fromXIndex, int fromYIndex, int toXIndex, int toYIndex) {
-    DsmCell fromCell = cells[fromXIndex][fromYIndex];
-    DsmCell toCell = cells[toXIndex][toYIndex];
-    cells[toXIndex][toYIndex] = fromCell;
-    cells[fromXIndex][fromYIndex] = toCell;
+  private void permutePositions(int fromIndex, int toIndex) {
+    int fromVertex = vertexByPosition[fromIndex];
+    int toVertex = vertexByPosition[toIndex];
+    vertexByPosition[fromIndex] = toVertex;
+    vertexByPosition[toIndex] = fromVertex;
+    positionByVertex[toVertex] = fromIndex;
+    positionByVertex[fromVertex] = toIndex;
   }
 
   public int getNumberOfIncomingEdges(int y, int from, int to) {
-    int incomingEdges = 0;
-    for (int x = from; x <= to; x++) {
-      DsmCell cell = cells[x][y];
-      if (cell != null && cell.getWeight() != 0 && !cell.isFeedbackEdge()) {
-        incomingEdges++;
-      }
-    }
-    return incomingEdges;
+    int vertex = vertexByPosition[y];
+    return countEdges(sources[vertex], incomingCells[vertex], from, to);
   }
 
   public int getNumberOfOutgoingEdges(int x, int from, int to) {
-    int outgoingEdges = 0;
-    for (int y = from; y <= to; y++) {
-      DsmCell cell = cells[x][y];
-      if (cell != null && cell.getWeight() != 0 && !cell.isFeedbackEdge()) {
-        outgoingEdges++;
+    int vertex = vertexByPosition[x];
+    return countEdges(targets[vertex], outgoingCells[vertex], from, to);
+  }
+
+  private int countEdges(int[] otherVertices, DsmCell[] cells, int from, int to) {
+    int edges = 0;
+    for (int i = 0; i < otherVertices.length; i++) {
+      int position = positionByVertex[otherVertices[i]];
+      DsmCell cell = cells[i];
+      if (position >= from && position <= to && cell.getWeight() != 0 && !cell.isFeedbackEdge()) {
+        edges++;
       }
     }
-    return outgoingEdges;
+    return edges;
   }
 
   /**
@@ -157,7 +225,7 @@ public class Dsm<V> {
    */
   @Deprecated
   public DsmCell getCell(int x, int y) {
-    DsmCell cell = cells[x][y];
+    DsmCell cell = cell(x, y);
     return cell != null ? cell : new DsmCell(null, false);
   }
 
@@ -166,7 +234,9 @@ public class Dsm<V> {
    */
   @CheckForNull
   public DsmCell cell(int x, int y) {
-    return cells[x][y];
+    int from = vertexByPosition[x];
+    int index = Arrays.binarySearch(targets[from], vertexByPosition[y]);
+    return index >= 0 ? outgoingCells[from][index] : null;
   }
 
   public V[] getVertices() {
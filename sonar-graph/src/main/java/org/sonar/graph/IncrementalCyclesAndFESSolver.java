@@ -23,13 +23,19 @@ import java.util.Collection;
 import java.util.LinkedHashSet;
 import java.util.Set;
 
+/**
+ * Searches cycles and a minimum feedback edge set. The graph is first split into strongly connected components,
+ * and the search runs independently on each cyclic component.
+ */
 public class IncrementalCyclesAndFESSolver<V> {
 
   private Set<Cycle> cycles = new LinkedHashSet<Cycle>();
+  private Set<Edge> feedbackEdges = new LinkedHashSet<Edge>();
+  private int weightOfFeedbackEdgeSet = 0;
+  private int numberOfLoops = 0;
   private long searchCyclesCalls = 0;
   private static final int DEFAULT_MAX_SEARCH_DEPTH_AT_FIRST = 3;
   private static final int DEFAULT_MAX_CYCLES_TO_FOUND_BY_ITERATION = 100;
-  private MinimumFeedbackEdgeSetSolver solver;
   private int iterations = 0;
 
   public IncrementalCyclesAndFESSolver(DirectedGraphAccessor<V, ? extends Edge> graph, Collection<V> vertices) {
@@ -38,36 +44,50 @@ public class IncrementalCyclesAndFESSolver<V> {
 
   public IncrementalCyclesAndFESSolver(DirectedGraphAccessor<V, ? extends Edge> graph, Collection<V> vertices, int maxSearchDepthAtFirst,
     int maxCyclesToFoundByIteration) {
+    for (Set<V> component : StronglyConnectedComponents.of(graph, vertices)) {
+      if (StronglyConnectedComponents.isCyclic(graph, component)) {
+        solve(graph, component, maxSearchDepthAtFirst, maxCyclesToFoundByIteration);
+      }
+    }
+  }
+
+  private void solve(DirectedGraphAccessor<V, ? extends Edge> graph, Set<V> component, int maxSearchDepthAtFirst, int maxCyclesToFoundByIteration) {
+    Set<Cycle> componentCycles = new LinkedHashSet<Cycle>();
 
     iterations++;
-    CycleDetector<V> cycleDetector = new CycleDetector<V>(graph, vertices);
+    CycleDetector<V> cycleDetector = new CycleDetector<V>(graph, component);
     cycleDetector.detectCyclesWithMaxSearchDepth(maxSearchDepthAtFirst);
     searchCyclesCalls += cycleDetector.getSearchCyclesCalls();
-    cycles.addAll(cycleDetector.getCycles());
-    solver = new MinimumFeedbackEdgeSetSolver(cycles);
+    componentCycles.addAll(cycleDetector.getCycles());
+    MinimumFeedbackEdgeSetSolver solver = new MinimumFeedbackEdgeSetSolver(componentCycles);
     Set<Edge> edgesToExclude = solver.getEdges();
 
     do {
       iterations++;
-      cycleDetector = new CycleDetector<V>(graph, vertices, edgesToExclude);
+      cycleDetector = new CycleDetector<V>(graph, component, edgesToExclude);
       cycleDetector.detectCyclesWithUpperLimit(maxCyclesToFoundByIteration);
       searchCyclesCalls += cycleDetector.getSearchCyclesCalls();
-      cycles.addAll(cycleDetector.getCycles());
-      solver = new MinimumFeedbackEdgeSetSolver(cycles);
+      componentCycles.addAll(cycleDetector.getCycles());
+      solver = new MinimumFeedbackEdgeSetSolver(componentCycles);
       edgesToExclude = solver.getEdges();
     } while (!cycleDetector.getCycles().isEmpty());
+
+    cycles.addAll(componentCycles);
+    feedbackEdges.addAll(edgesToExclude);
+    weightOfFeedbackEdgeSet += solver.getWeightOfFeedbackEdgeSet();
+    numberOfLoops += solver.getNumberOfLoops();
   }
 
   public int getWeightOfFeedbackEdgeSet() {
-    return solver.getWeightOfFeedbackEdgeSet();
+    return weightOfFeedbackEdgeSet;
   }
 
   public int getNumberOfLoops() {
-    return solver.getNumberOfLoops();
+    return numberOfLoops;
   }
 
   public Set<Edge> getFeedbackEdgeSet() {
-    return solver.getEdges();
+    return feedbackEdges;
   }
 
   public Set<Cycle> getCycles() {
@@ -0,0 +1,182 @@
+/*
+ * SonarQube, open source software quality management tool.
+ * Copyright (C) 2008-2014 SonarSource
+ * mailto:contact AT sonarsource DOT com
+ *
+ * SonarQube is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * SonarQube is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+ */
+package org.sonar.graph;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Strongly connected components of a directed graph, computed with Tarjan's algorithm. Every cycle of the graph
+ * is contained in a single component, so that cycles can be searched component by component.
+ * <p/>
+ * Recursion is replaced by an explicit stack, so that graphs with thousands of vertices do not overflow the thread stack.
+ *
+ * @since 5.1
+ */
+public final class StronglyConnectedComponents<V> {
+
+  private final DirectedGraphAccessor<V, ? extends Edge> graph;
+  private final List<V> vertices;
+  private final List<Set<V>> components = new ArrayList<Set<V>>();
+
+  private StronglyConnectedComponents(DirectedGraphAccessor<V, ? extends Edge> graph, Collection<V> vertices) {
+    this.graph = graph;
+    this.vertices = new ArrayList<V>(new LinkedHashSet<V>(vertices));
+    run();
+  }
+
+  /**
+   * Components of the subgraph induced by the given vertices. Vertices of each component are in the order of the
+   * given collection, and components are sorted by their first vertex in this order.
+   */
+  public static <V> List<Set<V>> of(DirectedGraphAccessor<V, ? extends Edge> graph, Collection<V> vertices) {
+    return new StronglyConnectedComponents<V>(graph, vertices).components;
+  }
+
+  public static <V> List<Set<V>> of(DirectedGraphAccessor<V, ? extends Edge> graph) {
+    return of(graph, graph.getVertices());
+  }
+
+  /**
+   * Whether the component contains at least one cycle, i.e. it has more than one vertex or its single vertex
+   * depends on itself
+   */
+  public static <V> boolean isCyclic(DirectedGraphAccessor<V, ? extends Edge> graph, Set<V> component) {
+    if (component.size() > 1) {
+      return true;
+    }
+    V vertex = component.iterator().next();
+    return graph.hasEdge(vertex, vertex);
+  }
+
+  private void run() {
+    int size = vertices.size();
+    int[][] successors = successors();
+
+    int[] index = new int[size];
+    Arrays.fill(index, -1);
+    int[] lowLink = new int[size];
+    boolean[] onStack = new boolean[size];
+    int[] stack = new int[size];
+    int stackSize = 0;
+    int[] componentByVertex = new int[size];
+    int componentCount = 0;
+
+    // explicit call stack of the depth-first search: vertex and position in its successors
+    int[] callVertex = new int[size];
+    int[] callPosition = new int[size];
+    int nextIndex = 0;
+
+    for (int root = 0; root < size; root++) {
+      if (index[root] >= 0) {
+        continue;
+      }
+      int depth = 0;
+      callVertex[0] = root;
+      callPosition[0] = 0;
+      index[root] = nextIndex;
+      lowLink[root] = nextIndex;
+      nextIndex++;
+      stack[stackSize] = root;
+      stackSize++;
+      onStack[root] = true;
+
+      while (depth >= 0) {
+        int v = callVertex[depth];
+        if (callPosition[depth] < successors[v].length) {
+          int w = successors[v][callPosition[depth]];
+          callPosition[depth]++;
+          if (index[w] < 0) {
+            index[w] = nextIndex;
+            lowLink[w] = nextIndex;
+            nextIndex++;
+            stack[stackSize] = w;
+            stackSize++;
+            onStack[w] = true;
+            depth++;
+            callVertex[depth] = w;
+            callPosition[depth] = 0;
+          } else if (onStack[w]) {
+            lowLink[v] = Math.min(lowLink[v], index[w]);
+          }
+        } else {
+          if (lowLink[v] == index[v]) {
+            int w;
+            do {
+              stackSize--;
+              w = stack[stackSize];
+              onStack[w] = false;
+              componentByVertex[w] = componentCount;
+            } while (w != v);
+            componentCount++;
+          }
+          depth--;
+          if (depth >= 0) {
+            int parent = callVertex[depth];
+            lowLink[parent] = Math.min(lowLink[parent], lowLink[v]);
+          }
+        }
+      }
+    }
+
+    List<Set<V>> componentsById = new ArrayList<Set<V>>(Collections.<Set<V>>nCopies(componentCount, null));
+    for (int i = 0; i < size; i++) {
+      int id = componentByVertex[i];
+      Set<V> component = componentsById.get(id);
+      if (component == null) {
+        component = new LinkedHashSet<V>();
+        componentsById.set(id, component);
+        components.add(component);
+      }
+      component.add(vertices.get(i));
+    }
+  }
+
+  private int[][] successors() {
+    Map<V, Integer> indexByVertex = new HashMap<V, Integer>();
+    for (int i = 0; i < vertices.size(); i++) {
+      indexByVertex.put(vertices.get(i), i);
+    }
+    int[][] result = new int[vertices.size()][];
+    for (int i = 0; i < vertices.size(); i++) {
+      Collection<? extends Edge> edges = graph.getOutgoingEdges(vertices.get(i));
+      int[] successors = new int[edges == null ? 0 : edges.size()];
+      int count = 0;
+      if (edges != null) {
+        for (Edge edge : edges) {
+          Integer to = indexByVertex.get(edge.getTo());
+          if (to != null) {
+            successors[count] = to;
+            count++;
+          }
+        }
+      }
+      result[i] = Arrays.copyOf(successors, count);
+    }
+    return result;
+  }
+}
@@ -65,8 +65,23 @@ public class IncrementalCyclesAndFESSolverTest {
 
     IncrementalCyclesAndFESSolver<String> cyclesAndFESSolver = new IncrementalCyclesAndFESSolver<String>(dcg, dcg.getVertices(), 2, 1);
     assertThat(cyclesAndFESSolver.getCycles().size(), is(3));
-    assertThat(cyclesAndFESSolver.getIterations(), is(4));
+    // cycles are searched independently in each of the 3 strongly connected components
+    assertThat(cyclesAndFESSolver.getIterations(), is(8));
     cyclesAndFESSolver.getFeedbackEdgeSet();
   }
 
+  @Test
+  public void ignore_acyclic_parts_of_graph() {
+    DirectedGraph<String, StringEdge> dcg = DirectedGraph.createStringDirectedGraph();
+    dcg.addEdge("A", "B").addEdge("B", "A");
+    dcg.addEdge("B", "C").addEdge("C", "D");
+    dcg.addEdge("D", "E", 3).addEdge("E", "D", 2);
+
+    IncrementalCyclesAndFESSolver<String> cyclesAndFESSolver = new IncrementalCyclesAndFESSolver<String>(dcg, dcg.getVertices());
+    assertThat(cyclesAndFESSolver.getCycles().size(), is(2));
+    assertThat(cyclesAndFESSolver.getFeedbackEdgeSet().size(), is(2));
+    assertThat(cyclesAndFESSolver.getWeightOfFeedbackEdgeSet(), is(3));
+    assertThat(cyclesAndFESSolver.getFeedbackEdgeSet().contains(dcg.getEdge("E", "D")), is(true));
+  }
+
 }
@@ -0,0 +1,86 @@
+/*
+ * SonarQube, open source software quality management tool.
+ * Copyright (C) 2008-2014 SonarSource
+ * mailto:contact AT sonarsource DOT com
+ *
+ * SonarQube is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * SonarQube is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+ */
+package org.sonar.graph;
+
+import com.google.common.collect.ImmutableSet;
+import org.junit.Test;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.Set;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+public class StronglyConnectedComponentsTest {
+
+  @Test
+  public void find_components_in_order_of_vertices() {
+    DirectedGraph<String, StringEdge> dcg = DirectedGraph.createStringDirectedGraph();
+    dcg.addEdge("A", "B").addEdge("B", "A");
+    dcg.addEdge("B", "C").addEdge("C", "D");
+    dcg.addEdge("D", "E").addEdge("E", "F").addEdge("F", "D");
+
+    List<Set<String>> components = StronglyConnectedComponents.of(dcg, Arrays.asList("A", "B", "C", "D", "E", "F"));
+
+    assertThat(components).hasSize(3);
+    assertThat(components.get(0)).containsOnly("A", "B");
+    assertThat(components.get(1)).containsOnly("C");
+    assertThat(components.get(2)).containsOnly("D", "E", "F");
+  }
+
+  @Test
+  public void is_cyclic() {
+    DirectedGraph<String, StringEdge> dcg = DirectedGraph.createStringDirectedGraph();
+    dcg.addEdge("A", "B").addEdge("B", "A");
+    dcg.addEdge("B", "C");
+    dcg.addEdge("D", "D");
+
+    assertThat(StronglyConnectedComponents.isCyclic(dcg, ImmutableSet.of("A", "B"))).isTrue();
+    assertThat(StronglyConnectedComponents.isCyclic(dcg, ImmutableSet.of("C"))).isFalse();
+    assertThat(StronglyConnectedComponents.isCyclic(dcg, ImmutableSet.of("D"))).isTrue();
+  }
+
+  @Test
+  public void ignore_edges_to_vertices_out_of_scope() {
+    DirectedGraph<String, StringEdge> dcg = DirectedGraph.createStringDirectedGraph();
+    dcg.addEdge("A", "B").addEdge("B", "C").addEdge("C", "A");
+
+    List<Set<String>> components = StronglyConnectedComponents.of(dcg, Arrays.asList("A", "B"));
+
+    assertThat(components).hasSize(2);
+    assertThat(components.get(0)).containsOnly("A");
+    assertThat(components.get(1)).containsOnly("B");
+  }
+
+  @Test
+  public void support_deep_graphs() {
+    DirectedGraph<String, StringEdge> dcg = DirectedGraph.createStringDirectedGraph();
+    int size = 100000;
+    for (int i = 0; i < size - 1; i++) {
+      dcg.addEdge("V" + i, "V" + (i + 1));
+    }
+    dcg.addEdge("V" + (size - 1), "V0");
+
+    List<Set<String>> components = StronglyConnectedComponents.of(dcg);
+
+    assertThat(components).hasSize(1);
+    assertThat(components.get(0)).hasSize(size);
+  }
+}
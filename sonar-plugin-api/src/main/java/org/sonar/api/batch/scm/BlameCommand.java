@@ -41,6 +41,16 @@ public abstract class BlameCommand implements BatchComponent {
    */
   public abstract void blame(BlameInput input, BlameOutput output);
 
+  /**
+   * Whether {@link #blame(BlameInput, BlameOutput)} can be called concurrently on this instance, each call
+   * with its own subset of files. When true, files are split in groups that are blamed on the number of threads
+   * defined by the property sonar.scm.threads. Default is false: all files are blamed by a single call.
+   * @since 5.1
+   */
+  public boolean supportsConcurrentBlame() {
+    return false;
+  }
+
   /**
    * Callback for the provider to report results of blame per file.
    */
@@ -19,8 +19,16 @@
  */
 package org.sonar.api.database.model;
 
+import java.util.List;
+
 public interface MeasureMapper {
   void insert(MeasureModel measure);
 
+  /**
+   * Inserts many rows in a single statement. Not supported by all databases,
+   * see {@code org.sonar.core.persistence.dialect.Dialect#supportsMultipleRowsInsert()}
+   */
+  void insertRows(List<MeasureModel> measures);
+
   void update(MeasureModel measure);
 }
@@ -32,6 +32,8 @@ import org.sonar.api.ServerComponent;
 import org.sonar.api.config.PropertyDefinitions;
 
 import javax.annotation.Nullable;
+
+import java.util.ArrayList;
 import java.util.Collection;
 import java.util.List;
 
@@ -40,8 +42,10 @@ import java.util.List;
  */
 public class ComponentContainer implements BatchComponent, ServerComponent {
 
-  // no need for multiple children
+  // child is the last created one. Several children can live concurrently, for example
+  // one per computation worker on server side.
   ComponentContainer parent, child;
+  final List<ComponentContainer> children = new ArrayList<>();
   MutablePicoContainer pico;
   PropertyDefinitions propertyDefinitions;
   ComponentKeys componentKeys;
@@ -64,8 +68,11 @@ public class ComponentContainer implements BatchComponent, ServerComponent {
    */
   protected ComponentContainer(ComponentContainer parent) {
     this.parent = parent;
-    this.pico = parent.pico.makeChildContainer();
-    this.parent.child = this;
+    synchronized (parent) {
+      this.pico = parent.pico.makeChildContainer();
+      this.parent.child = this;
+      this.parent.children.add(this);
+    }
     this.propertyDefinitions = parent.propertyDefinitions;
     this.componentKeys = new ComponentKeys();
     addSingleton(this);
@@ -128,9 +135,9 @@ public class ComponentContainer implements BatchComponent, ServerComponent {
         throw PicoUtils.propagate(e);
       }
     } finally {
-      removeChild();
+      removeChildren();
       if (parent != null) {
-        parent.removeChild();
+        parent.removeChild(this);
       }
     }
     return this;
@@ -217,10 +224,33 @@ public class ComponentContainer implements BatchComponent, ServerComponent {
     return pico.getComponents(tClass);
   }
 
-  public ComponentContainer removeChild() {
+  /**
+   * Removes the last created child
+   */
+  public synchronized ComponentContainer removeChild() {
     if (child != null) {
-      pico.removeChildContainer(child.pico);
-      child = null;
+      removeChild(child);
+    }
+    return this;
+  }
+
+  /**
+   * @since 5.1
+   */
+  public synchronized ComponentContainer removeChild(ComponentContainer childToBeRemoved) {
+    if (children.remove(childToBeRemoved)) {
+      pico.removeChildContainer(childToBeRemoved.pico);
+    }
+    child = children.isEmpty() ? null : children.get(children.size() - 1);
+    return this;
+  }
+
+  /**
+   * @since 5.1
+   */
+  public synchronized ComponentContainer removeChildren() {
+    for (ComponentContainer c : new ArrayList<>(children)) {
+      removeChild(c);
     }
     return this;
   }
@@ -242,6 +272,13 @@ public class ComponentContainer implements BatchComponent, ServerComponent {
     return child;
   }
 
+  /**
+   * @since 5.1
+   */
+  public synchronized List<ComponentContainer> getChildren() {
+    return new ArrayList<>(children);
+  }
+
   public MutablePicoContainer getPicoContainer() {
     return pico;
   }
@@ -136,6 +136,28 @@ public class ComponentContainerTest {
     assertThat(parent.getChild()).isNull();
   }
 
+  @Test
+  public void support_multiple_children() {
+    ComponentContainer parent = new ComponentContainer();
+    parent.startComponents();
+
+    ComponentContainer child1 = parent.createChild();
+    child1.startComponents();
+    ComponentContainer child2 = parent.createChild();
+    child2.startComponents();
+    assertThat(parent.getChildren()).containsExactly(child1, child2);
+    assertThat(parent.getChild()).isSameAs(child2);
+
+    // stopping a child does not remove its siblings
+    child2.stopComponents();
+    assertThat(parent.getChildren()).containsExactly(child1);
+    assertThat(parent.getChild()).isSameAs(child1);
+
+    child1.stopComponents();
+    assertThat(parent.getChildren()).isEmpty();
+    assertThat(parent.getChild()).isNull();
+  }
+
   @Test
   public void shouldForwardStartAndStopToDescendants() {
     ComponentContainer grandParent = new ComponentContainer();